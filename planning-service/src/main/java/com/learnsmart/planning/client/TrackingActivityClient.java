@@ -0,0 +1,70 @@
+package com.learnsmart.planning.client;
+
+import com.learnsmart.planning.dto.ExternalDtos;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Client for learners' latest tracked activity in tracking-service, used by
+ * the inactivity replan trigger.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TrackingActivityClient {
+
+    // Users per request; tracking-service accepts up to 10,000
+    static final int MAX_USERS_PER_REQUEST = 1000;
+
+    private final RestTemplate restTemplate;
+
+    @Value("${tracking-service.url:http://tracking-service}")
+    private String trackingServiceUrl;
+
+    /**
+     * Fetches the time of each user's latest event, in one request per
+     * {@value #MAX_USERS_PER_REQUEST} users.
+     * POST /analytics/users/last-activity
+     *
+     * @param userIds the user IDs
+     * @return map of user ID to latest event time; users without events are
+     *         missing, and the map is empty if tracking-service is unavailable
+     */
+    public Map<UUID, OffsetDateTime> getLastActivity(Collection<UUID> userIds) {
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<UUID, OffsetDateTime> lastActivity = new HashMap<>();
+        try {
+            String url = trackingServiceUrl + "/analytics/users/last-activity";
+            for (int from = 0; from < ids.size(); from += MAX_USERS_PER_REQUEST) {
+                List<UUID> batch = ids.subList(from, Math.min(ids.size(), from + MAX_USERS_PER_REQUEST));
+                ResponseEntity<List<ExternalDtos.UserLastActivity>> response = restTemplate.exchange(
+                        url,
+                        HttpMethod.POST,
+                        new HttpEntity<>(Map.of("userIds", batch)),
+                        new ParameterizedTypeReference<List<ExternalDtos.UserLastActivity>>() {
+                        });
+
+                if (response.getBody() != null) {
+                    for (ExternalDtos.UserLastActivity activity : response.getBody()) {
+                        lastActivity.put(activity.getUserId(), activity.getLastActivityAt());
+                    }
+                }
+            }
+            return lastActivity;
+
+        } catch (Exception e) {
+            log.warn("Failed to fetch last activity of {} users: {}", ids.size(), e.getMessage());
+            return Collections.emptyMap(); // Graceful degradation
+        }
+    }
+}
@@ -7,6 +7,13 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.client.RestTemplate;
 
@@ -16,9 +23,13 @@ import java.util.List;
 @Configuration
 public class RestTemplateConfig {
 
+    // Registration under spring.security.oauth2.client.registration
+    static final String SERVICE_REGISTRATION_ID = "planning-service";
+
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+            OAuth2AuthorizedClientManager serviceClientManager) {
         RestTemplate restTemplate = builder.build();
 
         List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
@@ -26,15 +37,48 @@ public class RestTemplateConfig {
             interceptors = new ArrayList<>();
         }
 
-        interceptors.add((request, body, execution) -> {
+        interceptors.add(bearerTokenInterceptor(serviceClientManager));
+
+        restTemplate.setInterceptors(interceptors);
+        return restTemplate;
+    }
+
+    /**
+     * Client credentials grant for the service account. Unlike the default
+     * manager it needs no HTTP request, so scheduled jobs can use it; tokens
+     * are cached until shortly before they expire.
+     */
+    @Bean
+    public OAuth2AuthorizedClientManager serviceClientManager(ClientRegistrationRepository clientRegistrations,
+            OAuth2AuthorizedClientService authorizedClients) {
+        AuthorizedClientServiceOAuth2AuthorizedClientManager manager =
+                new AuthorizedClientServiceOAuth2AuthorizedClientManager(clientRegistrations, authorizedClients);
+        manager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+                .clientCredentials()
+                .build());
+        return manager;
+    }
+
+    /**
+     * Forwards the caller's token when there is one. Calls made outside a
+     * user request, such as from the nightly replan job, use a token of the
+     * planning-service account instead.
+     */
+    static ClientHttpRequestInterceptor bearerTokenInterceptor(OAuth2AuthorizedClientManager serviceClientManager) {
+        return (request, body, execution) -> {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof JwtAuthenticationToken jwtToken) {
                 request.getHeaders().add("Authorization", "Bearer " + jwtToken.getToken().getTokenValue());
+            } else {
+                OAuth2AuthorizedClient client = serviceClientManager.authorize(OAuth2AuthorizeRequest
+                        .withClientRegistrationId(SERVICE_REGISTRATION_ID)
+                        .principal(SERVICE_REGISTRATION_ID)
+                        .build());
+                if (client != null) {
+                    request.getHeaders().add("Authorization", "Bearer " + client.getAccessToken().getTokenValue());
+                }
             }
             return execution.execute(request, body);
-        });
-
-        restTemplate.setInterceptors(interceptors);
-        return restTemplate;
+        };
     }
 }
@@ -4,6 +4,7 @@ import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 import java.util.Map;
@@ -123,4 +124,12 @@ public class ExternalDtos {
         private Map<String, Object> plan;
         private String changeSummary;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserLastActivity {
+        private UUID userId;
+        private OffsetDateTime lastActivityAt;
+    }
 }
@@ -0,0 +1,14 @@
+package com.learnsmart.planning.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * When a plan last got a trigger of one type, read for a batch of plans at
+ * once to skip duplicate triggers.
+ */
+public record LatestTrigger(
+        UUID planId,
+        String triggerType,
+        OffsetDateTime detectedAt) {
+}
@@ -0,0 +1,16 @@
+package com.learnsmart.planning.model;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Activity counts of one plan, aggregated in the database for the bulk
+ * progress deviation check.
+ */
+public record PlanProgressSummary(
+        UUID planId,
+        LocalDate startDate,
+        LocalDate endDate,
+        long totalActivities,
+        long completedActivities) {
+}
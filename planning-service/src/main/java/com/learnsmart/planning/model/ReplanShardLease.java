@@ -0,0 +1,33 @@
+package com.learnsmart.planning.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Lease on one shard of the plan id space for the nightly replan
+ * evaluation. An instance owns the shard until {@code leaseUntil}; once
+ * every plan in it has been evaluated, {@code completedRun} records the run
+ * so no other instance evaluates it again.
+ */
+@Entity
+@Table(name = "replan_shard_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplanShardLease {
+
+    @Id
+    private Integer shard;
+
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private OffsetDateTime leaseUntil;
+
+    @Column(name = "completed_run", length = 20)
+    private String completedRun; // run id (date of the nightly run) the shard was last completed for
+}
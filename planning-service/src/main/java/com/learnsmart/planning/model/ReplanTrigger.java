@@ -9,7 +9,8 @@ import java.util.UUID;
 @Entity
 @Table(name = "replan_triggers", indexes = {
         @Index(name = "idx_trigger_plan_status", columnList = "plan_id, status"),
-        @Index(name = "idx_trigger_status_detected", columnList = "status, detected_at DESC")
+        @Index(name = "idx_trigger_status_detected", columnList = "status, detected_at DESC"),
+        @Index(name = "idx_trigger_plan_type_detected", columnList = "plan_id, trigger_type, detected_at DESC")
 })
 @Getter
 @Setter
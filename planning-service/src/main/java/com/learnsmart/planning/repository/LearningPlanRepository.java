@@ -1,9 +1,16 @@
 package com.learnsmart.planning.repository;
 
 import com.learnsmart.planning.model.LearningPlan;
+import com.learnsmart.planning.model.PlanProgressSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface LearningPlanRepository extends JpaRepository<LearningPlan, UUID> {
@@ -12,4 +19,45 @@ public interface LearningPlanRepository extends JpaRepository<LearningPlan, UUID
     Page<LearningPlan> findByUserId(String userId, Pageable pageable); // Assuming security context filtering
 
     Page<LearningPlan> findByUserIdAndStatus(String userId, String status, Pageable pageable);
+
+    /**
+     * First page of a keyset scan over the plans with a status whose ids lie
+     * in [first, last], in id order.
+     */
+    @Query("select p.id from LearningPlan p where p.status = :status and p.id >= :first and p.id <= :last "
+            + "order by p.id")
+    List<UUID> findIdsByStatusInRange(@Param("status") String status, @Param("first") UUID first,
+            @Param("last") UUID last, Limit limit);
+
+    /**
+     * Next page of a keyset scan: the ids after the last one of the previous
+     * page. Unlike an OFFSET page this costs the same however far the scan is.
+     */
+    @Query("select p.id from LearningPlan p where p.status = :status and p.id > :after and p.id <= :last "
+            + "order by p.id")
+    List<UUID> findIdsByStatusInRangeAfter(@Param("status") String status, @Param("after") UUID after,
+            @Param("last") UUID last, Limit limit);
+
+    @Query("select distinct p.userId from LearningPlan p where p.id in :ids")
+    List<String> findUserIdsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Activity counts of the active plans with ids in [first, last] whose
+     * completed share of activities is more than {@code minDeviation}
+     * percentage points away from the share of the plan's time elapsed by
+     * {@code today}. One aggregate over modules and activities instead of
+     * loading them per plan; plans without activities or valid dates are
+     * left out, as in the per-plan check.
+     */
+    @Query("""
+            select new com.learnsmart.planning.model.PlanProgressSummary(
+                p.id, p.startDate, p.endDate, count(a), sum(case when a.status = 'completed' then 1 else 0 end))
+            from LearningPlan p join p.modules m join m.activities a
+            where p.status = 'active' and p.id >= :first and p.id <= :last
+              and p.startDate <= :today and p.endDate > p.startDate
+            group by p.id, p.startDate, p.endDate
+            having abs(least(100.0, ((:today - p.startDate) by day) * 100.0 / ((p.endDate - p.startDate) by day))
+                - sum(case when a.status = 'completed' then 1 else 0 end) * 100.0 / count(a)) > :minDeviation""")
+    List<PlanProgressSummary> findProgressDeviations(@Param("first") UUID first, @Param("last") UUID last,
+            @Param("today") LocalDate today, @Param("minDeviation") double minDeviation);
 }
@@ -0,0 +1,63 @@
+package com.learnsmart.planning.repository;
+
+import com.learnsmart.planning.model.ReplanShardLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ReplanShardLeaseRepository extends JpaRepository<ReplanShardLease, Integer> {
+
+    /**
+     * Creates the lease row of a shard unless it already exists
+     */
+    @Modifying
+    @Query(value = "INSERT INTO replan_shard_leases (shard) VALUES (:shard) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    void insertIfMissing(@Param("shard") int shard);
+
+    /**
+     * Locks one shard that is not done for the run and whose lease is free or
+     * expired. Rows locked by instances claiming at the same moment are
+     * skipped rather than waited for.
+     */
+    @Query(value = """
+            SELECT shard FROM replan_shard_leases
+            WHERE shard < :shards
+              AND (completed_run IS NULL OR completed_run <> :run)
+              AND (lease_until IS NULL OR lease_until < :now)
+            ORDER BY shard
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    Optional<Integer> lockClaimable(@Param("shards") int shards, @Param("run") String run,
+            @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Query("update ReplanShardLease l set l.leaseOwner = :owner, l.leaseUntil = :until where l.shard = :shard")
+    int lease(@Param("shard") int shard, @Param("owner") String owner, @Param("until") OffsetDateTime until);
+
+    /**
+     * Extends the lease, only while the owner still holds it
+     */
+    @Modifying
+    @Query("update ReplanShardLease l set l.leaseUntil = :until where l.shard = :shard and l.leaseOwner = :owner")
+    int renew(@Param("shard") int shard, @Param("owner") String owner, @Param("until") OffsetDateTime until);
+
+    @Modifying
+    @Query("update ReplanShardLease l set l.completedRun = :run, l.leaseOwner = null, l.leaseUntil = null "
+            + "where l.shard = :shard and l.leaseOwner = :owner")
+    int complete(@Param("shard") int shard, @Param("owner") String owner, @Param("run") String run);
+
+    @Modifying
+    @Query("update ReplanShardLease l set l.leaseOwner = null, l.leaseUntil = null "
+            + "where l.shard = :shard and l.leaseOwner = :owner")
+    int release(@Param("shard") int shard, @Param("owner") String owner);
+
+    @Query("select count(l) from ReplanShardLease l where l.shard < :shards and l.completedRun = :run")
+    long countCompleted(@Param("shards") int shards, @Param("run") String run);
+}
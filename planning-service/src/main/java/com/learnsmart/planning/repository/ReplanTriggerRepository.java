@@ -1,10 +1,14 @@
 package com.learnsmart.planning.repository;
 
+import com.learnsmart.planning.model.LatestTrigger;
 import com.learnsmart.planning.model.ReplanTrigger;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -29,6 +33,17 @@ public interface ReplanTriggerRepository extends JpaRepository<ReplanTrigger, UU
             UUID planId,
             String triggerType);
 
+    /**
+     * Latest detection time per plan and trigger type, for a batch of plans
+     * in one query. Answered from idx_trigger_plan_type_detected alone.
+     */
+    @Query("""
+            select new com.learnsmart.planning.model.LatestTrigger(t.plan.id, t.triggerType, max(t.detectedAt))
+            from ReplanTrigger t
+            where t.plan.id in :planIds
+            group by t.plan.id, t.triggerType""")
+    List<LatestTrigger> findLatestByPlanIds(@Param("planIds") Collection<UUID> planIds);
+
     /**
      * Find all pending triggers for a plan
      */
@@ -3,81 +3,336 @@ package com.learnsmart.planning.scheduler;
 import com.learnsmart.planning.model.LearningPlan;
 import com.learnsmart.planning.model.ReplanTrigger;
 import com.learnsmart.planning.repository.LearningPlanRepository;
+import com.learnsmart.planning.service.RecentTriggers;
+import com.learnsmart.planning.service.ReplanShardLeaseService;
 import com.learnsmart.planning.service.ReplanTriggerService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Nightly evaluation of replan triggers for every active plan.
+ * <p>
+ * Instances share the work through {@link ReplanShardLeaseService}: each
+ * repeatedly claims a shard of the plan id space and evaluates it, until
+ * every shard is done for the day. Within a shard, plans are read in id
+ * order with keyset paging, so each page is an index range scan however
+ * far the job has got. Each plan is evaluated on its own virtual thread,
+ * in its own transaction, with at most {@code planning.replan.parallelism}
+ * plans in flight; every one holds a database connection, so keep it below
+ * the connection pool size.
+ */
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class ReplanScheduledJob {
 
+    static final int BATCH_SIZE = 100;
+    private static final String ACTIVE = "active";
+
     private final LearningPlanRepository planRepository;
     private final ReplanTriggerService triggerService;
+    private final ReplanShardLeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int parallelism;
+    private final Duration pollInterval;
+    private final Duration maxRunDuration;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Timer runDuration;
+    private final Counter plansEvaluated;
+    private final Counter plansFailed;
+    private final Counter triggersCreated;
+    private final Counter suggestionsCreated;
+    private volatile double lastRunPlansPerSecond;
 
-    private static final int BATCH_SIZE = 100;
+    public ReplanScheduledJob(LearningPlanRepository planRepository,
+            ReplanTriggerService triggerService,
+            ReplanShardLeaseService leaseService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${planning.replan.parallelism:8}") int parallelism,
+            @Value("${planning.replan.poll-interval:PT30S}") Duration pollInterval,
+            @Value("${planning.replan.max-run-duration:PT6H}") Duration maxRunDuration) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("planning.replan.parallelism must be at least 1");
+        }
+        this.planRepository = planRepository;
+        this.triggerService = triggerService;
+        this.leaseService = leaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parallelism = parallelism;
+        this.pollInterval = pollInterval;
+        this.maxRunDuration = maxRunDuration;
+
+        this.runDuration = Timer.builder("planning.replan.run.duration")
+                .description("Duration of a replan trigger evaluation run")
+                .register(meterRegistry);
+        this.plansEvaluated = Counter.builder("planning.replan.plans.evaluated")
+                .description("Active plans evaluated for replan triggers")
+                .register(meterRegistry);
+        this.plansFailed = Counter.builder("planning.replan.plans.failed")
+                .description("Plans whose replan trigger evaluation failed")
+                .register(meterRegistry);
+        this.triggersCreated = Counter.builder("planning.replan.triggers.created")
+                .description("Replan triggers created by the scheduled evaluation")
+                .register(meterRegistry);
+        this.suggestionsCreated = Counter.builder("planning.replan.suggestions.created")
+                .description("Replan suggestions created for HIGH severity triggers")
+                .register(meterRegistry);
+        Gauge.builder("planning.replan.last-run.throughput", this, job -> job.lastRunPlansPerSecond)
+                .description("Plans evaluated per second in the last completed run")
+                .baseUnit("plans/s")
+                .register(meterRegistry);
+    }
 
     /**
      * Scheduled job to evaluate all active plans for replanning triggers
-     * Runs daily at 2 AM
+     * Runs daily at 2 AM. Every instance runs it; each claims shards of the
+     * plans until all of them are done for the day.
      */
     @Scheduled(cron = "0 0 2 * * *")
     public void evaluateActivePlansForReplanning() {
-        System.out.println("Starting scheduled replan trigger evaluation...");
+        runExclusively(() -> evaluateSharded(LocalDate.now().toString()));
+    }
 
-        int page = 0;
-        int totalPlansEvaluated = 0;
-        int totalTriggersCreated = 0;
-        int totalSuggestionsCreated = 0;
+    /**
+     * Manual trigger for testing (can be called via API endpoint if needed).
+     * Evaluates every active plan on this instance, ignoring shard leases.
+     */
+    public void runManualEvaluation() {
+        runExclusively(() -> {
+            log.info("Starting manual replan trigger evaluation with parallelism {}", parallelism);
+            RunTotals totals = new RunTotals();
+            try {
+                evaluateRange(ReplanShardLeaseService.ShardRange.ALL, () -> true, totals);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Replan trigger evaluation interrupted");
+            } catch (Exception e) {
+                log.error("Scheduled job failed: {}", e.getMessage(), e);
+            }
+            finishRun(totals);
+        });
+    }
 
+    private void runExclusively(Runnable run) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Replan trigger evaluation already running, skipping");
+            return;
+        }
         try {
-            Page<LearningPlan> planPage;
-            do {
-                // Fetch active plans in batches
-                planPage = planRepository.findByStatus("active", PageRequest.of(page, BATCH_SIZE));
-
-                for (LearningPlan plan : planPage.getContent()) {
-                    try {
-                        // Evaluate all triggers for this plan
-                        List<ReplanTrigger> triggers = triggerService.evaluateAllTriggers(plan);
-
-                        totalPlansEvaluated++;
-                        totalTriggersCreated += triggers.size();
-
-                        // Auto-create suggestions for HIGH severity triggers
-                        for (ReplanTrigger trigger : triggers) {
-                            if ("HIGH".equals(trigger.getSeverity())) {
-                                triggerService.createTriggerSuggestion(trigger);
-                                totalSuggestionsCreated++;
-                            }
-                        }
+            run.run();
+        } finally {
+            running.set(false);
+        }
+    }
 
-                    } catch (Exception e) {
-                        System.err.println("Error evaluating plan " + plan.getId() + ": " + e.getMessage());
-                        // Continue with next plan
-                    }
+    private void evaluateSharded(String runId) {
+        log.info("Starting scheduled replan trigger evaluation {} with parallelism {}", runId, parallelism);
+        RunTotals totals = new RunTotals();
+        Instant deadline = Instant.now().plus(maxRunDuration);
+        try {
+            leaseService.ensureShards();
+            while (true) {
+                Optional<Integer> shard = leaseService.claim(runId);
+                if (shard.isPresent()) {
+                    evaluateShard(shard.get(), runId, totals);
+                } else if (leaseService.isRunComplete(runId)) {
+                    break;
+                } else if (Instant.now().isAfter(deadline)) {
+                    log.warn("Replan evaluation {} still incomplete after {}, giving up", runId, maxRunDuration);
+                    break;
+                } else {
+                    // The remaining shards are leased by other instances; one
+                    // of them may die and leave its shard to be taken over
+                    Thread.sleep(pollInterval.toMillis());
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Replan trigger evaluation interrupted");
+        } catch (Exception e) {
+            log.error("Scheduled job failed: {}", e.getMessage(), e);
+        }
+        finishRun(totals);
+    }
 
-                page++;
-            } while (planPage.hasNext());
+    private void evaluateShard(int shard, String runId, RunTotals totals) throws InterruptedException {
+        boolean finished = false;
+        try {
+            finished = evaluateRange(leaseService.range(shard), () -> leaseService.renew(shard), totals);
+        } finally {
+            if (finished) {
+                leaseService.complete(shard, runId);
+            } else {
+                leaseService.release(shard);
+            }
+        }
+    }
 
-            System.out.println(String.format(
-                    "Replan evaluation complete. Plans: %d, Triggers: %d, Suggestions: %d",
-                    totalPlansEvaluated, totalTriggersCreated, totalSuggestionsCreated));
+    /**
+     * Evaluates the active plans with ids in the range, renewing the lease
+     * after every page.
+     *
+     * @return false if the lease was lost before the range was done
+     */
+    private boolean evaluateRange(ReplanShardLeaseService.ShardRange range, BooleanSupplier renewLease,
+            RunTotals totals) throws InterruptedException {
+        long start = System.nanoTime();
+        evaluateProgress(range, totals);
+        Semaphore inFlight = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("replan-", 0).factory())) {
+            UUID after = null;
+            List<UUID> planIds;
+            do {
+                planIds = after == null
+                        ? planRepository.findIdsByStatusInRange(ACTIVE, range.first(), range.last(),
+                                Limit.of(BATCH_SIZE))
+                        : planRepository.findIdsByStatusInRangeAfter(ACTIVE, after, range.last(),
+                                Limit.of(BATCH_SIZE));
+                // One lookup of each for the page instead of one per plan
+                RecentTriggers recentTriggers = planIds.isEmpty()
+                        ? null
+                        : triggerService.findRecentTriggers(planIds);
+                Map<UUID, OffsetDateTime> lastActivity = planIds.isEmpty()
+                        ? Map.of()
+                        : triggerService.findLastActivity(planIds);
+                for (UUID planId : planIds) {
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        try {
+                            evaluatePlan(planId, recentTriggers, lastActivity, totals);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                if (!planIds.isEmpty()) {
+                    after = planIds.get(planIds.size() - 1);
+                }
+                if (!renewLease.getAsBoolean()) {
+                    log.warn("Lost the lease on plans {}..{}, leaving them to its new owner", range.first(),
+                            range.last());
+                    return false;
+                }
+            } while (planIds.size() == BATCH_SIZE);
+            // Closing the executor waits for the plans still in flight
+        } finally {
+            totals.busyNanos.addAndGet(System.nanoTime() - start);
+        }
+        return true;
+    }
 
+    private void finishRun(RunTotals totals) {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - totals.startNanos);
+        runDuration.record(elapsed);
+        // Time spent waiting for other instances' shards does not count
+        double busySeconds = Math.max(totals.busyNanos.get(), 1) / 1e9;
+        lastRunPlansPerSecond = totals.evaluated.get() / busySeconds;
+        log.info("Replan evaluation complete in {} ms ({} plans/s). Plans: {}, Failed: {}, Triggers: {}, Suggestions: {}",
+                elapsed.toMillis(), String.format("%.1f", lastRunPlansPerSecond), totals.evaluated.get(),
+                totals.failed.get(), totals.triggers.get(), totals.suggestions.get());
+    }
+
+    /**
+     * Evaluates one plan in its own transaction, so its modules and
+     * activities load lazily and a failure only rolls back that plan.
+     */
+    private void evaluatePlan(UUID planId, RecentTriggers recentTriggers, Map<UUID, OffsetDateTime> lastActivity,
+            RunTotals totals) {
+        Outcome outcome;
+        try {
+            outcome = transactionTemplate.execute(status -> planRepository.findById(planId)
+                    .map(plan -> evaluateTriggers(plan, recentTriggers, lastActivity))
+                    .orElse(null));
         } catch (Exception e) {
-            System.err.println("Scheduled job failed: " + e.getMessage());
+            totals.failed.incrementAndGet();
+            plansFailed.increment();
+            log.warn("Error evaluating plan {}: {}", planId, e.getMessage());
+            return;
+        }
+        if (outcome == null) {
+            return; // Deleted since its page was read
         }
+        totals.evaluated.incrementAndGet();
+        plansEvaluated.increment();
+        count(outcome, totals);
     }
 
     /**
-     * Manual trigger for testing (can be called via API endpoint if needed)
+     * Progress deviation of every plan in the range, in one aggregate query
+     * and one batch insert rather than per plan.
      */
-    public void runManualEvaluation() {
-        evaluateActivePlansForReplanning();
+    private void evaluateProgress(ReplanShardLeaseService.ShardRange range, RunTotals totals) {
+        try {
+            count(suggest(triggerService.evaluateProgressDeviations(range.first(), range.last())), totals);
+        } catch (Exception e) {
+            log.error("Progress deviation evaluation of plans {}..{} failed: {}", range.first(), range.last(),
+                    e.getMessage(), e);
+        }
+    }
+
+    // Progress deviation was already evaluated for the plan's whole range
+    private Outcome evaluateTriggers(LearningPlan plan, RecentTriggers recentTriggers,
+            Map<UUID, OffsetDateTime> lastActivity) {
+        ReplanTrigger inactivity = triggerService.evaluateInactivity(plan, recentTriggers, lastActivity);
+        return suggest(inactivity != null ? List.of(inactivity) : List.of());
+    }
+
+    private Outcome suggest(List<ReplanTrigger> triggers) {
+        int suggestions = 0;
+
+        // Auto-create suggestions for HIGH severity triggers
+        for (ReplanTrigger trigger : triggers) {
+            if ("HIGH".equals(trigger.getSeverity())) {
+                triggerService.createTriggerSuggestion(trigger);
+                suggestions++;
+            }
+        }
+        return new Outcome(triggers.size(), suggestions);
+    }
+
+    private void count(Outcome outcome, RunTotals totals) {
+        totals.triggers.addAndGet(outcome.triggers());
+        totals.suggestions.addAndGet(outcome.suggestions());
+        triggersCreated.increment(outcome.triggers());
+        suggestionsCreated.increment(outcome.suggestions());
+    }
+
+    private record Outcome(int triggers, int suggestions) {
+    }
+
+    private static final class RunTotals {
+        final long startNanos = System.nanoTime();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicInteger evaluated = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger triggers = new AtomicInteger();
+        final AtomicInteger suggestions = new AtomicInteger();
     }
 }
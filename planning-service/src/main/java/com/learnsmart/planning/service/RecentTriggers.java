@@ -0,0 +1,34 @@
+package com.learnsmart.planning.service;
+
+import com.learnsmart.planning.model.LatestTrigger;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The latest trigger of each type for a batch of plans, loaded in one query
+ * by {@link ReplanTriggerService#findRecentTriggers} so duplicate triggers
+ * are skipped without a lookup per plan. Read-only once built, so the
+ * plans of a batch can share it across threads.
+ */
+public final class RecentTriggers {
+
+    private final Map<UUID, Map<String, OffsetDateTime>> latest = new HashMap<>();
+
+    RecentTriggers(List<LatestTrigger> triggers) {
+        for (LatestTrigger trigger : triggers) {
+            latest.computeIfAbsent(trigger.planId(), planId -> new HashMap<>())
+                    .put(trigger.triggerType(), trigger.detectedAt());
+        }
+    }
+
+    /**
+     * @return null if the plan never got a trigger of that type
+     */
+    OffsetDateTime latestDetectedAt(UUID planId, String triggerType) {
+        return latest.getOrDefault(planId, Map.of()).get(triggerType);
+    }
+}
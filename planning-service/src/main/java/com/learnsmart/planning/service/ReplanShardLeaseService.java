@@ -0,0 +1,139 @@
+package com.learnsmart.planning.service;
+
+import com.learnsmart.planning.repository.ReplanShardLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Splits the nightly replan evaluation across planning-service instances.
+ * <p>
+ * The plan id space is cut into {@code planning.replan.shards} contiguous
+ * ranges. Plan ids are random, so the ranges act as hash buckets of about
+ * equal size, and each one is still an index range scan. An instance
+ * claims a shard by taking its row in {@code replan_shard_leases} with
+ * {@code FOR UPDATE SKIP LOCKED}, so concurrent claims never block on each
+ * other or pick the same shard. The lease lasts
+ * {@code planning.replan.lease-duration} and is renewed as the shard is
+ * worked through; if the instance dies, the lease expires and another
+ * instance takes the shard over.
+ */
+@Slf4j
+@Service
+public class ReplanShardLeaseService {
+
+    // Shards are ranges of the first 16 bits of the plan id
+    private static final int MAX_SHARDS = 1 << 16;
+
+    private final ReplanShardLeaseRepository leaseRepository;
+    private final Clock clock;
+    private final int shards;
+    private final Duration leaseDuration;
+    private final String owner;
+
+    @Autowired
+    public ReplanShardLeaseService(ReplanShardLeaseRepository leaseRepository,
+            @Value("${planning.replan.shards:64}") int shards,
+            @Value("${planning.replan.lease-duration:PT5M}") Duration leaseDuration,
+            @Value("${HOSTNAME:localhost}") String hostname) {
+        this(leaseRepository, Clock.systemUTC(), shards, leaseDuration,
+                hostname + "-" + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    ReplanShardLeaseService(ReplanShardLeaseRepository leaseRepository, Clock clock, int shards,
+            Duration leaseDuration, String owner) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("planning.replan.shards must be between 1 and " + MAX_SHARDS);
+        }
+        this.leaseRepository = leaseRepository;
+        this.clock = clock;
+        this.shards = shards;
+        this.leaseDuration = leaseDuration;
+        this.owner = owner;
+    }
+
+    /**
+     * Creates any missing lease rows, e.g. after {@code planning.replan.shards}
+     * was raised.
+     */
+    @Transactional
+    public void ensureShards() {
+        if (leaseRepository.count() >= shards) {
+            return;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            leaseRepository.insertIfMissing(shard);
+        }
+    }
+
+    /**
+     * Leases a shard not yet completed for the run, if one is free.
+     */
+    @Transactional
+    public Optional<Integer> claim(String runId) {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        Optional<Integer> shard = leaseRepository.lockClaimable(shards, runId, now);
+        shard.ifPresent(claimed -> {
+            leaseRepository.lease(claimed, owner, now.plus(leaseDuration));
+            log.info("Claimed replan shard {}/{} for run {}", claimed, shards, runId);
+        });
+        return shard;
+    }
+
+    /**
+     * @return false if the lease expired and another instance took the shard
+     */
+    @Transactional
+    public boolean renew(int shard) {
+        return leaseRepository.renew(shard, owner, OffsetDateTime.now(clock).plus(leaseDuration)) == 1;
+    }
+
+    @Transactional
+    public void complete(int shard, String runId) {
+        if (leaseRepository.complete(shard, owner, runId) == 0) {
+            log.warn("Replan shard {} was taken over by another instance before it completed", shard);
+        }
+    }
+
+    /**
+     * Gives the shard back unfinished, so another instance can claim it at once.
+     */
+    @Transactional
+    public void release(int shard) {
+        leaseRepository.release(shard, owner);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isRunComplete(String runId) {
+        return leaseRepository.countCompleted(shards, runId) >= shards;
+    }
+
+    public ShardRange range(int shard) {
+        return ShardRange.of(shard, shards);
+    }
+
+    /**
+     * Inclusive range of plan ids in a shard, in the database's (unsigned,
+     * byte-wise) UUID order.
+     */
+    public record ShardRange(UUID first, UUID last) {
+
+        public static final ShardRange ALL = new ShardRange(new UUID(0, 0), new UUID(-1L, -1L));
+
+        static ShardRange of(int shard, int shards) {
+            long firstPrefix = (long) shard * MAX_SHARDS / shards;
+            long nextPrefix = (long) (shard + 1) * MAX_SHARDS / shards;
+            return new ShardRange(
+                    new UUID(firstPrefix << 48, 0),
+                    new UUID((nextPrefix << 48) - 1, -1L));
+        }
+    }
+}
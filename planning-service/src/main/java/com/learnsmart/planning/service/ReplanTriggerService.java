@@ -1,32 +1,42 @@
 package com.learnsmart.planning.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.planning.client.TrackingActivityClient;
+import com.learnsmart.planning.model.LatestTrigger;
 import com.learnsmart.planning.model.LearningPlan;
 import com.learnsmart.planning.model.PlanActivity;
 import com.learnsmart.planning.model.PlanModule;
+import com.learnsmart.planning.model.PlanProgressSummary;
 import com.learnsmart.planning.model.ReplanTrigger;
+import com.learnsmart.planning.repository.LearningPlanRepository;
 import com.learnsmart.planning.repository.PlanActivityRepository;
 import com.learnsmart.planning.repository.ReplanTriggerRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReplanTriggerService {
 
     private final ReplanTriggerRepository triggerRepository;
+    private final LearningPlanRepository planRepository;
     private final PlanActivityRepository activityRepository;
-    private final RestTemplate restTemplate;
+    private final TrackingActivityClient trackingClient;
     private final ObjectMapper objectMapper;
 
     // Trigger type constants
@@ -40,8 +50,13 @@ public class ReplanTriggerService {
     private static final String SEVERITY_MEDIUM = "MEDIUM";
     private static final String SEVERITY_HIGH = "HIGH";
 
-    // Tracking service URL (should be externalized to config)
-    private static final String TRACKING_SERVICE_URL = "http://tracking-service:8080";
+    // Progress deviation thresholds, in percentage points
+    static final double PROGRESS_DEVIATION_LOW = 15;
+    private static final double PROGRESS_DEVIATION_MEDIUM = 30;
+    private static final double PROGRESS_DEVIATION_HIGH = 50;
+
+    // Plan ids per latest-trigger lookup, to keep the IN list bounded
+    private static final int TRIGGER_LOOKUP_BATCH_SIZE = 500;
 
     /**
      * Evaluate all trigger conditions for a plan
@@ -124,16 +139,7 @@ public class ReplanTriggerService {
         double deviation = Math.abs(expectedProgress - actualProgress);
 
         // Determine if trigger should be created
-        String severity = null;
-        if (deviation > 50) {
-            severity = SEVERITY_HIGH;
-        } else if (deviation > 30) {
-            severity = SEVERITY_MEDIUM;
-        } else if (deviation > 15) {
-            severity = SEVERITY_LOW;
-        }
-
-        if (severity == null) {
+        if (progressSeverity(deviation) == null) {
             return null; // Deviation not significant enough
         }
 
@@ -142,7 +148,61 @@ public class ReplanTriggerService {
             return null; // Don't create duplicate triggers
         }
 
-        // Create trigger
+        try {
+            return triggerRepository.save(buildProgressTrigger(plan, expectedProgress, actualProgress,
+                    allActivities.size(), completedCount));
+        } catch (Exception e) {
+            log.warn("Failed to create progress deviation trigger for plan {}", plan.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Set-based {@link #evaluateProgressDeviation} for every active plan with
+     * an id in [firstPlanId, lastPlanId]. One aggregate query returns only the
+     * plans past the LOW threshold, and their triggers are inserted as one
+     * JDBC batch, so the cost no longer grows with modules and activities.
+     */
+    @Transactional
+    public List<ReplanTrigger> evaluateProgressDeviations(UUID firstPlanId, UUID lastPlanId) {
+        LocalDate today = LocalDate.now();
+        List<PlanProgressSummary> deviating = planRepository.findProgressDeviations(
+                firstPlanId, lastPlanId, today, PROGRESS_DEVIATION_LOW);
+        RecentTriggers recentTriggers = findRecentTriggers(
+                deviating.stream().map(PlanProgressSummary::planId).toList());
+
+        List<ReplanTrigger> triggers = new ArrayList<>();
+        for (PlanProgressSummary progress : deviating) {
+            if (isRecent(recentTriggers.latestDetectedAt(progress.planId(), TRIGGER_PROGRESS_DEVIATION), 7)) {
+                continue;
+            }
+            long totalDays = ChronoUnit.DAYS.between(progress.startDate(), progress.endDate());
+            long elapsedDays = ChronoUnit.DAYS.between(progress.startDate(), today);
+            double expectedProgress = Math.min(100.0, (elapsedDays * 100.0) / totalDays);
+            double actualProgress = (progress.completedActivities() * 100.0) / progress.totalActivities();
+            if (progressSeverity(Math.abs(expectedProgress - actualProgress)) == null) {
+                continue; // Same check as the query, guarding against rounding differences
+            }
+            triggers.add(buildProgressTrigger(planRepository.getReferenceById(progress.planId()),
+                    expectedProgress, actualProgress, progress.totalActivities(), progress.completedActivities()));
+        }
+        return triggerRepository.saveAll(triggers);
+    }
+
+    private static String progressSeverity(double deviation) {
+        if (deviation > PROGRESS_DEVIATION_HIGH) {
+            return SEVERITY_HIGH;
+        } else if (deviation > PROGRESS_DEVIATION_MEDIUM) {
+            return SEVERITY_MEDIUM;
+        } else if (deviation > PROGRESS_DEVIATION_LOW) {
+            return SEVERITY_LOW;
+        }
+        return null;
+    }
+
+    private ReplanTrigger buildProgressTrigger(LearningPlan plan, double expectedProgress, double actualProgress,
+            long totalActivities, long completedActivities) {
+        double deviation = Math.abs(expectedProgress - actualProgress);
         String reason = String.format(
                 "Progress deviation detected: Expected %.1f%%, Actual %.1f%%, Deviation %.1f%%",
                 expectedProgress, actualProgress, deviation);
@@ -151,10 +211,10 @@ public class ReplanTriggerService {
         metadata.put("expectedProgress", expectedProgress);
         metadata.put("actualProgress", actualProgress);
         metadata.put("deviation", deviation);
-        metadata.put("totalActivities", allActivities.size());
-        metadata.put("completedActivities", completedCount);
+        metadata.put("totalActivities", totalActivities);
+        metadata.put("completedActivities", completedActivities);
 
-        return createTrigger(plan, TRIGGER_PROGRESS_DEVIATION, reason, severity, metadata);
+        return buildTrigger(plan, TRIGGER_PROGRESS_DEVIATION, reason, progressSeverity(deviation), metadata);
     }
 
     /**
@@ -163,24 +223,41 @@ public class ReplanTriggerService {
      */
     @Transactional
     public ReplanTrigger evaluateInactivity(LearningPlan plan) {
+        // Skip if plan is not active, before asking tracking-service
+        if (!"active".equals(plan.getStatus())) {
+            return null;
+        }
+        return evaluateInactivity(plan, null, lastActivityOfUsers(Collections.singletonList(plan.getUserId())));
+    }
+
+    /**
+     * {@link #evaluateInactivity(LearningPlan)} with inputs loaded for the
+     * plan's whole batch instead of per plan: {@code recentTriggers} to skip
+     * duplicates (null looks them up per plan) and {@code lastActivityByUser} from
+     * {@link #findLastActivity}.
+     */
+    @Transactional
+    public ReplanTrigger evaluateInactivity(LearningPlan plan, RecentTriggers recentTriggers,
+            Map<UUID, OffsetDateTime> lastActivityByUser) {
         // Skip if plan is not active
         if (!"active".equals(plan.getStatus())) {
             return null;
         }
 
         try {
-            // Query tracking service for last activity
-            String url = String.format("%s/tracking/users/%s/events?limit=1&orderBy=timestamp DESC",
-                    TRACKING_SERVICE_URL, plan.getUserId());
-
-            // For MVP, we'll use a simpler approach: check last updated timestamp
-            // In production, this should query the tracking service
+            // Latest of the learner's tracked events and changes to the plan
+            // itself; only the plan's timestamps if tracking-service had no answer
             OffsetDateTime lastActivity = plan.getUpdatedAt();
 
             if (lastActivity == null) {
                 lastActivity = plan.getCreatedAt();
             }
 
+            OffsetDateTime lastTracked = trackedActivity(plan, lastActivityByUser);
+            if (lastTracked != null && lastTracked.isAfter(lastActivity)) {
+                lastActivity = lastTracked;
+            }
+
             long daysSinceActivity = ChronoUnit.DAYS.between(lastActivity, OffsetDateTime.now());
 
             // Determine severity
@@ -198,7 +275,10 @@ public class ReplanTriggerService {
             }
 
             // Check for recent similar trigger
-            if (hasSimilarRecentTrigger(plan.getId(), TRIGGER_INACTIVITY, 7)) {
+            boolean duplicate = recentTriggers != null
+                    ? isRecent(recentTriggers.latestDetectedAt(plan.getId(), TRIGGER_INACTIVITY), 7)
+                    : hasSimilarRecentTrigger(plan.getId(), TRIGGER_INACTIVITY, 7);
+            if (duplicate) {
                 return null;
             }
 
@@ -219,6 +299,37 @@ public class ReplanTriggerService {
         }
     }
 
+    /**
+     * Latest tracked activity of the learners of a batch of plans, in one
+     * call to tracking-service rather than one per plan. Learners without
+     * events are missing; the map is empty if tracking-service is unavailable.
+     */
+    public Map<UUID, OffsetDateTime> findLastActivity(List<UUID> planIds) {
+        return lastActivityOfUsers(planRepository.findUserIdsByIdIn(planIds));
+    }
+
+    private Map<UUID, OffsetDateTime> lastActivityOfUsers(List<String> userIds) {
+        List<UUID> trackedIds = userIds.stream()
+                .map(ReplanTriggerService::parseUserId)
+                .filter(Objects::nonNull)
+                .toList();
+        return trackedIds.isEmpty() ? Map.of() : trackingClient.getLastActivity(trackedIds);
+    }
+
+    private static OffsetDateTime trackedActivity(LearningPlan plan, Map<UUID, OffsetDateTime> lastActivityByUser) {
+        UUID userId = parseUserId(plan.getUserId());
+        return userId != null ? lastActivityByUser.get(userId) : null;
+    }
+
+    // Tracking-service keys events by the Keycloak user id, a UUID
+    private static UUID parseUserId(String userId) {
+        try {
+            return userId != null ? UUID.fromString(userId) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Evaluate mastery changes trigger (placeholder for future implementation)
      */
@@ -254,7 +365,21 @@ public class ReplanTriggerService {
             String severity,
             Map<String, Object> metadata) {
         try {
-            ReplanTrigger trigger = ReplanTrigger.builder()
+            return triggerRepository.save(buildTrigger(plan, triggerType, reason, severity, metadata));
+        } catch (Exception e) {
+            log.warn("Failed to create {} trigger for plan {}", triggerType, plan.getId(), e);
+            return null;
+        }
+    }
+
+    private ReplanTrigger buildTrigger(
+            LearningPlan plan,
+            String triggerType,
+            String reason,
+            String severity,
+            Map<String, Object> metadata) {
+        try {
+            return ReplanTrigger.builder()
                     .plan(plan)
                     .triggerType(triggerType)
                     .triggerReason(reason)
@@ -262,25 +387,37 @@ public class ReplanTriggerService {
                     .status("PENDING")
                     .metadata(objectMapper.writeValueAsString(metadata))
                     .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Trigger metadata is not serializable", e);
+        }
+    }
 
-            return triggerRepository.save(trigger);
-        } catch (Exception e) {
-            System.err.println("Failed to create trigger: " + e.getMessage());
-            return null;
+    /**
+     * Latest trigger of each type for a batch of plans, in one query per
+     * {@value #TRIGGER_LOOKUP_BATCH_SIZE} plans
+     */
+    @Transactional(readOnly = true)
+    public RecentTriggers findRecentTriggers(List<UUID> planIds) {
+        List<LatestTrigger> latest = new ArrayList<>();
+        for (int from = 0; from < planIds.size(); from += TRIGGER_LOOKUP_BATCH_SIZE) {
+            int to = Math.min(planIds.size(), from + TRIGGER_LOOKUP_BATCH_SIZE);
+            latest.addAll(triggerRepository.findLatestByPlanIds(planIds.subList(from, to)));
         }
+        return new RecentTriggers(latest);
     }
 
     /**
      * Helper: Check if a similar trigger was created recently
      */
     private boolean hasSimilarRecentTrigger(java.util.UUID planId, String triggerType, int daysAgo) {
-        return triggerRepository
+        return isRecent(triggerRepository
                 .findTopByPlanIdAndTriggerTypeOrderByDetectedAtDesc(planId, triggerType)
-                .map(trigger -> {
-                    long daysSince = ChronoUnit.DAYS.between(trigger.getDetectedAt(), OffsetDateTime.now());
-                    return daysSince < daysAgo;
-                })
-                .orElse(false);
+                .map(ReplanTrigger::getDetectedAt)
+                .orElse(null), daysAgo);
+    }
+
+    private static boolean isRecent(OffsetDateTime detectedAt, int daysAgo) {
+        return detectedAt != null && ChronoUnit.DAYS.between(detectedAt, OffsetDateTime.now()) < daysAgo;
     }
 
     /**
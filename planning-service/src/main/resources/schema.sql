@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS replan_shard_leases;
 DROP TABLE IF EXISTS plan_replans_history;
 DROP TABLE IF EXISTS replan_triggers;
 DROP TABLE IF EXISTS plan_activities;
@@ -72,5 +73,17 @@ CREATE TABLE IF NOT EXISTS plan_replans_history (
     created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
 );
 
+-- One row per shard of the plan id space, leased by the instance evaluating it in the nightly replan run
+CREATE TABLE IF NOT EXISTS replan_shard_leases (
+    shard           INT PRIMARY KEY,
+    lease_owner     VARCHAR(100),
+    lease_until     TIMESTAMPTZ,
+    completed_run   VARCHAR(20)
+);
+
+-- Keyset scan of active plans by the nightly replan job
+CREATE INDEX IF NOT EXISTS idx_plans_status_id ON learning_plans(status, id);
 CREATE INDEX IF NOT EXISTS idx_trigger_plan_status ON replan_triggers(plan_id, status);
 CREATE INDEX IF NOT EXISTS idx_trigger_status_detected ON replan_triggers(status, detected_at DESC);
+-- Covers the latest-trigger lookups used to skip duplicate triggers
+CREATE INDEX IF NOT EXISTS idx_trigger_plan_type_detected ON replan_triggers(plan_id, trigger_type, detected_at DESC);
@@ -0,0 +1,113 @@
+package com.learnsmart.planning.client;
+
+import com.learnsmart.planning.config.RestTemplateConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Runs the client over the configured RestTemplate, so the request carries
+ * whatever token its interceptor adds.
+ */
+@ExtendWith(MockitoExtension.class)
+class TrackingActivityClientTest {
+
+    private static final String URL = "http://tracking-service/analytics/users/last-activity";
+
+    @Mock
+    private OAuth2AuthorizedClientManager serviceClientManager;
+
+    private MockRestServiceServer server;
+    private TrackingActivityClient client;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplateConfig().restTemplate(new RestTemplateBuilder(),
+                serviceClientManager);
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        client = new TrackingActivityClient(restTemplate);
+        ReflectionTestUtils.setField(client, "trackingServiceUrl", "http://tracking-service");
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testWithoutRequestContext_UsesServiceAccountToken() {
+        UUID userId = UUID.randomUUID();
+        when(serviceClientManager.authorize(any())).thenReturn(serviceClient("service-token"));
+        server.expect(requestTo(URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("Authorization", "Bearer service-token"))
+                .andRespond(withSuccess("[{\"userId\":\"" + userId + "\",\"lastActivityAt\":\"2024-03-10T08:00:00Z\"}]",
+                        MediaType.APPLICATION_JSON));
+
+        Map<UUID, OffsetDateTime> lastActivity = client.getLastActivity(List.of(userId));
+
+        server.verify();
+        assertEquals(OffsetDateTime.parse("2024-03-10T08:00:00Z").toInstant(), lastActivity.get(userId).toInstant());
+        verify(serviceClientManager).authorize(argThat(request ->
+                "planning-service".equals(request.getClientRegistrationId())));
+    }
+
+    @Test
+    void testWithUserToken_ForwardsIt() {
+        Jwt jwt = Jwt.withTokenValue("user-token")
+                .header("alg", "RS256")
+                .subject(UUID.randomUUID().toString())
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+        server.expect(requestTo(URL))
+                .andExpect(header("Authorization", "Bearer user-token"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+        assertTrue(client.getLastActivity(List.of(UUID.randomUUID())).isEmpty());
+
+        server.verify();
+        verifyNoInteractions(serviceClientManager);
+    }
+
+    private static OAuth2AuthorizedClient serviceClient(String token) {
+        ClientRegistration registration = ClientRegistration.withRegistrationId("planning-service")
+                .clientId("planning-service")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenUri("http://keycloak/token")
+                .build();
+        return new OAuth2AuthorizedClient(registration, "planning-service",
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, Instant.now(),
+                        Instant.now().plusSeconds(300)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.learnsmart.planning.repository;
+
+import com.learnsmart.planning.model.LearningPlan;
+import com.learnsmart.planning.model.PlanActivity;
+import com.learnsmart.planning.model.PlanModule;
+import com.learnsmart.planning.model.PlanProgressSummary;
+import com.learnsmart.planning.service.ReplanShardLeaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the aggregate progress deviation query against H2 in PostgreSQL mode.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class LearningPlanRepositoryTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+    private static final ReplanShardLeaseService.ShardRange ALL = ReplanShardLeaseService.ShardRange.ALL;
+
+    @Autowired
+    private LearningPlanRepository planRepository;
+
+    @Autowired
+    private PlanModuleRepository moduleRepository;
+
+    @Autowired
+    private PlanActivityRepository activityRepository;
+
+    @Test
+    void testFindProgressDeviations_ReturnsOnlyDeviatingActivePlans() {
+        // Half the time elapsed in each plan
+        LearningPlan behind = plan("active", 4, 0);
+        plan("active", 4, 2);
+        plan("completed", 4, 0);
+        plan("active", 0, 0);
+
+        List<PlanProgressSummary> deviating = planRepository.findProgressDeviations(
+                ALL.first(), ALL.last(), TODAY, 15);
+
+        assertEquals(1, deviating.size());
+        PlanProgressSummary summary = deviating.get(0);
+        assertEquals(behind.getId(), summary.planId());
+        assertEquals(4, summary.totalActivities());
+        assertEquals(0, summary.completedActivities());
+        assertEquals(TODAY.minusDays(10), summary.startDate());
+    }
+
+    @Test
+    void testFindProgressDeviations_ExpectedProgressCappedAtEndDate() {
+        LearningPlan overdue = plan("active", 4, 4);
+        overdue.setStartDate(TODAY.minusDays(40));
+        overdue.setEndDate(TODAY.minusDays(20));
+        planRepository.saveAndFlush(overdue);
+
+        assertTrue(planRepository.findProgressDeviations(ALL.first(), ALL.last(), TODAY, 15).isEmpty(),
+                "All activities done on an overdue plan is on track");
+    }
+
+    private LearningPlan plan(String status, int activities, int completed) {
+        LearningPlan plan = new LearningPlan();
+        plan.setUserId("user-1");
+        plan.setStatus(status);
+        plan.setStartDate(TODAY.minusDays(10));
+        plan.setEndDate(TODAY.plusDays(10));
+        plan = planRepository.saveAndFlush(plan);
+
+        PlanModule module = new PlanModule();
+        module.setPlan(plan);
+        module.setPosition(1);
+        module.setTitle("Module");
+        module = moduleRepository.saveAndFlush(module);
+        for (int i = 0; i < activities; i++) {
+            PlanActivity activity = new PlanActivity();
+            activity.setModule(module);
+            activity.setPosition(i + 1);
+            activity.setActivityType("lesson");
+            activity.setContentRef("content-" + i);
+            activity.setStatus(i < completed ? "completed" : "pending");
+            activityRepository.saveAndFlush(activity);
+        }
+        return plan;
+    }
+}
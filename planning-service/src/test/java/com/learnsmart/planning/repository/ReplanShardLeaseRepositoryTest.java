@@ -0,0 +1,87 @@
+package com.learnsmart.planning.repository;
+
+import com.learnsmart.planning.model.LearningPlan;
+import com.learnsmart.planning.service.ReplanShardLeaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the shard lease and keyset queries against H2 in PostgreSQL mode.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class ReplanShardLeaseRepositoryTest {
+
+    private static final String RUN = "2024-03-10";
+
+    @Autowired
+    private ReplanShardLeaseRepository leaseRepository;
+
+    @Autowired
+    private LearningPlanRepository planRepository;
+
+    @Test
+    void testClaimLeaseAndComplete() {
+        OffsetDateTime now = OffsetDateTime.parse("2024-03-10T02:00:00Z");
+        for (int shard = 0; shard < 2; shard++) {
+            leaseRepository.insertIfMissing(shard);
+            leaseRepository.insertIfMissing(shard);
+        }
+        assertEquals(2, leaseRepository.count());
+
+        assertEquals(Optional.of(0), leaseRepository.lockClaimable(2, RUN, now));
+        leaseRepository.lease(0, "instance-a", now.plusMinutes(5));
+        assertEquals(Optional.of(1), leaseRepository.lockClaimable(2, RUN, now), "Leased shard is skipped");
+        assertEquals(Optional.of(0), leaseRepository.lockClaimable(2, RUN, now.plusMinutes(6)),
+                "Expired lease can be taken over");
+
+        assertEquals(0, leaseRepository.complete(0, "instance-b", RUN), "Only the owner completes");
+        assertEquals(1, leaseRepository.complete(0, "instance-a", RUN));
+        assertEquals(1, leaseRepository.countCompleted(2, RUN));
+        assertEquals(Optional.of(1), leaseRepository.lockClaimable(2, RUN, now.plusMinutes(6)));
+        assertEquals(Optional.of(0), leaseRepository.lockClaimable(2, "2024-03-11", now.plusDays(1)),
+                "Completed shards are claimable again in the next run");
+    }
+
+    @Test
+    void testKeysetPagesStayWithinShard() {
+        LearningPlan low = plan();
+        LearningPlan high = plan();
+        ReplanShardLeaseService.ShardRange lowerHalf = new ReplanShardLeaseService.ShardRange(
+                new UUID(0, 0), new UUID(Long.MAX_VALUE, -1L));
+        boolean lowIsLower = Long.compareUnsigned(low.getId().getMostSignificantBits(),
+                high.getId().getMostSignificantBits()) < 0;
+        UUID expected = lowIsLower ? low.getId() : high.getId();
+
+        List<UUID> all = planRepository.findIdsByStatusInRange("active", ReplanShardLeaseService.ShardRange.ALL.first(),
+                ReplanShardLeaseService.ShardRange.ALL.last(), Limit.of(10));
+        assertEquals(2, all.size());
+        assertEquals(expected, all.get(0), "Ids come in unsigned order");
+        assertEquals(List.of(all.get(1)), planRepository.findIdsByStatusInRangeAfter("active", all.get(0),
+                ReplanShardLeaseService.ShardRange.ALL.last(), Limit.of(10)));
+
+        List<UUID> inLowerHalf = planRepository.findIdsByStatusInRange("active", lowerHalf.first(), lowerHalf.last(),
+                Limit.of(10));
+        for (UUID id : inLowerHalf) {
+            assertTrue(id.getMostSignificantBits() >= 0, "Id " + id + " is in the lower half of the id space");
+        }
+    }
+
+    private LearningPlan plan() {
+        LearningPlan plan = new LearningPlan();
+        plan.setUserId("user-1");
+        return planRepository.saveAndFlush(plan);
+    }
+}
@@ -3,20 +3,27 @@ package com.learnsmart.planning.scheduler;
 import com.learnsmart.planning.model.LearningPlan;
 import com.learnsmart.planning.model.ReplanTrigger;
 import com.learnsmart.planning.repository.LearningPlanRepository;
+import com.learnsmart.planning.service.ReplanShardLeaseService;
 import com.learnsmart.planning.service.ReplanTriggerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,22 +33,48 @@ class ReplanScheduledJobTest {
     private LearningPlanRepository planRepository;
     @Mock
     private ReplanTriggerService triggerService;
+    @Mock
+    private ReplanShardLeaseService leaseService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private ReplanScheduledJob scheduledJob;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduledJob = new ReplanScheduledJob(planRepository, triggerService, leaseService, transactionManager,
+                meterRegistry, 4, Duration.ZERO, Duration.ofMinutes(1));
+        lenient().when(triggerService.evaluateProgressDeviations(any(), any())).thenReturn(List.of());
+    }
+
+    /**
+     * This instance claims the only shard, which covers every plan.
+     */
+    private void givenOneShard() {
+        when(leaseService.claim(any())).thenReturn(Optional.of(0), Optional.empty());
+        when(leaseService.range(0)).thenReturn(ReplanShardLeaseService.ShardRange.ALL);
+        lenient().when(leaseService.renew(0)).thenReturn(true);
+        when(leaseService.isRunComplete(any())).thenReturn(true);
+    }
+
     // -------------------------------------------------------------------------
     // evaluateActivePlansForReplanning — no active plans
     // -------------------------------------------------------------------------
 
     @Test
     void testEvaluateActivePlans_NoPlans_DoesNothing() {
-        Page<LearningPlan> emptyPage = Page.empty();
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class))).thenReturn(emptyPage);
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(List.of());
 
         scheduledJob.evaluateActivePlansForReplanning();
 
-        verifyNoInteractions(triggerService);
+        verify(triggerService, never()).evaluateInactivity(any(), any(), any());
+        verify(triggerService, never()).findLastActivity(any());
+        verify(triggerService, never()).createTriggerSuggestion(any());
+        verify(planRepository, never()).findIdsByStatusInRangeAfter(any(), any(), any(), any());
+        verify(leaseService).complete(eq(0), any());
     }
 
     // -------------------------------------------------------------------------
@@ -50,19 +83,19 @@ class ReplanScheduledJobTest {
 
     @Test
     void testEvaluateActivePlans_NoHighTriggers_DoesNotCreateSuggestions() {
-        LearningPlan plan = new LearningPlan();
-        plan.setId(UUID.randomUUID());
+        LearningPlan plan = activePlan();
 
         ReplanTrigger lowTrigger = ReplanTrigger.builder().severity("LOW").build();
 
-        Page<LearningPlan> page = new PageImpl<>(List.of(plan));
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class))).thenReturn(page);
-        when(triggerService.evaluateAllTriggers(plan)).thenReturn(List.of(lowTrigger));
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(List.of(plan.getId()));
+        when(triggerService.evaluateInactivity(eq(plan), any(), any())).thenReturn(lowTrigger);
 
         scheduledJob.evaluateActivePlansForReplanning();
 
-        verify(triggerService).evaluateAllTriggers(plan);
+        verify(triggerService).evaluateInactivity(eq(plan), any(), any());
         verify(triggerService, never()).createTriggerSuggestion(any());
+        assertEquals(1, meterRegistry.get("planning.replan.triggers.created").counter().count());
     }
 
     // -------------------------------------------------------------------------
@@ -71,18 +104,40 @@ class ReplanScheduledJobTest {
 
     @Test
     void testEvaluateActivePlans_HighTrigger_CreatesSuggestion() {
-        LearningPlan plan = new LearningPlan();
-        plan.setId(UUID.randomUUID());
+        LearningPlan plan = activePlan();
 
         ReplanTrigger highTrigger = ReplanTrigger.builder().severity("HIGH").build();
 
-        Page<LearningPlan> page = new PageImpl<>(List.of(plan));
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class))).thenReturn(page);
-        when(triggerService.evaluateAllTriggers(plan)).thenReturn(List.of(highTrigger));
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(List.of(plan.getId()));
+        when(triggerService.evaluateInactivity(eq(plan), any(), any())).thenReturn(highTrigger);
+
+        scheduledJob.evaluateActivePlansForReplanning();
+
+        verify(triggerService).createTriggerSuggestion(highTrigger);
+        assertEquals(1, meterRegistry.get("planning.replan.suggestions.created").counter().count());
+    }
+
+    // -------------------------------------------------------------------------
+    // evaluateActivePlansForReplanning — progress deviation in bulk per shard
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testEvaluateActivePlans_ProgressDeviationEvaluatedOncePerShard() {
+        ReplanShardLeaseService.ShardRange range = ReplanShardLeaseService.ShardRange.ALL;
+        ReplanTrigger highTrigger = ReplanTrigger.builder().severity("HIGH").build();
+        ReplanTrigger lowTrigger = ReplanTrigger.builder().severity("LOW").build();
+        givenOneShard();
+        when(triggerService.evaluateProgressDeviations(range.first(), range.last()))
+                .thenReturn(List.of(highTrigger, lowTrigger));
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(List.of());
 
         scheduledJob.evaluateActivePlansForReplanning();
 
+        verify(triggerService).evaluateProgressDeviations(range.first(), range.last());
         verify(triggerService).createTriggerSuggestion(highTrigger);
+        verify(triggerService, never()).createTriggerSuggestion(lowTrigger);
+        assertEquals(2, meterRegistry.get("planning.replan.triggers.created").counter().count());
     }
 
     // -------------------------------------------------------------------------
@@ -91,55 +146,86 @@ class ReplanScheduledJobTest {
 
     @Test
     void testEvaluateActivePlans_PlanThrows_ContinuesWithOtherPlans() {
-        LearningPlan failingPlan = new LearningPlan();
-        failingPlan.setId(UUID.randomUUID());
+        LearningPlan failingPlan = activePlan();
+        LearningPlan goodPlan = activePlan();
 
-        LearningPlan goodPlan = new LearningPlan();
-        goodPlan.setId(UUID.randomUUID());
-
-        Page<LearningPlan> page = new PageImpl<>(List.of(failingPlan, goodPlan));
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class))).thenReturn(page);
-        when(triggerService.evaluateAllTriggers(failingPlan))
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class)))
+                .thenReturn(List.of(failingPlan.getId(), goodPlan.getId()));
+        when(triggerService.evaluateInactivity(eq(failingPlan), any(), any()))
                 .thenThrow(new RuntimeException("Service unavailable"));
-        when(triggerService.evaluateAllTriggers(goodPlan)).thenReturn(List.of());
+        when(triggerService.evaluateInactivity(eq(goodPlan), any(), any())).thenReturn(null);
 
         // Must not throw even when one plan evaluation fails
         scheduledJob.evaluateActivePlansForReplanning();
 
-        verify(triggerService).evaluateAllTriggers(failingPlan);
-        verify(triggerService).evaluateAllTriggers(goodPlan);
+        verify(triggerService).evaluateInactivity(eq(failingPlan), any(), any());
+        verify(triggerService).evaluateInactivity(eq(goodPlan), any(), any());
+        verify(transactionManager).rollback(any());
+        assertEquals(1, meterRegistry.get("planning.replan.plans.failed").counter().count());
+        assertEquals(1, meterRegistry.get("planning.replan.plans.evaluated").counter().count());
     }
 
     // -------------------------------------------------------------------------
-    // evaluateActivePlansForReplanning — pagination (2 pages)
+    // evaluateActivePlansForReplanning — keyset pagination (2 pages)
     // -------------------------------------------------------------------------
 
     @Test
     void testEvaluateActivePlans_MultiplePagesOfPlans_ProcessesAll() {
-        LearningPlan plan1 = new LearningPlan();
-        plan1.setId(UUID.randomUUID());
-        LearningPlan plan2 = new LearningPlan();
-        plan2.setId(UUID.randomUUID());
-
-        // total must be > BATCH_SIZE (100) for hasNext() to be true on page 0:
-        // hasNext() = (pageNumber+1)*pageSize < total → (0+1)*100 < 101 = true
-        Page<LearningPlan> firstPage = new PageImpl<>(
-                List.of(plan1),
-                PageRequest.of(0, 100),
-                101);
-        Page<LearningPlan> secondPage = new PageImpl<>(
-                List.of(plan2),
-                PageRequest.of(1, 100),
-                101 // (1+1)*100 = 200 >= 101 → hasNext() = false
-        );
-
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class)))
-                .thenReturn(firstPage, secondPage);
-        when(triggerService.evaluateAllTriggers(any())).thenReturn(List.of());
+        List<UUID> firstPage = new ArrayList<>();
+        for (int i = 0; i < ReplanScheduledJob.BATCH_SIZE; i++) {
+            firstPage.add(activePlan().getId());
+        }
+        UUID last = firstPage.get(firstPage.size() - 1);
+        LearningPlan lastPlan = activePlan();
+
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(firstPage);
+        // A full page means there may be more: the next one starts after its last id
+        when(planRepository.findIdsByStatusInRangeAfter(eq("active"), eq(last), any(), any(Limit.class)))
+                .thenReturn(List.of(lastPlan.getId()));
+        when(triggerService.evaluateInactivity(any(), any(), any())).thenReturn(null);
+
+        scheduledJob.evaluateActivePlansForReplanning();
+
+        verify(triggerService, times(ReplanScheduledJob.BATCH_SIZE + 1)).evaluateInactivity(any(), any(), any());
+        // Recent triggers are looked up once per page, not per plan
+        verify(triggerService).findRecentTriggers(firstPage);
+        verify(triggerService).findRecentTriggers(List.of(lastPlan.getId()));
+        verify(triggerService).findLastActivity(firstPage);
+        verify(triggerService).findLastActivity(List.of(lastPlan.getId()));
+        verify(planRepository, times(1)).findIdsByStatusInRangeAfter(any(), any(), any(), any());
+        verify(leaseService, times(2)).renew(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // evaluateActivePlansForReplanning — bounded concurrency
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testEvaluateActivePlans_EvaluatesConcurrentlyUpToParallelism() {
+        List<UUID> planIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            planIds.add(activePlan().getId());
+        }
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(planIds);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(triggerService.evaluateInactivity(any(), any(), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return null;
+        });
 
         scheduledJob.evaluateActivePlansForReplanning();
 
-        verify(triggerService, times(2)).evaluateAllTriggers(any());
+        verify(triggerService, times(20)).evaluateInactivity(any(), any(), any());
+        assertTrue(maxRunning.get() > 1, "Plans were evaluated concurrently");
+        assertTrue(maxRunning.get() <= 4, "At most 4 plans in flight, was " + maxRunning.get());
+        assertEquals(1, meterRegistry.get("planning.replan.run.duration").timer().count());
     }
 
     // -------------------------------------------------------------------------
@@ -147,12 +233,62 @@ class ReplanScheduledJobTest {
     // -------------------------------------------------------------------------
 
     @Test
-    void testRunManualEvaluation_DelegatesToEvaluateMethod() {
-        Page<LearningPlan> emptyPage = Page.empty();
-        when(planRepository.findByStatus(eq("active"), any(PageRequest.class))).thenReturn(emptyPage);
+    void testEvaluateActivePlans_LostLease_StopsAndLeavesShard() {
+        List<UUID> firstPage = new ArrayList<>();
+        for (int i = 0; i < ReplanScheduledJob.BATCH_SIZE; i++) {
+            firstPage.add(activePlan().getId());
+        }
+        givenOneShard();
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class))).thenReturn(firstPage);
+        when(triggerService.evaluateInactivity(any(), any(), any())).thenReturn(null);
+        when(leaseService.renew(0)).thenReturn(false);
+
+        scheduledJob.evaluateActivePlansForReplanning();
+
+        verify(planRepository, never()).findIdsByStatusInRangeAfter(any(), any(), any(), any());
+        verify(leaseService, never()).complete(anyInt(), any());
+        verify(leaseService).release(0);
+    }
+
+    @Test
+    void testEvaluateActivePlans_WaitsForShardsLeasedByOthers() {
+        LearningPlan plan = activePlan();
+        // Another instance holds the last shard, then dies and it becomes claimable
+        when(leaseService.claim(any())).thenReturn(Optional.empty(), Optional.of(3), Optional.empty());
+        when(leaseService.isRunComplete(any())).thenReturn(false, true);
+        when(leaseService.range(3)).thenReturn(ReplanShardLeaseService.ShardRange.ALL);
+        when(leaseService.renew(3)).thenReturn(true);
+        when(planRepository.findIdsByStatusInRange(eq("active"), any(), any(), any(Limit.class)))
+                .thenReturn(List.of(plan.getId()));
+        when(triggerService.evaluateInactivity(eq(plan), any(), any())).thenReturn(null);
+
+        scheduledJob.evaluateActivePlansForReplanning();
+
+        verify(triggerService).evaluateInactivity(eq(plan), any(), any());
+        verify(leaseService).complete(eq(3), any());
+    }
+
+    // -------------------------------------------------------------------------
+    // runManualEvaluation — evaluates every plan without leases
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testRunManualEvaluation_IgnoresShardLeases() {
+        LearningPlan plan = activePlan();
+        when(planRepository.findIdsByStatusInRange(eq("active"), eq(ReplanShardLeaseService.ShardRange.ALL.first()),
+                eq(ReplanShardLeaseService.ShardRange.ALL.last()), any(Limit.class))).thenReturn(List.of(plan.getId()));
+        when(triggerService.evaluateInactivity(eq(plan), any(), any())).thenReturn(null);
 
         scheduledJob.runManualEvaluation();
 
-        verify(planRepository).findByStatus(eq("active"), any(PageRequest.class));
+        verify(triggerService).evaluateInactivity(eq(plan), any(), any());
+        verifyNoInteractions(leaseService);
+    }
+
+    private LearningPlan activePlan() {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(UUID.randomUUID());
+        lenient().when(planRepository.findById(plan.getId())).thenReturn(Optional.of(plan));
+        return plan;
     }
 }
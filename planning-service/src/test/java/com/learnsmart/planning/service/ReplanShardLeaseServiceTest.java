@@ -0,0 +1,99 @@
+package com.learnsmart.planning.service;
+
+import com.learnsmart.planning.repository.ReplanShardLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReplanShardLeaseServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-10T02:00:00Z");
+    private static final String RUN = "2024-03-10";
+
+    @Mock
+    private ReplanShardLeaseRepository leaseRepository;
+
+    private ReplanShardLeaseService leaseService;
+
+    @BeforeEach
+    void setUp() {
+        leaseService = new ReplanShardLeaseService(leaseRepository, Clock.fixed(NOW, ZoneOffset.UTC), 4,
+                Duration.ofMinutes(5), "instance-a");
+    }
+
+    @Test
+    void testClaim_LeasesFreeShard() {
+        OffsetDateTime now = OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC);
+        when(leaseRepository.lockClaimable(4, RUN, now)).thenReturn(Optional.of(2));
+
+        assertEquals(Optional.of(2), leaseService.claim(RUN));
+
+        verify(leaseRepository).lease(2, "instance-a", now.plusMinutes(5));
+    }
+
+    @Test
+    void testClaim_NothingFree() {
+        when(leaseRepository.lockClaimable(anyInt(), any(), any())).thenReturn(Optional.empty());
+
+        assertTrue(leaseService.claim(RUN).isEmpty());
+
+        verify(leaseRepository, never()).lease(anyInt(), any(), any());
+    }
+
+    @Test
+    void testRenew_FailsOnceAnotherInstanceOwnsTheShard() {
+        when(leaseRepository.renew(eq(1), eq("instance-a"), any())).thenReturn(0);
+
+        assertFalse(leaseService.renew(1));
+    }
+
+    @Test
+    void testEnsureShards_CreatesMissingRows() {
+        when(leaseRepository.count()).thenReturn(2L);
+
+        leaseService.ensureShards();
+
+        for (int shard = 0; shard < 4; shard++) {
+            verify(leaseRepository).insertIfMissing(shard);
+        }
+    }
+
+    @Test
+    void testIsRunComplete() {
+        when(leaseRepository.countCompleted(4, RUN)).thenReturn(3L, 4L);
+
+        assertFalse(leaseService.isRunComplete(RUN));
+        assertTrue(leaseService.isRunComplete(RUN));
+    }
+
+    @Test
+    void testShardRanges_CoverAllIdsWithoutOverlap() {
+        int shards = 3;
+        assertEquals(new UUID(0, 0), ReplanShardLeaseService.ShardRange.of(0, shards).first());
+        for (int shard = 1; shard < shards; shard++) {
+            UUID previousLast = ReplanShardLeaseService.ShardRange.of(shard - 1, shards).last();
+            UUID first = ReplanShardLeaseService.ShardRange.of(shard, shards).first();
+            // Adjacent in unsigned order: the previous range ends right before this one starts
+            assertEquals(previousLast.getMostSignificantBits() + 1, first.getMostSignificantBits());
+            assertEquals(-1L, previousLast.getLeastSignificantBits());
+            assertEquals(0L, first.getLeastSignificantBits());
+        }
+        assertEquals(new UUID(-1L, -1L), ReplanShardLeaseService.ShardRange.of(shards - 1, shards).last());
+    }
+}
@@ -1,10 +1,14 @@
 package com.learnsmart.planning.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.planning.client.TrackingActivityClient;
+import com.learnsmart.planning.model.LatestTrigger;
 import com.learnsmart.planning.model.LearningPlan;
 import com.learnsmart.planning.model.PlanActivity;
 import com.learnsmart.planning.model.PlanModule;
+import com.learnsmart.planning.model.PlanProgressSummary;
 import com.learnsmart.planning.model.ReplanTrigger;
+import com.learnsmart.planning.repository.LearningPlanRepository;
 import com.learnsmart.planning.repository.PlanActivityRepository;
 import com.learnsmart.planning.repository.ReplanTriggerRepository;
 import org.junit.jupiter.api.Test;
@@ -12,7 +16,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
@@ -30,7 +33,9 @@ class ReplanTriggerServiceTest {
     @Mock
     private PlanActivityRepository activityRepository;
     @Mock
-    private RestTemplate restTemplate;
+    private LearningPlanRepository planRepository;
+    @Mock
+    private TrackingActivityClient trackingClient;
     @Mock
     private ObjectMapper objectMapper;
 
@@ -137,6 +142,61 @@ class ReplanTriggerServiceTest {
         verify(triggerRepository, never()).save(any());
     }
 
+    // -------------------------------------------------------------------------
+    // evaluateProgressDeviations
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testEvaluateProgressDeviations_BuildsTriggersInOneBatch() throws Exception {
+        UUID first = new UUID(0, 0);
+        UUID last = new UUID(-1L, -1L);
+        UUID behindId = UUID.randomUUID();
+        UUID aheadId = UUID.randomUUID();
+        LocalDate start = LocalDate.now().minusDays(20);
+        LocalDate end = LocalDate.now().plusDays(10);
+        // ~66.7% expected: 0% done is HIGH, 100% done is MEDIUM
+        when(planRepository.findProgressDeviations(eq(first), eq(last), any(LocalDate.class),
+                eq(ReplanTriggerService.PROGRESS_DEVIATION_LOW)))
+                .thenReturn(List.of(
+                        new PlanProgressSummary(behindId, start, end, 4, 0),
+                        new PlanProgressSummary(aheadId, start, end, 4, 4)));
+        when(triggerRepository.findLatestByPlanIds(List.of(behindId, aheadId))).thenReturn(List.of(
+                new LatestTrigger(behindId, "INACTIVITY", OffsetDateTime.now().minusDays(1)),
+                new LatestTrigger(aheadId, "PROGRESS_DEVIATION", OffsetDateTime.now().minusDays(8))));
+        when(planRepository.getReferenceById(any())).thenAnswer(invocation -> {
+            LearningPlan plan = new LearningPlan();
+            plan.setId(invocation.getArgument(0));
+            return plan;
+        });
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+        when(triggerRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ReplanTrigger> result = triggerService.evaluateProgressDeviations(first, last);
+
+        assertEquals(2, result.size());
+        assertEquals(behindId, result.get(0).getPlan().getId());
+        assertEquals("HIGH", result.get(0).getSeverity());
+        assertEquals(aheadId, result.get(1).getPlan().getId());
+        assertEquals("MEDIUM", result.get(1).getSeverity());
+        verify(triggerRepository).saveAll(anyList());
+        verify(triggerRepository, never()).save(any());
+        verify(triggerRepository, never()).findTopByPlanIdAndTriggerTypeOrderByDetectedAtDesc(any(), any());
+    }
+
+    @Test
+    void testEvaluateProgressDeviations_SkipsPlansWithRecentTrigger() {
+        UUID planId = UUID.randomUUID();
+        when(planRepository.findProgressDeviations(any(), any(), any(LocalDate.class), anyDouble()))
+                .thenReturn(List.of(new PlanProgressSummary(planId,
+                        LocalDate.now().minusDays(20), LocalDate.now().plusDays(10), 4, 0)));
+        when(triggerRepository.findLatestByPlanIds(List.of(planId))).thenReturn(List.of(
+                new LatestTrigger(planId, "PROGRESS_DEVIATION", OffsetDateTime.now().minusDays(1))));
+        when(triggerRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertTrue(triggerService.evaluateProgressDeviations(planId, planId).isEmpty());
+        verify(planRepository, never()).getReferenceById(any());
+    }
+
     // -------------------------------------------------------------------------
     // evaluateInactivity
     // -------------------------------------------------------------------------
@@ -204,6 +264,96 @@ class ReplanTriggerServiceTest {
         assertEquals("MEDIUM", result.getSeverity());
     }
 
+    @Test
+    void testEvaluateInactivity_WithRecentTriggers_DedupesWithoutQuery() {
+        UUID planId = UUID.randomUUID();
+        LearningPlan plan = new LearningPlan();
+        plan.setId(planId);
+        plan.setStatus("active");
+        plan.setUpdatedAt(OffsetDateTime.now().minusDays(15));
+        RecentTriggers recentTriggers = new RecentTriggers(List.of(
+                new LatestTrigger(planId, "INACTIVITY", OffsetDateTime.now().minusDays(2))));
+
+        assertNull(triggerService.evaluateInactivity(plan, recentTriggers, Map.of()));
+        verify(triggerRepository, never()).findTopByPlanIdAndTriggerTypeOrderByDetectedAtDesc(any(), any());
+        verify(triggerRepository, never()).save(any());
+    }
+
+    @Test
+    void testEvaluateInactivity_RecentTrackedActivity_ReturnsNull() {
+        UUID userId = UUID.randomUUID();
+        LearningPlan plan = new LearningPlan();
+        plan.setId(UUID.randomUUID());
+        plan.setUserId(userId.toString());
+        plan.setStatus("active");
+        plan.setUpdatedAt(OffsetDateTime.now().minusDays(30)); // Plan untouched, but the learner is active
+
+        assertNull(triggerService.evaluateInactivity(plan, null,
+                Map.of(userId, OffsetDateTime.now().minusDays(1))));
+        verify(triggerRepository, never()).save(any());
+    }
+
+    @Test
+    void testEvaluateInactivity_UsesTrackedActivityWhenLater() throws Exception {
+        UUID userId = UUID.randomUUID();
+        LearningPlan plan = new LearningPlan();
+        plan.setId(UUID.randomUUID());
+        plan.setUserId(userId.toString());
+        plan.setStatus("active");
+        plan.setUpdatedAt(OffsetDateTime.now().minusDays(30));
+        OffsetDateTime tracked = OffsetDateTime.now().minusDays(10); // 10 days → MEDIUM
+
+        when(trackingClient.getLastActivity(List.of(userId))).thenReturn(Map.of(userId, tracked));
+        when(triggerRepository.findTopByPlanIdAndTriggerTypeOrderByDetectedAtDesc(eq(plan.getId()), anyString()))
+                .thenReturn(Optional.empty());
+        when(objectMapper.writeValueAsString(any())).thenReturn("{}");
+        when(triggerRepository.save(any(ReplanTrigger.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ReplanTrigger result = triggerService.evaluateInactivity(plan);
+
+        assertNotNull(result);
+        assertEquals("MEDIUM", result.getSeverity());
+    }
+
+    // -------------------------------------------------------------------------
+    // findLastActivity
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testFindLastActivity_OneCallForTheBatch() {
+        List<UUID> planIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        UUID userId = UUID.randomUUID();
+        when(planRepository.findUserIdsByIdIn(planIds)).thenReturn(List.of(userId.toString(), "not-a-uuid"));
+        Map<UUID, OffsetDateTime> lastActivity = Map.of(userId, OffsetDateTime.now().minusDays(2));
+        when(trackingClient.getLastActivity(List.of(userId))).thenReturn(lastActivity);
+
+        assertEquals(lastActivity, triggerService.findLastActivity(planIds));
+        verify(trackingClient, times(1)).getLastActivity(any());
+    }
+
+    // -------------------------------------------------------------------------
+    // findRecentTriggers
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testFindRecentTriggers_QueriesInBatches() {
+        List<UUID> planIds = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            planIds.add(UUID.randomUUID());
+        }
+        UUID last = planIds.get(500);
+        when(triggerRepository.findLatestByPlanIds(planIds.subList(0, 500))).thenReturn(List.of());
+        when(triggerRepository.findLatestByPlanIds(List.of(last))).thenReturn(List.of(
+                new LatestTrigger(last, "INACTIVITY", OffsetDateTime.parse("2024-03-01T00:00:00Z"))));
+
+        RecentTriggers recentTriggers = triggerService.findRecentTriggers(planIds);
+
+        assertEquals(OffsetDateTime.parse("2024-03-01T00:00:00Z"),
+                recentTriggers.latestDetectedAt(last, "INACTIVITY"));
+        assertNull(recentTriggers.latestDetectedAt(last, "PROGRESS_DEVIATION"));
+        assertNull(recentTriggers.latestDetectedAt(planIds.get(0), "INACTIVITY"));
+    }
+
     // -------------------------------------------------------------------------
     // evaluateAllTriggers
     // -------------------------------------------------------------------------
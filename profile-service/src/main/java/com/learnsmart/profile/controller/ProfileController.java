@@ -19,6 +19,8 @@ public class ProfileController {
     private final ProfileServiceImpl profileService;
     private final com.learnsmart.profile.service.ProgressService progressService;
 
+    static final int MAX_TIMEZONE_LOOKUPS = 1000;
+
     private UUID getUserId(String xUserId) {
         // 1. Fallback to Header (Legacy/Testing/Override) - Takes precedence for
         // integration tests
@@ -100,6 +102,19 @@ public class ProfileController {
         return ResponseEntity.ok(profileService.getProfile(userId));
     }
 
+    /**
+     * Time zones of up to {@value #MAX_TIMEZONE_LOOKUPS} users in one call;
+     * users without a profile or zone are left out of the result.
+     */
+    @PostMapping("/timezones")
+    public ResponseEntity<java.util.Map<UUID, String>> getTimezones(@RequestBody List<UUID> userIds) {
+        if (userIds.size() > MAX_TIMEZONE_LOOKUPS) {
+            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_TIMEZONE_LOOKUPS + " user ids per request");
+        }
+        return ResponseEntity.ok(profileService.getTimezones(userIds));
+    }
+
     // --- GOALS ---
 
     @GetMapping("/me/goals")
@@ -17,7 +17,10 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -68,6 +71,22 @@ public class ProfileServiceImpl {
         return mapToProfileResponse(profile);
     }
 
+    /**
+     * Time zones of the given users, for services that bucket their data by
+     * the user's local day. Users without a profile or without a zone are
+     * left out.
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, String> getTimezones(Collection<UUID> userIds) {
+        Map<UUID, String> timezones = new HashMap<>();
+        for (UserProfile profile : profileRepository.findAllById(userIds)) {
+            if (profile.getTimezone() != null && !profile.getTimezone().isBlank()) {
+                timezones.put(profile.getUserId(), profile.getTimezone());
+            }
+        }
+        return timezones;
+    }
+
     @Transactional(readOnly = true)
     public UserProfileResponse getProfile(UUID userId) {
         return profileRepository.findById(userId)
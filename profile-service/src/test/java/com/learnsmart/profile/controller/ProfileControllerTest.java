@@ -133,6 +133,28 @@ class ProfileControllerTest {
         assertEquals(userId, response.getBody().getUserId());
     }
 
+    @Test
+    void testGetTimezones() {
+        UUID userId = UUID.randomUUID();
+        when(profileService.getTimezones(List.of(userId))).thenReturn(java.util.Map.of(userId, "Europe/Madrid"));
+
+        ResponseEntity<java.util.Map<UUID, String>> response = profileController.getTimezones(List.of(userId));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Europe/Madrid", response.getBody().get(userId));
+    }
+
+    @Test
+    void testGetTimezones_TooManyUsers() {
+        List<UUID> userIds = java.util.stream.Stream.generate(UUID::randomUUID)
+                .limit(ProfileController.MAX_TIMEZONE_LOOKUPS + 1).toList();
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> profileController.getTimezones(userIds));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verifyNoInteractions(profileService);
+    }
+
     // --- Goals ---
 
     @Test
@@ -140,6 +140,23 @@ class ProfileServiceImplTest {
         assertThrows(IllegalArgumentException.class, () -> profileService.getProfile(userId));
     }
 
+    // -------------------------------------------------------------------------
+    // getTimezones
+    // -------------------------------------------------------------------------
+
+    @Test
+    void testGetTimezones_LeavesOutUsersWithoutZone() {
+        UUID withZone = UUID.randomUUID();
+        UUID withoutZone = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        List<UUID> userIds = List.of(withZone, withoutZone, unknown);
+        when(profileRepository.findAllById(userIds)).thenReturn(List.of(
+                UserProfile.builder().userId(withZone).timezone("America/Lima").build(),
+                UserProfile.builder().userId(withoutZone).build()));
+
+        assertEquals(java.util.Map.of(withZone, "America/Lima"), profileService.getTimezones(userIds));
+    }
+
     // -------------------------------------------------------------------------
     // getProfileByAuthId
     // -------------------------------------------------------------------------
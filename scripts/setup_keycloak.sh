@@ -6,6 +6,8 @@ ADMIN_USER="${ADMIN_USER:-admin}"
 ADMIN_PASS="${ADMIN_PASS:-admin}"
 REALM="${REALM:-learnsmart}"
 CLIENT_ID="${CLIENT_ID:-learnsmart-frontend}"
+PLANNING_CLIENT_ID="${PLANNING_CLIENT_ID:-planning-service}"
+PLANNING_CLIENT_SECRET="${PLANNING_CLIENT_SECRET:-planning-service-secret}"
 
 echo "Waiting for Keycloak to be ready..."
 until curl -s "$KEYCLOAK_URL/realms/master" > /dev/null; do
@@ -91,4 +93,40 @@ curl -s -X POST "$KEYCLOAK_URL/admin/realms/$REALM/users/$USER_ID/role-mappings/
      -H "Content-Type: application/json" \
      -d "[{\"id\": \"$ROLE_ID\", \"name\": \"ADMIN\"}]"
 
+# planning-service calls tracking-service from its nightly job, without a
+# user token, through a service account with the SERVICE role
+echo "Creating client $PLANNING_CLIENT_ID..."
+curl -s -X POST "$KEYCLOAK_URL/admin/realms/$REALM/clients" \
+     -H "Authorization: Bearer $TOKEN" \
+     -H "Content-Type: application/json" \
+     -d "{
+       \"clientId\": \"$PLANNING_CLIENT_ID\",
+       \"enabled\": true,
+       \"publicClient\": false,
+       \"secret\": \"$PLANNING_CLIENT_SECRET\",
+       \"serviceAccountsEnabled\": true,
+       \"standardFlowEnabled\": false,
+       \"directAccessGrantsEnabled\": false
+     }" || echo "Client might already exist"
+
+echo "Creating SERVICE role..."
+curl -s -X POST "$KEYCLOAK_URL/admin/realms/$REALM/roles" \
+     -H "Authorization: Bearer $TOKEN" \
+     -H "Content-Type: application/json" \
+     -d "{\"name\": \"SERVICE\"}" || echo "Role might already exist"
+
+echo "Getting service account of $PLANNING_CLIENT_ID..."
+PLANNING_CLIENT_UUID=$(curl -s -X GET "$KEYCLOAK_URL/admin/realms/$REALM/clients?clientId=$PLANNING_CLIENT_ID" \
+     -H "Authorization: Bearer $TOKEN" | jq -r '.[0].id')
+SERVICE_USER_ID=$(curl -s -X GET "$KEYCLOAK_URL/admin/realms/$REALM/clients/$PLANNING_CLIENT_UUID/service-account-user" \
+     -H "Authorization: Bearer $TOKEN" | jq -r '.id')
+SERVICE_ROLE_ID=$(curl -s -X GET "$KEYCLOAK_URL/admin/realms/$REALM/roles/SERVICE" \
+     -H "Authorization: Bearer $TOKEN" | jq -r '.id')
+
+echo "Assigning SERVICE role to the $PLANNING_CLIENT_ID service account..."
+curl -s -X POST "$KEYCLOAK_URL/admin/realms/$REALM/users/$SERVICE_USER_ID/role-mappings/realm" \
+     -H "Authorization: Bearer $TOKEN" \
+     -H "Content-Type: application/json" \
+     -d "[{\"id\": \"$SERVICE_ROLE_ID\", \"name\": \"SERVICE\"}]"
+
 echo "Keycloak setup complete."
@@ -0,0 +1,97 @@
+package com.learnsmart.tracking.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Client for reading user profiles from profile-service.
+ */
+@Slf4j
+@Component
+public class ProfileClient {
+
+    // Limit of POST /profiles/timezones
+    static final int MAX_USERS_PER_REQUEST = 1000;
+
+    private final RestTemplate restTemplate;
+    private final String profileServiceUrl;
+
+    public ProfileClient(RestTemplate restTemplate,
+            @Value("${profile-service.url:http://profile-service}") String profileServiceUrl) {
+        this.restTemplate = restTemplate;
+        this.profileServiceUrl = profileServiceUrl;
+    }
+
+    /**
+     * Fetches the user's time zone setting.
+     * GET /profiles/{userId}
+     *
+     * @return the IANA zone id, or empty if the user has no profile or no
+     *         zone set
+     * @throws org.springframework.web.client.RestClientException if
+     *         profile-service cannot be reached, fails, or rejects the
+     *         caller's token
+     */
+    public Optional<String> getTimezone(UUID userId) {
+        try {
+            Map<String, Object> profile = restTemplate.exchange(
+                    profileServiceUrl + "/profiles/" + userId,
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<Map<String, Object>>() {
+                    }).getBody();
+            Object timezone = profile != null ? profile.get("timezone") : null;
+            return timezone instanceof String zone && !zone.isBlank() ? Optional.of(zone) : Optional.empty();
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                log.debug("No profile for user {}", userId);
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the time zones of several users in one call.
+     * POST /profiles/timezones
+     *
+     * @return IANA zone ids by user; users without a profile or zone are absent
+     * @throws org.springframework.web.client.RestClientException if
+     *         profile-service cannot be reached, fails, or rejects the
+     *         caller's token
+     */
+    public Map<UUID, String> getTimezones(Collection<UUID> userIds) {
+        Map<UUID, String> timezones = new HashMap<>();
+        List<UUID> ids = List.copyOf(userIds);
+        for (int start = 0; start < ids.size(); start += MAX_USERS_PER_REQUEST) {
+            Map<UUID, String> chunk = restTemplate.exchange(
+                    profileServiceUrl + "/profiles/timezones",
+                    HttpMethod.POST,
+                    new HttpEntity<>(ids.subList(start, Math.min(ids.size(), start + MAX_USERS_PER_REQUEST))),
+                    new ParameterizedTypeReference<Map<UUID, String>>() {
+                    }).getBody();
+            if (chunk != null) {
+                chunk.forEach((userId, zone) -> {
+                    if (zone != null && !zone.isBlank()) {
+                        timezones.put(userId, zone);
+                    }
+                });
+            }
+        }
+        return timezones;
+    }
+}
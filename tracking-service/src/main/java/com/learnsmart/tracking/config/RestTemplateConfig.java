@@ -0,0 +1,50 @@
+package com.learnsmart.tracking.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class RestTemplateConfig {
+
+    /**
+     * Load-balanced client that forwards the caller's bearer token. Calls are
+     * made on the ingest path, so timeouts are kept short.
+     */
+    @Bean
+    @LoadBalanced
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+            @Value("${tracking.clients.timeout:PT2S}") Duration timeout) {
+        RestTemplate restTemplate = builder
+                .connectTimeout(timeout)
+                .readTimeout(timeout)
+                .build();
+
+        List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
+        if (interceptors == null) {
+            interceptors = new ArrayList<>();
+        }
+
+        interceptors.add((request, body, execution) -> {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof JwtAuthenticationToken jwtToken) {
+                request.getHeaders().add("Authorization", "Bearer " + jwtToken.getToken().getTokenValue());
+            }
+            return execution.execute(request, body);
+        });
+
+        restTemplate.setInterceptors(interceptors);
+        return restTemplate;
+    }
+}
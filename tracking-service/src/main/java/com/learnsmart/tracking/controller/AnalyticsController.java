@@ -1,8 +1,14 @@
 package com.learnsmart.tracking.controller;
 
+import com.learnsmart.tracking.dto.ActivityConsistencyReport;
+import com.learnsmart.tracking.dto.CohortRequest;
 import com.learnsmart.tracking.dto.DailyActivityResponse;
 import com.learnsmart.tracking.dto.UserStatsResponse;
 import com.learnsmart.tracking.service.AnalyticsService;
+import com.learnsmart.tracking.service.CohortAnalyticsService;
+import com.learnsmart.tracking.service.DailyActivityService;
+import com.learnsmart.tracking.service.UserAnalyticsCache;
+import com.learnsmart.tracking.service.UserStatsRollupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +16,8 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 @RestController
@@ -18,12 +26,131 @@ import java.util.UUID;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final UserStatsRollupService rollupService;
+    private final DailyActivityService dailyActivityService;
+    private final CohortAnalyticsService cohortAnalyticsService;
+    private final UserAnalyticsCache analyticsCache;
+
+    static final int MAX_COHORT_SIZE = 10_000;
+    static final int MAX_DAILY_ACTIVE_DAYS = 366;
 
     @GetMapping("/users/{userId}/stats")
     public ResponseEntity<UserStatsResponse> getUserStats(@PathVariable UUID userId) {
         return ResponseEntity.ok(analyticsService.calculateStats(userId));
     }
 
+    /**
+     * Recomputes a user's stats rollup from their raw events.
+     */
+    @PostMapping("/users/{userId}/stats/rebuild")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserStatsResponse> rebuildUserStats(@PathVariable UUID userId) {
+        rollupService.rebuild(userId);
+        analyticsCache.invalidate(List.of(userId));
+        return ResponseEntity.ok(analyticsService.calculateStats(userId));
+    }
+
+    /**
+     * Recomputes the stats rollup of every user from raw events.
+     */
+    @PostMapping("/stats/rebuild")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> rebuildAllStats() {
+        int rebuilt = rollupService.rebuildAll();
+        analyticsCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("usersRebuilt", rebuilt));
+    }
+
+    /**
+     * Time of the latest event of each listed user, for callers that check
+     * many users at once (e.g. planning-service's inactivity triggers).
+     * Users without events are left out. Open to service accounts with the
+     * SERVICE realm role, as the nightly replan job has no user token.
+     */
+    @PostMapping("/users/last-activity")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN') or hasRole('SERVICE')")
+    public ResponseEntity<?> getLastActivity(@RequestBody CohortRequest request) {
+        ResponseEntity<?> invalid = validateCohort(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        return ResponseEntity.ok(analyticsService.lastActivity(request.userIds()));
+    }
+
+    /**
+     * Distinct active learners, lessons and assessments across a cohort of
+     * users over a date range, answered from the per-day sketches.
+     */
+    @PostMapping("/cohorts/distinct")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCohortDistinct(@RequestBody CohortRequest request) {
+        ResponseEntity<?> invalid = validateCohort(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        LocalDate from = request.from() != null ? request.from() : LocalDate.now().minusMonths(1);
+        LocalDate to = request.to() != null ? request.to() : LocalDate.now();
+        if (from.isAfter(to)) {
+            return invalidRange("from must not be after to");
+        }
+
+        return ResponseEntity.ok(analyticsService.cohortDistinct(request.userIds(), from, to));
+    }
+
+    /**
+     * The cohort's users with the most hours studied.
+     */
+    @PostMapping("/cohorts/leaderboard")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCohortLeaderboard(
+            @RequestBody CohortRequest request,
+            @RequestParam(defaultValue = "10") int limit) {
+        ResponseEntity<?> invalid = validateCohort(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        int size = Math.max(1, Math.min(limit, CohortAnalyticsService.MAX_LEADERBOARD_SIZE));
+        return ResponseEntity.ok(cohortAnalyticsService.leaderboard(request.userIds(), size));
+    }
+
+    /**
+     * Histogram of the cohort's current streaks.
+     */
+    @PostMapping("/cohorts/streaks")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCohortStreaks(@RequestBody CohortRequest request) {
+        ResponseEntity<?> invalid = validateCohort(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        return ResponseEntity.ok(cohortAnalyticsService.streaks(request.userIds()));
+    }
+
+    /**
+     * Daily active users of the cohort for each day in the range.
+     */
+    @PostMapping("/cohorts/daily-active")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCohortDailyActive(@RequestBody CohortRequest request) {
+        ResponseEntity<?> invalid = validateCohort(request);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        LocalDate from = request.from() != null ? request.from() : LocalDate.now().minusMonths(1);
+        LocalDate to = request.to() != null ? request.to() : LocalDate.now();
+        if (from.isAfter(to) || from.plusDays(MAX_DAILY_ACTIVE_DAYS).isBefore(to)) {
+            return invalidRange("from must not be after to, and the range may span at most "
+                    + MAX_DAILY_ACTIVE_DAYS + " days");
+        }
+
+        return ResponseEntity.ok(cohortAnalyticsService.dailyActive(request.userIds(), from, to));
+    }
+
     @GetMapping("/users/{userId}/activity")
     public ResponseEntity<List<DailyActivityResponse>> getUserActivity(
             @PathVariable UUID userId,
@@ -37,4 +164,65 @@ public class AnalyticsController {
 
         return ResponseEntity.ok(analyticsService.getActivity(userId, from, to));
     }
+
+    /**
+     * Recomputes a user's daily activity rows from their raw events.
+     */
+    @PostMapping("/users/{userId}/activity/backfill")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> backfillUserActivity(@PathVariable UUID userId) {
+        int backfilled = dailyActivityService.backfill(userId);
+        analyticsCache.invalidate(List.of(userId));
+        return ResponseEntity.ok(Map.of("daysBackfilled", backfilled));
+    }
+
+    /**
+     * Recomputes the daily activity rows of every user from raw events.
+     */
+    @PostMapping("/activity/backfill")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> backfillAllActivity() {
+        int backfilled = dailyActivityService.backfillAll();
+        analyticsCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("usersBackfilled", backfilled));
+    }
+
+    /**
+     * Compares a user's daily activity rows with the raw events in the range.
+     */
+    @GetMapping("/users/{userId}/activity/consistency")
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ActivityConsistencyReport> checkActivityConsistency(
+            @PathVariable UUID userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        if (from == null)
+            from = LocalDate.now().minusMonths(1);
+        if (to == null)
+            to = LocalDate.now();
+
+        return ResponseEntity.ok(dailyActivityService.checkConsistency(userId, from, to));
+    }
+
+    private static ResponseEntity<?> validateCohort(CohortRequest request) {
+        List<UUID> userIds = request.userIds();
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MAX_COHORT_SIZE
+                || userIds.stream().anyMatch(Objects::isNull)) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(Map.of(
+                            "error", "Invalid cohort",
+                            "message", "userIds must list between 1 and " + MAX_COHORT_SIZE + " users"));
+        }
+        return null;
+    }
+
+    private static ResponseEntity<?> invalidRange(String message) {
+        return ResponseEntity
+                .badRequest()
+                .body(Map.of(
+                        "error", "Invalid range",
+                        "message", message));
+    }
 }
@@ -1,19 +1,41 @@
 package com.learnsmart.tracking.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.dto.BatchIngestResponse;
+import com.learnsmart.tracking.dto.BatchItemResult;
+import com.learnsmart.tracking.dto.CursorPage;
 import com.learnsmart.tracking.model.LearningEvent;
 import com.learnsmart.tracking.repository.LearningEventRepository;
+import com.learnsmart.tracking.service.EventArchive;
+import com.learnsmart.tracking.service.EventExportService;
+import com.learnsmart.tracking.service.IngestBufferFullException;
+import com.learnsmart.tracking.service.IngestRateLimitedException;
+import com.learnsmart.tracking.service.LiveEventHub;
 import com.learnsmart.tracking.service.TrackingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/events")
@@ -22,15 +44,39 @@ public class TrackingController {
 
     private final TrackingService trackingService;
     private final LearningEventRepository repository;
+    private final ObjectMapper objectMapper;
+    private final EventExportService exportService;
+    private final LiveEventHub liveEventHub;
+    private final EventArchive archive;
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    /**
+     * Set when a read of learning_events_v2 alone reached behind the archive:
+     * events before this instant may be missing from the response.
+     */
+    public static final String ARCHIVE_HORIZON_HEADER = "X-Archive-Horizon";
+    static final int MAX_CURSOR_LIMIT = 500;
+
+    @Value("${tracking.ingest.batch.max-size:1000}")
+    private int maxBatchSize = 1000;
 
     /**
      * Creates a new learning event.
      * US-123: Returns 400 Bad Request if payload validation fails.
+     * Returns 429 Too Many Requests when the asynchronous ingest buffer is full
+     * or the user or calling client is over its ingest rate limit.
+     * An {@code Idempotency-Key} header sets the event's client event id, so a
+     * retried request is stored only once.
      */
     @PostMapping
-    public ResponseEntity<?> createEvent(@RequestBody LearningEvent event) {
+    public ResponseEntity<?> createEvent(@RequestBody LearningEvent event,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            event.setClientEventId(idempotencyKey);
+        }
         try {
-            trackingService.createEvent(event);
+            trackingService.createEvent(event, currentClientId());
             return ResponseEntity.accepted().build();
         } catch (IllegalArgumentException e) {
             // Payload validation failed (US-123)
@@ -40,11 +86,102 @@ public class TrackingController {
                             "error", "Invalid event payload",
                             "message", e.getMessage(),
                             "eventType", event.getEventType() != null ? event.getEventType() : "unknown"));
+        } catch (IngestBufferFullException e) {
+            return ResponseEntity
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of(
+                            "error", "Ingest buffer full",
+                            "message", e.getMessage()));
+        } catch (IngestRateLimitedException e) {
+            long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+            return ResponseEntity
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(Map.of(
+                            "error", "Rate limit exceeded",
+                            "message", e.getMessage()));
         }
     }
 
+    /**
+     * OAuth client the caller's token was issued to ({@code azp}), if any.
+     */
+    private static String currentClientId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof JwtAuthenticationToken jwtToken) {
+            String clientId = jwtToken.getToken().getClaimAsString("azp");
+            return clientId != null ? clientId : jwtToken.getToken().getClaimAsString("client_id");
+        }
+        return null;
+    }
+
+    /**
+     * Creates a batch of learning events sent as a JSON array.
+     * Every item is validated and rate limited on its own; the response reports
+     * which ones were accepted and why the others were rejected.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createEvents(@RequestBody List<LearningEvent> events) {
+        if (events.size() > maxBatchSize) {
+            return batchTooLarge(events.size());
+        }
+        return ResponseEntity.accepted()
+                .body(BatchIngestResponse.of(trackingService.createEvents(events, currentClientId())));
+    }
+
+    /**
+     * Creates a batch of learning events sent as NDJSON (one event per line).
+     * Lines that are not valid JSON are rejected individually instead of failing
+     * the whole request.
+     */
+    @PostMapping(value = "/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> createEventsNdjson(@RequestBody String body) {
+        List<LearningEvent> events = new ArrayList<>();
+        List<Integer> lineIndexes = new ArrayList<>();
+        List<BatchItemResult> results = new ArrayList<>();
+
+        int index = 0;
+        for (String line : body.split("\\r?\\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                events.add(objectMapper.readValue(line, LearningEvent.class));
+                lineIndexes.add(index);
+            } catch (JsonProcessingException e) {
+                results.add(BatchItemResult.rejected(index, "Malformed event: " + e.getOriginalMessage()));
+            }
+            index++;
+        }
+
+        if (index > maxBatchSize) {
+            return batchTooLarge(index);
+        }
+
+        // Map results back from the parsed subset to the original line positions
+        for (BatchItemResult result : trackingService.createEvents(events, currentClientId())) {
+            results.add(new BatchItemResult(lineIndexes.get(result.index()), result.status(), result.id(),
+                    result.error()));
+        }
+        results.sort(Comparator.comparingInt(BatchItemResult::index));
+        return ResponseEntity.accepted().body(BatchIngestResponse.of(results));
+    }
+
+    private ResponseEntity<?> batchTooLarge(int size) {
+        return ResponseEntity
+                .status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of(
+                        "error", "Batch too large",
+                        "message", String.format("Batch contains %d events, maximum is %d", size, maxBatchSize)));
+    }
+
+    /**
+     * Lists events from learning_events_v2. Archived months are not included;
+     * see {@link #ARCHIVE_HORIZON_HEADER}.
+     */
     @GetMapping
-    public Page<LearningEvent> getEvents(
+    public ResponseEntity<Page<LearningEvent>> getEvents(
             @RequestParam(required = false) UUID userId,
             @RequestParam(required = false) String eventType,
             @RequestParam(required = false) String entityType,
@@ -52,6 +189,102 @@ public class TrackingController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
             Pageable pageable) {
-        return trackingService.listEvents(userId, eventType, entityType, entityId, from, to, pageable);
+        return withArchiveHorizon(ResponseEntity.ok(), from)
+                .body(trackingService.listEvents(userId, eventType, entityType, entityId, from, to, pageable));
+    }
+
+    /**
+     * Lists events newest first using keyset pagination on (occurredAt, id).
+     * Unlike {@link #getEvents}, deep pages cost the same as the first one and no
+     * total count is computed. Pass the returned {@code nextCursor} to fetch the
+     * following page; it is null on the last page. Like {@link #getEvents},
+     * reads only learning_events_v2.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<?> getEventsByCursor(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) UUID entityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_CURSOR_LIMIT));
+        try {
+            CursorPage<LearningEvent> page = trackingService.listEventsAfter(
+                    userId, eventType, entityType, entityId, from, to, cursor, pageSize);
+            return withArchiveHorizon(ResponseEntity.ok(), from).body(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(Map.of(
+                            "error", "Invalid cursor",
+                            "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Pushes the user's newly stored events as Server-Sent Events named
+     * {@code learning-event}, replacing polling of {@link #getEvents}. Events
+     * stored before the stream opened are not replayed; use
+     * {@link #getEventsByCursor} for those. Responds 503 when this instance
+     * already serves its maximum number of streams.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<SseEmitter> streamEvents(@RequestParam UUID userId) {
+        return liveEventHub.subscribe(userId)
+                .map(emitter -> ResponseEntity.ok()
+                        .header("X-Accel-Buffering", "no")
+                        .body(emitter))
+                .orElseGet(() -> ResponseEntity
+                        .status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build());
+    }
+
+    /**
+     * Streams all events matching the {@link #getEvents} filters as NDJSON, oldest
+     * first, without paging. The response is gzip-encoded when the client sends
+     * {@code Accept-Encoding: gzip}. An export of one user includes archived
+     * months; other exports read only learning_events_v2 and are flagged with
+     * {@link #ARCHIVE_HORIZON_HEADER}.
+     */
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    @org.springframework.security.access.prepost.PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportEvents(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) UUID entityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                exportService.export(userId, eventType, entityType, entityId, from, to, compressed);
+                compressed.finish();
+            } else {
+                exportService.export(userId, eventType, entityType, entityId, from, to, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (userId == null) {
+            withArchiveHorizon(response, from);
+        }
+        return response.body(body);
+    }
+
+    private ResponseEntity.BodyBuilder withArchiveHorizon(ResponseEntity.BodyBuilder response, OffsetDateTime from) {
+        archive.horizonBefore(from).ifPresent(horizon -> response.header(ARCHIVE_HORIZON_HEADER, horizon.toString()));
+        return response;
     }
 }
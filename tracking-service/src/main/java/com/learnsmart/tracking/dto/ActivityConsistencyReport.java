@@ -0,0 +1,25 @@
+package com.learnsmart.tracking.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public record ActivityConsistencyReport(
+        UUID userId,
+        LocalDate from,
+        LocalDate to,
+        int daysChecked,
+        List<Mismatch> mismatches) {
+
+    public boolean consistent() {
+        return mismatches.isEmpty();
+    }
+
+    public record Mismatch(
+            LocalDate day,
+            long expectedEventCount,
+            long actualEventCount,
+            double expectedDurationSeconds,
+            double actualDurationSeconds) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.learnsmart.tracking.dto;
+
+import java.util.List;
+
+public record BatchIngestResponse(
+        int accepted,
+        int rejected,
+        int duplicates,
+        List<BatchItemResult> results) {
+
+    public static BatchIngestResponse of(List<BatchItemResult> results) {
+        int accepted = count(results, BatchItemResult.ACCEPTED);
+        int duplicates = count(results, BatchItemResult.DUPLICATE);
+        return new BatchIngestResponse(accepted, results.size() - accepted - duplicates, duplicates, results);
+    }
+
+    private static int count(List<BatchItemResult> results, String status) {
+        return (int) results.stream()
+                .filter(r -> status.equals(r.status()))
+                .count();
+    }
+}
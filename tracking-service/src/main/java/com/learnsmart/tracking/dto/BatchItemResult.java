@@ -0,0 +1,30 @@
+package com.learnsmart.tracking.dto;
+
+import java.util.UUID;
+
+public record BatchItemResult(
+        int index,
+        String status,
+        UUID id,
+        String error) {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+    public static final String DUPLICATE = "DUPLICATE";
+
+    public static BatchItemResult accepted(int index, UUID id) {
+        return new BatchItemResult(index, ACCEPTED, id, null);
+    }
+
+    /**
+     * The event repeats a client event id that was already stored; {@code id}
+     * is the id of the stored event.
+     */
+    public static BatchItemResult duplicate(int index, UUID id) {
+        return new BatchItemResult(index, DUPLICATE, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, REJECTED, null, error);
+    }
+}
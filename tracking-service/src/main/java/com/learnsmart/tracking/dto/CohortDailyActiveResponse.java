@@ -0,0 +1,20 @@
+package com.learnsmart.tracking.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Daily active users of a cohort, one entry per day in [from, to] including
+ * days without activity.
+ */
+public record CohortDailyActiveResponse(
+        int cohortSize,
+        LocalDate from,
+        LocalDate to,
+        List<Day> days) {
+
+    public record Day(
+            LocalDate date,
+            long activeUsers) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.learnsmart.tracking.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Distinct counts across a cohort. Lesson and assessment counts are exact
+ * while {@code exact} is true and HyperLogLog estimates otherwise.
+ */
+public record CohortDistinctResponse(
+        int cohortSize,
+        LocalDate from,
+        LocalDate to,
+        long activeLearners,
+        long distinctLessons,
+        long distinctAssessments,
+        boolean exact) {
+}
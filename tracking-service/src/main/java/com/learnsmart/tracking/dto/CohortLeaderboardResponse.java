@@ -0,0 +1,17 @@
+package com.learnsmart.tracking.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record CohortLeaderboardResponse(
+        int cohortSize,
+        List<Entry> entries) {
+
+    public record Entry(
+            int rank,
+            UUID userId,
+            double totalHours,
+            int currentStreak,
+            long lessonsCompleted) {
+    }
+}
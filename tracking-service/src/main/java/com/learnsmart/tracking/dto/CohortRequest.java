@@ -0,0 +1,15 @@
+package com.learnsmart.tracking.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of the /analytics/cohorts endpoints. {@code from} and {@code to} are
+ * ignored by the views that only read the current rollups.
+ */
+public record CohortRequest(
+        List<UUID> userIds,
+        LocalDate from,
+        LocalDate to) {
+}
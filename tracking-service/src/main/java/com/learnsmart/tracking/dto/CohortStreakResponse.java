@@ -0,0 +1,20 @@
+package com.learnsmart.tracking.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Streak histogram of a cohort. Users without any activity are counted in
+ * the zero-day bucket; {@code maxDays} is null for the open-ended last bucket.
+ */
+public record CohortStreakResponse(
+        int cohortSize,
+        LocalDate asOf,
+        List<Bucket> buckets) {
+
+    public record Bucket(
+            int minDays,
+            Integer maxDays,
+            long users) {
+    }
+}
@@ -5,10 +5,18 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.util.UUID;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "learning_events_v2")
+@Table(name = "learning_events_v2", indexes = {
+        @Index(name = "idx_learning_events_user_occurred", columnList = "user_id, occurred_at DESC"),
+        @Index(name = "idx_learning_events_type_occurred", columnList = "event_type, occurred_at DESC"),
+        @Index(name = "idx_learning_events_entity", columnList = "entity_id, entity_type"),
+        @Index(name = "idx_learning_events_occurred", columnList = "occurred_at DESC"),
+        @Index(name = "uq_learning_events_client_event", columnList = "user_id, client_event_id, occurred_at",
+                unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,6 +41,13 @@ public class LearningEvent {
     @Column(name = "occurred_at", nullable = false)
     private OffsetDateTime occurredAt;
 
+    /**
+     * Client-generated id used to drop retried submissions of the same event
+     * (sent as {@code clientEventId} or the {@code Idempotency-Key} header).
+     */
+    @Column(name = "client_event_id", length = 100)
+    private String clientEventId;
+
     @Column(columnDefinition = "TEXT")
     private String payload; // JSONB in Postgres
 
@@ -42,6 +57,28 @@ public class LearningEvent {
     @Column(name = "deleted_at")
     private OffsetDateTime deletedAt;
 
+    /**
+     * IANA zone of the user when the event was ingested, from their profile
+     * (see UserTimezoneResolver); null for events stored before it was
+     * recorded.
+     */
+    @Column(name = "time_zone", length = 64)
+    private String timeZone;
+
+    /**
+     * Calendar day of occurredAt in {@link #timeZone}: the day the event
+     * counts towards for streaks and daily activity.
+     */
+    @Column(name = "local_day")
+    private LocalDate localDay;
+
+    public LearningEvent(UUID id, UUID userId, String eventType, String entityType, UUID entityId,
+            OffsetDateTime occurredAt, String clientEventId, String payload, OffsetDateTime createdAt,
+            OffsetDateTime deletedAt) {
+        this(id, userId, eventType, entityType, entityId, occurredAt, clientEventId, payload, createdAt, deletedAt,
+                null, null);
+    }
+
     @PrePersist
     public void prePersist() {
         if (createdAt == null)
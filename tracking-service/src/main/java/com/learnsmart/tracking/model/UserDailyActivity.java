@@ -0,0 +1,44 @@
+package com.learnsmart.tracking.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Per-user, per-day event totals maintained at ingest time.
+ */
+@Entity
+@Table(name = "user_daily_activity")
+@IdClass(UserDailyActivity.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDailyActivity {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(name = "activity_day")
+    private LocalDate day;
+
+    @Column(name = "event_count", nullable = false)
+    private long eventCount;
+
+    @Column(name = "duration_seconds", nullable = false)
+    private double durationSeconds;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID userId;
+        private LocalDate day;
+    }
+}
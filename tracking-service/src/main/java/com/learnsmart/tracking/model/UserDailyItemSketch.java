@@ -0,0 +1,47 @@
+package com.learnsmart.tracking.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Distinct lessons or assessments a user touched on one day, as a serialized
+ * sketch. Cohort queries merge these rows instead of reading raw events.
+ */
+@Entity
+@Table(name = "user_daily_item_sketches")
+@IdClass(UserDailyItemSketch.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDailyItemSketch {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(name = "activity_day")
+    private LocalDate day;
+
+    @Id
+    @Column(name = "item_kind", length = 20)
+    private String itemKind;
+
+    @Column(name = "sketch", nullable = false, length = UserStatsRollup.SKETCH_MAX_BYTES)
+    private byte[] sketch;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID userId;
+        private LocalDate day;
+        private String itemKind;
+    }
+}
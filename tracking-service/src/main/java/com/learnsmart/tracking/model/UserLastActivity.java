@@ -0,0 +1,12 @@
+package com.learnsmart.tracking.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * When a user's latest event occurred, read for many users at once.
+ */
+public record UserLastActivity(
+        UUID userId,
+        OffsetDateTime lastActivityAt) {
+}
@@ -0,0 +1,126 @@
+package com.learnsmart.tracking.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Running per-user statistics, updated as events are ingested so the stats
+ * endpoint does not have to rescan learning_events_v2.
+ */
+@Entity
+@Table(name = "user_stats_rollup")
+@Data
+@NoArgsConstructor
+public class UserStatsRollup {
+
+    /** Upper bound of a serialized sketch, with room to spare. */
+    public static final int SKETCH_MAX_BYTES = 8192;
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "total_events", nullable = false)
+    private long totalEvents;
+
+    @Column(name = "total_seconds", nullable = false)
+    private double totalSeconds;
+
+    @Column(name = "last_active_day")
+    private LocalDate lastActiveDay;
+
+    @Column(name = "current_streak", nullable = false)
+    private int currentStreak;
+
+    /**
+     * Zone of the user's latest event; lastActiveDay and the streak are in
+     * this zone's calendar. Null means UTC.
+     */
+    @Column(name = "time_zone", length = 64)
+    private String timeZone;
+
+    @Column(name = "lessons_completed", nullable = false)
+    private long lessonsCompleted;
+
+    @Column(name = "assessments_taken", nullable = false)
+    private long assessmentsTaken;
+
+    /**
+     * Serialized distinct-count sketches behind lessonsCompleted and
+     * assessmentsTaken (see UserStatsRollupService).
+     */
+    @Column(name = "lessons_sketch", length = SKETCH_MAX_BYTES)
+    private byte[] lessonsSketch;
+
+    @Column(name = "assessments_sketch", length = SKETCH_MAX_BYTES)
+    private byte[] assessmentsSketch;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    public UserStatsRollup(UUID userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Adds one event to the running totals and advances the streak.
+     * Events are expected roughly in time order. A late event that extends the
+     * current streak backwards by one day still counts; other late events leave
+     * the streak unchanged until the next rebuild.
+     */
+    public void record(LocalDate day, double durationSeconds) {
+        totalEvents++;
+        totalSeconds += durationSeconds;
+
+        if (lastActiveDay == null || day.isAfter(lastActiveDay.plusDays(1))) {
+            lastActiveDay = day;
+            currentStreak = 1;
+        } else if (day.equals(lastActiveDay.plusDays(1))) {
+            lastActiveDay = day;
+            currentStreak++;
+        } else if (day.equals(lastActiveDay.minusDays(currentStreak))) {
+            currentStreak++;
+        }
+    }
+
+    /**
+     * Streak as of the given day: a streak only counts while the user was
+     * active today or yesterday.
+     */
+    public int streakAsOf(LocalDate today) {
+        return streakAsOf(lastActiveDay, currentStreak, today);
+    }
+
+    /**
+     * Streak at the given instant, judged against the user's own calendar
+     * day in {@link #timeZone}.
+     */
+    public int streakAt(Instant now) {
+        return streakAsOf(localDay(timeZone, now));
+    }
+
+    static LocalDate localDay(String timeZone, Instant now) {
+        return LocalDate.ofInstant(now, timeZone != null ? ZoneId.of(timeZone) : ZoneOffset.UTC);
+    }
+
+    static int streakAsOf(LocalDate lastActiveDay, int currentStreak, LocalDate today) {
+        if (lastActiveDay == null || lastActiveDay.isBefore(today.minusDays(1))) {
+            return 0;
+        }
+        return currentStreak;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = OffsetDateTime.now();
+    }
+}
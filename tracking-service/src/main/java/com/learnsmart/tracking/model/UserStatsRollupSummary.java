@@ -0,0 +1,26 @@
+package com.learnsmart.tracking.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * The columns of a {@link UserStatsRollup} that cohort views read, without
+ * the sketch columns.
+ */
+public record UserStatsRollupSummary(
+        UUID userId,
+        double totalSeconds,
+        LocalDate lastActiveDay,
+        int currentStreak,
+        String timeZone,
+        long lessonsCompleted) {
+
+    public int streakAsOf(LocalDate today) {
+        return UserStatsRollup.streakAsOf(lastActiveDay, currentStreak, today);
+    }
+
+    public int streakAt(Instant now) {
+        return streakAsOf(UserStatsRollup.localDay(timeZone, now));
+    }
+}
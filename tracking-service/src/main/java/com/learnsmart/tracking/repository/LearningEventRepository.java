@@ -1,30 +1,106 @@
 package com.learnsmart.tracking.repository;
 
 import com.learnsmart.tracking.model.LearningEvent;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.learnsmart.tracking.model.UserLastActivity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 
-public interface LearningEventRepository extends JpaRepository<LearningEvent, UUID> {
-
-    @Query("SELECT e FROM LearningEvent e WHERE " +
-            "(:userId IS NULL OR e.userId = :userId) AND " +
-            "(:eventType IS NULL OR e.eventType = :eventType) AND " +
-            "(:entityType IS NULL OR e.entityType = :entityType) AND " +
-            "(:entityId IS NULL OR e.entityId = :entityId) AND " +
-            "(cast(:from as timestamp) IS NULL OR e.occurredAt >= :from) AND " +
-            "(cast(:to as timestamp) IS NULL OR e.occurredAt <= :to) AND " +
-            "e.deletedAt IS NULL")
-    Page<LearningEvent> findEvents(
-            @Param("userId") UUID userId,
-            @Param("eventType") String eventType,
-            @Param("entityType") String entityType,
-            @Param("entityId") UUID entityId,
+public interface LearningEventRepository extends JpaRepository<LearningEvent, UUID>,
+        JpaSpecificationExecutor<LearningEvent> {
+
+    Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "occurredAt", "id");
+
+    /**
+     * Returns at most {@code limit} events matching {@code spec}, newest first,
+     * without a COUNT query.
+     */
+    default List<LearningEvent> findNewestFirst(Specification<LearningEvent> spec, int limit) {
+        return findBy(spec, q -> q.sortBy(NEWEST_FIRST).limit(limit).all());
+    }
+
+    /**
+     * Streams a user's events in time order. Must be consumed inside a
+     * transaction and closed by the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM LearningEvent e WHERE e.userId = :userId AND e.deletedAt IS NULL ORDER BY e.occurredAt ASC")
+    Stream<LearningEvent> streamByUser(@Param("userId") UUID userId);
+
+    /**
+     * Ids of events stored for a client event id (at most one is expected).
+     * Served by the uq_learning_events_client_event index.
+     */
+    @Query("SELECT e.id FROM LearningEvent e WHERE e.userId = :userId AND e.clientEventId = :clientEventId")
+    List<UUID> findIdsByClientEventId(@Param("userId") UUID userId,
+            @Param("clientEventId") String clientEventId,
+            Limit limit);
+
+    /**
+     * Latest event time of each of the given users that has any events. Each
+     * user is looked up on its own and stops at the newest event not deleted,
+     * walking idx_learning_events_user_occurred from the top, so the cost does
+     * not grow with the length of a user's history.
+     */
+    default List<UserLastActivity> findLastActivity(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return findLastActivityRows(userIds.toArray(UUID[]::new)).stream()
+                .filter(row -> row[1] != null)
+                .map(row -> new UserLastActivity(UUID.fromString((String) row[0]), toOffsetDateTime(row[1])))
+                .toList();
+    }
+
+    /**
+     * (user_id, occurred_at) rows behind {@link #findLastActivity}, with a
+     * null time for users without events. The id is read back as text, as
+     * drivers differ in how they return a uuid column of a native query. The per-user subquery is the
+     * portable form of a LATERAL join (which H2 lacks); Postgres runs it as
+     * one LIMIT 1 index scan per user either way.
+     */
+    @Query(value = "SELECT CAST(u.user_id AS VARCHAR(36)), (SELECT e.occurred_at FROM learning_events_v2 e " +
+            "WHERE e.user_id = u.user_id AND e.deleted_at IS NULL " +
+            "ORDER BY e.occurred_at DESC LIMIT 1) " +
+            "FROM unnest(CAST(:userIds AS uuid ARRAY)) AS u(user_id)",
+            nativeQuery = true)
+    List<Object[]> findLastActivityRows(@Param("userIds") UUID[] userIds);
+
+    private static OffsetDateTime toOffsetDateTime(Object value) {
+        return value instanceof Instant instant ? instant.atOffset(ZoneOffset.UTC) : (OffsetDateTime) value;
+    }
+
+    @Query("SELECT DISTINCT e.userId FROM LearningEvent e WHERE e.deletedAt IS NULL")
+    List<UUID> findDistinctUserIds();
+
+    /**
+     * Streams a user's events in [from, to) in time order. Must be consumed
+     * inside a transaction and closed by the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM LearningEvent e WHERE e.userId = :userId AND e.deletedAt IS NULL " +
+            "AND e.occurredAt >= :from AND e.occurredAt < :to ORDER BY e.occurredAt ASC")
+    Stream<LearningEvent> streamByUserBetween(@Param("userId") UUID userId,
             @Param("from") OffsetDateTime from,
-            @Param("to") OffsetDateTime to,
-            Pageable pageable);
+            @Param("to") OffsetDateTime to);
 }
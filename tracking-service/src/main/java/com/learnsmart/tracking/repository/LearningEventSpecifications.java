@@ -0,0 +1,78 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.dto.EventCursor;
+import com.learnsmart.tracking.model.LearningEvent;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds event queries that contain only the predicates actually supplied.
+ * <p>
+ * Unlike the catch-all {@code (:param IS NULL OR col = :param)} form, every
+ * filter combination produces its own SQL text, so the planner sees plain
+ * equality and range conditions and can pick the matching index
+ * ({@code idx_learning_events_user_occurred}, {@code idx_learning_events_type_occurred},
+ * {@code idx_learning_events_entity} or {@code idx_learning_events_occurred}).
+ */
+public final class LearningEventSpecifications {
+
+    private LearningEventSpecifications() {
+    }
+
+    /**
+     * Matches non-deleted events; null arguments are left out of the query.
+     * {@code from} and {@code to} are both inclusive.
+     */
+    public static Specification<LearningEvent> matching(UUID userId, String eventType, String entityType,
+            UUID entityId, OffsetDateTime from, OffsetDateTime to) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (userId != null) {
+                predicates.add(cb.equal(root.get("userId"), userId));
+            }
+            if (eventType != null) {
+                predicates.add(cb.equal(root.get("eventType"), eventType));
+            }
+            if (entityType != null) {
+                predicates.add(cb.equal(root.get("entityType"), entityType));
+            }
+            if (entityId != null) {
+                predicates.add(cb.equal(root.get("entityId"), entityId));
+            }
+            Path<OffsetDateTime> occurredAt = root.get("occurredAt");
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(occurredAt, from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThanOrEqualTo(occurredAt, to));
+            }
+            predicates.add(cb.isNull(root.get("deletedAt")));
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Matches events strictly after {@code cursor} in (occurredAt DESC, id DESC) order.
+     * <p>
+     * The redundant {@code occurredAt <= cursor} term is ANDed in front of the OR so
+     * the planner can use it as the upper bound of the index range scan; an OR on
+     * its own is only applied as a filter.
+     */
+    public static Specification<LearningEvent> olderThan(EventCursor cursor) {
+        return (root, query, cb) -> {
+            Path<OffsetDateTime> occurredAt = root.get("occurredAt");
+            Path<UUID> id = root.get("id");
+            return cb.and(
+                    cb.lessThanOrEqualTo(occurredAt, cursor.occurredAt()),
+                    cb.or(
+                            cb.lessThan(occurredAt, cursor.occurredAt()),
+                            cb.and(cb.equal(occurredAt, cursor.occurredAt()), cb.lessThan(id, cursor.id()))));
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.model.UserDailyActivity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface UserDailyActivityRepository extends JpaRepository<UserDailyActivity, UserDailyActivity.Key> {
+
+    List<UserDailyActivity> findByUserIdAndDayBetweenOrderByDayAsc(UUID userId, LocalDate from, LocalDate to);
+
+    /**
+     * Number of the given users with any activity in [from, to].
+     */
+    @Query("SELECT COUNT(DISTINCT a.userId) FROM UserDailyActivity a " +
+            "WHERE a.userId IN :userIds AND a.day BETWEEN :from AND :to")
+    long countActiveUsers(@Param("userIds") Collection<UUID> userIds,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Active users among the given ones per day in [from, to], as
+     * (day, count) pairs in day order. Days without activity are absent.
+     */
+    @Query("SELECT a.day, COUNT(a.userId) FROM UserDailyActivity a " +
+            "WHERE a.userId IN :userIds AND a.day BETWEEN :from AND :to GROUP BY a.day ORDER BY a.day")
+    List<Object[]> countActiveUsersByDay(@Param("userIds") Collection<UUID> userIds,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Adds counts to a user's day, creating the row on first activity.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_daily_activity (user_id, activity_day, event_count, duration_seconds) " +
+            "VALUES (:userId, :day, :eventCount, :durationSeconds) " +
+            "ON CONFLICT (user_id, activity_day) DO UPDATE SET " +
+            "event_count = user_daily_activity.event_count + EXCLUDED.event_count, " +
+            "duration_seconds = user_daily_activity.duration_seconds + EXCLUDED.duration_seconds",
+            nativeQuery = true)
+    void increment(@Param("userId") UUID userId, @Param("day") LocalDate day,
+            @Param("eventCount") long eventCount, @Param("durationSeconds") double durationSeconds);
+
+    @Modifying
+    @Query("DELETE FROM UserDailyActivity a WHERE a.userId = :userId")
+    void deleteByUser(@Param("userId") UUID userId);
+}
@@ -0,0 +1,34 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface UserDailyItemSketchRepository extends JpaRepository<UserDailyItemSketch, UserDailyItemSketch.Key> {
+
+    /**
+     * Streams the daily sketches of the given users in [from, to]. Must be
+     * consumed inside a transaction and closed by the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM UserDailyItemSketch s WHERE s.userId IN :userIds AND s.day BETWEEN :from AND :to")
+    Stream<UserDailyItemSketch> streamForUsersBetween(@Param("userIds") Collection<UUID> userIds,
+            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM UserDailyItemSketch s WHERE s.userId = :userId")
+    void deleteByUser(@Param("userId") UUID userId);
+}
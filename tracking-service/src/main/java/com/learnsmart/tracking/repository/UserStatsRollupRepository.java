@@ -0,0 +1,46 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.model.UserStatsRollup;
+import com.learnsmart.tracking.model.UserStatsRollupSummary;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface UserStatsRollupRepository extends JpaRepository<UserStatsRollup, UUID> {
+
+    /**
+     * Creates an empty rollup row unless one exists, so concurrent first events
+     * for a user never fail on the primary key.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_stats_rollup (user_id, total_events, total_seconds, current_streak, " +
+            "lessons_completed, assessments_taken, updated_at) " +
+            "VALUES (:userId, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP) ON CONFLICT (user_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("userId") UUID userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM UserStatsRollup r WHERE r.userId = :userId")
+    Optional<UserStatsRollup> findForUpdate(@Param("userId") UUID userId);
+
+    /**
+     * Streams the rollups of the given users without their sketches. Must be
+     * consumed inside a transaction and closed by the caller.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.learnsmart.tracking.model.UserStatsRollupSummary(" +
+            "r.userId, r.totalSeconds, r.lastActiveDay, r.currentStreak, r.timeZone, r.lessonsCompleted) " +
+            "FROM UserStatsRollup r WHERE r.userId IN :userIds")
+    Stream<UserStatsRollupSummary> streamSummaries(@Param("userIds") Collection<UUID> userIds);
+}
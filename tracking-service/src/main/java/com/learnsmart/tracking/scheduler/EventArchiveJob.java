@@ -0,0 +1,52 @@
+package com.learnsmart.tracking.scheduler;
+
+import com.learnsmart.tracking.service.EventArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Archives months of learning events that are older than
+ * {@code after-months} into the columnar cold-storage files (see
+ * {@link com.learnsmart.tracking.service.EventArchive}). Disabled while
+ * {@code after-months} is 0.
+ */
+@Slf4j
+@Component
+public class EventArchiveJob {
+
+    private final EventArchiveService archiveService;
+    private final int afterMonths;
+
+    public EventArchiveJob(EventArchiveService archiveService,
+            @Value("${tracking.archive.after-months:0}") int afterMonths) {
+        this.archiveService = archiveService;
+        this.afterMonths = afterMonths;
+    }
+
+    /**
+     * Runs daily at 3:45 AM, after partition maintenance.
+     */
+    @Scheduled(cron = "${tracking.archive.cron:0 45 3 * * *}")
+    public void archiveClosedMonths() {
+        if (afterMonths <= 0) {
+            return;
+        }
+        try {
+            archive(YearMonth.now(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            log.error("Event archiving failed: {}", e.getMessage());
+        }
+    }
+
+    void archive(YearMonth currentMonth) {
+        int months = archiveService.archiveBefore(currentMonth.minusMonths(afterMonths));
+        if (months > 0) {
+            log.info("Archived {} months of learning events", months);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.learnsmart.tracking.scheduler;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the monthly partitions of learning_events_v2 in shape.
+ * <p>
+ * Runs once at startup (before the service accepts events) and then daily. It
+ * creates the current month's partition plus {@code premake-months} future
+ * ones, and, when {@code retention-months} is positive, detaches partitions
+ * that lie entirely before the retention window. Detached partitions are
+ * kept as standalone tables for archiving unless {@code drop-expired} is set.
+ * Partition bounds are UTC month boundaries.
+ */
+@Slf4j
+@Component
+public class EventPartitionMaintenanceJob {
+
+    static final String PARENT_TABLE = "learning_events_v2";
+    private static final String PARTITION_PREFIX = PARENT_TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String IS_PARTITIONED_SQL = "SELECT count(*) FROM pg_partitioned_table pt "
+            + "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ?";
+    private static final String LIST_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid "
+            + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final boolean dropExpired;
+
+    public EventPartitionMaintenanceJob(JdbcTemplate jdbcTemplate,
+            @Value("${tracking.partitions.enabled:true}") boolean enabled,
+            @Value("${tracking.partitions.premake-months:3}") int premakeMonths,
+            @Value("${tracking.partitions.retention-months:0}") int retentionMonths,
+            @Value("${tracking.partitions.drop-expired:false}") boolean dropExpired) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.dropExpired = dropExpired;
+    }
+
+    @PostConstruct
+    void maintainOnStartup() {
+        maintainPartitions();
+    }
+
+    /**
+     * Scheduled partition maintenance. Runs daily at 3:15 AM (UTC month
+     * boundaries are checked every day, so a missed run is caught up by the next).
+     */
+    @Scheduled(cron = "${tracking.partitions.cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            maintain(YearMonth.now(ZoneOffset.UTC));
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance for {} failed: {}", PARENT_TABLE, e.getMessage());
+        }
+    }
+
+    synchronized void maintain(YearMonth currentMonth) {
+        Integer partitioned = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Integer.class, PARENT_TABLE);
+        if (partitioned == null || partitioned == 0) {
+            log.warn("{} is not a partitioned table, skipping partition maintenance", PARENT_TABLE);
+            return;
+        }
+        List<String> existing = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, PARENT_TABLE);
+
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            if (!existing.contains(partitionName(month))) {
+                createPartition(month);
+            }
+        }
+
+        if (retentionMonths > 0) {
+            YearMonth oldestRetained = currentMonth.minusMonths(retentionMonths);
+            for (String partition : existing) {
+                parseMonth(partition)
+                        .filter(month -> month.isBefore(oldestRetained))
+                        .ifPresent(month -> expirePartition(partition));
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    name, PARENT_TABLE, monthStart(month), monthStart(month.plusMonths(1))));
+            log.info("Created partition {}", name);
+        } catch (DataAccessException e) {
+            // Typically rows for this month already sit in the default partition
+            log.warn("Could not create partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void expirePartition(String name) {
+        jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", PARENT_TABLE, name));
+        if (dropExpired) {
+            jdbcTemplate.execute(String.format("DROP TABLE %s", name));
+            log.info("Dropped expired partition {}", name);
+        } else {
+            log.info("Detached expired partition {}", name);
+        }
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    static Optional<YearMonth> parseMonth(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String monthStart(YearMonth month) {
+        return month.atDay(1) + " 00:00:00+00";
+    }
+}
@@ -0,0 +1,121 @@
+package com.learnsmart.tracking.scheduler;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.service.EventSpool;
+import com.learnsmart.tracking.service.LearningEventWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves events from the local {@link EventSpool} back into the database.
+ * <p>
+ * Every {@code replay-interval} the job stores spooled events in batches of
+ * {@code replay-batch-size}, oldest first, until the spool is empty or the
+ * database fails again. While the database is marked down and nothing is
+ * spooled, a {@code SELECT 1} decides when ingest may write directly again.
+ * A batch rejected for any other reason is retried event by event, and
+ * events the database still refuses are logged and dropped so one bad event
+ * cannot block the spool.
+ */
+@Slf4j
+@Component
+public class SpoolReplayJob {
+
+    private final EventSpool spool;
+    private final LearningEventWriter eventWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    private final Counter replayedCounter;
+    private final Counter droppedCounter;
+
+    public SpoolReplayJob(EventSpool spool,
+            LearningEventWriter eventWriter,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.spool.replay-batch-size:500}") int batchSize) {
+        this.spool = spool;
+        this.eventWriter = eventWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+
+        this.replayedCounter = Counter.builder("tracking.spool.replayed")
+                .description("Spooled events replayed into the database")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("tracking.spool.dropped")
+                .description("Spooled events the database rejected on replay")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.spool.replay-interval:PT5S}")
+    public void replay() {
+        if (!spool.isEnabled()) {
+            return;
+        }
+        while (true) {
+            EventSpool.Batch batch = spool.readBatch(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (!store(batch.events())) {
+                return;
+            }
+            spool.commit(batch);
+        }
+        if (spool.isDatabaseDown() && databaseReachable()) {
+            spool.markDatabaseUp();
+        }
+    }
+
+    /**
+     * @return false if the database could not be reached; the batch stays
+     *         in the spool
+     */
+    private boolean store(List<LearningEvent> events) {
+        try {
+            eventWriter.writeAll(events);
+            replayedCounter.increment(events.size());
+            return true;
+        } catch (RuntimeException e) {
+            if (EventSpool.isConnectivityFailure(e)) {
+                spool.markDatabaseDown();
+                return false;
+            }
+            log.warn("Replaying {} spooled events failed, retrying one by one: {}", events.size(), e.getMessage());
+        }
+
+        for (LearningEvent event : events) {
+            // The failed transaction may have assigned ids that were never stored
+            event.setId(null);
+            try {
+                eventWriter.writeAll(List.of(event));
+                replayedCounter.increment();
+            } catch (RuntimeException e) {
+                if (EventSpool.isConnectivityFailure(e)) {
+                    spool.markDatabaseDown();
+                    return false;
+                }
+                droppedCounter.increment();
+                log.error("Dropping spooled event {} of user {}: {}",
+                        event.getClientEventId(), event.getUserId(), e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean databaseReachable() {
+        try {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -1,139 +1,114 @@
 package com.learnsmart.tracking.service;
 
+import com.learnsmart.tracking.dto.CohortDistinctResponse;
 import com.learnsmart.tracking.dto.DailyActivityResponse;
 import com.learnsmart.tracking.dto.UserStatsResponse;
 import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import com.learnsmart.tracking.model.UserLastActivity;
 import com.learnsmart.tracking.repository.LearningEventRepository;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import com.learnsmart.tracking.repository.UserDailyItemSketchRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AnalyticsService {
 
+    private final UserStatsRollupRepository rollupRepository;
+    private final UserDailyActivityRepository activityRepository;
+    private final UserDailyItemSketchRepository sketchRepository;
+    private final EntityManager entityManager;
+    private final UserAnalyticsCache cache;
     private final LearningEventRepository eventRepository;
 
+    /**
+     * Reads the user's precomputed rollup: a single primary-key lookup instead
+     * of a rescan of their events. The streak is judged against today in the
+     * user's own time zone. Served from {@link UserAnalyticsCache} while
+     * the user has no new events.
+     */
     public UserStatsResponse calculateStats(UUID userId) {
-        // Get all events for the user (paginated to avoid memory issues)
-        var events = eventRepository.findEvents(
-                userId, null, null, null, null, null,
-                PageRequest.of(0, 10000)).getContent();
-
-        // Calculate total hours from duration in payloads
-        double totalHours = events.stream()
-                .mapToDouble(this::extractDurationSeconds)
-                .sum() / 3600.0;
-
-        // Calculate current streak
-        int streak = calculateStreak(events);
-
-        // Count unique lessons completed
-        long lessonsCompleted = events.stream()
-                .filter(e -> "content_view".equals(e.getEventType()))
-                .map(LearningEvent::getEntityId)
-                .filter(Objects::nonNull)
-                .distinct()
-                .count();
-
-        // Count assessments taken
-        long assessmentsTaken = events.stream()
-                .filter(e -> "assessment_completed".equals(e.getEventType()) ||
-                        "assessment_started".equals(e.getEventType()))
-                .map(LearningEvent::getEntityId)
-                .filter(Objects::nonNull)
-                .distinct()
-                .count();
-
-        return new UserStatsResponse(
-                totalHours,
-                streak,
-                lessonsCompleted,
-                assessmentsTaken,
-                events.size());
+        return cache.stats(userId, () -> rollupRepository.findById(userId)
+                .map(UserAnalyticsCache.StatsSnapshot::of)
+                .orElse(UserAnalyticsCache.StatsSnapshot.EMPTY));
     }
 
+    /**
+     * Reads the pre-aggregated daily rows for the range; days without
+     * activity are omitted. Served from {@link UserAnalyticsCache} while the
+     * user has no new events.
+     */
     public List<DailyActivityResponse> getActivity(UUID userId, LocalDate from, LocalDate to) {
-        OffsetDateTime fromDateTime = from.atStartOfDay(ZoneOffset.UTC).toOffsetDateTime();
-        OffsetDateTime toDateTime = to.atTime(23, 59, 59).atOffset(ZoneOffset.UTC);
-
-        var events = eventRepository.findEvents(
-                userId, null, null, null, fromDateTime, toDateTime,
-                PageRequest.of(0, 10000)).getContent();
-
-        // Group by date
-        Map<LocalDate, List<LearningEvent>> byDay = events.stream()
-                .collect(Collectors.groupingBy(e -> e.getOccurredAt().toLocalDate()));
-
-        // Convert to response
-        return byDay.entrySet().stream()
-                .map(entry -> new DailyActivityResponse(
-                        entry.getKey(),
-                        entry.getValue().size(),
-                        calculateDailyHours(entry.getValue())))
-                .sorted(Comparator.comparing(DailyActivityResponse::date))
-                .toList();
+        return cache.activity(userId, from, to, () ->
+                activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, from, to).stream()
+                        .map(day -> new DailyActivityResponse(
+                                day.getDay(),
+                                (int) day.getEventCount(),
+                                day.getDurationSeconds() / 3600.0))
+                        .toList());
     }
 
-    private double extractDurationSeconds(LearningEvent event) {
-        if (event.getPayload() == null)
-            return 0.0;
-
-        // Try to extract duration from payload - handle both integer and string formats
-        String payload = event.getPayload();
-        try {
-            // Expected format: {"durationSeconds": 120} or simple JSON string
-            if (payload.contains("durationSeconds")) {
-                String value = payload.split("durationSeconds")[1]
-                        .replaceAll("[^0-9]", "");
-                if (!value.isEmpty()) {
-                    return Double.parseDouble(value);
-                }
-            }
-        } catch (Exception e) {
-            // Payload might not have duration - return 0
-        }
-        return 0.0;
+    /**
+     * When each of the given users was last active, in one grouped query over
+     * the event index. Users without events are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<UserLastActivity> lastActivity(Collection<UUID> userIds) {
+        return eventRepository.findLastActivity(new HashSet<>(userIds));
     }
 
-    private int calculateStreak(List<LearningEvent> events) {
-        if (events.isEmpty())
-            return 0;
-
-        // Get unique days with activity
-        Set<LocalDate> uniqueDays = events.stream()
-                .map(e -> e.getOccurredAt().toLocalDate())
-                .collect(Collectors.toSet());
-
-        // Count consecutive days back from today
-        LocalDate today = LocalDate.now();
-        int streak = 0;
-
-        // Check if there's activity today or yesterday
-        if (!uniqueDays.contains(today) && !uniqueDays.contains(today.minusDays(1))) {
-            return 0;
+    /**
+     * Distinct active learners, lessons and assessments across the given users
+     * in [from, to]. Item counts merge the users' daily sketches row by row, so
+     * memory stays at two sketches however large the cohort or range.
+     */
+    @Transactional(readOnly = true)
+    public CohortDistinctResponse cohortDistinct(Collection<UUID> userIds, LocalDate from, LocalDate to) {
+        Set<UUID> cohort = new HashSet<>(userIds);
+        HyperLogLog lessons = new HyperLogLog();
+        HyperLogLog assessments = new HyperLogLog();
+
+        try (Stream<UserDailyItemSketch> rows = sketchRepository.streamForUsersBetween(cohort, from, to)) {
+            rows.forEach(row -> {
+                HyperLogLog target = UserStatsRollupService.ITEM_LESSON.equals(row.getItemKind()) ? lessons : assessments;
+                target.merge(HyperLogLog.fromBytes(row.getSketch()));
+                entityManager.detach(row);
+            });
         }
 
-        // Start from yesterday if no activity today
-        LocalDate current = uniqueDays.contains(today) ? today : today.minusDays(1);
+        return new CohortDistinctResponse(
+                cohort.size(),
+                from,
+                to,
+                activityRepository.countActiveUsers(cohort, from, to),
+                lessons.estimate(),
+                assessments.estimate(),
+                lessons.isExact() && assessments.isExact());
+    }
 
-        while (uniqueDays.contains(current)) {
-            streak++;
-            current = current.minusDays(1);
+    /**
+     * Day an event counts towards in the rollups: its local day, computed at
+     * ingest from the user's time zone. Events stored without one count
+     * towards their UTC calendar day.
+     */
+    static LocalDate activityDay(LearningEvent event) {
+        if (event.getLocalDay() != null) {
+            return event.getLocalDay();
         }
-
-        return streak;
+        return event.getOccurredAt().atZoneSameInstant(ZoneOffset.UTC).toLocalDate();
     }
 
-    private double calculateDailyHours(List<LearningEvent> events) {
-        return events.stream()
-                .mapToDouble(this::extractDurationSeconds)
-                .sum() / 3600.0;
+    static double extractDurationSeconds(LearningEvent event) {
+        return EventDurationExtractor.extractSeconds(event.getEventType(), event.getPayload());
     }
 }
@@ -0,0 +1,182 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.CohortDailyActiveResponse;
+import com.learnsmart.tracking.dto.CohortLeaderboardResponse;
+import com.learnsmart.tracking.dto.CohortStreakResponse;
+import com.learnsmart.tracking.model.UserStatsRollupSummary;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Class-level views over a cohort of users: leaderboard by hours studied,
+ * streak histogram and daily active users.
+ * <p>
+ * Leaderboard and histogram come from one streamed pass over the cohort's
+ * rollups, keeping only a top-{@value #MAX_LEADERBOARD_SIZE} heap and one
+ * counter per bucket. Daily active users are grouped by the database from
+ * user_daily_activity. Results are cached per cohort for
+ * {@code tracking.cohorts.cache-ttl}, so they can lag ingest by that long.
+ */
+@Service
+public class CohortAnalyticsService {
+
+    public static final int MAX_LEADERBOARD_SIZE = 100;
+
+    /** Lower bound of each streak bucket in days; the last bucket is open-ended. */
+    static final int[] STREAK_BUCKETS = {0, 1, 2, 4, 8, 15, 31};
+
+    // Weakest first, so the head of the heap is the entry to evict
+    private static final Comparator<UserStatsRollupSummary> LEADER_ORDER = Comparator
+            .comparingDouble(UserStatsRollupSummary::totalSeconds)
+            .thenComparing(UserStatsRollupSummary::userId, Comparator.reverseOrder());
+
+    private final UserStatsRollupRepository rollupRepository;
+    private final UserDailyActivityRepository activityRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Clock clock;
+    private final ExpiringCache<RollupKey, RollupAggregate> rollupCache;
+    private final ExpiringCache<ActivityKey, CohortDailyActiveResponse> activityCache;
+
+    @Autowired
+    public CohortAnalyticsService(UserStatsRollupRepository rollupRepository,
+            UserDailyActivityRepository activityRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${tracking.cohorts.cache-ttl:PT5M}") Duration cacheTtl,
+            @Value("${tracking.cohorts.cache-max-entries:256}") int cacheMaxEntries) {
+        this(rollupRepository, activityRepository, transactionManager, Clock.systemUTC(), cacheTtl, cacheMaxEntries);
+    }
+
+    CohortAnalyticsService(UserStatsRollupRepository rollupRepository, UserDailyActivityRepository activityRepository,
+            PlatformTransactionManager transactionManager, Clock clock, Duration cacheTtl, int cacheMaxEntries) {
+        this.rollupRepository = rollupRepository;
+        this.activityRepository = activityRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.clock = clock;
+        this.rollupCache = new ExpiringCache<>(cacheTtl, cacheMaxEntries, clock);
+        this.activityCache = new ExpiringCache<>(cacheTtl, cacheMaxEntries, clock);
+    }
+
+    /**
+     * The cohort's users with the most hours studied, at most
+     * {@value #MAX_LEADERBOARD_SIZE}. Ties rank by user id.
+     */
+    public CohortLeaderboardResponse leaderboard(Collection<UUID> userIds, int limit) {
+        RollupAggregate aggregate = rollupAggregate(userIds);
+        int size = Math.max(0, Math.min(limit, aggregate.leaders().size()));
+        return new CohortLeaderboardResponse(aggregate.cohortSize(), aggregate.leaders().subList(0, size));
+    }
+
+    /**
+     * How many of the cohort's users are on a streak of each length. Each
+     * user's streak is judged against today in their own time zone; asOf is
+     * today's UTC date.
+     */
+    public CohortStreakResponse streaks(Collection<UUID> userIds) {
+        RollupAggregate aggregate = rollupAggregate(userIds);
+        return new CohortStreakResponse(aggregate.cohortSize(), aggregate.asOf(), aggregate.streaks());
+    }
+
+    /**
+     * Number of the cohort's users active on each day in [from, to].
+     */
+    public CohortDailyActiveResponse dailyActive(Collection<UUID> userIds, LocalDate from, LocalDate to) {
+        Set<UUID> cohort = Set.copyOf(userIds);
+        return activityCache.get(new ActivityKey(cohort, from, to), () -> {
+            Map<LocalDate, Long> counts = new HashMap<>();
+            for (Object[] row : activityRepository.countActiveUsersByDay(cohort, from, to)) {
+                counts.put((LocalDate) row[0], ((Number) row[1]).longValue());
+            }
+            List<CohortDailyActiveResponse.Day> days = new ArrayList<>();
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                days.add(new CohortDailyActiveResponse.Day(day, counts.getOrDefault(day, 0L)));
+            }
+            return new CohortDailyActiveResponse(cohort.size(), from, to, days);
+        });
+    }
+
+    private RollupAggregate rollupAggregate(Collection<UUID> userIds) {
+        Set<UUID> cohort = Set.copyOf(userIds);
+        Instant now = clock.instant();
+        LocalDate today = LocalDate.ofInstant(now, clock.getZone());
+        return rollupCache.get(new RollupKey(cohort, today),
+                () -> readOnlyTransaction.execute(status -> aggregate(cohort, now, today)));
+    }
+
+    private RollupAggregate aggregate(Set<UUID> cohort, Instant now, LocalDate today) {
+        PriorityQueue<UserStatsRollupSummary> leaders = new PriorityQueue<>(LEADER_ORDER);
+        long[] streakCounts = new long[STREAK_BUCKETS.length];
+        long withRollup = 0;
+
+        try (Stream<UserStatsRollupSummary> rollups = rollupRepository.streamSummaries(cohort)) {
+            for (Iterator<UserStatsRollupSummary> it = rollups.iterator(); it.hasNext(); ) {
+                UserStatsRollupSummary rollup = it.next();
+                withRollup++;
+                streakCounts[streakBucket(rollup.streakAt(now))]++;
+
+                if (leaders.size() < MAX_LEADERBOARD_SIZE) {
+                    leaders.add(rollup);
+                } else if (LEADER_ORDER.compare(rollup, leaders.peek()) > 0) {
+                    leaders.poll();
+                    leaders.add(rollup);
+                }
+            }
+        }
+        // Users that never produced an event have no rollup row
+        streakCounts[0] += cohort.size() - withRollup;
+
+        List<UserStatsRollupSummary> ranked = new ArrayList<>(leaders);
+        ranked.sort(LEADER_ORDER.reversed());
+        List<CohortLeaderboardResponse.Entry> entries = new ArrayList<>(ranked.size());
+        for (UserStatsRollupSummary rollup : ranked) {
+            entries.add(new CohortLeaderboardResponse.Entry(
+                    entries.size() + 1,
+                    rollup.userId(),
+                    rollup.totalSeconds() / 3600.0,
+                    rollup.streakAt(now),
+                    rollup.lessonsCompleted()));
+        }
+
+        List<CohortStreakResponse.Bucket> buckets = new ArrayList<>(STREAK_BUCKETS.length);
+        for (int i = 0; i < STREAK_BUCKETS.length; i++) {
+            Integer maxDays = i + 1 < STREAK_BUCKETS.length ? STREAK_BUCKETS[i + 1] - 1 : null;
+            buckets.add(new CohortStreakResponse.Bucket(STREAK_BUCKETS[i], maxDays, streakCounts[i]));
+        }
+
+        return new RollupAggregate(cohort.size(), today, List.copyOf(entries), List.copyOf(buckets));
+    }
+
+    static int streakBucket(int streak) {
+        for (int i = STREAK_BUCKETS.length - 1; i > 0; i--) {
+            if (streak >= STREAK_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private record RollupKey(Set<UUID> cohort, LocalDate asOf) {
+    }
+
+    private record ActivityKey(Set<UUID> cohort, LocalDate from, LocalDate to) {
+    }
+
+    private record RollupAggregate(
+            int cohortSize,
+            LocalDate asOf,
+            List<CohortLeaderboardResponse.Entry> leaders,
+            List<CohortStreakResponse.Bucket> streaks) {
+    }
+}
@@ -0,0 +1,581 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact, read-mostly file of learning events stored column by column.
+ * <p>
+ * Events are written sorted by user, time and id, in row groups of up to
+ * {@value #ROW_GROUP_SIZE} rows. Each row group header records its user and
+ * time range, so a lookup reads only the groups that can contain the user,
+ * and within a group binary-searches the user column. Inside a group:
+ * <ul>
+ *   <li>UUIDs are stored as two longs (most and least significant bits);
+ *       the sorted user column is run-length encoded;</li>
+ *   <li>event and entity types are dictionary-encoded to varint codes;</li>
+ *   <li>occurredAt is a varint delta in microseconds from the previous row,
+ *       createdAt a delta from the row's own occurredAt;</li>
+ *   <li>client event ids and payloads are length-prefixed UTF-8;</li>
+ *   <li>the user's time zone is dictionary-encoded and the local day is a
+ *       varint day offset from occurredAt's UTC day (version 2 files).</li>
+ * </ul>
+ * Every group carries a CRC32C of its columns. Soft-deleted events are not
+ * archived, so deletedAt is not stored. Version 1 files, written before
+ * events had a local day, are still readable.
+ */
+final class ColumnarEventFile {
+
+    static final int ROW_GROUP_SIZE = 65_536;
+
+    private static final int MAGIC = 0x4C534541; // "LSEA"
+    private static final short VERSION = 2;
+    private static final int FILE_HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    // rowCount, bodyBytes, crc, user range (4 longs), time range (2 longs)
+    private static final int GROUP_HEADER_BYTES = 3 * Integer.BYTES + 6 * Long.BYTES;
+    private static final int V1_COLUMNS = 10;
+    private static final int COLUMNS = 12;
+
+    private ColumnarEventFile() {
+    }
+
+    /**
+     * Sort order of the file: user, then occurredAt, then id. UUIDs compare
+     * as unsigned 128-bit numbers, the same order PostgreSQL uses.
+     */
+    static int compare(UUID a, UUID b) {
+        int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    static long toMicros(OffsetDateTime time) {
+        Instant instant = time.toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    static OffsetDateTime fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L)
+                .atOffset(ZoneOffset.UTC);
+    }
+
+    /**
+     * Appends events to a new file. Events must arrive in file order; a
+     * partial row group is written on {@link #finish()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final List<LearningEvent> group = new ArrayList<>();
+        private LearningEvent last;
+        private long rowCount;
+
+        Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            channel.write(ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putShort(VERSION).flip());
+        }
+
+        void add(LearningEvent event) throws IOException {
+            if (last != null && compareRows(last, event) > 0) {
+                throw new IllegalArgumentException("Events must be added in (user, occurredAt, id) order");
+            }
+            group.add(event);
+            last = event;
+            rowCount++;
+            if (group.size() == ROW_GROUP_SIZE) {
+                writeGroup();
+            }
+        }
+
+        long rowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Writes the last row group and forces the file to disk.
+         */
+        void finish() throws IOException {
+            if (!group.isEmpty()) {
+                writeGroup();
+            }
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void writeGroup() throws IOException {
+            int rows = group.size();
+            ByteArrayOutputStream body = new ByteArrayOutputStream(rows * 64);
+            DataOutputStream out = new DataOutputStream(body);
+
+            writeColumn(out, column -> {
+                List<Integer> runStarts = new ArrayList<>();
+                for (int i = 0; i < rows; i++) {
+                    if (i == 0 || !group.get(i).getUserId().equals(group.get(i - 1).getUserId())) {
+                        runStarts.add(i);
+                    }
+                }
+                writeVarLong(column, runStarts.size());
+                for (int r = 0; r < runStarts.size(); r++) {
+                    UUID userId = group.get(runStarts.get(r)).getUserId();
+                    int runEnd = r + 1 < runStarts.size() ? runStarts.get(r + 1) : rows;
+                    writeLong(column, userId.getMostSignificantBits());
+                    writeLong(column, userId.getLeastSignificantBits());
+                    writeVarLong(column, runEnd - runStarts.get(r));
+                }
+            });
+            writeColumn(out, column -> group.forEach(e -> writeLong(column, e.getId().getMostSignificantBits())));
+            writeColumn(out, column -> group.forEach(e -> writeLong(column, e.getId().getLeastSignificantBits())));
+            writeColumn(out, column -> writeDictionary(column, group.stream().map(LearningEvent::getEventType).toList()));
+            writeColumn(out, column -> writeDictionary(column, group.stream().map(LearningEvent::getEntityType).toList()));
+            writeColumn(out, column -> {
+                byte[] present = new byte[(rows + 7) / 8];
+                for (int i = 0; i < rows; i++) {
+                    if (group.get(i).getEntityId() != null) {
+                        present[i >>> 3] |= (byte) (1 << (i & 7));
+                    }
+                }
+                column.write(present, 0, present.length);
+                for (LearningEvent e : group) {
+                    if (e.getEntityId() != null) {
+                        writeLong(column, e.getEntityId().getMostSignificantBits());
+                        writeLong(column, e.getEntityId().getLeastSignificantBits());
+                    }
+                }
+            });
+            writeColumn(out, column -> {
+                long previous = 0;
+                for (LearningEvent e : group) {
+                    long micros = toMicros(e.getOccurredAt());
+                    writeSignedVarLong(column, micros - previous);
+                    previous = micros;
+                }
+            });
+            writeColumn(out, column -> group.forEach(e -> writeSignedVarLong(column,
+                    e.getCreatedAt() == null ? 0 : toMicros(e.getCreatedAt()) - toMicros(e.getOccurredAt()))));
+            writeColumn(out, column -> group.forEach(e -> writeString(column, e.getClientEventId())));
+            writeColumn(out, column -> group.forEach(e -> writeString(column, e.getPayload())));
+            writeColumn(out, column -> writeDictionary(column, group.stream().map(LearningEvent::getTimeZone).toList()));
+            writeColumn(out, column -> group.forEach(e -> writeVarLong(column, e.getLocalDay() == null ? 0
+                    : zigzag(e.getLocalDay().toEpochDay() - utcDay(toMicros(e.getOccurredAt()))) + 1)));
+            out.flush();
+
+            byte[] bytes = body.toByteArray();
+            CRC32C crc = new CRC32C();
+            crc.update(bytes);
+            LearningEvent first = group.get(0);
+            LearningEvent lastRow = group.get(rows - 1);
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+            for (LearningEvent e : group) {
+                long micros = toMicros(e.getOccurredAt());
+                minTime = Math.min(minTime, micros);
+                maxTime = Math.max(maxTime, micros);
+            }
+            ByteBuffer header = ByteBuffer.allocate(GROUP_HEADER_BYTES)
+                    .putInt(rows)
+                    .putInt(bytes.length)
+                    .putInt((int) crc.getValue())
+                    .putLong(first.getUserId().getMostSignificantBits())
+                    .putLong(first.getUserId().getLeastSignificantBits())
+                    .putLong(lastRow.getUserId().getMostSignificantBits())
+                    .putLong(lastRow.getUserId().getLeastSignificantBits())
+                    .putLong(minTime)
+                    .putLong(maxTime)
+                    .flip();
+            writeFully(header);
+            writeFully(ByteBuffer.wrap(bytes));
+            group.clear();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private static void writeColumn(DataOutputStream out, Consumer<ByteArrayOutputStream> encoder)
+                throws IOException {
+            ByteArrayOutputStream column = new ByteArrayOutputStream();
+            encoder.accept(column);
+            out.writeInt(column.size());
+            column.writeTo(out);
+        }
+
+        private static void writeDictionary(ByteArrayOutputStream column, List<String> values) {
+            Map<String, Integer> codes = new LinkedHashMap<>();
+            for (String value : values) {
+                if (value != null) {
+                    codes.putIfAbsent(value, codes.size());
+                }
+            }
+            writeVarLong(column, codes.size());
+            codes.keySet().forEach(value -> writeString(column, value));
+            for (String value : values) {
+                // 0 is null; dictionary entries start at 1
+                writeVarLong(column, value == null ? 0 : codes.get(value) + 1);
+            }
+        }
+
+        private static int compareRows(LearningEvent a, LearningEvent b) {
+            int cmp = compare(a.getUserId(), b.getUserId());
+            if (cmp == 0) {
+                cmp = Long.compare(toMicros(a.getOccurredAt()), toMicros(b.getOccurredAt()));
+            }
+            return cmp != 0 ? cmp : compare(a.getId(), b.getId());
+        }
+    }
+
+    /**
+     * Random-access reader over a finished file. Only the group headers are
+     * read up front.
+     */
+    static final class Reader implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final List<GroupHeader> groups = new ArrayList<>();
+        private final int columnCount;
+
+        Reader(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            ByteBuffer fileHeader = readAt(0, FILE_HEADER_BYTES);
+            int magic = fileHeader.getInt();
+            short version = fileHeader.getShort();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                channel.close();
+                throw new IllegalStateException("Not an event archive file: " + path);
+            }
+            this.columnCount = version == 1 ? V1_COLUMNS : COLUMNS;
+            long position = FILE_HEADER_BYTES;
+            long size = channel.size();
+            while (position < size) {
+                ByteBuffer header = readAt(position, GROUP_HEADER_BYTES);
+                GroupHeader group = new GroupHeader(
+                        position + GROUP_HEADER_BYTES,
+                        header.getInt(),
+                        header.getInt(),
+                        header.getInt(),
+                        new UUID(header.getLong(), header.getLong()),
+                        new UUID(header.getLong(), header.getLong()),
+                        header.getLong(),
+                        header.getLong());
+                groups.add(group);
+                position = group.bodyPosition() + group.bodyBytes();
+            }
+        }
+
+        long rowCount() {
+            return groups.stream().mapToLong(GroupHeader::rowCount).sum();
+        }
+
+        /**
+         * The user's events with {@code fromMicros <= occurredAt < toMicros},
+         * in time order.
+         */
+        List<LearningEvent> read(UUID userId, long fromMicros, long toMicros) throws IOException {
+            List<LearningEvent> events = new ArrayList<>();
+            for (GroupHeader group : groups) {
+                if (compare(userId, group.minUser()) < 0 || compare(userId, group.maxUser()) > 0
+                        || group.maxMicros() < fromMicros || group.minMicros() >= toMicros) {
+                    continue;
+                }
+                readGroup(group, userId, fromMicros, toMicros, events);
+            }
+            return events;
+        }
+
+        /**
+         * Passes every user id in the file to {@code action}, once per group
+         * the user appears in.
+         */
+        void forEachUserId(Consumer<UUID> action) throws IOException {
+            for (GroupHeader group : groups) {
+                Columns columns = new Columns(body(group), columnCount);
+                columns.userRuns().forEach(run -> action.accept(run.userId()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void readGroup(GroupHeader group, UUID userId, long fromMicros, long toMicros,
+                List<LearningEvent> events) throws IOException {
+            int rows = group.rowCount();
+            Columns columns = new Columns(body(group), columnCount);
+            UserRun run = findRun(columns.userRuns(), userId);
+            if (run == null) {
+                return;
+            }
+            int start = run.start();
+            int end = start + run.length();
+
+            long[] idMsb = columns.longs(rows);
+            long[] idLsb = columns.longs(rows);
+            String[] eventTypes = columns.dictionary(rows);
+            String[] entityTypes = columns.dictionary(rows);
+            UUID[] entityIds = columns.optionalUuids(rows);
+            long[] occurred = columns.deltas(rows);
+            ByteBuffer created = columns.next();
+            ByteBuffer clientEventIds = columns.next();
+            ByteBuffer payloads = columns.next();
+            boolean hasLocalDay = columnCount > V1_COLUMNS;
+            String[] timeZones = hasLocalDay ? columns.dictionary(rows) : new String[rows];
+            ByteBuffer localDays = hasLocalDay ? columns.next() : null;
+
+            for (int i = 0; i < end; i++) {
+                long createdDelta = readSignedVarLong(created);
+                String clientEventId = readString(clientEventIds);
+                String payload = readString(payloads);
+                long localDayCode = hasLocalDay ? readVarLong(localDays) : 0;
+                if (i < start || occurred[i] < fromMicros || occurred[i] >= toMicros) {
+                    continue;
+                }
+                events.add(new LearningEvent(
+                        new UUID(idMsb[i], idLsb[i]),
+                        userId,
+                        eventTypes[i],
+                        entityTypes[i],
+                        entityIds[i],
+                        fromMicros(occurred[i]),
+                        clientEventId,
+                        payload,
+                        fromMicros(occurred[i] + createdDelta),
+                        null,
+                        timeZones[i],
+                        localDayCode == 0 ? null
+                                : LocalDate.ofEpochDay(utcDay(occurred[i]) + unzigzag(localDayCode - 1))));
+            }
+        }
+
+        private static UserRun findRun(List<UserRun> runs, UUID userId) {
+            int low = 0;
+            int high = runs.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(runs.get(mid).userId(), userId);
+                if (cmp == 0) {
+                    return runs.get(mid);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return null;
+        }
+
+        private ByteBuffer body(GroupHeader group) throws IOException {
+            ByteBuffer body = readAt(group.bodyPosition(), group.bodyBytes());
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != group.crc()) {
+                throw new IllegalStateException("Corrupt row group at offset " + group.bodyPosition() + " of " + path);
+            }
+            return body;
+        }
+
+        private ByteBuffer readAt(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IllegalStateException("Truncated event archive file: " + path);
+                }
+            }
+            return buffer.flip();
+        }
+
+    }
+
+    private record GroupHeader(
+            long bodyPosition,
+            int rowCount,
+            int bodyBytes,
+            int crc,
+            UUID minUser,
+            UUID maxUser,
+            long minMicros,
+            long maxMicros) {
+    }
+
+    private record UserRun(UUID userId, int start, int length) {
+    }
+
+    /**
+     * Sequential access to the length-prefixed columns of a row group.
+     */
+    private static final class Columns {
+
+        private final ByteBuffer body;
+        private final int count;
+        private int index;
+
+        Columns(ByteBuffer body, int count) {
+            this.body = body;
+            this.count = count;
+        }
+
+        ByteBuffer next() {
+            if (index++ == count) {
+                throw new IllegalStateException("Row group has only " + count + " columns");
+            }
+            int length = body.getInt();
+            ByteBuffer column = body.slice(body.position(), length);
+            body.position(body.position() + length);
+            return column;
+        }
+
+        long[] longs(int rows) {
+            ByteBuffer column = next();
+            long[] values = new long[rows];
+            column.asLongBuffer().get(values);
+            return values;
+        }
+
+        List<UserRun> userRuns() {
+            ByteBuffer column = next();
+            int count = (int) readVarLong(column);
+            List<UserRun> runs = new ArrayList<>(count);
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                UUID userId = new UUID(column.getLong(), column.getLong());
+                int length = (int) readVarLong(column);
+                runs.add(new UserRun(userId, start, length));
+                start += length;
+            }
+            return runs;
+        }
+
+        long[] deltas(int rows) {
+            ByteBuffer column = next();
+            long[] values = new long[rows];
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                previous += readSignedVarLong(column);
+                values[i] = previous;
+            }
+            return values;
+        }
+
+        String[] dictionary(int rows) {
+            ByteBuffer column = next();
+            int size = (int) readVarLong(column);
+            String[] entries = new String[size + 1];
+            for (int i = 1; i <= size; i++) {
+                entries[i] = readString(column);
+            }
+            String[] values = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                values[i] = entries[(int) readVarLong(column)];
+            }
+            return values;
+        }
+
+        UUID[] optionalUuids(int rows) {
+            ByteBuffer column = next();
+            byte[] present = new byte[(rows + 7) / 8];
+            column.get(present);
+            UUID[] values = new UUID[rows];
+            for (int i = 0; i < rows; i++) {
+                if ((present[i >>> 3] & (1 << (i & 7))) != 0) {
+                    values[i] = new UUID(column.getLong(), column.getLong());
+                }
+            }
+            return values;
+        }
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // Zigzag keeps small negative deltas short
+    private static void writeSignedVarLong(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, zigzag(value));
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long zigzag) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static long utcDay(long micros) {
+        return Math.floorDiv(micros, 86_400_000_000L);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long readSignedVarLong(ByteBuffer in) {
+        return unzigzag(readVarLong(in));
+    }
+
+    // Length + 1 so that 0 can mark null
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
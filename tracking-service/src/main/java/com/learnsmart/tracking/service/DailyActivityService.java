@@ -0,0 +1,146 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.ActivityConsistencyReport;
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyActivity;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the user_daily_activity aggregate table: incremental updates at
+ * ingest, a backfill from raw events, and a consistency check against
+ * them. Raw events are read through {@link EventHistory}, so archived
+ * months count too.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailyActivityService {
+
+    private final UserDailyActivityRepository activityRepository;
+    private final EventHistory eventHistory;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Adds freshly stored events to the daily aggregates, one upsert per
+     * (user, day) in the batch. Runs inside the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(List<LearningEvent> events) {
+        Map<UUID, SortedMap<LocalDate, DayTotals>> totals = new TreeMap<>();
+        for (LearningEvent event : events) {
+            add(totals.computeIfAbsent(event.getUserId(), id -> new TreeMap<>()), event);
+        }
+        totals.forEach((userId, days) -> days.forEach((day, dayTotals) -> activityRepository.increment(
+                userId, day, dayTotals.eventCount, dayTotals.durationSeconds)));
+    }
+
+    /**
+     * Recomputes all daily rows of a user from their raw events.
+     *
+     * @return number of days with activity
+     */
+    @Transactional
+    public int backfill(UUID userId) {
+        activityRepository.deleteByUser(userId);
+
+        SortedMap<LocalDate, DayTotals> days = new TreeMap<>();
+        try (Stream<LearningEvent> events = eventHistory.streamByUser(userId)) {
+            events.forEach(event -> {
+                add(days, event);
+                entityManager.detach(event);
+            });
+        }
+
+        days.forEach((day, dayTotals) -> activityRepository.increment(
+                userId, day, dayTotals.eventCount, dayTotals.durationSeconds));
+        return days.size();
+    }
+
+    /**
+     * Backfills every user with events, one transaction per user.
+     *
+     * @return number of users backfilled
+     */
+    public int backfillAll() {
+        List<UUID> userIds = eventHistory.findDistinctUserIds();
+        for (UUID userId : userIds) {
+            transactionTemplate.executeWithoutResult(status -> backfill(userId));
+        }
+        log.info("Backfilled daily activity for {} users", userIds.size());
+        return userIds.size();
+    }
+
+    /**
+     * Compares the aggregate rows of a user in [from, to] with totals
+     * recomputed from the event history and reports every differing day.
+     * <p>
+     * Rows are keyed by the user's local day, so events are read from the
+     * first instant {@code from} begins in any zone to the last instant
+     * {@code to} ends in any zone, and only those whose local day falls in
+     * [from, to] are counted.
+     */
+    @Transactional(readOnly = true)
+    public ActivityConsistencyReport checkConsistency(UUID userId, LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, DayTotals> expected = new TreeMap<>();
+        try (Stream<LearningEvent> events = eventHistory.streamByUserBetween(userId,
+                from.atStartOfDay(ZoneOffset.MAX).toOffsetDateTime(),
+                to.plusDays(1).atStartOfDay(ZoneOffset.MIN).toOffsetDateTime())) {
+            events.forEach(event -> {
+                LocalDate day = AnalyticsService.activityDay(event);
+                if (!day.isBefore(from) && !day.isAfter(to)) {
+                    add(expected, event);
+                }
+                entityManager.detach(event);
+            });
+        }
+
+        Map<LocalDate, UserDailyActivity> actual = new HashMap<>();
+        for (UserDailyActivity row : activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, from, to)) {
+            actual.put(row.getDay(), row);
+        }
+
+        SortedSet<LocalDate> allDays = new TreeSet<>(expected.keySet());
+        allDays.addAll(actual.keySet());
+
+        List<ActivityConsistencyReport.Mismatch> mismatches = new ArrayList<>();
+        for (LocalDate day : allDays) {
+            DayTotals exp = expected.getOrDefault(day, new DayTotals());
+            UserDailyActivity act = actual.get(day);
+            long actualCount = act != null ? act.getEventCount() : 0;
+            double actualSeconds = act != null ? act.getDurationSeconds() : 0.0;
+            if (exp.eventCount != actualCount || Math.abs(exp.durationSeconds - actualSeconds) > 0.001) {
+                mismatches.add(new ActivityConsistencyReport.Mismatch(
+                        day, exp.eventCount, actualCount, exp.durationSeconds, actualSeconds));
+            }
+        }
+
+        if (!mismatches.isEmpty()) {
+            log.warn("Daily activity for user {} differs from raw events on {} days", userId, mismatches.size());
+        }
+        return new ActivityConsistencyReport(userId, from, to, allDays.size(), mismatches);
+    }
+
+    static void add(Map<LocalDate, DayTotals> days, LearningEvent event) {
+        DayTotals dayTotals = days.computeIfAbsent(AnalyticsService.activityDay(event), d -> new DayTotals());
+        dayTotals.eventCount++;
+        dayTotals.durationSeconds += AnalyticsService.extractDurationSeconds(event);
+    }
+
+    static class DayTotals {
+        long eventCount;
+        double durationSeconds;
+    }
+}
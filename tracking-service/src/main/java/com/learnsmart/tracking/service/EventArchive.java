@@ -0,0 +1,167 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Cold storage for learning events of closed months, one
+ * {@link ColumnarEventFile} per UTC month in {@code tracking.archive.dir}.
+ * <p>
+ * Files are written under a temporary name by {@link EventArchiveService}
+ * and become visible to readers only once {@link #publish(YearMonth)}
+ * renames them.
+ * Reads go through {@link EventHistory}, which merges archived months with
+ * the events still in the database.
+ * <p>
+ * Every instance reads the archive, so with more than one instance the
+ * directory must be shared storage; writes are serialized by
+ * {@link EventArchiveService}.
+ */
+@Component
+public class EventArchive {
+
+    private static final String PREFIX = "events-";
+    private static final String SUFFIX = ".lsea";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    public EventArchive(@Value("${tracking.archive.dir:data/archive}") Path directory) {
+        this.directory = directory;
+    }
+
+    public boolean isArchived(YearMonth month) {
+        return Files.exists(path(month));
+    }
+
+    /**
+     * Archived months in ascending order.
+     */
+    public List<YearMonth> archivedMonths() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> parseMonth(file.getFileName().toString()))
+                    .flatMap(Optional::stream)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list event archive " + directory, e);
+        }
+    }
+
+    /**
+     * The instant before which learning_events_v2 alone is incomplete: the
+     * start of the month after the newest archived one. Empty if nothing is
+     * archived or a read starting at {@code from} does not reach behind it;
+     * a null {@code from} is open.
+     */
+    public Optional<OffsetDateTime> horizonBefore(OffsetDateTime from) {
+        List<YearMonth> months = archivedMonths();
+        if (months.isEmpty()) {
+            return Optional.empty();
+        }
+        OffsetDateTime horizon = monthStart(months.get(months.size() - 1).plusMonths(1));
+        return from == null || from.isBefore(horizon) ? Optional.of(horizon) : Optional.empty();
+    }
+
+    /**
+     * Starts a new archive file for the month. Nothing is visible to readers
+     * until {@link #publish(YearMonth)}; a left-over temporary file from an
+     * interrupted run is replaced.
+     */
+    ColumnarEventFile.Writer create(YearMonth month) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = tempPath(month);
+        Files.deleteIfExists(temp);
+        return new ColumnarEventFile.Writer(temp);
+    }
+
+    void publish(YearMonth month) throws IOException {
+        Files.move(tempPath(month), path(month), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void discard(YearMonth month) throws IOException {
+        Files.deleteIfExists(tempPath(month));
+    }
+
+    /**
+     * Streams a user's archived events with {@code from <= occurredAt < to},
+     * in time order. Null bounds are open. Months are read one at a time as
+     * the stream is consumed, so at most one month of the user's events is in
+     * memory.
+     */
+    public Stream<LearningEvent> streamByUser(UUID userId, OffsetDateTime from, OffsetDateTime to) {
+        long fromMicros = from != null ? ColumnarEventFile.toMicros(from) : Long.MIN_VALUE;
+        long toMicros = to != null ? ColumnarEventFile.toMicros(to) : Long.MAX_VALUE;
+        return archivedMonths().stream()
+                .filter(month -> (to == null || monthStart(month).isBefore(to))
+                        && (from == null || monthStart(month.plusMonths(1)).isAfter(from)))
+                .flatMap(month -> read(month, userId, fromMicros, toMicros).stream());
+    }
+
+    private List<LearningEvent> read(YearMonth month, UUID userId, long fromMicros, long toMicros) {
+        try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(path(month))) {
+            return reader.read(userId, fromMicros, toMicros);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read event archive for " + month, e);
+        }
+    }
+
+    /**
+     * Every user with archived events.
+     */
+    public Set<UUID> userIds() {
+        Set<UUID> userIds = new HashSet<>();
+        for (YearMonth month : archivedMonths()) {
+            try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(path(month))) {
+                reader.forEachUserId(userIds::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read event archive for " + month, e);
+            }
+        }
+        return userIds;
+    }
+
+    static OffsetDateTime monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    private Path path(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+
+    private Path tempPath(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX + TEMP_SUFFIX);
+    }
+
+    private static Optional<YearMonth> parseMonth(String fileName) {
+        if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length())));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
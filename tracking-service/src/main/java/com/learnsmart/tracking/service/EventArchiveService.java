@@ -0,0 +1,167 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Moves closed months of learning events out of learning_events_v2 into the
+ * {@link EventArchive}.
+ * <p>
+ * A month is read, written to its archive file and deleted in one
+ * REPEATABLE READ transaction. Events that arrive for the month while it is
+ * being archived are not in the snapshot, so they are neither archived nor
+ * deleted and stay readable from the table. The file is published just
+ * before the commit. If the commit then fails, the events exist in both
+ * places and {@link EventHistory} returns them once.
+ * <p>
+ * Each month's transaction first takes a Postgres advisory lock on the
+ * month, so when several instances share the archive directory only one of
+ * them writes a given month; the others skip it.
+ */
+@Slf4j
+@Service
+public class EventArchiveService {
+
+    private static final String SELECT = "SELECT id, user_id, event_type, entity_type, entity_id, occurred_at, "
+            + "client_event_id, payload, created_at, time_zone, local_day FROM learning_events_v2 "
+            + "WHERE occurred_at >= ? AND occurred_at < ? AND deleted_at IS NULL ORDER BY user_id, occurred_at, id";
+    private static final String DELETE = "DELETE FROM learning_events_v2 WHERE occurred_at >= ? AND occurred_at < ?";
+    private static final String OLDEST = "SELECT MIN(occurred_at) FROM learning_events_v2 WHERE occurred_at < ?";
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_xact_lock(?, ?)";
+    // First key of the month locks; the second is the month
+    private static final int LOCK_CLASS = 0x4C534541; // "LSEA"
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EventArchive archive;
+
+    public EventArchiveService(DataSource dataSource, PlatformTransactionManager transactionManager,
+            EventArchive archive, @Value("${tracking.archive.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.archive = archive;
+    }
+
+    /**
+     * Archives every month before {@code firstKept} that still has events in
+     * the table and no archive file yet.
+     *
+     * @return number of months archived
+     */
+    public int archiveBefore(YearMonth firstKept) {
+        OffsetDateTime oldest = jdbcTemplate.queryForObject(OLDEST, OffsetDateTime.class,
+                EventArchive.monthStart(firstKept));
+        if (oldest == null) {
+            return 0;
+        }
+        int archived = 0;
+        for (YearMonth month = YearMonth.from(oldest.atZoneSameInstant(ZoneOffset.UTC));
+                month.isBefore(firstKept); month = month.plusMonths(1)) {
+            // Events that arrived after their month was archived stay in the table
+            if (!archive.isArchived(month) && archive(month) > 0) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Writes the month's events to its archive file and deletes them from
+     * the table.
+     *
+     * @return number of events archived; 0 if another instance holds the
+     *         month's lock or archived it meanwhile
+     * @throws IllegalStateException if the month is already archived
+     */
+    public long archive(YearMonth month) {
+        if (archive.isArchived(month)) {
+            throw new IllegalStateException(month + " is already archived");
+        }
+        OffsetDateTime from = EventArchive.monthStart(month);
+        OffsetDateTime to = EventArchive.monthStart(month.plusMonths(1));
+
+        Long archived = transactionTemplate.execute(status -> {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK, Boolean.class, LOCK_CLASS,
+                    month.getYear() * 12 + month.getMonthValue() - 1))) {
+                log.info("{} is being archived by another instance, skipping", month);
+                return 0L;
+            }
+            if (archive.isArchived(month)) {
+                return 0L;
+            }
+            boolean published = false;
+            try {
+                long rows;
+                try (ColumnarEventFile.Writer writer = archive.create(month)) {
+                    jdbcTemplate.query(SELECT, rs -> {
+                        try {
+                            writer.add(mapRow(rs));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, from, to);
+                    writer.finish();
+                    rows = writer.rowCount();
+                }
+                if (rows == 0) {
+                    return 0L;
+                }
+                int deleted = jdbcTemplate.update(DELETE, from, to);
+                archive.publish(month);
+                published = true;
+                log.info("Archived {} events of {} ({} rows deleted)", rows, month, deleted);
+                return rows;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write event archive for " + month, e);
+            } finally {
+                if (!published) {
+                    discard(month);
+                }
+            }
+        });
+        return archived != null ? archived : 0;
+    }
+
+    private void discard(YearMonth month) {
+        try {
+            archive.discard(month);
+        } catch (IOException e) {
+            log.warn("Could not remove partial event archive for {}: {}", month, e.getMessage());
+        }
+    }
+
+    private static LearningEvent mapRow(ResultSet rs) throws SQLException {
+        return new LearningEvent(
+                rs.getObject("id", UUID.class),
+                rs.getObject("user_id", UUID.class),
+                rs.getString("event_type"),
+                rs.getString("entity_type"),
+                rs.getObject("entity_id", UUID.class),
+                rs.getObject("occurred_at", OffsetDateTime.class),
+                rs.getString("client_event_id"),
+                rs.getString("payload"),
+                rs.getObject("created_at", OffsetDateTime.class),
+                null,
+                rs.getString("time_zone"),
+                rs.getObject("local_day", LocalDate.class));
+    }
+}
@@ -0,0 +1,230 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drops retried events that carry a client event id already stored for the
+ * same user.
+ * <p>
+ * Keys are first checked against an in-memory Bloom filter. A miss means the
+ * key is new, so the event is written without touching the database. Only a
+ * possible hit is confirmed with a lookup on the
+ * {@code uq_learning_events_client_event} index. The filter has two
+ * generations that rotate every {@code window}, so keys are remembered for
+ * between one and two windows; it is warmed from recent events at startup.
+ * Each instance keeps its own filter, so a retry routed to another instance
+ * only gets deduplicated once that instance has seen the key.
+ */
+@Slf4j
+@Component
+public class EventDeduplicator {
+
+    private final LearningEventRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final long expectedPerWindow;
+    private final double falsePositiveProbability;
+    private final Duration window;
+
+    private final Counter checkedCounter;
+    private final Counter filterHitCounter;
+    private final Counter duplicateCounter;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile Instant rotateAt;
+
+    @Autowired
+    public EventDeduplicator(LearningEventRepository repository,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.ingest.dedupe.enabled:true}") boolean enabled,
+            @Value("${tracking.ingest.dedupe.expected-per-window:1000000}") long expectedPerWindow,
+            @Value("${tracking.ingest.dedupe.false-positive-probability:0.001}") double falsePositiveProbability,
+            @Value("${tracking.ingest.dedupe.window:PT24H}") Duration window) {
+        this(repository, jdbcTemplate, meterRegistry, Clock.systemUTC(), enabled, expectedPerWindow,
+                falsePositiveProbability, window);
+    }
+
+    EventDeduplicator(LearningEventRepository repository, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+            Clock clock, boolean enabled, long expectedPerWindow, double falsePositiveProbability, Duration window) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.expectedPerWindow = expectedPerWindow;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.window = window;
+        this.current = newFilter();
+        this.previous = newFilter();
+        this.rotateAt = clock.instant().plus(window);
+
+        this.checkedCounter = Counter.builder("tracking.ingest.dedupe.checked")
+                .description("Ingested events that carried a client event id")
+                .register(meterRegistry);
+        this.filterHitCounter = Counter.builder("tracking.ingest.dedupe.filter.hits")
+                .description("Client event ids the filter reported as possibly seen (each costs one index lookup)")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("tracking.ingest.dedupe.duplicates")
+                .description("Events dropped as duplicates of an already stored client event id")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the client event ids of the last window into the filter so a
+     * restart does not forget recent keys.
+     */
+    @PostConstruct
+    void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        OffsetDateTime since = OffsetDateTime.ofInstant(clock.instant().minus(window), ZoneOffset.UTC);
+        try {
+            long[] loaded = {0};
+            jdbcTemplate.query("SELECT user_id, client_event_id FROM learning_events_v2 "
+                    + "WHERE client_event_id IS NOT NULL AND occurred_at >= ?", rs -> {
+                        current.put(key(rs.getObject("user_id", UUID.class), rs.getString("client_event_id")));
+                        loaded[0]++;
+                    }, since);
+            log.info("Loaded {} recent client event ids into the dedupe filter", loaded[0]);
+        } catch (DataAccessException e) {
+            log.warn("Could not warm up the dedupe filter: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Splits {@code events} into the ones to store and duplicates. A duplicate
+     * of an already stored event gets that event's id; a duplicate of another
+     * event in the same batch gets its id once the batch is saved (see
+     * {@link Result#assignOriginalIds()}).
+     */
+    public Result deduplicate(List<LearningEvent> events) {
+        Result result = new Result(events.size());
+        if (!enabled) {
+            result.fresh.addAll(events);
+            return result;
+        }
+        rotateIfDue();
+
+        Map<String, LearningEvent> batchKeys = new HashMap<>();
+        for (LearningEvent event : events) {
+            String clientEventId = event.getClientEventId();
+            if (clientEventId == null || clientEventId.isBlank()) {
+                result.fresh.add(event);
+                continue;
+            }
+            checkedCounter.increment();
+            String key = key(event.getUserId(), clientEventId);
+
+            LearningEvent firstInBatch = batchKeys.putIfAbsent(key, event);
+            if (firstInBatch != null) {
+                duplicateCounter.increment();
+                result.duplicateOf.put(event, firstInBatch);
+                continue;
+            }
+            if (mightContain(key)) {
+                filterHitCounter.increment();
+                List<UUID> existing = repository.findIdsByClientEventId(event.getUserId(), clientEventId,
+                        Limit.of(1));
+                if (!existing.isEmpty()) {
+                    duplicateCounter.increment();
+                    event.setId(existing.get(0));
+                    result.duplicateOf.put(event, null);
+                    continue;
+                }
+            }
+            // Remember the key before the insert so that a retry of a failed
+            // write is checked against the database
+            current.put(key);
+            result.fresh.add(event);
+        }
+        return result;
+    }
+
+    private boolean mightContain(String key) {
+        return current.mightContain(key) || previous.mightContain(key);
+    }
+
+    private void rotateIfDue() {
+        Instant now = clock.instant();
+        if (now.isBefore(rotateAt)) {
+            return;
+        }
+        synchronized (this) {
+            if (now.isBefore(rotateAt)) {
+                return;
+            }
+            // After more than one idle window the current generation is stale too
+            previous = now.isBefore(rotateAt.plus(window)) ? current : newFilter();
+            current = newFilter();
+            rotateAt = now.plus(window);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedPerWindow, falsePositiveProbability);
+    }
+
+    private static String key(UUID userId, String clientEventId) {
+        return userId + ":" + clientEventId;
+    }
+
+    /**
+     * Outcome of {@link #deduplicate}: the events to store and the duplicates.
+     */
+    public static final class Result {
+
+        private final List<LearningEvent> fresh;
+        // Duplicate -> first event of the same batch, or null if already stored
+        private final Map<LearningEvent, LearningEvent> duplicateOf = new IdentityHashMap<>();
+
+        Result(int size) {
+            this.fresh = new ArrayList<>(size);
+        }
+
+        public List<LearningEvent> fresh() {
+            return fresh;
+        }
+
+        public boolean isDuplicate(LearningEvent event) {
+            return duplicateOf.containsKey(event);
+        }
+
+        /**
+         * Gives duplicates within the batch the id of the event they repeat.
+         * Call after the fresh events have been saved.
+         */
+        public void assignOriginalIds() {
+            duplicateOf.forEach((duplicate, original) -> {
+                if (original != null) {
+                    duplicate.setId(original.getId());
+                }
+            });
+        }
+    }
+}
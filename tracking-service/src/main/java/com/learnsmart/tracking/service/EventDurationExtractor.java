@@ -0,0 +1,107 @@
+package com.learnsmart.tracking.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Reads the time spent on an event from its JSON payload with a streaming
+ * parser: only top-level fields are inspected, nested values are skipped, and
+ * no Map or intermediate String is built for the common numeric case.
+ * <p>
+ * Two fields carry durations: {@code durationSeconds} and {@code timeSpentMs}.
+ * Which one wins when both are present depends on the event type. There are
+ * only two lookup plans, so the plan is picked per call rather than cached by
+ * the client-supplied event type.
+ */
+public final class EventDurationExtractor {
+
+    static final String DURATION_SECONDS = "durationSeconds";
+    static final String TIME_SPENT_MS = "timeSpentMs";
+
+    // Event types whose schemas define timeSpentMs (see EventPayloadValidator)
+    private static final Set<String> TIME_SPENT_TYPES = Set.of(
+            "CONTENT_COMPLETE", "ACTIVITY_COMPLETE", "ACTIVITY_COMPLETED", "MODULE_COMPLETED");
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Plan DEFAULT_PLAN = new Plan(false);
+    private static final Plan TIME_SPENT_PLAN = new Plan(true);
+
+    private EventDurationExtractor() {
+    }
+
+    /**
+     * @return duration in seconds, or 0 if the payload has no usable duration
+     */
+    public static double extractSeconds(String eventType, String payload) {
+        if (payload == null || payload.isEmpty()) {
+            return 0.0;
+        }
+        Plan plan = eventType != null && TIME_SPENT_TYPES.contains(eventType) ? TIME_SPENT_PLAN : DEFAULT_PLAN;
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            return plan.read(parser);
+        } catch (IOException | NumberFormatException e) {
+            // Malformed payloads carry no duration
+            return 0.0;
+        }
+    }
+
+    /**
+     * Field lookup for one event type.
+     */
+    private record Plan(boolean preferTimeSpent) {
+
+        double read(JsonParser parser) throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return 0.0;
+            }
+            double seconds = -1;
+            double timeSpentSeconds = -1;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (DURATION_SECONDS.equals(field)) {
+                    seconds = number(parser, value);
+                    if (seconds >= 0 && !preferTimeSpent) {
+                        return seconds;
+                    }
+                } else if (TIME_SPENT_MS.equals(field)) {
+                    double ms = number(parser, value);
+                    timeSpentSeconds = ms >= 0 ? ms / 1000.0 : -1;
+                    if (timeSpentSeconds >= 0 && preferTimeSpent) {
+                        return timeSpentSeconds;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (seconds >= 0) {
+                return seconds;
+            }
+            return Math.max(timeSpentSeconds, 0.0);
+        }
+
+        /**
+         * @return the non-negative numeric value of the current token, or -1
+         */
+        private static double number(JsonParser parser, JsonToken token) throws IOException {
+            double value;
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                value = parser.getDoubleValue();
+            } else if (token == JsonToken.VALUE_STRING) {
+                // Legacy clients send numbers as strings
+                value = Double.parseDouble(parser.getText().trim());
+            } else {
+                parser.skipChildren();
+                return -1;
+            }
+            return value >= 0 && Double.isFinite(value) ? value : -1;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.learnsmart.tracking.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.model.LearningEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams learning events as NDJSON straight from a forward-only JDBC cursor.
+ * <p>
+ * Rows are serialized one at a time and never collected, so memory stays
+ * constant regardless of the export size. The read-only transaction is
+ * required for PostgreSQL to honour the fetch size instead of materializing
+ * the whole result set in the driver.
+ * <p>
+ * An export of one user also reads the user's archived months from the
+ * {@link EventArchive} and merges them in through {@link EventHistory}, one
+ * month at a time. Without a user filter only the table is read, as the
+ * archive is organised by user; the controller flags such exports when they
+ * reach behind the archive horizon.
+ */
+@Slf4j
+@Service
+public class EventExportService {
+
+    private static final String SELECT = "SELECT id, user_id, event_type, entity_type, entity_id, occurred_at, "
+            + "client_event_id, payload, created_at, deleted_at, time_zone, local_day FROM learning_events_v2 WHERE deleted_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final EventArchive archive;
+
+    public EventExportService(DataSource dataSource, ObjectMapper objectMapper, EventArchive archive,
+            @Value("${tracking.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.archive = archive;
+    }
+
+    /**
+     * Writes every non-deleted event matching the filters to {@code out}, one
+     * JSON object per line, oldest first. Null filters are left out of the
+     * query; {@code from} and {@code to} are both inclusive, as in
+     * {@code GET /events}. With a {@code userId}, archived events are
+     * included.
+     *
+     * @return number of events written
+     * @throws IOException if writing to {@code out} fails, e.g. because the client disconnected
+     */
+    @Transactional(readOnly = true)
+    public long export(UUID userId, String eventType, String entityType, UUID entityId,
+            OffsetDateTime from, OffsetDateTime to, OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT);
+        List<Object> args = new ArrayList<>();
+        appendFilter(sql, args, "user_id = ?", userId);
+        appendFilter(sql, args, "event_type = ?", eventType);
+        appendFilter(sql, args, "entity_type = ?", entityType);
+        appendFilter(sql, args, "entity_id = ?", entityId);
+        appendFilter(sql, args, "occurred_at >= ?", from);
+        appendFilter(sql, args, "occurred_at <= ?", to);
+        sql.append(" ORDER BY occurred_at, id");
+
+        long written = 0;
+        try (Stream<LearningEvent> events = events(sql.toString(), args, userId, eventType, entityType, entityId,
+                from, to);
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (LearningEvent event : (Iterable<LearningEvent>) events::iterator) {
+                generator.writeObject(event);
+                generator.writeRaw('\n');
+                written++;
+            }
+        } catch (IOException e) {
+            log.warn("Event export aborted after {} events: {}", written, e.getMessage());
+            throw e;
+        }
+        log.info("Exported {} events", written);
+        return written;
+    }
+
+    private Stream<LearningEvent> events(String sql, List<Object> args, UUID userId, String eventType,
+            String entityType, UUID entityId, OffsetDateTime from, OffsetDateTime to) {
+        Stream<LearningEvent> stored = jdbcTemplate.queryForStream(sql, (rs, rowNum) -> mapRow(rs), args.toArray());
+        if (userId == null) {
+            return stored;
+        }
+        // The archive's upper bound is exclusive and has microsecond precision
+        Stream<LearningEvent> archived = archive.streamByUser(userId, from, to != null ? to.plusNanos(1_000) : null)
+                .filter(event -> (eventType == null || eventType.equals(event.getEventType()))
+                        && (entityType == null || entityType.equals(event.getEntityType()))
+                        && (entityId == null || entityId.equals(event.getEntityId())));
+        return EventHistory.merge(archived, stored);
+    }
+
+    private static void appendFilter(StringBuilder sql, List<Object> args, String predicate, Object value) {
+        if (value != null) {
+            sql.append(" AND ").append(predicate);
+            args.add(value);
+        }
+    }
+
+    private static LearningEvent mapRow(ResultSet rs) throws SQLException {
+        return new LearningEvent(
+                rs.getObject("id", UUID.class),
+                rs.getObject("user_id", UUID.class),
+                rs.getString("event_type"),
+                rs.getString("entity_type"),
+                rs.getObject("entity_id", UUID.class),
+                rs.getObject("occurred_at", OffsetDateTime.class),
+                rs.getString("client_event_id"),
+                rs.getString("payload"),
+                rs.getObject("created_at", OffsetDateTime.class),
+                rs.getObject("deleted_at", OffsetDateTime.class),
+                rs.getString("time_zone"),
+                rs.getObject("local_day", LocalDate.class));
+    }
+}
@@ -0,0 +1,132 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A user's complete event history: archived months from {@link EventArchive}
+ * merged in time order with the events still in learning_events_v2.
+ * <p>
+ * Rebuilds, backfills and consistency checks read through here, so the
+ * rollups behind {@link AnalyticsService} can still be recomputed after old
+ * months have moved to the archive. An event found in both places (an
+ * archive run interrupted between writing the file and committing the
+ * delete) is returned once.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventHistory {
+
+    private final LearningEventRepository repository;
+    private final EventArchive archive;
+
+    /**
+     * Streams all of a user's events in time order. Must be consumed inside a
+     * transaction and closed by the caller.
+     */
+    public Stream<LearningEvent> streamByUser(UUID userId) {
+        return merge(archive.streamByUser(userId, null, null), repository.streamByUser(userId));
+    }
+
+    /**
+     * Streams a user's events in [from, to) in time order. Must be consumed
+     * inside a transaction and closed by the caller.
+     */
+    public Stream<LearningEvent> streamByUserBetween(UUID userId, OffsetDateTime from, OffsetDateTime to) {
+        return merge(archive.streamByUser(userId, from, to), repository.streamByUserBetween(userId, from, to));
+    }
+
+    /**
+     * Users with at least one event, archived or not.
+     */
+    public List<UUID> findDistinctUserIds() {
+        Set<UUID> userIds = new LinkedHashSet<>(repository.findDistinctUserIds());
+        userIds.addAll(archive.userIds());
+        return List.copyOf(userIds);
+    }
+
+    /**
+     * Merges two time-ordered streams, returning an event found in both once.
+     */
+    static Stream<LearningEvent> merge(Stream<LearningEvent> archived, Stream<LearningEvent> stored) {
+        Iterator<LearningEvent> archivedEvents = archived.iterator();
+        if (!archivedEvents.hasNext()) {
+            archived.close();
+            return stored;
+        }
+        Iterator<LearningEvent> merged = new MergingIterator(archivedEvents, stored.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                .onClose(archived::close)
+                .onClose(stored::close);
+    }
+
+    /**
+     * Merges two time-ordered iterators, preferring the archive on ties and
+     * skipping ids already returned for the same instant.
+     */
+    private static final class MergingIterator implements Iterator<LearningEvent> {
+
+        private final Iterator<LearningEvent> archived;
+        private final Iterator<LearningEvent> stored;
+        private LearningEvent nextArchived;
+        private LearningEvent nextStored;
+        private OffsetDateTime currentInstant;
+        private final Set<UUID> idsAtInstant = new HashSet<>();
+        private LearningEvent next;
+
+        MergingIterator(Iterator<LearningEvent> archived, Iterator<LearningEvent> stored) {
+            this.archived = archived;
+            this.stored = stored;
+            this.nextArchived = archived.hasNext() ? archived.next() : null;
+            this.nextStored = stored.hasNext() ? stored.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && (nextArchived != null || nextStored != null)) {
+                LearningEvent candidate;
+                if (nextStored == null || (nextArchived != null
+                        && !nextArchived.getOccurredAt().isAfter(nextStored.getOccurredAt()))) {
+                    candidate = nextArchived;
+                    nextArchived = archived.hasNext() ? archived.next() : null;
+                } else {
+                    candidate = nextStored;
+                    nextStored = stored.hasNext() ? stored.next() : null;
+                }
+                if (currentInstant == null || !candidate.getOccurredAt().isEqual(currentInstant)) {
+                    currentInstant = candidate.getOccurredAt();
+                    idsAtInstant.clear();
+                }
+                if (idsAtInstant.add(candidate.getId())) {
+                    next = candidate;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public LearningEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LearningEvent result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.learnsmart.tracking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only local log of events accepted while the database is unavailable.
+ * <p>
+ * Events are appended to memory-mapped segment files of {@code segment-size}
+ * bytes in the spool directory. A record is
+ * {@code [int length][int crc32c][long spooledAtMillis][JSON]}. The length is
+ * written last, and a zero length marks the end of a segment's data. The CRC
+ * covers the timestamp and the JSON, so a record torn by a crash fails the
+ * check. On startup the log is truncated at that record.
+ * <p>
+ * {@link com.learnsmart.tracking.scheduler.SpoolReplayJob} reads batches from
+ * the oldest segment and calls {@link #commit(Batch)} once they are stored.
+ * That advances a checkpoint file and deletes fully replayed segments. Every
+ * spooled event gets a client event id if it has none. A batch replayed
+ * twice, because of a crash between the insert and the checkpoint, is then
+ * absorbed by {@link EventDeduplicator}.
+ */
+@Slf4j
+@Component
+public class EventSpool {
+
+    static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    static final String CLIENT_EVENT_ID_PREFIX = "spool-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+
+    private final Counter appendedCounter;
+    private final Counter corruptCounter;
+
+    // All fields below are guarded by this
+    private long writeSegmentId;
+    private MappedByteBuffer writeBuffer;
+    private int writePosition;
+    private long readSegmentId;
+    private int readPosition;
+    private long cachedSegmentId = -1;
+    private MappedByteBuffer cachedBuffer;
+    private long pendingBytes;
+    private long pendingEvents;
+
+    private volatile boolean databaseDown;
+
+    @Autowired
+    public EventSpool(ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.spool.enabled:true}") boolean enabled,
+            @Value("${tracking.spool.dir:data/spool}") Path directory,
+            @Value("${tracking.spool.segment-size:16MB}") DataSize segmentSize,
+            @Value("${tracking.spool.fsync:true}") boolean fsync) {
+        this(objectMapper, meterRegistry, Clock.systemUTC(), enabled, directory, segmentSize, fsync);
+    }
+
+    EventSpool(ObjectMapper objectMapper, MeterRegistry meterRegistry, Clock clock, boolean enabled, Path directory,
+            DataSize segmentSize, boolean fsync) {
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.fsync = fsync;
+
+        Gauge.builder("tracking.spool.pending.bytes", this, EventSpool::pendingBytes)
+                .description("Bytes of spooled events not yet replayed into the database")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("tracking.spool.pending.events", this, EventSpool::pendingEvents)
+                .description("Spooled events not yet replayed into the database")
+                .register(meterRegistry);
+        Gauge.builder("tracking.spool.replay.lag", this, EventSpool::replayLagSeconds)
+                .description("Age of the oldest spooled event not yet replayed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.appendedCounter = Counter.builder("tracking.spool.appended")
+                .description("Events written to the local spool because the database was unavailable")
+                .register(meterRegistry);
+        this.corruptCounter = Counter.builder("tracking.spool.corrupt")
+                .description("Spool records skipped because they failed the CRC or could not be parsed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the newest segment for appending and restores the replay position
+     * from the checkpoint. A torn record at the end of the log is cut off.
+     */
+    @PostConstruct
+    public synchronized void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            long[] checkpoint = readCheckpoint();
+            List<Long> segmentIds = segmentIds();
+
+            for (long id : segmentIds) {
+                if (id < checkpoint[0]) {
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+            segmentIds.removeIf(id -> id < checkpoint[0]);
+
+            readSegmentId = checkpoint[0];
+            readPosition = (int) checkpoint[1];
+            writeSegmentId = segmentIds.isEmpty() ? readSegmentId : segmentIds.get(segmentIds.size() - 1);
+            writeBuffer = map(writeSegmentId);
+            writePosition = recoverEnd(writeBuffer, writeSegmentId == readSegmentId ? readPosition : 0);
+
+            countPending();
+            if (pendingEvents > 0) {
+                log.warn("Event spool has {} events ({} bytes) waiting for replay", pendingEvents, pendingBytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event spool in " + directory, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether ingest should go straight to the spool instead of waiting for
+     * the database to time out.
+     */
+    public boolean isDatabaseDown() {
+        return databaseDown;
+    }
+
+    public void markDatabaseDown() {
+        if (!databaseDown) {
+            databaseDown = true;
+            log.warn("Database unavailable, spooling accepted events to {}", directory);
+        }
+    }
+
+    public void markDatabaseUp() {
+        if (databaseDown) {
+            databaseDown = false;
+            log.info("Database available again, ingest writes to it directly");
+        }
+    }
+
+    /**
+     * Appends an event to the log, durably when {@code fsync} is on. Assigns a
+     * client event id and occurredAt first if the event has none.
+     */
+    public synchronized void append(LearningEvent event) {
+        if (!enabled) {
+            throw new IllegalStateException("Event spool is disabled");
+        }
+        if (event.getOccurredAt() == null) {
+            event.setOccurredAt(OffsetDateTime.now(clock));
+        }
+        if (event.getClientEventId() == null) {
+            event.setClientEventId(CLIENT_EVENT_ID_PREFIX + UUID.randomUUID());
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize event for the spool", e);
+        }
+        int recordSize = HEADER_BYTES + json.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Event of " + json.length + " bytes does not fit a spool segment");
+        }
+        if (writePosition + recordSize > segmentSize) {
+            rotate();
+        }
+
+        long spooledAt = clock.millis();
+        writeBuffer.putLong(writePosition + 8, spooledAt);
+        writeBuffer.put(writePosition + HEADER_BYTES, json);
+        writeBuffer.putInt(writePosition + 4, crc(spooledAt, json));
+        writeBuffer.putInt(writePosition, json.length);
+        if (fsync) {
+            writeBuffer.force(writePosition, recordSize);
+        }
+
+        writePosition += recordSize;
+        pendingBytes += recordSize;
+        pendingEvents++;
+        appendedCounter.increment();
+    }
+
+    /**
+     * Reads up to {@code maxEvents} events from the replay position without
+     * consuming them. Corrupt records are skipped.
+     */
+    public synchronized Batch readBatch(int maxEvents) {
+        List<LearningEvent> events = new ArrayList<>();
+        long segmentId = readSegmentId;
+        int position = readPosition;
+        long bytes = 0;
+        int records = 0;
+
+        while (records < maxEvents && (segmentId < writeSegmentId || position < writePosition)) {
+            MappedByteBuffer buffer = segment(segmentId);
+            int length = recordLength(buffer, segmentId, position);
+            if (length <= 0) {
+                if (length < 0) {
+                    corruptCounter.increment();
+                    log.error("Skipping corrupt data in spool segment {} at offset {}", segmentId, position);
+                }
+                if (segmentId == writeSegmentId) {
+                    position = writePosition;
+                } else {
+                    segmentId++;
+                    position = 0;
+                }
+                continue;
+            }
+
+            byte[] json = new byte[length];
+            buffer.get(position + HEADER_BYTES, json);
+            position += HEADER_BYTES + length;
+            bytes += HEADER_BYTES + length;
+            records++;
+            try {
+                events.add(objectMapper.readValue(json, LearningEvent.class));
+            } catch (IOException e) {
+                corruptCounter.increment();
+                log.error("Skipping unreadable spooled event: {}", new String(json, StandardCharsets.UTF_8));
+            }
+        }
+        return new Batch(readSegmentId, readPosition, segmentId, position, bytes, records, events);
+    }
+
+    /**
+     * Marks a batch from {@link #readBatch(int)} as stored and deletes the
+     * segments it finished.
+     */
+    public synchronized void commit(Batch batch) {
+        if (batch.startSegmentId() != readSegmentId || batch.startPosition() != readPosition) {
+            throw new IllegalStateException("Spool batch does not start at the replay position");
+        }
+        long previousSegmentId = readSegmentId;
+        readSegmentId = batch.nextSegmentId();
+        readPosition = batch.nextPosition();
+        pendingBytes -= batch.bytes();
+        pendingEvents -= batch.records();
+        try {
+            writeCheckpoint();
+            for (long id = previousSegmentId; id < readSegmentId; id++) {
+                if (id == cachedSegmentId) {
+                    cachedSegmentId = -1;
+                    cachedBuffer = null;
+                }
+                Files.deleteIfExists(segmentPath(id));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot advance event spool checkpoint", e);
+        }
+    }
+
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized long pendingEvents() {
+        return pendingEvents;
+    }
+
+    /**
+     * Seconds since the oldest event still waiting for replay was spooled.
+     */
+    public synchronized double replayLagSeconds() {
+        if (pendingEvents == 0) {
+            return 0;
+        }
+        long segmentId = readSegmentId;
+        int position = readPosition;
+        while (segmentId < writeSegmentId || position < writePosition) {
+            MappedByteBuffer buffer = segment(segmentId);
+            if (recordLength(buffer, segmentId, position) > 0) {
+                return Math.max(0, clock.millis() - buffer.getLong(position + 8)) / 1000.0;
+            }
+            if (segmentId == writeSegmentId) {
+                break;
+            }
+            segmentId++;
+            position = 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Whether a failure means the database could not be reached, as opposed
+     * to a problem with the events themselves. Only connection-level failures
+     * count: deadlocks, lock and statement timeouts reach a live database and
+     * are left to the caller's retry, not spooled.
+     */
+    public static boolean isConnectivityFailure(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof CannotCreateTransactionException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof SQLTransientConnectionException
+                    || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLException sql && isConnectionState(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // SQLState class 08: connection exception
+    private static boolean isConnectionState(String sqlState) {
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * Length of the valid record at the position; 0 at the end of the
+     * segment's data and -1 for a record that fails its checks.
+     */
+    private int recordLength(MappedByteBuffer buffer, long segmentId, int position) {
+        int end = segmentId == writeSegmentId ? writePosition : segmentSize;
+        if (buffer == null || position + HEADER_BYTES > end) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length == 0) {
+            return 0;
+        }
+        if (length < 0 || length > end - position - HEADER_BYTES) {
+            return -1;
+        }
+        byte[] json = new byte[length];
+        buffer.get(position + HEADER_BYTES, json);
+        return buffer.getInt(position + 4) == crc(buffer.getLong(position + 8), json) ? length : -1;
+    }
+
+    /**
+     * Finds the end of the valid records in the active segment and zeroes
+     * anything after it, so a torn record cannot be mistaken for data later.
+     */
+    private int recoverEnd(MappedByteBuffer buffer, int from) {
+        int position = from;
+        while (position + HEADER_BYTES <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > segmentSize - position - HEADER_BYTES) {
+                break;
+            }
+            byte[] json = new byte[length];
+            buffer.get(position + HEADER_BYTES, json);
+            if (buffer.getInt(position + 4) != crc(buffer.getLong(position + 8), json)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        if (position + Integer.BYTES <= segmentSize && buffer.getInt(position) != 0) {
+            log.warn("Truncating torn record in spool segment {} at offset {}", writeSegmentId, position);
+            corruptCounter.increment();
+            buffer.put(position, new byte[segmentSize - position]);
+            buffer.force();
+        }
+        return position;
+    }
+
+    private void countPending() {
+        pendingBytes = 0;
+        pendingEvents = 0;
+        long segmentId = readSegmentId;
+        int position = readPosition;
+        while (segmentId < writeSegmentId || position < writePosition) {
+            MappedByteBuffer buffer = segment(segmentId);
+            int length = recordLength(buffer, segmentId, position);
+            if (length > 0) {
+                position += HEADER_BYTES + length;
+                pendingBytes += HEADER_BYTES + length;
+                pendingEvents++;
+            } else if (segmentId == writeSegmentId) {
+                break;
+            } else {
+                segmentId++;
+                position = 0;
+            }
+        }
+    }
+
+    private void rotate() {
+        if (fsync) {
+            writeBuffer.force();
+        }
+        writeSegmentId++;
+        writeBuffer = map(writeSegmentId);
+        writePosition = 0;
+    }
+
+    private MappedByteBuffer segment(long segmentId) {
+        if (segmentId == writeSegmentId) {
+            return writeBuffer;
+        }
+        if (segmentId != cachedSegmentId) {
+            cachedBuffer = Files.exists(segmentPath(segmentId)) ? map(segmentId) : null;
+            cachedSegmentId = segmentId;
+        }
+        return cachedBuffer;
+    }
+
+    private MappedByteBuffer map(long segmentId) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map spool segment " + segmentId, e);
+        }
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%020d%s", segmentId, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    /**
+     * @return {segmentId, position} of the replay position, {1, 0} for a new spool
+     */
+    private long[] readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            List<Long> segmentIds = segmentIds();
+            return new long[]{segmentIds.isEmpty() ? 1 : segmentIds.get(0), 0};
+        }
+        String[] parts = Files.readString(checkpoint).trim().split(" ");
+        return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, readSegmentId + " " + readPosition);
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int crc(long spooledAt, byte[] json) {
+        CRC32C crc = new CRC32C();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (spooledAt >>> shift));
+        }
+        crc.update(json);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Events read from the spool together with the replay positions before
+     * and after them. {@code records} includes records that could not be
+     * parsed, so committing the batch skips them too.
+     */
+    public record Batch(
+            long startSegmentId,
+            int startPosition,
+            long nextSegmentId,
+            int nextPosition,
+            long bytes,
+            int records,
+            List<LearningEvent> events) {
+
+        public boolean isEmpty() {
+            return startSegmentId == nextSegmentId && startPosition == nextPosition;
+        }
+    }
+}
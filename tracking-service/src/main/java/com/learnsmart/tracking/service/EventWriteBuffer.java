@@ -0,0 +1,248 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for asynchronous event ingestion.
+ * <p>
+ * When enabled, validated events are queued in a bounded buffer and a single
+ * drain thread group-commits them to learning_events_v2 every
+ * {@code flush-interval-ms} or as soon as {@code max-batch-size} events are
+ * waiting, whichever comes first. A full buffer rejects new events instead of
+ * blocking the request thread. Remaining events are flushed on graceful
+ * shutdown. A batch that fails because the database is unreachable is handed
+ * to the {@link EventSpool} when it is enabled. A batch rejected for any other
+ * reason is retried event by event, so only the events the database refuses
+ * are dropped.
+ */
+@Slf4j
+@Component
+public class EventWriteBuffer implements SmartLifecycle {
+
+    // Stop after the web server has stopped accepting requests (its lifecycle
+    // phases are DEFAULT_PHASE - 1024 and - 2048), so no event is enqueued
+    // after the final flush
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    // Upper bound for a single blocking wait of the drain thread
+    private static final long MAX_WAIT_MS = 100;
+
+    private final LearningEventWriter eventWriter;
+    private final EventSpool spool;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<LearningEvent> queue;
+
+    private final Timer commitTimer;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread drainThread;
+
+    public EventWriteBuffer(LearningEventWriter eventWriter,
+            EventSpool spool,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.ingest.async.enabled:false}") boolean enabled,
+            @Value("${tracking.ingest.async.capacity:10000}") int capacity,
+            @Value("${tracking.ingest.async.max-batch-size:500}") int maxBatchSize,
+            @Value("${tracking.ingest.async.flush-interval-ms:200}") long flushIntervalMs) {
+        this.eventWriter = eventWriter;
+        this.spool = spool;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("tracking.ingest.buffer.depth", queue, BlockingQueue::size)
+                .description("Events waiting in the write-behind buffer")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("tracking.ingest.buffer.commit")
+                .description("Latency of group commits from the write-behind buffer")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("tracking.ingest.buffer.rejected")
+                .description("Events rejected because the buffer was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("tracking.ingest.buffer.failed")
+                .description("Buffered events that could not be committed")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues an already validated event for the next group commit.
+     *
+     * @throws IngestBufferFullException if the buffer is at capacity
+     */
+    public void enqueue(LearningEvent event) {
+        if (!queue.offer(event)) {
+            rejectedCounter.increment();
+            throw new IngestBufferFullException("Event ingest buffer is full, retry later");
+        }
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        drainThread = new Thread(this::drainLoop, "event-write-buffer");
+        drainThread.setDaemon(true);
+        drainThread.start();
+        log.info("Asynchronous event ingest enabled (capacity={}, maxBatchSize={}, flushIntervalMs={})",
+                queue.remainingCapacity(), maxBatchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // The drain loop flushes what is left and exits
+            drainThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Shutting down with {} buffered events not committed", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            List<LearningEvent> batch = new ArrayList<>(maxBatchSize);
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+            }
+        }
+
+        // Final flush on shutdown
+        List<LearningEvent> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            commit(batch);
+            batch = new ArrayList<>(maxBatchSize);
+        }
+    }
+
+    /**
+     * Collects events until the batch is full or the flush interval since the
+     * first event has elapsed. Waits are sliced so a stop request is noticed
+     * quickly even with a long flush interval.
+     */
+    private void fillBatch(List<LearningEvent> batch) throws InterruptedException {
+        LearningEvent first = queue.poll(Math.min(flushIntervalMs, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+            LearningEvent next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MS)),
+                    TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void commit(List<LearningEvent> batch) {
+        try {
+            commitTimer.record(() -> eventWriter.writeAll(batch));
+            return;
+        } catch (Exception e) {
+            if (EventSpool.isConnectivityFailure(e)) {
+                spoolOrDrop(batch, e);
+                return;
+            }
+            log.warn("Committing {} buffered events failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            LearningEvent event = batch.get(i);
+            // The failed transaction may have assigned ids that were never stored
+            event.setId(null);
+            try {
+                eventWriter.writeAll(List.of(event));
+            } catch (Exception e) {
+                if (EventSpool.isConnectivityFailure(e)) {
+                    spoolOrDrop(batch.subList(i, batch.size()), e);
+                    return;
+                }
+                failedCounter.increment();
+                log.error("Dropping buffered event {} of user {}: {}",
+                        event.getClientEventId(), event.getUserId(), e.getMessage());
+            }
+        }
+    }
+
+    private void spoolOrDrop(List<LearningEvent> events, Exception failure) {
+        if (spool.isEnabled() && spoolAll(events)) {
+            return;
+        }
+        failedCounter.increment(events.size());
+        log.error("Failed to commit {} buffered events: {}", events.size(), failure.getMessage());
+    }
+
+    private boolean spoolAll(List<LearningEvent> batch) {
+        spool.markDatabaseDown();
+        try {
+            for (LearningEvent event : batch) {
+                // Persist may have assigned an id before the transaction failed
+                event.setId(null);
+                spool.append(event);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to spool buffered events: {}", e.getMessage());
+            return false;
+        }
+    }
+}
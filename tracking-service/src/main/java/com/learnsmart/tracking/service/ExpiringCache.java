@@ -0,0 +1,85 @@
+package com.learnsmart.tracking.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Small bounded cache whose entries expire a fixed time after they were
+ * loaded. Concurrent misses for the same key may both load; the last one wins.
+ * <p>
+ * Entries are kept in insertion order, which with a fixed TTL is also expiry
+ * order, so expired entries and the overflow are dropped from the head in
+ * constant time per entry. Loaders run outside the lock.
+ */
+final class ExpiringCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+
+    ExpiringCache(Duration ttl, int maxEntries, Clock clock) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    V get(K key, Supplier<V> loader) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return loader.get();
+        }
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        V value = loader.get();
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * @return the cached value, or null if absent or expired
+     */
+    synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.expiresAt.isAfter(clock.instant()) ? entry.value : null;
+    }
+
+    synchronized void put(K key, V value) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        Instant now = clock.instant();
+        // Re-inserting moves the key to the tail, keeping the map in expiry order
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, now.plus(ttl)));
+        evict(now);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private void evict(Instant now) {
+        Iterator<Entry<V>> oldestFirst = entries.values().iterator();
+        while (oldestFirst.hasNext()) {
+            Entry<V> oldest = oldestFirst.next();
+            if (entries.size() <= maxEntries && oldest.expiresAt.isAfter(now)) {
+                return;
+            }
+            oldestFirst.remove();
+        }
+    }
+
+    private record Entry<V>(V value, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.learnsmart.tracking.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Distinct counter that is exact while small and a HyperLogLog sketch after.
+ * <p>
+ * Up to {@link #EXACT_LIMIT} items are kept as a sorted set of 64-bit hashes,
+ * so typical per-user counts stay exact. Beyond that the set is promoted to
+ * 2^{@value #PRECISION} one-byte registers (about 1.6% standard error, 4 KiB
+ * serialized). Sketches merge without loss, which lets per-user daily sketches
+ * be combined into cohort counts over any range of days.
+ */
+final class HyperLogLog {
+
+    static final int PRECISION = 12;
+    static final int REGISTERS = 1 << PRECISION;
+    static final int EXACT_LIMIT = 256;
+
+    private static final byte FORMAT_EXACT = 1;
+    private static final byte FORMAT_DENSE = 2;
+    private static final int MAX_RANK = Long.SIZE - PRECISION + 1;
+
+    private long[] hashes = new long[8];
+    private int size;
+    private byte[] registers;
+
+    void add(UUID item) {
+        addHash(hash(item));
+    }
+
+    /**
+     * Folds another sketch into this one. The result is what adding both
+     * item streams to a single sketch would have produced.
+     */
+    void merge(HyperLogLog other) {
+        if (other.registers == null) {
+            for (int i = 0; i < other.size; i++) {
+                addHash(other.hashes[i]);
+            }
+            return;
+        }
+        if (registers == null) {
+            promote();
+        }
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    boolean isExact() {
+        return registers == null;
+    }
+
+    long estimate() {
+        if (registers == null) {
+            return size;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is more accurate while many registers are empty
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    byte[] toBytes() {
+        if (registers == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(6 + size * Long.BYTES)
+                    .put(FORMAT_EXACT)
+                    .put((byte) PRECISION)
+                    .putInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(hashes[i]);
+            }
+            return buffer.array();
+        }
+        return ByteBuffer.allocate(2 + REGISTERS)
+                .put(FORMAT_DENSE)
+                .put((byte) PRECISION)
+                .put(registers)
+                .array();
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}; {@code null} or empty
+     * input yields an empty sketch.
+     */
+    static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        if (buffer.remaining() < 1 || buffer.get() != PRECISION) {
+            throw new IllegalArgumentException("Unsupported sketch precision");
+        }
+        if (format == FORMAT_EXACT) {
+            int size = buffer.getInt();
+            if (size < 0 || size > EXACT_LIMIT || buffer.remaining() != size * Long.BYTES) {
+                throw new IllegalArgumentException("Corrupt exact sketch of " + bytes.length + " bytes");
+            }
+            sketch.hashes = new long[Math.max(size, 8)];
+            for (int i = 0; i < size; i++) {
+                sketch.hashes[i] = buffer.getLong();
+            }
+            sketch.size = size;
+        } else if (format == FORMAT_DENSE) {
+            if (buffer.remaining() != REGISTERS) {
+                throw new IllegalArgumentException("Corrupt dense sketch of " + bytes.length + " bytes");
+            }
+            sketch.registers = new byte[REGISTERS];
+            buffer.get(sketch.registers);
+        } else {
+            throw new IllegalArgumentException("Unknown sketch format " + format);
+        }
+        return sketch;
+    }
+
+    private void addHash(long hash) {
+        if (registers != null) {
+            update(hash);
+            return;
+        }
+        int pos = Arrays.binarySearch(hashes, 0, size, hash);
+        if (pos >= 0) {
+            return;
+        }
+        if (size == EXACT_LIMIT) {
+            promote();
+            update(hash);
+            return;
+        }
+        int insertAt = -pos - 1;
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, Math.min(size * 2, EXACT_LIMIT));
+        }
+        System.arraycopy(hashes, insertAt, hashes, insertAt + 1, size - insertAt);
+        hashes[insertAt] = hash;
+        size++;
+    }
+
+    private void promote() {
+        registers = new byte[REGISTERS];
+        for (int i = 0; i < size; i++) {
+            update(hashes[i]);
+        }
+        hashes = null;
+        size = 0;
+    }
+
+    private void update(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION) + 1, MAX_RANK);
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    static long hash(UUID item) {
+        return fmix(item.getMostSignificantBits() ^ Long.rotateLeft(fmix(item.getLeastSignificantBits()), 32));
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
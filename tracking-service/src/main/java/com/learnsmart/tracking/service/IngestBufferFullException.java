@@ -0,0 +1,12 @@
+package com.learnsmart.tracking.service;
+
+/**
+ * Thrown when the asynchronous ingest buffer cannot take more events.
+ * Callers should surface it as 429 Too Many Requests.
+ */
+public class IngestBufferFullException extends RuntimeException {
+
+    public IngestBufferFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.learnsmart.tracking.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an event exceeds the ingest rate limit of its user or client.
+ * Callers should surface it as 429 Too Many Requests with
+ * {@link #getRetryAfter()} as {@code Retry-After}.
+ */
+public class IngestRateLimitedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestRateLimitedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
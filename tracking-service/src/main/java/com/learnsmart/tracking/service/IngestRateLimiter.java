@@ -0,0 +1,211 @@
+package com.learnsmart.tracking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket rate limits for single-event ingest, one bucket per user and
+ * one per OAuth client, so a single flooding user or integration cannot
+ * take the database capacity of everyone else.
+ * <p>
+ * Each bucket is one {@link AtomicLong} holding the time at which it will
+ * be full again (the virtual-scheduling form of a token bucket): taking a
+ * token is a single compare-and-set, with no lock. A bucket whose refill
+ * time has passed is indistinguishable from a new one, so
+ * {@link #evictIdle()} drops those and the maps only hold recently active
+ * keys.
+ * <p>
+ * Users get {@code tracking.rate-limit.user.*} across all event types.
+ * Event types listed in {@code tracking.rate-limit.event-types} get their
+ * own per-user bucket with that limit instead.
+ */
+@Component
+public class IngestRateLimiter {
+
+    static final String DEFAULT_TYPE = "default";
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final Limit userLimit;
+    private final Limit clientLimit;
+    private final Map<String, Limit> eventTypeLimits;
+    private final Map<UserKey, AtomicLong> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> clientBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Counter> userThrottled = new HashMap<>();
+    private final Counter clientThrottled;
+
+    @Autowired
+    public IngestRateLimiter(MeterRegistry meterRegistry,
+            @Value("${tracking.rate-limit.enabled:true}") boolean enabled,
+            @Value("${tracking.rate-limit.user.per-second:20}") double userPerSecond,
+            @Value("${tracking.rate-limit.user.burst:100}") int userBurst,
+            @Value("${tracking.rate-limit.client.per-second:2000}") double clientPerSecond,
+            @Value("${tracking.rate-limit.client.burst:5000}") int clientBurst,
+            @Value("${tracking.rate-limit.event-types:}") String eventTypeLimits) {
+        this(meterRegistry, Clock.systemUTC(), enabled, new Limit(userPerSecond, userBurst),
+                new Limit(clientPerSecond, clientBurst), parseEventTypeLimits(eventTypeLimits));
+    }
+
+    IngestRateLimiter(MeterRegistry meterRegistry, Clock clock, boolean enabled, Limit userLimit,
+            Limit clientLimit, Map<String, Limit> eventTypeLimits) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.userLimit = userLimit;
+        this.clientLimit = clientLimit;
+        this.eventTypeLimits = Map.copyOf(eventTypeLimits);
+
+        // Event types are client-supplied, so only configured ones become tags
+        userThrottled.put(DEFAULT_TYPE, throttledCounter(meterRegistry, "user", DEFAULT_TYPE));
+        for (String type : eventTypeLimits.keySet()) {
+            userThrottled.put(type, throttledCounter(meterRegistry, "user", type));
+        }
+        this.clientThrottled = throttledCounter(meterRegistry, "client", DEFAULT_TYPE);
+        Gauge.builder("tracking.ingest.rate-limit.buckets", this, IngestRateLimiter::bucketCount)
+                .description("Active rate limit buckets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one token from the user's bucket for the event type and one from
+     * the client's bucket. A request refused by the client bucket still
+     * spends its user token.
+     *
+     * @param clientId OAuth client of the caller, or null if unknown
+     * @throws IngestRateLimitedException if either bucket is empty
+     */
+    public void acquire(UUID userId, String clientId, String eventType) {
+        if (!enabled) {
+            return;
+        }
+        long now = nowNanos();
+        if (userId != null) {
+            String type = eventType != null && eventTypeLimits.containsKey(eventType) ? eventType : DEFAULT_TYPE;
+            Limit limit = DEFAULT_TYPE.equals(type) ? userLimit : eventTypeLimits.get(type);
+            AtomicLong bucket = userBuckets.computeIfAbsent(new UserKey(userId, type), key -> new AtomicLong(now));
+            long waitNanos = take(bucket, limit, now);
+            if (waitNanos > 0) {
+                userThrottled.get(type).increment();
+                throw new IngestRateLimitedException("Too many events for user " + userId, Duration.ofNanos(waitNanos));
+            }
+        }
+        if (clientId != null) {
+            AtomicLong bucket = clientBuckets.computeIfAbsent(clientId, key -> new AtomicLong(now));
+            long waitNanos = take(bucket, clientLimit, now);
+            if (waitNanos > 0) {
+                clientThrottled.increment();
+                throw new IngestRateLimitedException("Too many events from client " + clientId,
+                        Duration.ofNanos(waitNanos));
+            }
+        }
+    }
+
+    /**
+     * Drops buckets that have refilled completely; they would behave exactly
+     * like newly created ones. A request racing with the removal may spend a
+     * token on the dropped bucket, which errs in the client's favour.
+     */
+    @Scheduled(fixedDelayString = "${tracking.rate-limit.evict-interval:PT1M}")
+    public void evictIdle() {
+        long now = nowNanos();
+        userBuckets.values().removeIf(bucket -> bucket.get() <= now);
+        clientBuckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+
+    int bucketCount() {
+        return userBuckets.size() + clientBuckets.size();
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise nanoseconds until one is
+     *         available
+     */
+    private static long take(AtomicLong bucket, Limit limit, long now) {
+        long interval = limit.intervalNanos();
+        long tolerance = limit.toleranceNanos();
+        while (true) {
+            long full = bucket.get();
+            long start = Math.max(full, now);
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(full, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private long nowNanos() {
+        Instant now = clock.instant();
+        return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    private static Counter throttledCounter(MeterRegistry meterRegistry, String scope, String eventType) {
+        return Counter.builder("tracking.ingest.throttled")
+                .description("Events refused by ingest rate limiting")
+                .tag("scope", scope)
+                .tag("eventType", eventType)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Parses {@code type=perSecond/burst} entries separated by commas, e.g.
+     * {@code heartbeat=1/5,content_view=5/20}.
+     */
+    static Map<String, Limit> parseEventTypeLimits(String spec) {
+        Map<String, Limit> limits = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return limits;
+        }
+        for (String entry : spec.split(",")) {
+            String[] typeAndLimit = entry.trim().split("=");
+            String[] rateAndBurst = typeAndLimit.length == 2 ? typeAndLimit[1].split("/") : new String[0];
+            if (rateAndBurst.length != 2) {
+                throw new IllegalArgumentException("Invalid event type rate limit '" + entry.trim()
+                        + "', expected type=perSecond/burst");
+            }
+            limits.put(typeAndLimit[0].trim(), new Limit(Double.parseDouble(rateAndBurst[0].trim()),
+                    Integer.parseInt(rateAndBurst[1].trim())));
+        }
+        return limits;
+    }
+
+    /**
+     * Refill rate and bucket size.
+     */
+    record Limit(double perSecond, int burst) {
+
+        Limit {
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate limit needs a positive rate and a burst of at least 1");
+            }
+        }
+
+        long intervalNanos() {
+            return Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        }
+
+        // How far the refill time may run ahead of now: burst - 1 tokens
+        long toleranceNanos() {
+            return intervalNanos() * (burst - 1);
+        }
+    }
+
+    private record UserKey(UUID userId, String eventType) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Single write path for learning events. Every ingest mode (single, batch,
+ * write-behind buffer) stores events through here so the derived tables are
+ * updated in the same transaction as the events themselves, and stored
+ * events reach {@link LiveEventHub} subscribers once that transaction commits.
+ * The cached analytics of their users are dropped at the same point.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LearningEventWriter {
+
+    // SQLState of a unique violation. The only unique index an insert can hit is
+    // uq_learning_events_client_event; Postgres reports it under the name of
+    // the partition's index, so the constraint name is not checked
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final LearningEventRepository repository;
+    private final UserStatsRollupService rollupService;
+    private final DailyActivityService dailyActivityService;
+    private final EventDeduplicator deduplicator;
+    private final LiveEventHub liveEventHub;
+    private final UserAnalyticsCache analyticsCache;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Stores the events and updates the derived tables in one transaction.
+     * Events whose client event id was already stored for the same user are
+     * skipped; they are not in the returned list and carry the id of the
+     * stored original.
+     * <p>
+     * The dedupe filter is per instance, so a retry that reaches another
+     * instance, or races the original, can still hit
+     * {@code uq_learning_events_client_event}. The batch is then written once more in
+     * a new transaction: the filter now holds its keys, so the repeated events
+     * are looked up and reported as duplicates instead of failing the batch.
+     * This needs a transaction of its own, so when called inside the caller's
+     * transaction the violation is rethrown.
+     *
+     * @return the events that were stored
+     */
+    public List<LearningEvent> writeAll(List<LearningEvent> events) {
+        if (events.isEmpty()) {
+            return events;
+        }
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        try {
+            return transactionTemplate.execute(status -> store(events));
+        } catch (DataIntegrityViolationException e) {
+            if (joined || !isUniqueViolation(e)) {
+                throw e;
+            }
+            log.info("Client event id stored concurrently, rechecking {} events: {}", events.size(), e.getMessage());
+            // Ids assigned by the rolled back insert were never stored
+            events.forEach(event -> event.setId(null));
+            return transactionTemplate.execute(status -> store(events));
+        }
+    }
+
+    private List<LearningEvent> store(List<LearningEvent> events) {
+        EventDeduplicator.Result deduplicated = deduplicator.deduplicate(events);
+        List<LearningEvent> fresh = deduplicated.fresh();
+        if (fresh.isEmpty()) {
+            return fresh;
+        }
+        List<LearningEvent> saved = repository.saveAll(fresh);
+        deduplicated.assignOriginalIds();
+        rollupService.apply(saved);
+        dailyActivityService.apply(saved);
+        publishAfterCommit(saved);
+        return saved;
+    }
+
+    private static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return UNIQUE_VIOLATION.equals(violation.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    // Live subscribers must never see events that end up rolled back, and a
+    // cache reload before the commit would read the old rollups
+    private void publishAfterCommit(List<LearningEvent> saved) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            published(saved);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                published(saved);
+            }
+        });
+    }
+
+    private void published(List<LearningEvent> saved) {
+        Set<UUID> userIds = new HashSet<>();
+        for (LearningEvent event : saved) {
+            userIds.add(event.getUserId());
+        }
+        analyticsCache.invalidate(userIds);
+        liveEventHub.publish(saved);
+    }
+}
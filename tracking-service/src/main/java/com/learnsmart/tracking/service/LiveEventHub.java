@@ -0,0 +1,243 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of newly stored events to Server-Sent Events subscribers.
+ * <p>
+ * {@link LearningEventWriter} publishes events after their transaction
+ * commits. Publishing never blocks ingest: each subscriber has a bounded
+ * queue that is drained by its own sender task. A subscriber whose queue is
+ * full is too slow to keep up and is disconnected; its client is expected to
+ * reconnect and catch up through {@code GET /events/cursor}. Idle streams get
+ * a comment line every {@code heartbeat-interval} so proxies keep them open.
+ * Only events ingested by this instance are delivered.
+ */
+@Slf4j
+@Component
+public class LiveEventHub {
+
+    static final String EVENT_NAME = "learning-event";
+
+    private static final Object HEARTBEAT = new Object();
+
+    private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Executor senders;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Duration timeout;
+
+    private final Counter deliveredCounter;
+    private final Counter evictedCounter;
+
+    @Autowired
+    public LiveEventHub(MeterRegistry meterRegistry,
+            @Value("${tracking.stream.buffer-size:256}") int bufferSize,
+            @Value("${tracking.stream.max-subscribers:1000}") int maxSubscribers,
+            @Value("${tracking.stream.timeout:PT30M}") Duration timeout) {
+        this(meterRegistry, Executors.newVirtualThreadPerTaskExecutor(), bufferSize, maxSubscribers, timeout);
+    }
+
+    LiveEventHub(MeterRegistry meterRegistry, Executor senders, int bufferSize, int maxSubscribers,
+            Duration timeout) {
+        this.senders = senders;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+
+        Gauge.builder("tracking.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open live event streams")
+                .register(meterRegistry);
+        this.deliveredCounter = Counter.builder("tracking.stream.delivered")
+                .description("Events sent to live stream subscribers")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("tracking.stream.evicted")
+                .description("Live stream subscribers disconnected because their buffer was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the user's new events.
+     *
+     * @return the emitter to return from the request, or empty if the instance
+     *         already serves {@code max-subscribers} streams
+     */
+    public Optional<SseEmitter> subscribe(UUID userId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        return register(userId, emitter) != null ? Optional.of(emitter) : Optional.empty();
+    }
+
+    Subscription register(UUID userId, SseEmitter emitter) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        // Add inside compute so a concurrent remove cannot drop the set we add to
+        subscriptions.compute(userId, (id, userSubscriptions) -> {
+            Set<Subscription> target = userSubscriptions != null ? userSubscriptions : ConcurrentHashMap.newKeySet();
+            target.add(subscription);
+            return target;
+        });
+
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(error -> remove(subscription));
+        return subscription;
+    }
+
+    /**
+     * Queues committed events for the subscribers of their users. Returns
+     * without waiting for any subscriber.
+     */
+    public void publish(List<LearningEvent> events) {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        for (LearningEvent event : events) {
+            Set<Subscription> userSubscriptions = subscriptions.get(event.getUserId());
+            if (userSubscriptions != null) {
+                userSubscriptions.forEach(subscription -> offer(subscription, event));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.stream.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> offer(subscription, HEARTBEAT)));
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.values().forEach(userSubscriptions -> userSubscriptions.forEach(this::close));
+        if (senders instanceof ExecutorService executor) {
+            executor.shutdown();
+        }
+    }
+
+    private void offer(Subscription subscription, Object message) {
+        if (subscription.closed.get()) {
+            return;
+        }
+        if (!subscription.queue.offer(message)) {
+            log.warn("Disconnecting slow live stream subscriber of user {}", subscription.userId);
+            evictedCounter.increment();
+            close(subscription);
+            return;
+        }
+        scheduleDrain(subscription);
+    }
+
+    private void scheduleDrain(Subscription subscription) {
+        if (subscription.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            Object message;
+            while (!subscription.closed.get() && (message = subscription.queue.poll()) != null) {
+                send(subscription.emitter, message);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter already completed
+            remove(subscription);
+            return;
+        } finally {
+            subscription.draining.set(false);
+        }
+        // A message offered between the last poll and clearing the flag
+        // would otherwise wait for the next publish
+        if (!subscription.queue.isEmpty()) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void send(SseEmitter emitter, Object message) throws IOException {
+        if (message == HEARTBEAT) {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            return;
+        }
+        LearningEvent event = (LearningEvent) message;
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name(EVENT_NAME)
+                .data(event, MediaType.APPLICATION_JSON));
+        deliveredCounter.increment();
+    }
+
+    private void close(Subscription subscription) {
+        if (remove(subscription)) {
+            subscription.emitter.complete();
+        }
+    }
+
+    /**
+     * @return true if this call removed the subscription
+     */
+    private boolean remove(Subscription subscription) {
+        if (!subscription.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscription.queue.clear();
+        subscriptions.computeIfPresent(subscription.userId, (userId, userSubscriptions) -> {
+            userSubscriptions.remove(subscription);
+            return userSubscriptions.isEmpty() ? null : userSubscriptions;
+        });
+        subscriberCount.decrementAndGet();
+        return true;
+    }
+
+    static final class Subscription {
+
+        private final UUID userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(UUID userId, SseEmitter emitter, BlockingQueue<Object> queue) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        boolean isClosed() {
+            return closed.get();
+        }
+    }
+}
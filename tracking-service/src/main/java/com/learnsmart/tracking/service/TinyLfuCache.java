@@ -0,0 +1,284 @@
+package com.learnsmart.tracking.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache with W-TinyLFU eviction, the policy Caffeine uses: new
+ * entries enter a small LRU window (1% of the capacity); when they leave it
+ * they only displace an entry of the main segmented LRU if a frequency
+ * sketch has seen them requested more often. A burst of one-off lookups
+ * therefore cannot flush the frequently read entries. The main space is
+ * split into probation and protected (80%) segments; a second hit in
+ * probation promotes an entry.
+ * <p>
+ * Entries also expire {@code ttl} after they were loaded. Loads run outside
+ * the lock; a load that overlaps {@link #invalidate} of its key is returned
+ * to its caller but not cached. All other operations hold one lock, which
+ * is fine for the request rates of the analytics endpoints.
+ */
+final class TinyLfuCache<K, V> {
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final Duration ttl;
+    private final Clock clock;
+    private final FrequencySketch sketch;
+
+    private final Map<K, Node<V>> data = new HashMap<>();
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, Integer> loading = new HashMap<>();
+    private final Set<K> invalidatedWhileLoading = new HashSet<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    TinyLfuCache(int maximumSize, Duration ttl, Clock clock) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("maximumSize must be at least 2");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * 8 / 10;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    V get(K key, Supplier<V> loader) {
+        synchronized (this) {
+            sketch.increment(key);
+            Node<V> node = data.get(key);
+            if (node != null && node.expiresAt.isAfter(clock.instant())) {
+                hits++;
+                onHit(key, node);
+                return node.value;
+            }
+            if (node != null) {
+                remove(key, node);
+            }
+            misses++;
+            loading.merge(key, 1, Integer::sum);
+        }
+
+        V value = null;
+        try {
+            value = loader.get();
+            return value;
+        } finally {
+            synchronized (this) {
+                boolean invalidated = invalidatedWhileLoading.contains(key);
+                if (loading.merge(key, -1, Integer::sum) == 0) {
+                    loading.remove(key);
+                    invalidatedWhileLoading.remove(key);
+                }
+                if (value != null && !invalidated) {
+                    put(key, value);
+                }
+            }
+        }
+    }
+
+    synchronized void invalidate(K key) {
+        Node<V> node = data.get(key);
+        if (node != null) {
+            remove(key, node);
+        }
+        if (loading.containsKey(key)) {
+            invalidatedWhileLoading.add(key);
+        }
+    }
+
+    synchronized void invalidateAll() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        invalidatedWhileLoading.addAll(loading.keySet());
+    }
+
+    synchronized int size() {
+        return data.size();
+    }
+
+    synchronized long hitCount() {
+        return hits;
+    }
+
+    synchronized long missCount() {
+        return misses;
+    }
+
+    synchronized long evictionCount() {
+        return evictions;
+    }
+
+    private void onHit(K key, Node<V> node) {
+        switch (node.segment) {
+            case WINDOW -> window.get(key);
+            case PROTECTED -> protectedSegment.get(key);
+            case PROBATION -> {
+                probation.remove(key);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.put(key, node);
+                if (protectedSegment.size() > protectedMaximum) {
+                    Map.Entry<K, Node<V>> demoted = protectedSegment.entrySet().iterator().next();
+                    protectedSegment.remove(demoted.getKey());
+                    demoted.getValue().segment = Segment.PROBATION;
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+        }
+    }
+
+    private void put(K key, V value) {
+        Instant expiresAt = clock.instant().plus(ttl);
+        Node<V> node = data.get(key);
+        if (node != null) {
+            node.value = value;
+            node.expiresAt = expiresAt;
+            onHit(key, node);
+            return;
+        }
+        node = new Node<>(value, expiresAt);
+        data.put(key, node);
+        window.put(key, node);
+        K candidate = null;
+        if (window.size() > windowMaximum) {
+            Map.Entry<K, Node<V>> eldest = window.entrySet().iterator().next();
+            candidate = eldest.getKey();
+            window.remove(candidate);
+            eldest.getValue().segment = Segment.PROBATION;
+            probation.put(candidate, eldest.getValue());
+        }
+        while (data.size() > maximumSize) {
+            evict(candidate);
+            candidate = null;
+        }
+    }
+
+    /**
+     * Evicts either the entry that just left the window or the least
+     * recently used entry of the main space, whichever is requested less.
+     * Without a candidate the least recently used entry goes.
+     */
+    private void evict(K candidate) {
+        K victim = leastRecentExcept(probation, candidate);
+        if (victim == null) {
+            victim = leastRecentExcept(protectedSegment, candidate);
+        }
+        if (victim == null) {
+            victim = leastRecentExcept(window, candidate);
+        }
+        K evicted;
+        if (candidate == null || victim == null) {
+            evicted = victim != null ? victim : candidate;
+        } else {
+            evicted = sketch.frequency(candidate) > sketch.frequency(victim) ? victim : candidate;
+        }
+        remove(evicted, data.get(evicted));
+        evictions++;
+    }
+
+    private static <K> K leastRecentExcept(LinkedHashMap<K, ?> segment, K excluded) {
+        for (K key : segment.keySet()) {
+            if (!key.equals(excluded)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private void remove(K key, Node<V> node) {
+        data.remove(key);
+        switch (node.segment) {
+            case WINDOW -> window.remove(key);
+            case PROBATION -> probation.remove(key);
+            case PROTECTED -> protectedSegment.remove(key);
+        }
+    }
+
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<V> {
+        V value;
+        Instant expiresAt;
+        Segment segment = Segment.WINDOW;
+
+        Node(V value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (4 rows, at least four counters per
+     * cache slot so that one-off keys rarely inherit the counts of popular
+     * ones). All counters are halved after 10 increments per cache slot, so
+     * old popularity fades.
+     */
+    static final class FrequencySketch {
+
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize - 1) << 3);
+            this.counters = new byte[ROWS][width];
+            this.mask = width - 1;
+            this.resetAfter = 10 * maximumSize;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            for (int row = 0; row < ROWS; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                }
+            }
+            if (++additions >= resetAfter) {
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash + SEEDS[row]) * 0x9E3779B9;
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            return (h ^ (h >>> 13)) & mask;
+        }
+    }
+}
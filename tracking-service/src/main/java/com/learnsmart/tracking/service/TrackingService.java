@@ -1,15 +1,27 @@
 package com.learnsmart.tracking.service;
 
+import com.learnsmart.tracking.dto.BatchItemResult;
+import com.learnsmart.tracking.dto.CursorPage;
+import com.learnsmart.tracking.dto.EventCursor;
 import com.learnsmart.tracking.model.LearningEvent;
 import com.learnsmart.tracking.repository.LearningEventRepository;
+import com.learnsmart.tracking.repository.LearningEventSpecifications;
 import com.learnsmart.tracking.validator.EventPayloadValidator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -18,25 +30,230 @@ public class TrackingService {
 
     private final LearningEventRepository repository;
     private final EventPayloadValidator payloadValidator; // US-123
+    private final EventWriteBuffer writeBuffer;
+    private final LearningEventWriter eventWriter;
+    private final EventSpool spool;
+    private final UserTimezoneResolver timezoneResolver;
+    private final IngestRateLimiter rateLimiter;
+
+    // Length of learning_events_v2.client_event_id
+    static final int MAX_CLIENT_EVENT_ID_LENGTH = 100;
 
     /**
      * Creates a new learning event with payload validation.
      * US-123: Validates payload before saving.
+     * <p>
+     * With asynchronous ingest enabled the validated event is handed to the
+     * write-behind buffer and committed by its drain thread; the returned event
+     * has no id yet in that case. A retry of an already stored client event id
+     * is not stored again; the returned event then carries the original id.
+     * <p>
+     * If the database cannot be reached and the spool is enabled, the event
+     * is appended to the local {@link EventSpool} and replayed later; the
+     * returned event has no id in that case either.
+     * <p>
+     * The event's local day is fixed here from the user's time zone, before
+     * any of those paths, so buffered and spooled events keep it.
+     * <p>
+     * A valid event takes a token from its user's and the calling client's
+     * {@link IngestRateLimiter} buckets, as every item of a batch does.
+     *
+     * @param clientId OAuth client of the caller, or null if unknown
+     * @throws IllegalArgumentException    if payload validation fails
+     * @throws IngestRateLimitedException  if the user or client is over its limit
+     * @throws IngestBufferFullException   if asynchronous ingest is enabled and the
+     *                                     buffer is full
+     */
+    public LearningEvent createEvent(LearningEvent event, String clientId) {
+        // US-123: Validate payload before saving. The NOT NULL columns are
+        // checked too, as a buffered event that fails on insert would take
+        // its whole group commit down with it
+        validateEvent(event);
+        rateLimiter.acquire(event.getUserId(), clientId, event.getEventType());
+        assignLocalDay(event);
+
+        if (writeBuffer.isEnabled()) {
+            writeBuffer.enqueue(event);
+            return event;
+        }
+        if (spool.isEnabled() && spool.isDatabaseDown()) {
+            spool.append(event);
+            return event;
+        }
+        List<LearningEvent> saved;
+        try {
+            saved = eventWriter.writeAll(List.of(event));
+        } catch (RuntimeException e) {
+            if (!spool.isEnabled() || !EventSpool.isConnectivityFailure(e)) {
+                throw e;
+            }
+            spool.markDatabaseDown();
+            // Persist may have assigned an id before the transaction failed
+            event.setId(null);
+            spool.append(event);
+            return event;
+        }
+        return saved.isEmpty() ? event : saved.get(0);
+    }
+
+    /**
+     * Validates a batch of events and stores the accepted ones in a single
+     * {@link LearningEventWriter} transaction. Inserts are grouped by Hibernate JDBC batching
+     * (hibernate.jdbc.batch_size), so the batch costs one commit instead of one
+     * per event. Invalid items are reported and skipped, never persisted; items
+     * repeating a stored client event id are reported as duplicates.
+     * <p>
+     * Every valid item takes a token from its user's and the calling client's
+     * {@link IngestRateLimiter} buckets, as a single event would; items over
+     * either limit are rejected.
+     * <p>
+     * If the database cannot be reached and the spool is enabled, the accepted
+     * items are appended to the {@link EventSpool} instead and reported as
+     * accepted without an id; duplicates among them are dropped on replay.
      *
-     * @throws IllegalArgumentException if payload validation fails
+     * @param clientId OAuth client of the caller, or null if unknown
+     * @return one result per input event, in input order
      */
-    @Transactional
-    public LearningEvent createEvent(LearningEvent event) {
-        // US-123: Validate payload before saving
+    public List<BatchItemResult> createEvents(List<LearningEvent> events, String clientId) {
+        List<LearningEvent> accepted = new ArrayList<>(events.size());
+        List<Integer> acceptedIndexes = new ArrayList<>(events.size());
+        BatchItemResult[] results = new BatchItemResult[events.size()];
+
+        for (int i = 0; i < events.size(); i++) {
+            LearningEvent event = events.get(i);
+            try {
+                validateEvent(event);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchItemResult.rejected(i, e.getMessage());
+                continue;
+            }
+            try {
+                rateLimiter.acquire(event.getUserId(), clientId, event.getEventType());
+            } catch (IngestRateLimitedException e) {
+                results[i] = BatchItemResult.rejected(i, "Rate limit exceeded: " + e.getMessage());
+                continue;
+            }
+            // Ids are always server-generated; a client-supplied id would turn the
+            // insert into a merge and break batching
+            event.setId(null);
+            accepted.add(event);
+            acceptedIndexes.add(i);
+        }
+
+        // One profile lookup for the batch, before the write transaction starts
+        Map<UUID, ZoneId> zones = timezoneResolver.resolveAll(
+                accepted.stream().map(LearningEvent::getUserId).toList());
+        for (LearningEvent event : accepted) {
+            assignLocalDay(event, zones.getOrDefault(event.getUserId(), ZoneOffset.UTC));
+        }
+
+        if (spool.isEnabled() && spool.isDatabaseDown()) {
+            return spoolAll(accepted, acceptedIndexes, results);
+        }
+        Set<LearningEvent> saved = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            saved.addAll(eventWriter.writeAll(accepted));
+        } catch (RuntimeException e) {
+            if (!spool.isEnabled() || !EventSpool.isConnectivityFailure(e)) {
+                throw e;
+            }
+            spool.markDatabaseDown();
+            return spoolAll(accepted, acceptedIndexes, results);
+        }
+        for (int i = 0; i < accepted.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            LearningEvent event = accepted.get(i);
+            results[index] = saved.contains(event)
+                    ? BatchItemResult.accepted(index, event.getId())
+                    : BatchItemResult.duplicate(index, event.getId());
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Appends the accepted items of a batch to the spool; they are reported as
+     * accepted without an id, like a spooled single event.
+     */
+    private List<BatchItemResult> spoolAll(List<LearningEvent> accepted, List<Integer> acceptedIndexes,
+            BatchItemResult[] results) {
+        for (int i = 0; i < accepted.size(); i++) {
+            LearningEvent event = accepted.get(i);
+            // Persist may have assigned an id before the transaction failed
+            event.setId(null);
+            spool.append(event);
+            results[acceptedIndexes.get(i)] = BatchItemResult.accepted(acceptedIndexes.get(i), null);
+        }
+        return List.of(results);
+    }
+
+    private void validateEvent(LearningEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Event cannot be null");
+        }
+        // A single bad row must not abort the whole batch insert or group
+        // commit, so the NOT NULL columns are checked up front
+        if (event.getUserId() == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (event.getEventType() == null || event.getEventType().isBlank()) {
+            throw new IllegalArgumentException("Event type cannot be null or empty");
+        }
+        validateClientEventId(event.getClientEventId());
         if (event.getPayload() != null && !event.getPayload().isBlank()) {
             payloadValidator.validate(event.getEventType(), event.getPayload());
         }
+    }
+
+    /**
+     * Records the user's time zone and the calendar day the event falls on
+     * there, so streaks and daily activity need no zone lookup later.
+     */
+    private void assignLocalDay(LearningEvent event) {
+        assignLocalDay(event, event.getUserId() != null ? timezoneResolver.resolve(event.getUserId()) : ZoneOffset.UTC);
+    }
+
+    private void assignLocalDay(LearningEvent event, ZoneId zone) {
+        if (event.getOccurredAt() == null) {
+            event.setOccurredAt(OffsetDateTime.now());
+        }
+        event.setTimeZone(zone.getId());
+        event.setLocalDay(event.getOccurredAt().atZoneSameInstant(zone).toLocalDate());
+    }
 
-        return repository.save(event);
+    private void validateClientEventId(String clientEventId) {
+        if (clientEventId != null && clientEventId.length() > MAX_CLIENT_EVENT_ID_LENGTH) {
+            throw new IllegalArgumentException(
+                    "clientEventId must be at most " + MAX_CLIENT_EVENT_ID_LENGTH + " characters");
+        }
     }
 
     public Page<LearningEvent> listEvents(UUID userId, String eventType, String entityType, UUID entityId,
             OffsetDateTime from, OffsetDateTime to, Pageable pageable) {
-        return repository.findEvents(userId, eventType, entityType, entityId, from, to, pageable);
+        return repository.findAll(
+                LearningEventSpecifications.matching(userId, eventType, entityType, entityId, from, to), pageable);
+    }
+
+    /**
+     * Lists events newest first using keyset pagination. One extra row is
+     * fetched to decide whether a next page exists, so no COUNT query is run.
+     *
+     * @param cursor opaque cursor from a previous page, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public CursorPage<LearningEvent> listEventsAfter(UUID userId, String eventType, String entityType,
+            UUID entityId, OffsetDateTime from, OffsetDateTime to, String cursor, int limit) {
+        Specification<LearningEvent> spec =
+                LearningEventSpecifications.matching(userId, eventType, entityType, entityId, from, to);
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(LearningEventSpecifications.olderThan(EventCursor.decode(cursor)));
+        }
+        List<LearningEvent> events = repository.findNewestFirst(spec, limit + 1);
+
+        if (events.size() <= limit) {
+            return new CursorPage<>(events, null);
+        }
+        List<LearningEvent> page = events.subList(0, limit);
+        LearningEvent last = page.get(limit - 1);
+        return new CursorPage<>(page, new EventCursor(last.getOccurredAt(), last.getId()).encode());
     }
 }
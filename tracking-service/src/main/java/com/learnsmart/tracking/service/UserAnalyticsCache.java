@@ -0,0 +1,169 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.DailyActivityResponse;
+import com.learnsmart.tracking.dto.UserStatsResponse;
+import com.learnsmart.tracking.model.UserStatsRollup;
+import com.learnsmart.tracking.model.UserStatsRollupSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * In-process cache of per-user stats and daily activity for dashboards,
+ * which reload both on every refresh. Both caches hold at most
+ * {@code tracking.analytics-cache.max-users} users, chosen by
+ * {@link TinyLfuCache} so a sweep over many users does not push out the
+ * ones that are actually being watched.
+ * <p>
+ * {@link LearningEventWriter} drops a user's entries once new events for
+ * them commit, so this instance serves fresh numbers after its own writes.
+ * Writes through other instances are only seen once entries expire after
+ * {@code tracking.analytics-cache.ttl}.
+ * <p>
+ * Stats are cached as rollup values and turned into a response on each read,
+ * so the streak still lapses at the user's midnight. Activity hits and misses
+ * are counted per range, not per user, as a cached user may still miss on a
+ * range nobody asked for yet.
+ */
+@Component
+public class UserAnalyticsCache {
+
+    // Distinct activity ranges kept per user; dashboards ask for one or two
+    static final int MAX_RANGES_PER_USER = 4;
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final TinyLfuCache<UUID, StatsSnapshot> stats;
+    private final TinyLfuCache<UUID, Map<ActivityRange, List<DailyActivityResponse>>> activity;
+    private final LongAdder activityHits = new LongAdder();
+    private final LongAdder activityMisses = new LongAdder();
+
+    @Autowired
+    public UserAnalyticsCache(MeterRegistry meterRegistry,
+            @Value("${tracking.analytics-cache.enabled:true}") boolean enabled,
+            @Value("${tracking.analytics-cache.max-users:10000}") int maxUsers,
+            @Value("${tracking.analytics-cache.ttl:PT1M}") Duration ttl) {
+        this(meterRegistry, Clock.systemUTC(), enabled, maxUsers, ttl);
+    }
+
+    UserAnalyticsCache(MeterRegistry meterRegistry, Clock clock, boolean enabled, int maxUsers, Duration ttl) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.stats = new TinyLfuCache<>(maxUsers, ttl, clock);
+        this.activity = new TinyLfuCache<>(maxUsers, ttl, clock);
+        registerMetrics(meterRegistry, "stats", stats, stats, TinyLfuCache::hitCount, TinyLfuCache::missCount);
+        registerMetrics(meterRegistry, "activity", activity, this,
+                cache -> cache.activityHits.sum(), cache -> cache.activityMisses.sum());
+    }
+
+    /**
+     * @param loader reads the user's rollup, empty if they have none
+     */
+    public UserStatsResponse stats(UUID userId, Supplier<StatsSnapshot> loader) {
+        StatsSnapshot snapshot = enabled ? stats.get(userId, loader) : loader.get();
+        return snapshot.toResponse(clock);
+    }
+
+    public List<DailyActivityResponse> activity(UUID userId, LocalDate from, LocalDate to,
+            Supplier<List<DailyActivityResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Map<ActivityRange, List<DailyActivityResponse>> ranges = activity.get(userId, ConcurrentHashMap::new);
+        ActivityRange range = new ActivityRange(from, to);
+        List<DailyActivityResponse> cached = ranges.get(range);
+        if (cached != null) {
+            activityHits.increment();
+            return cached;
+        }
+        activityMisses.increment();
+        // A map dropped by invalidate() is no longer reachable from the
+        // cache, so a load racing with new events cannot be served later
+        List<DailyActivityResponse> loaded = loader.get();
+        if (ranges.size() >= MAX_RANGES_PER_USER) {
+            ranges.clear();
+        }
+        ranges.put(range, loaded);
+        return loaded;
+    }
+
+    public void invalidate(Collection<UUID> userIds) {
+        for (UUID userId : userIds) {
+            stats.invalidate(userId);
+            activity.invalidate(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        stats.invalidateAll();
+        activity.invalidateAll();
+    }
+
+    private static <T> void registerMetrics(MeterRegistry meterRegistry, String name, TinyLfuCache<?, ?> cache,
+            T counts, ToDoubleFunction<T> hits, ToDoubleFunction<T> misses) {
+        FunctionCounter.builder("tracking.analytics.cache.hits", counts, hits)
+                .description("Analytics reads served from the cache")
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("tracking.analytics.cache.misses", counts, misses)
+                .description("Analytics reads that went to the database")
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("tracking.analytics.cache.evictions", cache, TinyLfuCache::evictionCount)
+                .description("Users evicted from the analytics cache to stay within its size")
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("tracking.analytics.cache.size", cache, TinyLfuCache::size)
+                .description("Users in the analytics cache")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The rollup values behind a {@link UserStatsResponse}; a null summary
+     * means the user has no rollup yet.
+     */
+    public record StatsSnapshot(UserStatsRollupSummary summary, long assessmentsTaken, long totalEvents) {
+
+        static final StatsSnapshot EMPTY = new StatsSnapshot(null, 0, 0);
+
+        static StatsSnapshot of(UserStatsRollup rollup) {
+            return new StatsSnapshot(
+                    new UserStatsRollupSummary(rollup.getUserId(), rollup.getTotalSeconds(),
+                            rollup.getLastActiveDay(), rollup.getCurrentStreak(), rollup.getTimeZone(),
+                            rollup.getLessonsCompleted()),
+                    rollup.getAssessmentsTaken(),
+                    rollup.getTotalEvents());
+        }
+
+        UserStatsResponse toResponse(Clock clock) {
+            if (summary == null) {
+                return new UserStatsResponse(0.0, 0, 0, 0, 0);
+            }
+            return new UserStatsResponse(
+                    summary.totalSeconds() / 3600.0,
+                    summary.streakAt(clock.instant()),
+                    summary.lessonsCompleted(),
+                    assessmentsTaken,
+                    totalEvents);
+        }
+    }
+
+    private record ActivityRange(LocalDate from, LocalDate to) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import com.learnsmart.tracking.model.UserStatsRollup;
+import com.learnsmart.tracking.repository.UserDailyItemSketchRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the user_stats_rollup table and the per-day item sketches.
+ * Ingest applies each stored event incrementally; {@link #rebuild(UUID)}
+ * recomputes a user's rollup from the raw events, archived months included
+ * (see {@link EventHistory}). Distinct lessons and
+ * assessments are counted with {@link HyperLogLog} sketches, so neither path
+ * keeps a per-item row or set.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserStatsRollupService {
+
+    static final String ITEM_LESSON = "LESSON";
+    static final String ITEM_ASSESSMENT = "ASSESSMENT";
+
+    private final UserStatsRollupRepository rollupRepository;
+    private final UserDailyItemSketchRepository sketchRepository;
+    private final EventHistory eventHistory;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Applies freshly stored events to their users' rollups. Runs inside the
+     * caller's transaction so the rollup commits together with the events.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(List<LearningEvent> events) {
+        // Lock users in a fixed order so concurrent batches cannot deadlock
+        Map<UUID, List<LearningEvent>> byUser = events.stream()
+                .collect(Collectors.groupingBy(LearningEvent::getUserId, TreeMap::new, Collectors.toList()));
+
+        byUser.forEach((userId, userEvents) -> {
+            rollupRepository.insertIfAbsent(userId);
+            UserStatsRollup rollup = rollupRepository.findForUpdate(userId)
+                    .orElseThrow(() -> new IllegalStateException("Rollup row missing for user " + userId));
+
+            // The row lock above also serializes updates to the user's daily sketches
+            HyperLogLog lessons = HyperLogLog.fromBytes(rollup.getLessonsSketch());
+            HyperLogLog assessments = HyperLogLog.fromBytes(rollup.getAssessmentsSketch());
+            DailySketches daily = new DailySketches(userId);
+
+            userEvents.sort(Comparator.comparing(LearningEvent::getOccurredAt));
+            for (LearningEvent event : userEvents) {
+                record(rollup, lessons, assessments, daily, event);
+            }
+            daily.flush();
+            storeItemCounts(rollup, lessons, assessments);
+            rollupRepository.save(rollup);
+        });
+    }
+
+    /**
+     * Recomputes a user's rollup from scratch by streaming their events in time
+     * order, which also repairs streaks affected by late events.
+     */
+    @Transactional
+    public UserStatsRollup rebuild(UUID userId) {
+        rollupRepository.insertIfAbsent(userId);
+        rollupRepository.findForUpdate(userId);
+        sketchRepository.deleteByUser(userId);
+
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        HyperLogLog lessons = new HyperLogLog();
+        HyperLogLog assessments = new HyperLogLog();
+        DailySketches daily = new DailySketches(userId);
+
+        try (Stream<LearningEvent> events = eventHistory.streamByUser(userId)) {
+            events.forEach(event -> {
+                record(rollup, lessons, assessments, daily, event);
+                // Keep memory flat for users with long histories
+                entityManager.detach(event);
+            });
+        }
+        daily.flush();
+        storeItemCounts(rollup, lessons, assessments);
+
+        return rollupRepository.save(rollup);
+    }
+
+    /**
+     * Rebuilds the rollup of every user with events, one transaction per user.
+     *
+     * @return number of users rebuilt
+     */
+    public int rebuildAll() {
+        List<UUID> userIds = eventHistory.findDistinctUserIds();
+        for (UUID userId : userIds) {
+            transactionTemplate.executeWithoutResult(status -> rebuild(userId));
+        }
+        log.info("Rebuilt stats rollup for {} users", userIds.size());
+        return userIds.size();
+    }
+
+    private static void record(UserStatsRollup rollup, HyperLogLog lessons, HyperLogLog assessments,
+            DailySketches daily, LearningEvent event) {
+        LocalDate day = AnalyticsService.activityDay(event);
+        if (event.getTimeZone() != null) {
+            rollup.setTimeZone(event.getTimeZone());
+        }
+        rollup.record(day, AnalyticsService.extractDurationSeconds(event));
+
+        String itemKind = itemKind(event);
+        if (itemKind != null && event.getEntityId() != null) {
+            (ITEM_LESSON.equals(itemKind) ? lessons : assessments).add(event.getEntityId());
+            daily.add(day, itemKind, event.getEntityId());
+        }
+    }
+
+    private static void storeItemCounts(UserStatsRollup rollup, HyperLogLog lessons, HyperLogLog assessments) {
+        rollup.setLessonsSketch(lessons.toBytes());
+        rollup.setAssessmentsSketch(assessments.toBytes());
+        rollup.setLessonsCompleted(lessons.estimate());
+        rollup.setAssessmentsTaken(assessments.estimate());
+    }
+
+    private static String itemKind(LearningEvent event) {
+        String type = event.getEventType();
+        if ("content_view".equals(type)) {
+            return ITEM_LESSON;
+        }
+        if ("assessment_completed".equals(type) || "assessment_started".equals(type)) {
+            return ITEM_ASSESSMENT;
+        }
+        return null;
+    }
+
+    /**
+     * Collects the items of one day at a time and merges them into the stored
+     * daily sketches when the day changes. Expects events in time order.
+     */
+    private class DailySketches {
+
+        private final UUID userId;
+        private final Map<String, HyperLogLog> byKind = new HashMap<>();
+        private LocalDate day;
+
+        DailySketches(UUID userId) {
+            this.userId = userId;
+        }
+
+        void add(LocalDate eventDay, String itemKind, UUID entityId) {
+            if (!eventDay.equals(day)) {
+                flush();
+                day = eventDay;
+            }
+            byKind.computeIfAbsent(itemKind, kind -> new HyperLogLog()).add(entityId);
+        }
+
+        void flush() {
+            byKind.forEach((itemKind, sketch) -> {
+                UserDailyItemSketch row = sketchRepository.findById(new UserDailyItemSketch.Key(userId, day, itemKind))
+                        .orElseGet(() -> new UserDailyItemSketch(userId, day, itemKind, null));
+                HyperLogLog stored = HyperLogLog.fromBytes(row.getSketch());
+                stored.merge(sketch);
+                row.setSketch(stored.toBytes());
+                sketchRepository.save(row);
+            });
+            byKind.clear();
+        }
+    }
+}
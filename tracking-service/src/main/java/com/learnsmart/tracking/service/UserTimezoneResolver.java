@@ -0,0 +1,152 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.client.ProfileClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resolves the time zone a user's events are bucketed into, from the
+ * {@code timezone} of their profile in profile-service.
+ * <p>
+ * Lookups are cached per user for {@code tracking.timezones.cache-ttl}, so a
+ * changed profile zone applies to new events after at most that long. Users
+ * without a (valid) zone get UTC. If profile-service fails, events fall back
+ * to UTC without caching the answer, and lookups are paused for
+ * {@code tracking.timezones.failure-backoff} so an outage does not add a
+ * timeout to every ingest request. A lookup rejected for the caller's token
+ * also falls back to UTC uncached, but does not pause lookups for others.
+ */
+@Slf4j
+@Component
+public class UserTimezoneResolver {
+
+    private final ProfileClient profileClient;
+    private final Clock clock;
+    private final Duration failureBackoff;
+    private final ExpiringCache<UUID, ZoneId> zones;
+    private volatile Instant pausedUntil = Instant.MIN;
+
+    @Autowired
+    public UserTimezoneResolver(ProfileClient profileClient,
+            @Value("${tracking.timezones.cache-ttl:PT1H}") Duration cacheTtl,
+            @Value("${tracking.timezones.cache-max-entries:100000}") int cacheMaxEntries,
+            @Value("${tracking.timezones.failure-backoff:PT30S}") Duration failureBackoff) {
+        this(profileClient, Clock.systemUTC(), cacheTtl, cacheMaxEntries, failureBackoff);
+    }
+
+    UserTimezoneResolver(ProfileClient profileClient, Clock clock, Duration cacheTtl, int cacheMaxEntries,
+            Duration failureBackoff) {
+        this.profileClient = profileClient;
+        this.clock = clock;
+        this.failureBackoff = failureBackoff;
+        this.zones = new ExpiringCache<>(cacheTtl, cacheMaxEntries, clock);
+    }
+
+    public ZoneId resolve(UUID userId) {
+        try {
+            return zones.get(userId, () -> lookup(userId));
+        } catch (ProfileUnavailableException e) {
+            return ZoneOffset.UTC;
+        }
+    }
+
+    /**
+     * Resolves the zones of several users, looking up all users that are not
+     * cached with a single profile-service call. Meant to run before the
+     * events' transaction, so no connection is held during the call.
+     */
+    public Map<UUID, ZoneId> resolveAll(Collection<UUID> userIds) {
+        Map<UUID, ZoneId> resolved = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID userId : new LinkedHashSet<>(userIds)) {
+            ZoneId zone = zones.getIfPresent(userId);
+            if (zone != null) {
+                resolved.put(userId, zone);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+
+        Map<UUID, String> timezones = null;
+        if (!clock.instant().isBefore(pausedUntil)) {
+            try {
+                timezones = profileClient.getTimezones(missing);
+            } catch (RuntimeException e) {
+                failed(missing.size() + " users", e);
+            }
+        }
+        for (UUID userId : missing) {
+            if (timezones == null) {
+                resolved.put(userId, ZoneOffset.UTC);
+                continue;
+            }
+            String timezone = timezones.get(userId);
+            ZoneId zone = timezone != null ? parse(userId, timezone) : ZoneOffset.UTC;
+            zones.put(userId, zone);
+            resolved.put(userId, zone);
+        }
+        return resolved;
+    }
+
+    private ZoneId lookup(UUID userId) {
+        if (clock.instant().isBefore(pausedUntil)) {
+            throw new ProfileUnavailableException();
+        }
+        Optional<String> timezone;
+        try {
+            timezone = profileClient.getTimezone(userId);
+        } catch (RuntimeException e) {
+            failed("user " + userId, e);
+            throw new ProfileUnavailableException();
+        }
+        return timezone.map(zone -> parse(userId, zone)).orElse(ZoneOffset.UTC);
+    }
+
+    private void failed(String lookup, RuntimeException e) {
+        if (e instanceof HttpClientErrorException.Unauthorized || e instanceof HttpClientErrorException.Forbidden) {
+            // Specific to the caller's token, profile-service itself is fine
+            log.debug("Time zone lookup of {} was rejected, using UTC: {}", lookup, e.getMessage());
+            return;
+        }
+        pausedUntil = clock.instant().plus(failureBackoff);
+        log.warn("Failed to fetch time zone of {}, using UTC: {}", lookup, e.getMessage());
+    }
+
+    private static ZoneId parse(UUID userId, String zone) {
+        try {
+            return ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            log.warn("User {} has an invalid time zone '{}', using UTC", userId, zone);
+            return ZoneOffset.UTC;
+        }
+    }
+
+    // Keeps a failed lookup out of the cache
+    private static final class ProfileUnavailableException extends RuntimeException {
+
+        ProfileUnavailableException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.learnsmart.tracking.validator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.learnsmart.tracking.validator.EventPayloadValidator.FieldFormat;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A payload schema compiled into a single-pass check over Jackson tokens.
+ * <p>
+ * Every field the schema knows about gets a bit position. One pass over the
+ * root object records which of them are present and whether their last
+ * occurrence had a valid value (duplicate keys resolve like a Map: last one
+ * wins). Unknown fields and nested values are skipped without being
+ * materialized. The check answers only accept/reject; rejected payloads are
+ * re-validated by the Map path to build the error message.
+ */
+final class CompiledPayloadSchema {
+
+    /** Accepts any JSON object; used for event types without a schema. */
+    static final CompiledPayloadSchema ANY_OBJECT = new CompiledPayloadSchema(Map.of(), new FieldFormat[0], 0L);
+
+    private final Map<String, Integer> fieldIndexes;
+    private final FieldFormat[] formats;
+    private final long requiredMask;
+
+    private CompiledPayloadSchema(Map<String, Integer> fieldIndexes, FieldFormat[] formats, long requiredMask) {
+        this.fieldIndexes = fieldIndexes;
+        this.formats = formats;
+        this.requiredMask = requiredMask;
+    }
+
+    static CompiledPayloadSchema compile(Set<String> requiredFields, Map<String, FieldFormat> validators) {
+        Map<String, Integer> indexes = new HashMap<>();
+        requiredFields.forEach(field -> indexes.putIfAbsent(field, indexes.size()));
+        validators.keySet().forEach(field -> indexes.putIfAbsent(field, indexes.size()));
+        if (indexes.size() > Long.SIZE) {
+            throw new IllegalArgumentException("Payload schemas support at most 64 fields");
+        }
+
+        FieldFormat[] formats = new FieldFormat[indexes.size()];
+        long requiredMask = 0L;
+        for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+            formats[entry.getValue()] = validators.get(entry.getKey());
+            if (requiredFields.contains(entry.getKey())) {
+                requiredMask |= 1L << entry.getValue();
+            }
+        }
+        return new CompiledPayloadSchema(Map.copyOf(indexes), formats, requiredMask);
+    }
+
+    /**
+     * Returns true if {@code json} is a JSON object (or {@code null}) that
+     * satisfies this schema. Malformed JSON, other roots and schema violations
+     * return false.
+     */
+    boolean accepts(JsonFactory factory, String json) {
+        try (JsonParser parser = factory.createParser(json)) {
+            return accepts(parser);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean accepts(JsonParser parser) throws IOException {
+        JsonToken root = parser.nextToken();
+        if (root == JsonToken.VALUE_NULL) {
+            // A literal null payload is treated like an empty object
+            return requiredMask == 0L;
+        }
+        if (root != JsonToken.START_OBJECT) {
+            return false;
+        }
+        long present = 0L;
+        long invalid = 0L;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            Integer index = fieldIndexes.get(parser.currentName());
+            JsonToken value = parser.nextToken();
+            if (value == null) {
+                return false;
+            }
+            if (index != null) {
+                long bit = 1L << index;
+                present |= bit;
+                FieldFormat format = formats[index];
+                if (format != null && !format.test(parser, value)) {
+                    invalid |= bit;
+                } else {
+                    invalid &= ~bit;
+                }
+            }
+            parser.skipChildren();
+        }
+        return token == JsonToken.END_OBJECT
+                && (present & requiredMask) == requiredMask
+                && invalid == 0L;
+    }
+}
@@ -1,14 +1,17 @@
 package com.learnsmart.tracking.validator;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
 
 /**
  * Validates event payloads based on event type schemas.
@@ -26,100 +29,100 @@ public class EventPayloadValidator {
                 Set.of("contentItemId", "startTime"),
                 Set.of(),
                 Map.of(
-                        "contentItemId", EventPayloadValidator::isValidUUID,
-                        "startTime", EventPayloadValidator::isValidTimestamp)));
+                        "contentItemId", FieldFormat.UUID,
+                        "startTime", FieldFormat.TIMESTAMP)));
 
         // CONTENT_COMPLETE: requires contentItemId, completionTime, timeSpentMs
         SCHEMAS.put("CONTENT_COMPLETE", new PayloadSchema(
                 Set.of("contentItemId", "completionTime", "timeSpentMs"),
                 Set.of(),
                 Map.of(
-                        "contentItemId", EventPayloadValidator::isValidUUID,
-                        "completionTime", EventPayloadValidator::isValidTimestamp,
-                        "timeSpentMs", EventPayloadValidator::isPositiveNumber)));
+                        "contentItemId", FieldFormat.UUID,
+                        "completionTime", FieldFormat.TIMESTAMP,
+                        "timeSpentMs", FieldFormat.NON_NEGATIVE_NUMBER)));
 
         // EVALUATION_START: requires sessionId and skillId
         SCHEMAS.put("EVALUATION_START", new PayloadSchema(
                 Set.of("sessionId", "skillId"),
                 Set.of(),
                 Map.of(
-                        "sessionId", EventPayloadValidator::isValidUUID,
-                        "skillId", EventPayloadValidator::isValidUUID)));
+                        "sessionId", FieldFormat.UUID,
+                        "skillId", FieldFormat.UUID)));
 
         // EVALUATION_END: requires sessionId and finalScore
         SCHEMAS.put("EVALUATION_END", new PayloadSchema(
                 Set.of("sessionId", "finalScore"),
                 Set.of("itemsAnswered", "correctCount"),
                 Map.of(
-                        "sessionId", EventPayloadValidator::isValidUUID,
-                        "finalScore", EventPayloadValidator::isValidScore)));
+                        "sessionId", FieldFormat.UUID,
+                        "finalScore", FieldFormat.SCORE)));
 
         // PLAN_GENERATED: requires planId and userId
         SCHEMAS.put("PLAN_GENERATED", new PayloadSchema(
                 Set.of("planId", "userId"),
                 Set.of("moduleCount", "estimatedDurationMinutes"),
                 Map.of(
-                        "planId", EventPayloadValidator::isValidUUID,
-                        "userId", EventPayloadValidator::isValidUUID)));
+                        "planId", FieldFormat.UUID,
+                        "userId", FieldFormat.UUID)));
 
         // ACTIVITY_COMPLETE: requires activityId, planId, completedAt
         SCHEMAS.put("ACTIVITY_COMPLETE", new PayloadSchema(
                 Set.of("activityId", "planId", "completedAt"),
                 Set.of("timeSpentMs", "score"),
                 Map.of(
-                        "activityId", EventPayloadValidator::isValidUUID,
-                        "planId", EventPayloadValidator::isValidUUID,
-                        "completedAt", EventPayloadValidator::isValidTimestamp)));
+                        "activityId", FieldFormat.UUID,
+                        "planId", FieldFormat.UUID,
+                        "completedAt", FieldFormat.TIMESTAMP)));
 
         // MODULE_STARTED: requires moduleId and planId
         SCHEMAS.put("MODULE_STARTED", new PayloadSchema(
                 Set.of("moduleId", "planId"),
                 Set.of("startTime"),
                 Map.of(
-                        "moduleId", EventPayloadValidator::isValidUUID,
-                        "planId", EventPayloadValidator::isValidUUID)));
+                        "moduleId", FieldFormat.UUID,
+                        "planId", FieldFormat.UUID)));
 
         // MODULE_COMPLETED: requires moduleId, planId, completedAt
         SCHEMAS.put("MODULE_COMPLETED", new PayloadSchema(
                 Set.of("moduleId", "planId", "completedAt"),
                 Set.of("timeSpentMs", "score", "activitiesCompleted"),
                 Map.of(
-                        "moduleId", EventPayloadValidator::isValidUUID,
-                        "planId", EventPayloadValidator::isValidUUID,
-                        "completedAt", EventPayloadValidator::isValidTimestamp)));
+                        "moduleId", FieldFormat.UUID,
+                        "planId", FieldFormat.UUID,
+                        "completedAt", FieldFormat.TIMESTAMP)));
 
         // ACTIVITY_STARTED: requires activityId and planId
         SCHEMAS.put("ACTIVITY_STARTED", new PayloadSchema(
                 Set.of("activityId", "planId"),
                 Set.of("startTime", "moduleId"),
                 Map.of(
-                        "activityId", EventPayloadValidator::isValidUUID,
-                        "planId", EventPayloadValidator::isValidUUID)));
+                        "activityId", FieldFormat.UUID,
+                        "planId", FieldFormat.UUID)));
 
         // ACTIVITY_COMPLETED: requires activityId, planId, completedAt
         SCHEMAS.put("ACTIVITY_COMPLETED", new PayloadSchema(
                 Set.of("activityId", "planId", "completedAt"),
                 Set.of("timeSpentMs", "score", "moduleId"),
                 Map.of(
-                        "activityId", EventPayloadValidator::isValidUUID,
-                        "planId", EventPayloadValidator::isValidUUID,
-                        "completedAt", EventPayloadValidator::isValidTimestamp)));
+                        "activityId", FieldFormat.UUID,
+                        "planId", FieldFormat.UUID,
+                        "completedAt", FieldFormat.TIMESTAMP)));
 
         // ASSESSMENT_STARTED: requires sessionId and skillId
         SCHEMAS.put("ASSESSMENT_STARTED", new PayloadSchema(
                 Set.of("sessionId", "skillId"),
                 Set.of("assessmentType", "startTime"),
                 Map.of(
-                        "sessionId", EventPayloadValidator::isValidUUID,
-                        "skillId", EventPayloadValidator::isValidUUID)));
+                        "sessionId", FieldFormat.UUID,
+                        "skillId", FieldFormat.UUID)));
 
         // ASSESSMENT_COMPLETED: requires sessionId and finalScore
         SCHEMAS.put("ASSESSMENT_COMPLETED", new PayloadSchema(
                 Set.of("sessionId", "finalScore"),
                 Set.of("itemsAnswered", "correctCount", "completedAt"),
                 Map.of(
-                        "sessionId", EventPayloadValidator::isValidUUID,
-                        "finalScore", EventPayloadValidator::isValidScore)));
+                        "sessionId", FieldFormat.UUID,
+                        "finalScore", FieldFormat.SCORE)));
 
         // PAGE_VIEW: minimal validation (optional fields only)
         SCHEMAS.put("PAGE_VIEW", new PayloadSchema(
@@ -130,6 +133,10 @@ public class EventPayloadValidator {
 
     /**
      * Validates payload JSON string against the schema for the given event type.
+     * <p>
+     * Payloads are checked in a single streaming pass by the schema's
+     * {@link CompiledPayloadSchema}. Only payloads it does not accept go through
+     * {@link #validateWithMap}, which produces the detailed error message.
      *
      * @param eventType   the type of event
      * @param payloadJson the payload as JSON string
@@ -149,6 +156,20 @@ public class EventPayloadValidator {
             return;
         }
 
+        if (compiledSchema(eventType).accepts(objectMapper.getFactory(), payloadJson)) {
+            return;
+        }
+        validateWithMap(eventType, payloadJson);
+        // Both paths implement the same rules, so this is not expected to be reached
+        throw new IllegalArgumentException("Invalid payload for event type: " + eventType);
+    }
+
+    /**
+     * Reference implementation: deserializes the payload into a Map and checks
+     * it field by field. Used to report why a payload was rejected, and kept as
+     * the baseline for parity tests and benchmarks.
+     */
+    void validateWithMap(String eventType, String payloadJson) {
         // Parse JSON to Map
         Map<String, Object> payload;
         try {
@@ -157,6 +178,10 @@ public class EventPayloadValidator {
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid JSON payload: " + e.getMessage());
         }
+        if (payload == null) {
+            // A literal null payload is treated like an empty object
+            payload = Map.of();
+        }
 
         PayloadSchema schema = SCHEMAS.get(eventType);
         if (schema == null) {
@@ -175,7 +200,7 @@ public class EventPayloadValidator {
         }
 
         // Validate field types
-        for (Map.Entry<String, Predicate<Object>> entry : schema.validators.entrySet()) {
+        for (Map.Entry<String, FieldFormat> entry : schema.validators.entrySet()) {
             String field = entry.getKey();
             if (payload.containsKey(field)) {
                 Object value = payload.get(field);
@@ -188,6 +213,18 @@ public class EventPayloadValidator {
         }
     }
 
+    static CompiledPayloadSchema compiledSchema(String eventType) {
+        PayloadSchema schema = SCHEMAS.get(eventType);
+        return schema != null ? schema.compiled : CompiledPayloadSchema.ANY_OBJECT;
+    }
+
+    /**
+     * Event types that have a registered schema.
+     */
+    static Set<String> registeredEventTypes() {
+        return SCHEMAS.keySet();
+    }
+
     // Validation predicates
 
     private static boolean isValidUUID(Object value) {
@@ -226,20 +263,118 @@ public class EventPayloadValidator {
         return false;
     }
 
+    /**
+     * Value formats a schema can require for a field. Each format has a check
+     * on deserialized values (Map path) and an equivalent check on the current
+     * token of a streaming parser (compiled path).
+     */
+    enum FieldFormat {
+        UUID {
+            @Override
+            boolean test(Object value) {
+                return isValidUUID(value);
+            }
+
+            @Override
+            boolean test(JsonParser parser, JsonToken token) throws IOException {
+                return token == JsonToken.VALUE_STRING && isUuidText(
+                        parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+        },
+        TIMESTAMP {
+            @Override
+            boolean test(Object value) {
+                return isValidTimestamp(value);
+            }
+
+            @Override
+            boolean test(JsonParser parser, JsonToken token) throws IOException {
+                if (token == JsonToken.VALUE_STRING) {
+                    try {
+                        Instant.parse(CharBuffer.wrap(
+                                parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+                        return true;
+                    } catch (Exception e) {
+                        return false;
+                    }
+                }
+                // Integers deserialize to Integer or Long unless they overflow into BigInteger
+                return token == JsonToken.VALUE_NUMBER_INT
+                        && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER;
+            }
+        },
+        NON_NEGATIVE_NUMBER {
+            @Override
+            boolean test(Object value) {
+                return isPositiveNumber(value);
+            }
+
+            @Override
+            boolean test(JsonParser parser, JsonToken token) throws IOException {
+                if (token == JsonToken.VALUE_NUMBER_INT) {
+                    long value = parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                            ? parser.getBigIntegerValue().longValue()
+                            : parser.getLongValue();
+                    return value >= 0;
+                }
+                // Same truncation as Double.longValue()
+                return token == JsonToken.VALUE_NUMBER_FLOAT && (long) parser.getDoubleValue() >= 0;
+            }
+        },
+        SCORE {
+            @Override
+            boolean test(Object value) {
+                return isValidScore(value);
+            }
+
+            @Override
+            boolean test(JsonParser parser, JsonToken token) throws IOException {
+                if (!token.isNumeric()) {
+                    return false;
+                }
+                double score = parser.getDoubleValue();
+                return score >= 0.0 && score <= 1.0;
+            }
+        };
+
+        abstract boolean test(Object value);
+
+        abstract boolean test(JsonParser parser, JsonToken token) throws IOException;
+    }
+
+    private static boolean isUuidText(char[] text, int offset, int length) {
+        if (length != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = text[offset + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Internal class representing a payload schema.
      */
     private static class PayloadSchema {
         final Set<String> requiredFields;
         final Set<String> optionalFields;
-        final Map<String, Predicate<Object>> validators;
+        final Map<String, FieldFormat> validators;
+        final CompiledPayloadSchema compiled;
 
         PayloadSchema(Set<String> requiredFields,
                 Set<String> optionalFields,
-                Map<String, Predicate<Object>> validators) {
+                Map<String, FieldFormat> validators) {
             this.requiredFields = requiredFields;
             this.optionalFields = optionalFields;
             this.validators = validators;
+            this.compiled = CompiledPayloadSchema.compile(requiredFields, validators);
         }
     }
 }
@@ -2,19 +2,77 @@
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
 
 DROP TABLE IF EXISTS learning_events_v2 CASCADE;
+DROP TABLE IF EXISTS user_stats_rollup CASCADE;
+DROP TABLE IF EXISTS user_stats_rollup_items CASCADE;
+DROP TABLE IF EXISTS user_daily_item_sketches CASCADE;
+DROP TABLE IF EXISTS user_daily_activity CASCADE;
 
+-- Range-partitioned by month on occurred_at. Monthly partitions are created
+-- ahead of time and expired by EventPartitionMaintenanceJob; the default
+-- partition only catches events outside the managed months. The primary key
+-- must include the partition column.
 CREATE TABLE IF NOT EXISTS learning_events_v2 (
-    id              UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    id              UUID NOT NULL DEFAULT uuid_generate_v4(),
     user_id         UUID NOT NULL,
     event_type      VARCHAR(50) NOT NULL,
     entity_type     VARCHAR(50),
     entity_id       UUID,
     occurred_at     TIMESTAMPTZ NOT NULL DEFAULT now(),
+    client_event_id VARCHAR(100),
     payload         TEXT,
     created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
-    deleted_at      TIMESTAMPTZ
-);
+    deleted_at      TIMESTAMPTZ,
+    -- User's zone at ingest and the day occurred_at falls on there
+    time_zone       VARCHAR(64),
+    local_day       DATE,
+    PRIMARY KEY (id, occurred_at)
+) PARTITION BY RANGE (occurred_at);
+
+CREATE TABLE IF NOT EXISTS learning_events_v2_default PARTITION OF learning_events_v2 DEFAULT;
 
 CREATE INDEX IF NOT EXISTS idx_learning_events_user_occurred ON learning_events_v2 (user_id, occurred_at DESC);
 CREATE INDEX IF NOT EXISTS idx_learning_events_type_occurred ON learning_events_v2 (event_type, occurred_at DESC);
-CREATE INDEX IF NOT EXISTS idx_learning_events_entity ON learning_events_v2 (entity_type, entity_id);
+CREATE INDEX IF NOT EXISTS idx_learning_events_entity ON learning_events_v2 (entity_id, entity_type);
+CREATE INDEX IF NOT EXISTS idx_learning_events_occurred ON learning_events_v2 (occurred_at DESC);
+-- Confirms possible duplicates reported by the in-memory dedupe filter (see
+-- EventDeduplicator). Unique indexes on a partitioned table must contain the
+-- partition column, so retries are rejected when they repeat occurred_at.
+-- Events sent without occurred_at get the server time on each attempt, so
+-- their retries never collide here; only the dedupe filter's lookup by
+-- (user_id, client_event_id) catches them, on instances that saw the key.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_learning_events_client_event
+    ON learning_events_v2 (user_id, client_event_id, occurred_at) WHERE client_event_id IS NOT NULL;
+
+-- Per-user stats maintained incrementally at ingest (see UserStatsRollupService)
+CREATE TABLE IF NOT EXISTS user_stats_rollup (
+    user_id             UUID PRIMARY KEY,
+    total_events        BIGINT NOT NULL DEFAULT 0,
+    total_seconds       DOUBLE PRECISION NOT NULL DEFAULT 0,
+    last_active_day     DATE,
+    current_streak      INTEGER NOT NULL DEFAULT 0,
+    time_zone           VARCHAR(64),
+    lessons_completed   BIGINT NOT NULL DEFAULT 0,
+    assessments_taken   BIGINT NOT NULL DEFAULT 0,
+    lessons_sketch      BYTEA,
+    assessments_sketch  BYTEA,
+    updated_at          TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Distinct lessons/assessments per user and day as serialized HyperLogLog
+-- sketches (exact below 256 items); merged for cohort counts
+CREATE TABLE IF NOT EXISTS user_daily_item_sketches (
+    user_id         UUID NOT NULL,
+    activity_day    DATE NOT NULL,
+    item_kind       VARCHAR(20) NOT NULL,
+    sketch          BYTEA NOT NULL,
+    PRIMARY KEY (user_id, activity_day, item_kind)
+);
+
+-- Per-user daily totals maintained at ingest (see DailyActivityService)
+CREATE TABLE IF NOT EXISTS user_daily_activity (
+    user_id             UUID NOT NULL,
+    activity_day        DATE NOT NULL,
+    event_count         BIGINT NOT NULL DEFAULT 0,
+    duration_seconds    DOUBLE PRECISION NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, activity_day)
+);
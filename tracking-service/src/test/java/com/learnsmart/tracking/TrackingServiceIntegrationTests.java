@@ -1,15 +1,32 @@
 package com.learnsmart.tracking;
 
+import com.learnsmart.tracking.dto.BatchItemResult;
+import com.learnsmart.tracking.dto.CursorPage;
 import com.learnsmart.tracking.model.LearningEvent;
 import com.learnsmart.tracking.repository.LearningEventRepository;
+import com.learnsmart.tracking.repository.LearningEventSpecifications;
+import com.learnsmart.tracking.service.DailyActivityService;
+import com.learnsmart.tracking.service.EventExportService;
+import com.learnsmart.tracking.service.TrackingService;
+import com.learnsmart.tracking.service.UserStatsRollupService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +38,22 @@ class TrackingServiceIntegrationTests {
     @Autowired
     private LearningEventRepository repository;
 
+    @Autowired
+    private TrackingService trackingService;
+
+    @Autowired
+    private EventExportService exportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Their upserts use ON CONFLICT, which H2 does not support
+    @MockitoBean
+    private UserStatsRollupService rollupService;
+
+    @MockitoBean
+    private DailyActivityService dailyActivityService;
+
     @Test
     void testCreateAndFilterEvents() throws InterruptedException {
         UUID userId = UUID.randomUUID();
@@ -44,14 +77,130 @@ class TrackingServiceIntegrationTests {
         repository.save(event2); // Direct save for test
 
         // 3. Test Filter by Event Type
-        Page<LearningEvent> results = repository.findEvents(
-                userId, "activity_completed", null, null, null, null, PageRequest.of(0, 10));
+        Page<LearningEvent> results = repository.findAll(LearningEventSpecifications.matching(
+                userId, "activity_completed", null, null, null, null), PageRequest.of(0, 10));
         assertEquals(1, results.getTotalElements());
         assertEquals("activity_completed", results.getContent().get(0).getEventType());
 
         // 4. Test Filter by User (All)
-        Page<LearningEvent> allUserEvents = repository.findEvents(
-                userId, null, null, null, null, null, PageRequest.of(0, 10));
+        Page<LearningEvent> allUserEvents = repository.findAll(LearningEventSpecifications.matching(
+                userId, null, null, null, null, null), PageRequest.of(0, 10));
         assertEquals(2, allUserEvents.getTotalElements());
     }
+
+    @Test
+    void testCursorPaginationWalksAllEventsOnce() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime base = OffsetDateTime.parse("2024-02-01T12:00:00Z");
+        for (int i = 0; i < 7; i++) {
+            LearningEvent event = new LearningEvent();
+            event.setUserId(userId);
+            event.setEventType("content_view");
+            // Pairs of events share a timestamp so the id tie-breaker is exercised
+            event.setOccurredAt(base.minusMinutes(i / 2));
+            repository.save(event);
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<LearningEvent> page = trackingService.listEventsAfter(
+                    userId, null, null, null, null, null, cursor, 3);
+            page.items().forEach(e -> seen.add(e.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(7, seen.size());
+        assertEquals(7, seen.stream().distinct().count());
+        List<LearningEvent> expected = repository.findAll(
+                LearningEventSpecifications.matching(userId, null, null, null, null, null),
+                Sort.by("occurredAt", "id").descending());
+        assertEquals(expected.stream().map(LearningEvent::getId).toList(), seen);
+    }
+
+    @Test
+    void testExportStreamsMatchingEventsAsNdjson() throws Exception {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime base = OffsetDateTime.parse("2024-04-01T08:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            LearningEvent event = new LearningEvent();
+            event.setUserId(userId);
+            event.setEventType(i % 2 == 0 ? "content_view" : "user_login");
+            event.setOccurredAt(base.plusMinutes(i));
+            event.setPayload("{\"seq\":" + i + "}");
+            repository.save(event);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.export(userId, "content_view", null, null, null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, written);
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode node = objectMapper.readTree(lines[i]);
+            assertEquals(userId.toString(), node.get("userId").asText());
+            assertEquals("content_view", node.get("eventType").asText());
+            assertEquals("{\"seq\":" + (i * 2) + "}", node.get("payload").asText());
+        }
+    }
+
+    @Test
+    void testClientEventIdLookupAndUniqueness() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime occurredAt = OffsetDateTime.parse("2024-04-02T09:30:00Z");
+
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType("PAGE_VIEW");
+        event.setOccurredAt(occurredAt);
+        event.setClientEventId("mobile-retry-1");
+        UUID id = repository.save(event).getId();
+
+        assertEquals(List.of(id), repository.findIdsByClientEventId(userId, "mobile-retry-1", Limit.of(1)));
+        assertTrue(repository.findIdsByClientEventId(UUID.randomUUID(), "mobile-retry-1", Limit.of(1)).isEmpty());
+
+        LearningEvent retry = new LearningEvent();
+        retry.setUserId(userId);
+        retry.setEventType("PAGE_VIEW");
+        retry.setOccurredAt(occurredAt);
+        retry.setClientEventId("mobile-retry-1");
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAndFlush(retry));
+    }
+
+    @Test
+    void testBatchReportsClientEventIdStoredElsewhereAsDuplicate() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime occurredAt = OffsetDateTime.parse("2024-04-03T10:00:00Z");
+
+        // Stored by another instance: this instance's dedupe filter has never seen the key
+        LearningEvent original = new LearningEvent();
+        original.setUserId(userId);
+        original.setEventType("PAGE_VIEW");
+        original.setOccurredAt(occurredAt);
+        original.setClientEventId("mobile-retry-2");
+        UUID originalId = repository.save(original).getId();
+
+        LearningEvent fresh = new LearningEvent();
+        fresh.setUserId(userId);
+        fresh.setEventType("PAGE_VIEW");
+        fresh.setOccurredAt(occurredAt);
+        fresh.setClientEventId("mobile-new-2");
+        LearningEvent retry = new LearningEvent();
+        retry.setUserId(userId);
+        retry.setEventType("PAGE_VIEW");
+        retry.setOccurredAt(occurredAt);
+        retry.setClientEventId("mobile-retry-2");
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(fresh, retry), null);
+
+        assertEquals(BatchItemResult.ACCEPTED, results.get(0).status());
+        assertEquals(BatchItemResult.DUPLICATE, results.get(1).status());
+        assertEquals(originalId, results.get(1).id());
+        assertEquals(2, repository.findAll(LearningEventSpecifications.matching(
+                userId, null, null, null, null, null)).size());
+    }
 }
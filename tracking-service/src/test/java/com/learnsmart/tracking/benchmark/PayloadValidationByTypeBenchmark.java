@@ -0,0 +1,49 @@
+package com.learnsmart.tracking.benchmark;
+
+import com.learnsmart.tracking.validator.EventPayloadValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating a valid payload of each registered event type, so a
+ * slow schema shows up on its own instead of inside an average.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class PayloadValidationByTypeBenchmark {
+
+    private static final int PAYLOADS = 64;
+
+    @Param({ "CONTENT_START", "CONTENT_COMPLETE", "EVALUATION_START", "EVALUATION_END", "PLAN_GENERATED",
+            "ACTIVITY_COMPLETE", "MODULE_STARTED", "MODULE_COMPLETED", "ACTIVITY_STARTED", "ACTIVITY_COMPLETED",
+            "ASSESSMENT_STARTED", "ASSESSMENT_COMPLETED", "PAGE_VIEW" })
+    public String eventType;
+
+    private final EventPayloadValidator validator = new EventPayloadValidator();
+    private String[] payloads;
+    private int cursor;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(42);
+        payloads = new String[PAYLOADS];
+        for (int i = 0; i < PAYLOADS; i++) {
+            payloads[i] = SyntheticEvents.payload(eventType, random);
+            // Fails fast if the generator drifts from the schemas
+            validator.validate(eventType, payloads[i]);
+        }
+    }
+
+    @Benchmark
+    public void validate() {
+        String payload = payloads[cursor];
+        cursor = (cursor + 1) % PAYLOADS;
+        validator.validate(eventType, payload);
+    }
+}
@@ -0,0 +1,102 @@
+package com.learnsmart.tracking.benchmark;
+
+import com.learnsmart.tracking.model.LearningEvent;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of realistic learning events for benchmarks. The
+ * same seed always produces the same events, so runs compare like for like.
+ */
+public final class SyntheticEvents {
+
+    /** Every event type with a registered payload schema. */
+    public static final String[] SCHEMA_EVENT_TYPES = {
+            "CONTENT_START", "CONTENT_COMPLETE", "EVALUATION_START", "EVALUATION_END", "PLAN_GENERATED",
+            "ACTIVITY_COMPLETE", "MODULE_STARTED", "MODULE_COMPLETED", "ACTIVITY_STARTED", "ACTIVITY_COMPLETED",
+            "ASSESSMENT_STARTED", "ASSESSMENT_COMPLETED", "PAGE_VIEW" };
+
+    // Rough production mix: mostly views, some completions and assessments
+    private static final String[] MIX = {
+            "content_view", "content_view", "content_view", "PAGE_VIEW", "PAGE_VIEW",
+            "CONTENT_COMPLETE", "ACTIVITY_COMPLETED", "assessment_started", "assessment_completed" };
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2024, 1, 1, 7, 0, 0, 0, ZoneOffset.UTC);
+    private static final ZoneId ZONE = ZoneId.of("Europe/Madrid");
+
+    private SyntheticEvents() {
+    }
+
+    /**
+     * A valid payload for one of {@link #SCHEMA_EVENT_TYPES}.
+     */
+    public static String payload(String eventType, Random random) {
+        String id = '"' + new UUID(random.nextLong(), random.nextLong()).toString() + '"';
+        String time = "\"2024-03-10T10:" + String.format("%02d", random.nextInt(60)) + ":30Z\"";
+        String score = String.format("%.2f", random.nextDouble());
+        int timeSpentMs = 30_000 + random.nextInt(1_800_000);
+        return switch (eventType) {
+            case "CONTENT_START" -> "{\"contentItemId\":" + id + ",\"startTime\":" + time + "}";
+            case "CONTENT_COMPLETE" -> "{\"contentItemId\":" + id + ",\"completionTime\":" + time
+                    + ",\"timeSpentMs\":" + timeSpentMs + "}";
+            case "EVALUATION_START", "ASSESSMENT_STARTED" -> "{\"sessionId\":" + id + ",\"skillId\":" + id
+                    + ",\"startTime\":" + time + "}";
+            case "EVALUATION_END", "ASSESSMENT_COMPLETED" -> "{\"sessionId\":" + id + ",\"finalScore\":" + score
+                    + ",\"itemsAnswered\":10,\"correctCount\":" + random.nextInt(11) + "}";
+            case "PLAN_GENERATED" -> "{\"planId\":" + id + ",\"userId\":" + id + ",\"moduleCount\":6}";
+            case "ACTIVITY_COMPLETE", "ACTIVITY_COMPLETED", "MODULE_COMPLETED" -> "{\"activityId\":" + id
+                    + ",\"moduleId\":" + id + ",\"planId\":" + id + ",\"completedAt\":" + time
+                    + ",\"timeSpentMs\":" + timeSpentMs + ",\"score\":" + score + "}";
+            case "MODULE_STARTED", "ACTIVITY_STARTED" -> "{\"activityId\":" + id + ",\"moduleId\":" + id
+                    + ",\"planId\":" + id + ",\"startTime\":" + time + "}";
+            case "PAGE_VIEW" -> "{\"page\":\"/courses/" + random.nextInt(500) + "\",\"referrer\":\"/dashboard\","
+                    + "\"sessionId\":" + id + "}";
+            case "content_view" -> "{\"contentItemId\":" + id + ",\"durationSeconds\":" + (30 + random.nextInt(1_200))
+                    + ",\"device\":{\"os\":\"android\",\"version\":\"14\"}}";
+            default -> "{\"sessionId\":" + id + "}";
+        };
+    }
+
+    /**
+     * One user's events in time order, a few per active day with the odd
+     * day skipped, so streaks both grow and break. Events carry a time zone
+     * and local day as if stored by the ingest path.
+     */
+    public static List<LearningEvent> history(UUID userId, int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] lessons = new UUID[200];
+        for (int i = 0; i < lessons.length; i++) {
+            lessons[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        List<LearningEvent> events = new ArrayList<>(count);
+        OffsetDateTime time = START;
+        for (int i = 0; i < count; i++) {
+            // About 8 events a day, and one day in ten without activity
+            time = random.nextInt(8) == 0
+                    ? time.plusDays(random.nextInt(10) == 0 ? 2 : 1).withHour(7 + random.nextInt(12))
+                    : time.plusMinutes(1 + random.nextInt(20));
+            String eventType = MIX[random.nextInt(MIX.length)];
+            LearningEvent event = new LearningEvent();
+            event.setId(new UUID(random.nextLong(), random.nextLong()));
+            event.setUserId(userId);
+            event.setEventType(eventType);
+            event.setEntityType("lesson");
+            event.setEntityId(lessons[random.nextInt(lessons.length)]);
+            event.setOccurredAt(time);
+            event.setCreatedAt(time.plusSeconds(1));
+            event.setPayload(payload(eventType, random));
+            event.setTimeZone(ZONE.getId());
+            event.setLocalDay(LocalDate.ofInstant(time.toInstant(), ZONE));
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,104 @@
+package com.learnsmart.tracking.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives the admin endpoints through the real filter chain, so the bearer
+ * token goes through the configured JWT authentication converter.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    @BeforeEach
+    void tokens() {
+        when(jwtDecoder.decode("admin-token")).thenReturn(jwt(List.of("admin")));
+        when(jwtDecoder.decode("user-token")).thenReturn(jwt(List.of("user")));
+        when(jwtDecoder.decode("service-token")).thenReturn(jwt(List.of("SERVICE")));
+    }
+
+    @Test
+    void testRealmAdminRoleReachesAdminEndpoint() throws Exception {
+        mockMvc.perform(cohortDistinct().header("Authorization", "Bearer admin-token"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testUserWithoutAdminRoleIsForbidden() throws Exception {
+        mockMvc.perform(cohortDistinct().header("Authorization", "Bearer user-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testMissingTokenIsUnauthorized() throws Exception {
+        mockMvc.perform(cohortDistinct())
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testServiceAccountReachesLastActivity() throws Exception {
+        mockMvc.perform(lastActivity().header("Authorization", "Bearer service-token"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testServiceAccountStaysOutOfOtherAdminEndpoints() throws Exception {
+        mockMvc.perform(cohortDistinct().header("Authorization", "Bearer service-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testUserWithoutServiceRoleCannotReadLastActivity() throws Exception {
+        mockMvc.perform(lastActivity().header("Authorization", "Bearer user-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    private MockHttpServletRequestBuilder lastActivity() {
+        return post("/analytics/users/last-activity")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"userIds\":[\"" + UUID.randomUUID() + "\"]}");
+    }
+
+    private MockHttpServletRequestBuilder cohortDistinct() {
+        return post("/analytics/cohorts/distinct")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"userIds\":[\"" + UUID.randomUUID() + "\"]}");
+    }
+
+    private Jwt jwt(List<String> realmRoles) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(UUID.randomUUID().toString())
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .claim("realm_access", Map.of("roles", realmRoles))
+                .build();
+    }
+}
@@ -1,10 +1,20 @@
 package com.learnsmart.tracking.controller;
 
+import com.learnsmart.tracking.dto.ActivityConsistencyReport;
+import com.learnsmart.tracking.dto.CohortDistinctResponse;
+import com.learnsmart.tracking.dto.CohortRequest;
+import com.learnsmart.tracking.dto.CohortStreakResponse;
 import com.learnsmart.tracking.dto.DailyActivityResponse;
 import com.learnsmart.tracking.dto.UserStatsResponse;
+import com.learnsmart.tracking.model.UserLastActivity;
 import com.learnsmart.tracking.service.AnalyticsService;
+import com.learnsmart.tracking.service.CohortAnalyticsService;
+import com.learnsmart.tracking.service.DailyActivityService;
+import com.learnsmart.tracking.service.UserAnalyticsCache;
+import com.learnsmart.tracking.service.UserStatsRollupService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -12,6 +22,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -27,6 +39,18 @@ class AnalyticsControllerTest {
     @Mock
     private AnalyticsService analyticsService;
 
+    @Mock
+    private UserStatsRollupService rollupService;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private CohortAnalyticsService cohortAnalyticsService;
+
+    @Mock
+    private UserAnalyticsCache analyticsCache;
+
     @InjectMocks
     private AnalyticsController controller;
 
@@ -75,4 +99,174 @@ class AnalyticsControllerTest {
         assertTrue(response.getBody().isEmpty());
         verify(analyticsService).getActivity(eq(userId), any(LocalDate.class), any(LocalDate.class));
     }
+
+    @Test
+    void testRebuildUserStats() {
+        UUID userId = UUID.randomUUID();
+        UserStatsResponse stats = new UserStatsResponse(2.0, 1, 4, 0, 12);
+        when(analyticsService.calculateStats(userId)).thenReturn(stats);
+
+        ResponseEntity<UserStatsResponse> response = controller.rebuildUserStats(userId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
+        InOrder inOrder = inOrder(rollupService, analyticsCache, analyticsService);
+        inOrder.verify(rollupService).rebuild(userId);
+        inOrder.verify(analyticsCache).invalidate(List.of(userId));
+        inOrder.verify(analyticsService).calculateStats(userId);
+    }
+
+    @Test
+    void testRebuildAllStats() {
+        when(rollupService.rebuildAll()).thenReturn(7);
+
+        var response = controller.rebuildAllStats();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(7, response.getBody().get("usersRebuilt"));
+        verify(analyticsCache).invalidateAll();
+    }
+
+    @Test
+    void testBackfillUserActivity() {
+        UUID userId = UUID.randomUUID();
+        when(dailyActivityService.backfill(userId)).thenReturn(12);
+
+        var response = controller.backfillUserActivity(userId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(12, response.getBody().get("daysBackfilled"));
+        verify(analyticsCache).invalidate(List.of(userId));
+    }
+
+    @Test
+    void testCheckActivityConsistency() {
+        UUID userId = UUID.randomUUID();
+        LocalDate from = LocalDate.now().minusDays(7);
+        LocalDate to = LocalDate.now();
+        ActivityConsistencyReport report = new ActivityConsistencyReport(userId, from, to, 3, List.of());
+        when(dailyActivityService.checkConsistency(userId, from, to)).thenReturn(report);
+
+        ResponseEntity<ActivityConsistencyReport> response = controller.checkActivityConsistency(userId, from, to);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().consistent());
+    }
+
+    @Test
+    void testGetCohortDistinct() {
+        List<UUID> userIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        LocalDate to = LocalDate.of(2024, 3, 31);
+        CohortDistinctResponse result = new CohortDistinctResponse(2, from, to, 2, 14, 3, true);
+        when(analyticsService.cohortDistinct(userIds, from, to)).thenReturn(result);
+
+        ResponseEntity<?> response = controller.getCohortDistinct(new CohortRequest(userIds, from, to));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    @Test
+    void testGetCohortDistinct_DefaultDates() {
+        List<UUID> userIds = List.of(UUID.randomUUID());
+
+        controller.getCohortDistinct(new CohortRequest(userIds, null, null));
+
+        verify(analyticsService).cohortDistinct(eq(userIds), any(LocalDate.class), any(LocalDate.class));
+    }
+
+    @Test
+    void testGetLastActivity() {
+        UUID active = UUID.randomUUID();
+        List<UUID> userIds = List.of(active, UUID.randomUUID());
+        List<UserLastActivity> result = List.of(
+                new UserLastActivity(active, OffsetDateTime.parse("2024-03-10T08:00:00Z")));
+        when(analyticsService.lastActivity(userIds)).thenReturn(result);
+
+        ResponseEntity<?> response = controller.getLastActivity(new CohortRequest(userIds, null, null));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    @Test
+    void testGetLastActivity_RejectsEmptyCohort() {
+        ResponseEntity<?> response = controller.getLastActivity(new CohortRequest(List.of(), null, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(analyticsService);
+    }
+
+    @Test
+    void testGetCohortDistinct_RejectsEmptyOrOversizedCohort() {
+        List<UUID> tooMany = Collections.nCopies(AnalyticsController.MAX_COHORT_SIZE + 1, UUID.randomUUID());
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                controller.getCohortDistinct(new CohortRequest(List.of(), null, null)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                controller.getCohortDistinct(new CohortRequest(null, null, null)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                controller.getCohortDistinct(new CohortRequest(tooMany, null, null)).getStatusCode());
+        verifyNoInteractions(analyticsService);
+    }
+
+    @Test
+    void testGetCohortDistinct_RejectsInvertedRange() {
+        LocalDate today = LocalDate.now();
+
+        ResponseEntity<?> response = controller.getCohortDistinct(
+                new CohortRequest(List.of(UUID.randomUUID()), today, today.minusDays(1)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(analyticsService);
+    }
+
+    @Test
+    void testGetCohortLeaderboard_ClampsLimit() {
+        List<UUID> userIds = List.of(UUID.randomUUID());
+
+        controller.getCohortLeaderboard(new CohortRequest(userIds, null, null), 5_000);
+        controller.getCohortLeaderboard(new CohortRequest(userIds, null, null), 0);
+
+        verify(cohortAnalyticsService).leaderboard(userIds, CohortAnalyticsService.MAX_LEADERBOARD_SIZE);
+        verify(cohortAnalyticsService).leaderboard(userIds, 1);
+    }
+
+    @Test
+    void testGetCohortStreaks() {
+        List<UUID> userIds = List.of(UUID.randomUUID());
+        CohortStreakResponse result = new CohortStreakResponse(1, LocalDate.now(), List.of());
+        when(cohortAnalyticsService.streaks(userIds)).thenReturn(result);
+
+        ResponseEntity<?> response = controller.getCohortStreaks(new CohortRequest(userIds, null, null));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(result, response.getBody());
+    }
+
+    @Test
+    void testGetCohortStreaks_RejectsNullUserId() {
+        List<UUID> userIds = new ArrayList<>();
+        userIds.add(null);
+
+        ResponseEntity<?> response = controller.getCohortStreaks(new CohortRequest(userIds, null, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(cohortAnalyticsService);
+    }
+
+    @Test
+    void testGetCohortDailyActive_LimitsRange() {
+        List<UUID> userIds = List.of(UUID.randomUUID());
+        LocalDate to = LocalDate.of(2024, 12, 31);
+
+        ResponseEntity<?> tooLong = controller.getCohortDailyActive(
+                new CohortRequest(userIds, to.minusDays(AnalyticsController.MAX_DAILY_ACTIVE_DAYS + 1), to));
+        controller.getCohortDailyActive(
+                new CohortRequest(userIds, to.minusDays(AnalyticsController.MAX_DAILY_ACTIVE_DAYS), to));
+
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatusCode());
+        verify(cohortAnalyticsService).dailyActive(userIds, to.minusDays(AnalyticsController.MAX_DAILY_ACTIVE_DAYS), to);
+    }
 }
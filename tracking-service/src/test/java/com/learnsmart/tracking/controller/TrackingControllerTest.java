@@ -1,25 +1,51 @@
 package com.learnsmart.tracking.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.dto.BatchIngestResponse;
+import com.learnsmart.tracking.dto.BatchItemResult;
+import com.learnsmart.tracking.dto.CursorPage;
 import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.service.EventArchive;
+import com.learnsmart.tracking.service.EventExportService;
+import com.learnsmart.tracking.service.IngestBufferFullException;
+import com.learnsmart.tracking.service.IngestRateLimitedException;
+import com.learnsmart.tracking.service.LiveEventHub;
 import com.learnsmart.tracking.service.TrackingService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +54,18 @@ class TrackingControllerTest {
         @Mock
         private TrackingService service;
 
+        @Mock
+        private EventExportService exportService;
+
+        @Mock
+        private LiveEventHub liveEventHub;
+
+        @Mock
+        private EventArchive archive;
+
+        @Spy
+        private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
         @InjectMocks
         private TrackingController controller;
 
@@ -38,11 +76,11 @@ class TrackingControllerTest {
                 event.setPayload(
                                 "{\"contentItemId\":\"123e4567-e89b-12d3-a456-426614174000\",\"startTime\":\"2024-01-01T10:00:00Z\"}");
 
-                when(service.createEvent(any(LearningEvent.class))).thenReturn(event);
+                when(service.createEvent(any(LearningEvent.class), any())).thenReturn(event);
 
-                ResponseEntity<?> response = controller.createEvent(event);
+                ResponseEntity<?> response = controller.createEvent(event, null);
                 assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
-                verify(service).createEvent(event);
+                verify(service).createEvent(event, null);
         }
 
         @Test
@@ -51,12 +89,41 @@ class TrackingControllerTest {
                 event.setEventType("CONTENT_START");
                 event.setPayload("{\"invalid\":\"data\"}");
 
-                when(service.createEvent(any(LearningEvent.class)))
+                when(service.createEvent(any(LearningEvent.class), any()))
                                 .thenThrow(new IllegalArgumentException("Missing required field 'contentItemId'"));
 
-                ResponseEntity<?> response = controller.createEvent(event);
+                ResponseEntity<?> response = controller.createEvent(event, null);
                 assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
-                verify(service).createEvent(event);
+                verify(service).createEvent(event, null);
+        }
+
+        @Test
+        void testCreateEventBufferFull() {
+                LearningEvent event = new LearningEvent();
+                event.setEventType("PAGE_VIEW");
+
+                when(service.createEvent(any(LearningEvent.class), any()))
+                                .thenThrow(new IngestBufferFullException("Event ingest buffer is full, retry later"));
+
+                ResponseEntity<?> response = controller.createEvent(event, null);
+                assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+                assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        }
+
+        @Test
+        void testCreateEventRateLimited() {
+                UUID userId = UUID.randomUUID();
+                LearningEvent event = new LearningEvent();
+                event.setUserId(userId);
+                event.setEventType("PAGE_VIEW");
+
+                when(service.createEvent(event, null))
+                                .thenThrow(new IngestRateLimitedException("Too many events for user " + userId,
+                                                Duration.ofMillis(1_200)));
+
+                ResponseEntity<?> response = controller.createEvent(event, null);
+                assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+                assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
         }
 
         @Test
@@ -69,7 +136,7 @@ class TrackingControllerTest {
                                 .thenReturn(page);
 
                 Page<LearningEvent> result = controller.getEvents(
-                                userId, null, null, null, null, null, pageable);
+                                userId, null, null, null, null, null, pageable).getBody();
 
                 assertNotNull(result);
                 assertTrue(result.isEmpty());
@@ -88,9 +155,179 @@ class TrackingControllerTest {
                                 .thenReturn(page);
 
                 Page<LearningEvent> result = controller.getEvents(
-                                userId, "content_view", "content", entityId, from, to, pageable);
+                                userId, "content_view", "content", entityId, from, to, pageable).getBody();
 
                 assertNotNull(result);
                 verify(service).listEvents(userId, "content_view", "content", entityId, from, to, pageable);
         }
+
+        @Test
+        void testCreateEventsBatch() {
+                LearningEvent event = new LearningEvent();
+                event.setUserId(UUID.randomUUID());
+                event.setEventType("PAGE_VIEW");
+                UUID id = UUID.randomUUID();
+
+                when(service.createEvents(List.of(event), null))
+                                .thenReturn(List.of(BatchItemResult.accepted(0, id)));
+
+                ResponseEntity<?> response = controller.createEvents(List.of(event));
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                BatchIngestResponse body = (BatchIngestResponse) response.getBody();
+                assertEquals(1, body.accepted());
+                assertEquals(0, body.rejected());
+                assertEquals(id, body.results().get(0).id());
+        }
+
+        @Test
+        void testCreateEventsNdjson_MalformedLineRejectedIndividually() {
+                String userId = UUID.randomUUID().toString();
+                String body = "{\"userId\":\"" + userId + "\",\"eventType\":\"PAGE_VIEW\"}\n"
+                                + "not-json\n"
+                                + "\n"
+                                + "{\"userId\":\"" + userId + "\",\"eventType\":\"CONTENT_START\"}\n";
+
+                when(service.createEvents(anyList(), isNull())).thenReturn(List.of(
+                                BatchItemResult.accepted(0, UUID.randomUUID()),
+                                BatchItemResult.rejected(1, "Missing required field 'startTime'")));
+
+                ResponseEntity<?> response = controller.createEventsNdjson(body);
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                BatchIngestResponse result = (BatchIngestResponse) response.getBody();
+                assertEquals(1, result.accepted());
+                assertEquals(2, result.rejected());
+                assertEquals(List.of(0, 1, 2), result.results().stream().map(BatchItemResult::index).toList());
+                assertTrue(result.results().get(1).error().startsWith("Malformed event"));
+                assertEquals("Missing required field 'startTime'", result.results().get(2).error());
+        }
+
+        @Test
+        void testCreateEventsBatchTooLarge() {
+                ReflectionTestUtils.setField(controller, "maxBatchSize", 1);
+
+                ResponseEntity<?> response = controller.createEvents(List.of(new LearningEvent(), new LearningEvent()));
+                assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+                verify(service, never()).createEvents(anyList(), any());
+        }
+
+        @Test
+        void testGetEventsByCursor_ClampsLimit() {
+                CursorPage<LearningEvent> page = new CursorPage<>(List.of(), null);
+                when(service.listEventsAfter(null, null, null, null, null, null, null,
+                                TrackingController.MAX_CURSOR_LIMIT)).thenReturn(page);
+
+                ResponseEntity<?> response = controller.getEventsByCursor(
+                                null, null, null, null, null, null, null, 100_000);
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertSame(page, response.getBody());
+        }
+
+        @Test
+        void testGetEventsByCursor_FlagsArchiveHorizon() {
+                OffsetDateTime horizon = OffsetDateTime.parse("2024-02-01T00:00Z");
+                when(archive.horizonBefore(null)).thenReturn(Optional.of(horizon));
+                when(service.listEventsAfter(any(), any(), any(), any(), any(), any(), any(), anyInt()))
+                                .thenReturn(new CursorPage<>(List.of(), null));
+
+                ResponseEntity<?> response = controller.getEventsByCursor(
+                                null, null, null, null, null, null, null, 20);
+
+                assertEquals("2024-02-01T00:00Z",
+                                response.getHeaders().getFirst(TrackingController.ARCHIVE_HORIZON_HEADER));
+        }
+
+        @Test
+        void testGetEventsByCursor_InvalidCursor() {
+                when(service.listEventsAfter(any(), any(), any(), any(), any(), any(), eq("garbage"), anyInt()))
+                                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+                ResponseEntity<?> response = controller.getEventsByCursor(
+                                null, null, null, null, null, null, "garbage", 20);
+
+                assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
+        @Test
+        void testExportEvents_Plain() throws Exception {
+                UUID userId = UUID.randomUUID();
+                doAnswer(inv -> {
+                        inv.getArgument(6, OutputStream.class).write("{\"a\":1}\n".getBytes(StandardCharsets.UTF_8));
+                        return 1L;
+                }).when(exportService).export(eq(userId), isNull(), isNull(), isNull(), isNull(), isNull(), any());
+
+                ResponseEntity<StreamingResponseBody> response = controller.exportEvents(
+                                userId, null, null, null, null, null, null);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                response.getBody().writeTo(out);
+
+                assertEquals(TrackingController.APPLICATION_NDJSON_VALUE,
+                                response.getHeaders().getContentType().toString());
+                assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+                assertEquals("{\"a\":1}\n", out.toString(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        void testExportEvents_FlagsArchiveHorizonUnlessOneUser() {
+                OffsetDateTime from = OffsetDateTime.parse("2024-01-15T00:00Z");
+                when(archive.horizonBefore(from)).thenReturn(Optional.of(OffsetDateTime.parse("2024-02-01T00:00Z")));
+
+                assertEquals("2024-02-01T00:00Z", controller.exportEvents(null, null, null, null, from, null, null)
+                                .getHeaders().getFirst(TrackingController.ARCHIVE_HORIZON_HEADER));
+                assertNull(controller.exportEvents(UUID.randomUUID(), null, null, null, from, null, null)
+                                .getHeaders().getFirst(TrackingController.ARCHIVE_HORIZON_HEADER));
+        }
+
+        @Test
+        void testExportEvents_Gzip() throws Exception {
+                doAnswer(inv -> {
+                        inv.getArgument(6, OutputStream.class).write("{\"a\":1}\n".getBytes(StandardCharsets.UTF_8));
+                        return 1L;
+                }).when(exportService).export(any(), any(), any(), any(), any(), any(), any());
+
+                ResponseEntity<StreamingResponseBody> response = controller.exportEvents(
+                                null, null, null, null, null, null, "gzip, deflate");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                response.getBody().writeTo(out);
+
+                assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                        assertEquals("{\"a\":1}\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
+        @Test
+        void testCreateEvent_IdempotencyKeySetsClientEventId() {
+                LearningEvent event = new LearningEvent();
+                event.setEventType("PAGE_VIEW");
+                when(service.createEvent(any(LearningEvent.class), any())).thenReturn(event);
+
+                ResponseEntity<?> response = controller.createEvent(event, "retry-key-1");
+
+                assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+                assertEquals("retry-key-1", event.getClientEventId());
+        }
+
+        @Test
+        void testStreamEvents() {
+                UUID userId = UUID.randomUUID();
+                SseEmitter emitter = new SseEmitter();
+                when(liveEventHub.subscribe(userId)).thenReturn(Optional.of(emitter));
+
+                ResponseEntity<SseEmitter> response = controller.streamEvents(userId);
+
+                assertEquals(HttpStatus.OK, response.getStatusCode());
+                assertSame(emitter, response.getBody());
+        }
+
+        @Test
+        void testStreamEvents_TooManySubscribers() {
+                when(liveEventHub.subscribe(any())).thenReturn(Optional.empty());
+
+                ResponseEntity<SseEmitter> response = controller.streamEvents(UUID.randomUUID());
+
+                assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+                assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+                assertNull(response.getBody());
+        }
 }
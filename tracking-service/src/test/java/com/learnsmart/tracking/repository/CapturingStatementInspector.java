@@ -0,0 +1,22 @@
+package com.learnsmart.tracking.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Remembers the last SQL statement Hibernate prepared on the current thread so
+ * tests can check the SQL text it rendered.
+ */
+public class CapturingStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<String> LAST = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        LAST.set(sql);
+        return sql;
+    }
+
+    static String lastStatement() {
+        return LAST.get();
+    }
+}
@@ -0,0 +1,81 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserLastActivity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link LearningEventRepository#findLastActivity}: the newest event of each
+ * requested user that is not deleted.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LearningEventLastActivityTests {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2024-03-01T10:00:00Z");
+
+    @Autowired
+    private LearningEventRepository repository;
+
+    @Test
+    void returnsNewestEventPerUser() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        repository.saveAll(List.of(
+                event(first, T0), event(first, T0.plusDays(3)), event(first, T0.plusDays(1)),
+                event(second, T0.minusDays(2))));
+
+        Map<UUID, OffsetDateTime> latest = lastActivity(List.of(first, second));
+
+        assertEquals(2, latest.size());
+        assertEquals(T0.plusDays(3).toInstant(), latest.get(first).toInstant());
+        assertEquals(T0.minusDays(2).toInstant(), latest.get(second).toInstant());
+    }
+
+    @Test
+    void skipsDeletedEvents() {
+        UUID userId = UUID.randomUUID();
+        LearningEvent deleted = event(userId, T0.plusDays(5));
+        deleted.setDeletedAt(T0.plusDays(6));
+        repository.saveAll(List.of(event(userId, T0), deleted));
+
+        assertEquals(T0.toInstant(), lastActivity(List.of(userId)).get(userId).toInstant());
+    }
+
+    @Test
+    void leavesOutUsersWithoutEvents() {
+        UUID active = UUID.randomUUID();
+        UUID onlyDeleted = UUID.randomUUID();
+        LearningEvent deleted = event(onlyDeleted, T0);
+        deleted.setDeletedAt(T0.plusHours(1));
+        repository.saveAll(List.of(event(active, T0), deleted));
+
+        assertEquals(List.of(active), List.copyOf(
+                lastActivity(List.of(active, onlyDeleted, UUID.randomUUID())).keySet()));
+        assertTrue(repository.findLastActivity(List.of()).isEmpty());
+    }
+
+    private Map<UUID, OffsetDateTime> lastActivity(List<UUID> userIds) {
+        return repository.findLastActivity(userIds).stream()
+                .collect(Collectors.toMap(UserLastActivity::userId, UserLastActivity::lastActivityAt));
+    }
+
+    private static LearningEvent event(UUID userId, OffsetDateTime occurredAt) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType("content_view");
+        event.setOccurredAt(occurredAt);
+        return event;
+    }
+}
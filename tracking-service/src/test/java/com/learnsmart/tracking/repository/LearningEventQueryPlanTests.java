@@ -0,0 +1,172 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.dto.EventCursor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the SQL generated by {@link LearningEventSpecifications} and the
+ * last-activity lookup through Postgres' EXPLAIN and checks that every filter
+ * combination accepted by {@code GET /events} and {@code GET /events/cursor}
+ * is answered from an index instead of a sequential scan. Needs Docker; the
+ * class is skipped without it.
+ * <p>
+ * Events go to the default partition (partition maintenance is off), so the
+ * plans name its copies of the indexes. Where two indexes are equally good
+ * for a combination, either is accepted.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.learnsmart.tracking.repository.CapturingStatementInspector",
+        "tracking.partitions.enabled=false",
+        "tracking.spool.enabled=false",
+        "eureka.client.enabled=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class LearningEventQueryPlanTests {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    // Indexes of schema.sql as created on learning_events_v2_default
+    private static final String USER_OCCURRED = "learning_events_v2_default_user_id_occurred_at_idx";
+    private static final String TYPE_OCCURRED = "learning_events_v2_default_event_type_occurred_at_idx";
+    private static final String ENTITY_INDEX = "learning_events_v2_default_entity_id_entity_type_idx";
+    private static final String OCCURRED = "learning_events_v2_default_occurred_at_idx";
+
+    private static final int PAGE_SIZE = 50;
+    private static final UUID USER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID ENTITY = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final OffsetDateTime FROM = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+    private static final OffsetDateTime TO = OffsetDateTime.parse("2024-02-01T00:00:00Z");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private LearningEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 200k events of 20k users over about 14 months: 20 event types, 5k
+     * entities. USER has 40 events and ENTITY 200, in line with production.
+     */
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO learning_events_v2 "
+                + "(user_id, event_type, entity_type, entity_id, occurred_at) "
+                + "SELECT CASE WHEN g % 5000 = 0 THEN CAST(? AS uuid) "
+                + "ELSE CAST(md5(CAST(g % 20000 AS text)) AS uuid) END, "
+                + "CASE WHEN g % 20 = 0 THEN 'content_view' ELSE 'type_' || (g % 20) END, "
+                + "CASE WHEN g % 3 = 0 THEN 'content' ELSE 'assessment' END, "
+                + "CASE WHEN g % 1000 = 0 THEN CAST(? AS uuid) ELSE CAST(md5('e' || (g % 5000)) AS uuid) END, "
+                + "TIMESTAMPTZ '2023-06-01 00:00:00+00' + g * INTERVAL '3 minutes' "
+                + "FROM generate_series(1, 200000) AS g", USER, ENTITY);
+        jdbcTemplate.execute("ANALYZE learning_events_v2");
+    }
+
+    /**
+     * Every filter combination accepted by {@code GET /events}, with the
+     * indexes its plan may use.
+     */
+    static Stream<Arguments> filterCombinations() {
+        return Stream.of(
+                Arguments.of(Set.of(USER_OCCURRED), USER, null, null, null, null, null),
+                Arguments.of(Set.of(USER_OCCURRED), USER, "content_view", null, null, null, null),
+                Arguments.of(Set.of(USER_OCCURRED, ENTITY_INDEX), USER, null, "content", ENTITY, null, null),
+                Arguments.of(Set.of(USER_OCCURRED), USER, null, null, null, FROM, TO),
+                Arguments.of(Set.of(USER_OCCURRED), USER, "content_view", null, null, FROM, null),
+                Arguments.of(Set.of(TYPE_OCCURRED), null, "content_view", null, null, null, null),
+                Arguments.of(Set.of(TYPE_OCCURRED), null, "content_view", null, null, FROM, TO),
+                Arguments.of(Set.of(TYPE_OCCURRED), null, "content_view", null, null, null, TO),
+                Arguments.of(Set.of(ENTITY_INDEX), null, null, null, ENTITY, null, null),
+                Arguments.of(Set.of(ENTITY_INDEX), null, null, "content", ENTITY, null, null),
+                Arguments.of(Set.of(ENTITY_INDEX), null, null, "content", ENTITY, FROM, TO),
+                Arguments.of(Set.of(OCCURRED), null, null, null, null, FROM, TO),
+                Arguments.of(Set.of(OCCURRED), null, null, null, null, FROM, null),
+                Arguments.of(Set.of(OCCURRED), null, null, null, null, null, TO),
+                // No selective predicate: the index only provides the sort order
+                Arguments.of(Set.of(OCCURRED), null, null, null, null, null, null),
+                Arguments.of(Set.of(OCCURRED), null, null, "content", null, null, null));
+    }
+
+    @ParameterizedTest(name = "{1} {2} {3} {4} {5} {6} -> {0}")
+    @MethodSource("filterCombinations")
+    void usesIndexForFilterCombination(Set<String> expectedIndexes, UUID userId, String eventType,
+            String entityType, UUID entityId, OffsetDateTime from, OffsetDateTime to) {
+        repository.findNewestFirst(
+                LearningEventSpecifications.matching(userId, eventType, entityType, entityId, from, to), PAGE_SIZE);
+
+        assertIndexUsed(expectedIndexes, explain(limitInlined(CapturingStatementInspector.lastStatement())));
+    }
+
+    @ParameterizedTest(name = "cursor {1} {2} -> {0}")
+    @MethodSource("cursorCombinations")
+    void cursorQueryUsesIndex(String expectedIndex, UUID userId, String eventType) {
+        EventCursor cursor = new EventCursor(TO, UUID.randomUUID());
+        repository.findNewestFirst(LearningEventSpecifications.matching(userId, eventType, null, null, null, null)
+                .and(LearningEventSpecifications.olderThan(cursor)), PAGE_SIZE);
+
+        assertIndexUsed(Set.of(expectedIndex), explain(limitInlined(CapturingStatementInspector.lastStatement())));
+    }
+
+    static Stream<Arguments> cursorCombinations() {
+        return Stream.of(
+                Arguments.of(USER_OCCURRED, USER, null),
+                Arguments.of(TYPE_OCCURRED, null, "content_view"),
+                Arguments.of(OCCURRED, null, null));
+    }
+
+    @Test
+    void lastActivityQueryUsesUserIndex() {
+        assertEquals(1, repository.findLastActivity(List.of(USER)).size());
+
+        // The user ids are bound as one array parameter
+        String sql = CapturingStatementInspector.lastStatement().replace("?", "'{" + USER + "}'");
+        assertIndexUsed(Set.of(USER_OCCURRED), explain(sql));
+    }
+
+    // The page size is a bound parameter even with inline criteria values
+    private static String limitInlined(String sql) {
+        return sql.replace("?", String.valueOf(PAGE_SIZE));
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+
+    private static void assertIndexUsed(Set<String> expectedIndexes, String plan) {
+        assertFalse(plan.contains("Seq Scan"), "sequential scan in plan:\n" + plan);
+        assertTrue(expectedIndexes.stream().anyMatch(plan::contains),
+                "expected one of " + expectedIndexes + " in plan:\n" + plan);
+    }
+}
@@ -0,0 +1,139 @@
+package com.learnsmart.tracking.repository;
+
+import com.learnsmart.tracking.dto.EventCursor;
+import com.learnsmart.tracking.model.LearningEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link LearningEventSpecifications} renders only the predicates
+ * actually supplied and that each filter combination returns the same events
+ * as filtering the table in memory. Index choice is checked against Postgres
+ * in {@link LearningEventQueryPlanTests}. Criteria values are rendered inline
+ * so the captured statement shows the final SQL text.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.format_sql=false",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.learnsmart.tracking.repository.CapturingStatementInspector"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class LearningEventSpecificationsTests {
+
+    private static final UUID USER = UUID.randomUUID();
+    private static final UUID ENTITY = UUID.randomUUID();
+    private static final OffsetDateTime FROM = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+    private static final OffsetDateTime TO = OffsetDateTime.parse("2024-02-01T00:00:00Z");
+
+    @Autowired
+    private LearningEventRepository repository;
+
+    @BeforeAll
+    void seed() {
+        List<LearningEvent> events = new ArrayList<>();
+        String[] types = {"content_view", "assessment_started", "assessment_completed", "user_login"};
+        for (int i = 0; i < 2000; i++) {
+            LearningEvent event = new LearningEvent();
+            event.setUserId(i % 50 == 0 ? USER : UUID.randomUUID());
+            event.setEventType(types[i % types.length]);
+            event.setEntityType(i % 3 == 0 ? "content" : "assessment");
+            event.setEntityId(i % 100 == 0 ? ENTITY : UUID.randomUUID());
+            event.setOccurredAt(FROM.minusDays(30).plusHours(i));
+            events.add(event);
+        }
+        repository.saveAll(events);
+    }
+
+    /**
+     * Every filter combination accepted by {@code GET /events}.
+     */
+    static Stream<Arguments> filterCombinations() {
+        return Stream.of(
+                Arguments.of(USER, null, null, null, null, null),
+                Arguments.of(USER, "content_view", null, null, null, null),
+                Arguments.of(USER, null, "content", ENTITY, null, null),
+                Arguments.of(USER, null, null, null, FROM, TO),
+                Arguments.of(USER, "content_view", null, null, FROM, null),
+                Arguments.of(null, "content_view", null, null, null, null),
+                Arguments.of(null, "content_view", null, null, FROM, TO),
+                Arguments.of(null, "content_view", null, null, null, TO),
+                Arguments.of(null, null, null, ENTITY, null, null),
+                Arguments.of(null, null, "content", ENTITY, null, null),
+                Arguments.of(null, null, "content", ENTITY, FROM, TO),
+                Arguments.of(null, null, null, null, FROM, TO),
+                Arguments.of(null, null, null, null, FROM, null),
+                Arguments.of(null, null, null, null, null, TO),
+                Arguments.of(null, null, null, null, null, null),
+                Arguments.of(null, null, "content", null, null, null));
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2} {3} {4} {5}")
+    @MethodSource("filterCombinations")
+    void rendersOnlySuppliedPredicates(UUID userId, String eventType, String entityType,
+            UUID entityId, OffsetDateTime from, OffsetDateTime to) {
+        List<LearningEvent> found = repository.findAll(
+                LearningEventSpecifications.matching(userId, eventType, entityType, entityId, from, to),
+                LearningEventRepository.NEWEST_FIRST);
+
+        String sql = CapturingStatementInspector.lastStatement();
+        assertFalse(sql.toLowerCase().contains(" is null or "), "catch-all predicate in: " + sql);
+        Set<UUID> expected = repository.findAll().stream()
+                .filter(e -> e.getDeletedAt() == null)
+                .filter(e -> userId == null || userId.equals(e.getUserId()))
+                .filter(e -> eventType == null || eventType.equals(e.getEventType()))
+                .filter(e -> entityType == null || entityType.equals(e.getEntityType()))
+                .filter(e -> entityId == null || entityId.equals(e.getEntityId()))
+                .filter(e -> from == null || !e.getOccurredAt().isBefore(from))
+                .filter(e -> to == null || !e.getOccurredAt().isAfter(to))
+                .map(LearningEvent::getId)
+                .collect(Collectors.toSet());
+        assertEquals(expected, found.stream().map(LearningEvent::getId).collect(Collectors.toSet()));
+        for (int i = 1; i < found.size(); i++) {
+            assertFalse(found.get(i).getOccurredAt().isAfter(found.get(i - 1).getOccurredAt()),
+                    "not newest first at " + i);
+        }
+    }
+
+    @ParameterizedTest(name = "cursor {0} {1}")
+    @MethodSource("cursorCombinations")
+    void cursorQueryReturnsEventsAfterCursor(UUID userId, String eventType) {
+        List<LearningEvent> all = repository.findNewestFirst(
+                LearningEventSpecifications.matching(userId, eventType, null, null, null, null), 10_000);
+        LearningEvent last = all.get(all.size() / 2);
+        EventCursor cursor = new EventCursor(last.getOccurredAt(), last.getId());
+
+        List<LearningEvent> page = repository.findNewestFirst(
+                LearningEventSpecifications.matching(userId, eventType, null, null, null, null)
+                        .and(LearningEventSpecifications.olderThan(cursor)), 50);
+
+        List<UUID> expected = all.subList(all.size() / 2 + 1, Math.min(all.size(), all.size() / 2 + 51))
+                .stream().map(LearningEvent::getId).toList();
+        assertEquals(expected, page.stream().map(LearningEvent::getId).toList());
+    }
+
+    static Stream<Arguments> cursorCombinations() {
+        return Stream.of(
+                Arguments.of(USER, null),
+                Arguments.of(null, "content_view"),
+                Arguments.of(null, null));
+    }
+}
@@ -0,0 +1,111 @@
+package com.learnsmart.tracking.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventPartitionMaintenanceJobTest {
+
+    private static final YearMonth NOW = YearMonth.of(2026, 10);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private void givenPartitions(String... names) {
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Integer.class), eq("learning_events_v2")))
+                .thenReturn(1);
+        when(jdbcTemplate.queryForList(contains("pg_inherits"), eq(String.class), eq("learning_events_v2")))
+                .thenReturn(List.of(names));
+    }
+
+    @Test
+    void testCreatesCurrentAndFutureMonths() {
+        givenPartitions("learning_events_v2_default", "learning_events_v2_p2026_10");
+        EventPartitionMaintenanceJob job = new EventPartitionMaintenanceJob(jdbcTemplate, true, 2, 0, false);
+
+        job.maintain(NOW);
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS learning_events_v2_p2026_11 PARTITION OF "
+                + "learning_events_v2 FOR VALUES FROM ('2026-11-01 00:00:00+00') TO ('2026-12-01 00:00:00+00')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS learning_events_v2_p2026_12 PARTITION OF "
+                + "learning_events_v2 FOR VALUES FROM ('2026-12-01 00:00:00+00') TO ('2027-01-01 00:00:00+00')");
+        verify(jdbcTemplate, never()).execute(contains("p2026_10 PARTITION OF"));
+        verify(jdbcTemplate, never()).execute(contains("DETACH"));
+    }
+
+    @Test
+    void testDetachesPartitionsOutsideRetention() {
+        givenPartitions("learning_events_v2_default", "learning_events_v2_p2025_09", "learning_events_v2_p2025_10",
+                "learning_events_v2_p2026_10", "learning_events_v2_p2026_11");
+        EventPartitionMaintenanceJob job = new EventPartitionMaintenanceJob(jdbcTemplate, true, 1, 12, false);
+
+        job.maintain(NOW);
+
+        verify(jdbcTemplate).execute("ALTER TABLE learning_events_v2 DETACH PARTITION learning_events_v2_p2025_09");
+        verify(jdbcTemplate, never()).execute(contains("DETACH PARTITION learning_events_v2_p2025_10"));
+        verify(jdbcTemplate, never()).execute(contains("DETACH PARTITION learning_events_v2_default"));
+        verify(jdbcTemplate, never()).execute(startsWith("DROP TABLE"));
+    }
+
+    @Test
+    void testDropsExpiredPartitionsWhenConfigured() {
+        givenPartitions("learning_events_v2_p2024_01", "learning_events_v2_p2026_10");
+        EventPartitionMaintenanceJob job = new EventPartitionMaintenanceJob(jdbcTemplate, true, 0, 6, true);
+
+        job.maintain(NOW);
+
+        verify(jdbcTemplate).execute("ALTER TABLE learning_events_v2 DETACH PARTITION learning_events_v2_p2024_01");
+        verify(jdbcTemplate).execute("DROP TABLE learning_events_v2_p2024_01");
+    }
+
+    @Test
+    void testCreateFailureDoesNotStopMaintenance() {
+        givenPartitions("learning_events_v2_p2020_01");
+        doThrow(new DataIntegrityViolationException("default partition contains rows"))
+                .when(jdbcTemplate).execute(contains("p2026_10 PARTITION OF"));
+        EventPartitionMaintenanceJob job = new EventPartitionMaintenanceJob(jdbcTemplate, true, 1, 12, false);
+
+        job.maintain(NOW);
+
+        verify(jdbcTemplate).execute(contains("p2026_11 PARTITION OF"));
+        verify(jdbcTemplate).execute("ALTER TABLE learning_events_v2 DETACH PARTITION learning_events_v2_p2020_01");
+    }
+
+    @Test
+    void testSkipsUnpartitionedTable() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any())).thenReturn(0);
+        EventPartitionMaintenanceJob job = new EventPartitionMaintenanceJob(jdbcTemplate, true, 3, 12, true);
+
+        job.maintain(NOW);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testDisabledJobDoesNothing() {
+        new EventPartitionMaintenanceJob(jdbcTemplate, false, 3, 12, true).maintainPartitions();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testPartitionNames() {
+        assertEquals("learning_events_v2_p2026_03", EventPartitionMaintenanceJob.partitionName(YearMonth.of(2026, 3)));
+        assertEquals(Optional.of(YearMonth.of(2026, 3)),
+                EventPartitionMaintenanceJob.parseMonth("learning_events_v2_p2026_03"));
+        assertEquals(Optional.empty(), EventPartitionMaintenanceJob.parseMonth("learning_events_v2_default"));
+        assertEquals(Optional.empty(), EventPartitionMaintenanceJob.parseMonth("learning_events_v2_pbogus"));
+    }
+}
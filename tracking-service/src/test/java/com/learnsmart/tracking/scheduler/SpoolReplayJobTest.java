@@ -0,0 +1,147 @@
+package com.learnsmart.tracking.scheduler;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.service.EventSpool;
+import com.learnsmart.tracking.service.LearningEventWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpoolReplayJobTest {
+
+    @Mock
+    private EventSpool spool;
+
+    @Mock
+    private LearningEventWriter eventWriter;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SpoolReplayJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new SpoolReplayJob(spool, eventWriter, jdbcTemplate, meterRegistry, 2);
+    }
+
+    private LearningEvent event() {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(UUID.randomUUID());
+        event.setEventType("PAGE_VIEW");
+        return event;
+    }
+
+    private EventSpool.Batch batch(int start, List<LearningEvent> events) {
+        return new EventSpool.Batch(1, start, 1, start + events.size(), events.size() * 100L, events.size(), events);
+    }
+
+    private EventSpool.Batch empty(int position) {
+        return new EventSpool.Batch(1, position, 1, position, 0, 0, List.of());
+    }
+
+    @Test
+    void testReplaysBatchesUntilSpoolIsEmpty() {
+        List<LearningEvent> first = List.of(event(), event());
+        List<LearningEvent> second = List.of(event());
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.readBatch(2)).thenReturn(batch(0, first), batch(2, second), empty(3));
+
+        job.replay();
+
+        verify(eventWriter).writeAll(first);
+        verify(eventWriter).writeAll(second);
+        verify(spool).commit(batch(0, first));
+        verify(spool).commit(batch(2, second));
+        assertEquals(3.0, meterRegistry.get("tracking.spool.replayed").counter().count());
+    }
+
+    @Test
+    void testStopsAndKeepsBatchWhileDatabaseIsDown() {
+        List<LearningEvent> events = List.of(event(), event());
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.readBatch(2)).thenReturn(batch(0, events));
+        when(eventWriter.writeAll(events)).thenThrow(new CannotCreateTransactionException("connection refused"));
+
+        job.replay();
+
+        verify(spool).markDatabaseDown();
+        verify(spool, never()).commit(any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testDropsEventsRejectedForOtherReasons() {
+        LearningEvent good = event();
+        LearningEvent bad = event();
+        bad.setId(UUID.randomUUID());
+        List<LearningEvent> events = List.of(good, bad);
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.readBatch(2)).thenReturn(batch(0, events), empty(2));
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            List<LearningEvent> written = invocation.getArgument(0);
+            if (written.contains(bad)) {
+                throw new DataIntegrityViolationException("constraint");
+            }
+            return written;
+        });
+
+        job.replay();
+
+        verify(eventWriter).writeAll(List.of(good));
+        verify(spool).commit(batch(0, events));
+        assertNull(bad.getId());
+        assertEquals(1.0, meterRegistry.get("tracking.spool.replayed").counter().count());
+        assertEquals(1.0, meterRegistry.get("tracking.spool.dropped").counter().count());
+    }
+
+    @Test
+    void testMarksDatabaseUpOnceReachableAndSpoolIsEmpty() {
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.readBatch(2)).thenReturn(empty(0));
+        when(spool.isDatabaseDown()).thenReturn(true);
+        when(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).thenReturn(1);
+
+        job.replay();
+
+        verify(spool).markDatabaseUp();
+    }
+
+    @Test
+    void testStaysDownWhileProbeFails() {
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.readBatch(2)).thenReturn(empty(0));
+        when(spool.isDatabaseDown()).thenReturn(true);
+        when(jdbcTemplate.queryForObject("SELECT 1", Integer.class))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+
+        job.replay();
+
+        verify(spool, never()).markDatabaseUp();
+    }
+
+    @Test
+    void testDisabledSpoolIsNotRead() {
+        job.replay();
+
+        verify(spool, never()).readBatch(anyInt());
+        verifyNoInteractions(eventWriter);
+    }
+}
@@ -1,23 +1,36 @@
 package com.learnsmart.tracking.service;
 
+import com.learnsmart.tracking.dto.CohortDistinctResponse;
 import com.learnsmart.tracking.dto.DailyActivityResponse;
 import com.learnsmart.tracking.dto.UserStatsResponse;
 import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyActivity;
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import com.learnsmart.tracking.model.UserLastActivity;
+import com.learnsmart.tracking.model.UserStatsRollup;
 import com.learnsmart.tracking.repository.LearningEventRepository;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import com.learnsmart.tracking.repository.UserDailyItemSketchRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,17 +40,34 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class AnalyticsServiceTest {
 
+    @Mock
+    private UserStatsRollupRepository rollupRepository;
+
+    @Mock
+    private UserDailyActivityRepository activityRepository;
+
+    @Mock
+    private UserDailyItemSketchRepository sketchRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
     @Mock
     private LearningEventRepository eventRepository;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private UserAnalyticsCache cache = new UserAnalyticsCache(
+            meterRegistry, Clock.systemUTC(), true, 100, Duration.ofMinutes(1));
+
     @InjectMocks
     private AnalyticsService analyticsService;
 
     @Test
-    void testCalculateStats_NoEvents() {
+    void testCalculateStats_NoRollup() {
         UUID userId = UUID.randomUUID();
-        when(eventRepository.findEvents(eq(userId), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(List.of()));
+        when(rollupRepository.findById(userId)).thenReturn(Optional.empty());
 
         UserStatsResponse stats = analyticsService.calculateStats(userId);
 
@@ -46,84 +76,79 @@ class AnalyticsServiceTest {
         assertEquals(0, stats.lessonsCompleted());
         assertEquals(0, stats.assessmentsTaken());
         assertEquals(0, stats.totalEvents());
+        verifyNoInteractions(activityRepository);
     }
 
     @Test
-    void testCalculateStats_WithEvents() {
+    void testCalculateStats_FromRollup() {
         UUID userId = UUID.randomUUID();
-
-        List<LearningEvent> events = new ArrayList<>();
-
-        // Content view event
-        LearningEvent event1 = new LearningEvent();
-        event1.setUserId(userId);
-        event1.setEventType("content_view");
-        event1.setEntityId(UUID.randomUUID());
-        event1.setPayload("{\"durationSeconds\": 3600}"); // 1 hour
-        event1.setOccurredAt(OffsetDateTime.now());
-        events.add(event1);
-
-        // Another content view (different entity)
-        LearningEvent event2 = new LearningEvent();
-        event2.setUserId(userId);
-        event2.setEventType("content_view");
-        event2.setEntityId(UUID.randomUUID());
-        event2.setPayload("{\"durationSeconds\": 1800}"); // 0.5 hours
-        event2.setOccurredAt(OffsetDateTime.now());
-        events.add(event2);
-
-        // Assessment event
-        LearningEvent event3 = new LearningEvent();
-        event3.setUserId(userId);
-        event3.setEventType("assessment_completed");
-        event3.setEntityId(UUID.randomUUID());
-        event3.setOccurredAt(OffsetDateTime.now());
-        events.add(event3);
-
-        when(eventRepository.findEvents(eq(userId), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(events));
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        rollup.setTotalSeconds(5400);
+        rollup.setTotalEvents(3);
+        rollup.setLessonsCompleted(2);
+        rollup.setAssessmentsTaken(1);
+        rollup.setLastActiveDay(LocalDate.now(ZoneOffset.UTC));
+        rollup.setCurrentStreak(3);
+        when(rollupRepository.findById(userId)).thenReturn(Optional.of(rollup));
 
         UserStatsResponse stats = analyticsService.calculateStats(userId);
 
         assertEquals(1.5, stats.totalHours(), 0.01); // 3600 + 1800 seconds = 1.5 hours
-        assertEquals(2, stats.lessonsCompleted()); // 2 unique content views
-        assertEquals(1, stats.assessmentsTaken()); // 1 assessment
+        assertEquals(3, stats.currentStreak());
+        assertEquals(2, stats.lessonsCompleted());
+        assertEquals(1, stats.assessmentsTaken());
         assertEquals(3, stats.totalEvents());
+        verifyNoInteractions(activityRepository);
     }
 
     @Test
-    void testCalculateStats_Streak() {
+    void testCalculateStats_StaleStreakReportsZero() {
         UUID userId = UUID.randomUUID();
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        rollup.setLastActiveDay(LocalDate.now(ZoneOffset.UTC).minusDays(2));
+        rollup.setCurrentStreak(5);
+        when(rollupRepository.findById(userId)).thenReturn(Optional.of(rollup));
 
-        List<LearningEvent> events = new ArrayList<>();
-
-        // Events for today
-        LearningEvent today = new LearningEvent();
-        today.setUserId(userId);
-        today.setEventType("content_view");
-        today.setOccurredAt(OffsetDateTime.now());
-        events.add(today);
+        assertEquals(0, analyticsService.calculateStats(userId).currentStreak());
+    }
 
-        // Events for yesterday
-        LearningEvent yesterday = new LearningEvent();
-        yesterday.setUserId(userId);
-        yesterday.setEventType("content_view");
-        yesterday.setOccurredAt(OffsetDateTime.now().minusDays(1));
-        events.add(yesterday);
+    @Test
+    void testCalculateStats_CachedUntilInvalidated() {
+        UUID userId = UUID.randomUUID();
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        rollup.setTotalEvents(3);
+        when(rollupRepository.findById(userId)).thenReturn(Optional.of(rollup));
 
-        // Events for 2 days ago
-        LearningEvent twoDaysAgo = new LearningEvent();
-        twoDaysAgo.setUserId(userId);
-        twoDaysAgo.setEventType("content_view");
-        twoDaysAgo.setOccurredAt(OffsetDateTime.now().minusDays(2));
-        events.add(twoDaysAgo);
+        assertEquals(3, analyticsService.calculateStats(userId).totalEvents());
+        assertEquals(3, analyticsService.calculateStats(userId).totalEvents());
+        verify(rollupRepository, times(1)).findById(userId);
 
-        when(eventRepository.findEvents(eq(userId), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(events));
+        cache.invalidate(List.of(userId));
+        analyticsService.calculateStats(userId);
+        verify(rollupRepository, times(2)).findById(userId);
+    }
 
-        UserStatsResponse stats = analyticsService.calculateStats(userId);
+    @Test
+    void testGetActivity_CachedPerRange() {
+        UUID userId = UUID.randomUUID();
+        LocalDate to = LocalDate.now();
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(eq(userId), any(), eq(to)))
+                .thenReturn(List.of(new UserDailyActivity(userId, to, 2, 3600)));
+
+        analyticsService.getActivity(userId, to.minusDays(7), to);
+        analyticsService.getActivity(userId, to.minusDays(7), to);
+        analyticsService.getActivity(userId, to.minusDays(30), to);
+
+        verify(activityRepository, times(1)).findByUserIdAndDayBetweenOrderByDayAsc(userId, to.minusDays(7), to);
+        verify(activityRepository, times(1)).findByUserIdAndDayBetweenOrderByDayAsc(userId, to.minusDays(30), to);
+        // The third read misses although the user is already cached
+        assertEquals(1, activityCount("hits"));
+        assertEquals(2, activityCount("misses"));
+    }
 
-        assertEquals(3, stats.currentStreak()); // 3 consecutive days
+    private double activityCount(String outcome) {
+        return meterRegistry.get("tracking.analytics.cache." + outcome).tag("cache", "activity").functionCounter()
+                .count();
     }
 
     @Test
@@ -132,51 +157,23 @@ class AnalyticsServiceTest {
         LocalDate from = LocalDate.now().minusDays(7);
         LocalDate to = LocalDate.now();
 
-        List<LearningEvent> events = new ArrayList<>();
-
-        // Event on day 1
-        LearningEvent event1 = new LearningEvent();
-        event1.setUserId(userId);
-        event1.setEventType("content_view");
-        event1.setPayload("{\"durationSeconds\": 3600}");
-        event1.setOccurredAt(from.atStartOfDay(ZoneOffset.UTC).toOffsetDateTime());
-        events.add(event1);
-
-        // Another event on day 1
-        LearningEvent event2 = new LearningEvent();
-        event2.setUserId(userId);
-        event2.setEventType("assessment_started");
-        event2.setOccurredAt(from.atStartOfDay(ZoneOffset.UTC).toOffsetDateTime().plusHours(2));
-        events.add(event2);
-
-        // Event on day 3
-        LearningEvent event3 = new LearningEvent();
-        event3.setUserId(userId);
-        event3.setEventType("content_view");
-        event3.setPayload("{\"durationSeconds\": 1800}");
-        event3.setOccurredAt(from.plusDays(2).atStartOfDay(ZoneOffset.UTC).toOffsetDateTime());
-        events.add(event3);
-
-        when(eventRepository.findEvents(eq(userId), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(events));
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, from, to)).thenReturn(List.of(
+                new UserDailyActivity(userId, from, 2, 3600),
+                new UserDailyActivity(userId, from.plusDays(2), 1, 1800)));
 
         List<DailyActivityResponse> activity = analyticsService.getActivity(userId, from, to);
 
         assertEquals(2, activity.size()); // 2 days with activity
 
         // First day should have 2 events
-        DailyActivityResponse day1 = activity.stream()
-                .filter(a -> a.date().equals(from))
-                .findFirst()
-                .orElseThrow();
+        DailyActivityResponse day1 = activity.get(0);
+        assertEquals(from, day1.date());
         assertEquals(2, day1.eventCount());
         assertEquals(1.0, day1.hoursStudied(), 0.01); // 3600 seconds
 
         // Third day should have 1 event
-        DailyActivityResponse day3 = activity.stream()
-                .filter(a -> a.date().equals(from.plusDays(2)))
-                .findFirst()
-                .orElseThrow();
+        DailyActivityResponse day3 = activity.get(1);
+        assertEquals(from.plusDays(2), day3.date());
         assertEquals(1, day3.eventCount());
         assertEquals(0.5, day3.hoursStudied(), 0.01); // 1800 seconds
     }
@@ -187,11 +184,61 @@ class AnalyticsServiceTest {
         LocalDate from = LocalDate.now().minusDays(7);
         LocalDate to = LocalDate.now();
 
-        when(eventRepository.findEvents(eq(userId), any(), any(), any(), any(), any(), any()))
-                .thenReturn(new PageImpl<>(List.of()));
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, from, to))
+                .thenReturn(List.of());
 
         List<DailyActivityResponse> activity = analyticsService.getActivity(userId, from, to);
 
         assertTrue(activity.isEmpty());
     }
+
+    @Test
+    void testCohortDistinct_MergesDailySketches() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        UUID sharedLesson = UUID.randomUUID();
+        LocalDate from = LocalDate.of(2024, 3, 1);
+        LocalDate to = LocalDate.of(2024, 3, 31);
+
+        HyperLogLog user1Lessons = new HyperLogLog();
+        user1Lessons.add(sharedLesson);
+        user1Lessons.add(UUID.randomUUID());
+        HyperLogLog user2Lessons = new HyperLogLog();
+        user2Lessons.add(sharedLesson);
+        HyperLogLog user2Assessments = new HyperLogLog();
+        user2Assessments.add(UUID.randomUUID());
+
+        when(sketchRepository.streamForUsersBetween(Set.of(user1, user2), from, to)).thenReturn(Stream.of(
+                new UserDailyItemSketch(user1, from, UserStatsRollupService.ITEM_LESSON, user1Lessons.toBytes()),
+                new UserDailyItemSketch(user2, to, UserStatsRollupService.ITEM_LESSON, user2Lessons.toBytes()),
+                new UserDailyItemSketch(user2, to, UserStatsRollupService.ITEM_ASSESSMENT, user2Assessments.toBytes())));
+        when(activityRepository.countActiveUsers(Set.of(user1, user2), from, to)).thenReturn(2L);
+
+        CohortDistinctResponse response = analyticsService.cohortDistinct(List.of(user1, user2, user1), from, to);
+
+        assertEquals(2, response.cohortSize());
+        assertEquals(2, response.activeLearners());
+        assertEquals(2, response.distinctLessons(), "Lesson shared by both users counts once");
+        assertEquals(1, response.distinctAssessments());
+        assertTrue(response.exact());
+        verify(entityManager, times(3)).detach(any());
+    }
+
+    @Test
+    void testLastActivity_QueriesEachUserOnce() {
+        UUID userId = UUID.randomUUID();
+        List<UserLastActivity> latest = List.of(
+                new UserLastActivity(userId, OffsetDateTime.parse("2024-03-10T08:00:00Z")));
+        when(eventRepository.findLastActivity(Set.of(userId))).thenReturn(latest);
+
+        assertEquals(latest, analyticsService.lastActivity(List.of(userId, userId)));
+    }
+
+    @Test
+    void testActivityDay_UsesUtcCalendarDay() {
+        LearningEvent event = new LearningEvent();
+        event.setOccurredAt(OffsetDateTime.parse("2024-03-10T23:30:00-05:00"));
+
+        assertEquals(LocalDate.of(2024, 3, 11), AnalyticsService.activityDay(event));
+    }
 }
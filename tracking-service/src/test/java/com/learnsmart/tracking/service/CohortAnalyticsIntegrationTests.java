@@ -0,0 +1,120 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.CohortDailyActiveResponse;
+import com.learnsmart.tracking.dto.CohortDistinctResponse;
+import com.learnsmart.tracking.dto.CohortLeaderboardResponse;
+import com.learnsmart.tracking.dto.CohortStreakResponse;
+import com.learnsmart.tracking.model.UserDailyActivity;
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import com.learnsmart.tracking.model.UserStatsRollup;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import com.learnsmart.tracking.repository.UserDailyItemSketchRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CohortAnalyticsIntegrationTests {
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private CohortAnalyticsService cohortAnalyticsService;
+
+    @Autowired
+    private UserDailyItemSketchRepository sketchRepository;
+
+    @Autowired
+    private UserStatsRollupRepository rollupRepository;
+
+    @Autowired
+    private UserDailyActivityRepository activityRepository;
+
+    @Test
+    void testCohortDistinctMergesStoredSketches() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        UUID outsider = UUID.randomUUID();
+        LocalDate day = LocalDate.of(2024, 3, 10);
+
+        // Dense sketches on both sides make sure the full register array fits the column
+        List<UUID> lessons = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            lessons.add(UUID.randomUUID());
+        }
+        HyperLogLog first = new HyperLogLog();
+        lessons.subList(0, 600).forEach(first::add);
+        HyperLogLog second = new HyperLogLog();
+        lessons.subList(400, 1_000).forEach(second::add);
+        HyperLogLog other = new HyperLogLog();
+        other.add(UUID.randomUUID());
+
+        sketchRepository.saveAll(List.of(
+                new UserDailyItemSketch(user1, day, UserStatsRollupService.ITEM_LESSON, first.toBytes()),
+                new UserDailyItemSketch(user2, day.plusDays(1), UserStatsRollupService.ITEM_LESSON, second.toBytes()),
+                new UserDailyItemSketch(user2, day.plusDays(30), UserStatsRollupService.ITEM_LESSON, other.toBytes()),
+                new UserDailyItemSketch(outsider, day, UserStatsRollupService.ITEM_LESSON, other.toBytes())));
+        activityRepository.saveAll(List.of(
+                new UserDailyActivity(user1, day, 600, 0),
+                new UserDailyActivity(user2, day.plusDays(1), 600, 0),
+                new UserDailyActivity(outsider, day, 1, 0)));
+
+        CohortDistinctResponse response = analyticsService.cohortDistinct(
+                List.of(user1, user2), day, day.plusDays(7));
+
+        assertEquals(2, response.activeLearners());
+        assertEquals(1_000, response.distinctLessons(), 65);
+        assertEquals(0, response.distinctAssessments());
+        assertFalse(response.exact());
+    }
+
+    @Test
+    void testLeaderboardStreaksAndDailyActiveFromStoredRows() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        UUID leader = UUID.randomUUID();
+        UUID runnerUp = UUID.randomUUID();
+        UUID inactive = UUID.randomUUID();
+
+        UserStatsRollup leaderRollup = new UserStatsRollup(leader);
+        leaderRollup.setTotalSeconds(7200);
+        leaderRollup.setLastActiveDay(today);
+        leaderRollup.setCurrentStreak(5);
+        UserStatsRollup runnerUpRollup = new UserStatsRollup(runnerUp);
+        runnerUpRollup.setTotalSeconds(3600);
+        runnerUpRollup.setLastActiveDay(today.minusDays(1));
+        runnerUpRollup.setCurrentStreak(1);
+        rollupRepository.saveAll(List.of(leaderRollup, runnerUpRollup));
+        activityRepository.saveAll(List.of(
+                new UserDailyActivity(leader, today, 3, 3600),
+                new UserDailyActivity(runnerUp, today, 1, 3600),
+                new UserDailyActivity(leader, today.minusDays(1), 1, 3600)));
+
+        List<UUID> cohort = List.of(leader, runnerUp, inactive);
+
+        CohortLeaderboardResponse leaderboard = cohortAnalyticsService.leaderboard(cohort, 10);
+        assertEquals(List.of(leader, runnerUp),
+                leaderboard.entries().stream().map(CohortLeaderboardResponse.Entry::userId).toList());
+        assertEquals(2.0, leaderboard.entries().get(0).totalHours(), 0.001);
+
+        CohortStreakResponse streaks = cohortAnalyticsService.streaks(cohort);
+        assertEquals(1, streaks.buckets().get(0).users());
+        assertEquals(1, streaks.buckets().get(1).users());
+        assertEquals(1, streaks.buckets().get(3).users());
+
+        CohortDailyActiveResponse dailyActive = cohortAnalyticsService.dailyActive(cohort, today.minusDays(2), today);
+        assertEquals(List.of(0L, 1L, 2L),
+                dailyActive.days().stream().map(CohortDailyActiveResponse.Day::activeUsers).toList());
+    }
+}
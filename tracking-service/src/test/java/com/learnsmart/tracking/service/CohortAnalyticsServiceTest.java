@@ -0,0 +1,152 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.CohortDailyActiveResponse;
+import com.learnsmart.tracking.dto.CohortLeaderboardResponse;
+import com.learnsmart.tracking.dto.CohortStreakResponse;
+import com.learnsmart.tracking.model.UserStatsRollupSummary;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CohortAnalyticsServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @Mock
+    private UserStatsRollupRepository rollupRepository;
+
+    @Mock
+    private UserDailyActivityRepository activityRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CohortAnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        service = new CohortAnalyticsService(rollupRepository, activityRepository, transactionManager, clock,
+                Duration.ofMinutes(5), 16);
+    }
+
+    private static UserStatsRollupSummary rollup(UUID userId, double hours, LocalDate lastActive, int streak) {
+        return new UserStatsRollupSummary(userId, hours * 3600, lastActive, streak, null, 0);
+    }
+
+    @Test
+    void testLeaderboard_KeepsTopUsersByHours() {
+        List<UUID> userIds = new ArrayList<>();
+        List<UserStatsRollupSummary> rollups = new ArrayList<>();
+        for (int i = 0; i < CohortAnalyticsService.MAX_LEADERBOARD_SIZE + 50; i++) {
+            UUID userId = UUID.randomUUID();
+            userIds.add(userId);
+            rollups.add(rollup(userId, i, TODAY, 1));
+        }
+        when(rollupRepository.streamSummaries(Set.copyOf(userIds))).thenReturn(rollups.stream());
+
+        CohortLeaderboardResponse response = service.leaderboard(userIds, 3);
+
+        assertEquals(userIds.size(), response.cohortSize());
+        assertEquals(3, response.entries().size());
+        assertEquals(1, response.entries().get(0).rank());
+        assertEquals(userIds.get(userIds.size() - 1), response.entries().get(0).userId());
+        assertEquals(userIds.size() - 1, response.entries().get(0).totalHours(), 0.001);
+        assertEquals(userIds.get(userIds.size() - 3), response.entries().get(2).userId());
+    }
+
+    @Test
+    void testLeaderboard_TiesRankByUserId() {
+        UUID low = new UUID(0, 1);
+        UUID high = new UUID(0, 2);
+        when(rollupRepository.streamSummaries(Set.of(low, high))).thenReturn(Stream.of(
+                rollup(high, 2, TODAY, 1),
+                rollup(low, 2, TODAY, 1)));
+
+        CohortLeaderboardResponse response = service.leaderboard(List.of(low, high), 10);
+
+        assertEquals(List.of(low, high), response.entries().stream().map(CohortLeaderboardResponse.Entry::userId).toList());
+    }
+
+    @Test
+    void testStreaks_BucketsUsersIncludingInactive() {
+        UUID onStreak = UUID.randomUUID();
+        UUID longStreak = UUID.randomUUID();
+        UUID lapsed = UUID.randomUUID();
+        UUID neverActive = UUID.randomUUID();
+        when(rollupRepository.streamSummaries(any())).thenReturn(Stream.of(
+                rollup(onStreak, 1, TODAY.minusDays(1), 3),
+                rollup(longStreak, 1, TODAY, 40),
+                rollup(lapsed, 1, TODAY.minusDays(5), 9)));
+
+        CohortStreakResponse response = service.streaks(List.of(onStreak, longStreak, lapsed, neverActive));
+
+        assertEquals(TODAY, response.asOf());
+        assertEquals(CohortAnalyticsService.STREAK_BUCKETS.length, response.buckets().size());
+        assertEquals(new CohortStreakResponse.Bucket(0, 0, 2), response.buckets().get(0));
+        assertEquals(new CohortStreakResponse.Bucket(2, 3, 1), response.buckets().get(2));
+        assertEquals(new CohortStreakResponse.Bucket(31, null, 1), response.buckets().get(6));
+        assertEquals(4, response.buckets().stream().mapToLong(CohortStreakResponse.Bucket::users).sum());
+    }
+
+    @Test
+    void testLeaderboardAndStreaksShareOneCachedPass() {
+        UUID userId = UUID.randomUUID();
+        when(rollupRepository.streamSummaries(any())).thenAnswer(invocation -> Stream.of(rollup(userId, 1, TODAY, 1)));
+
+        service.leaderboard(List.of(userId), 10);
+        service.streaks(List.of(userId));
+        service.leaderboard(List.of(userId, userId), 5);
+
+        verify(rollupRepository, times(1)).streamSummaries(any());
+    }
+
+    @Test
+    void testDailyActive_FillsDaysWithoutActivity() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        LocalDate from = TODAY.minusDays(2);
+        when(activityRepository.countActiveUsersByDay(Set.of(user1, user2), from, TODAY)).thenReturn(List.of(
+                new Object[]{from, 2L},
+                new Object[]{TODAY, 1L}));
+
+        CohortDailyActiveResponse response = service.dailyActive(List.of(user1, user2), from, TODAY);
+
+        assertEquals(List.of(
+                new CohortDailyActiveResponse.Day(from, 2),
+                new CohortDailyActiveResponse.Day(from.plusDays(1), 0),
+                new CohortDailyActiveResponse.Day(TODAY, 1)), response.days());
+
+        service.dailyActive(List.of(user2, user1), from, TODAY);
+        verify(activityRepository, times(1)).countActiveUsersByDay(any(), any(), any());
+    }
+
+    @Test
+    void testStreakBucket() {
+        assertEquals(0, CohortAnalyticsService.streakBucket(0));
+        assertEquals(1, CohortAnalyticsService.streakBucket(1));
+        assertEquals(2, CohortAnalyticsService.streakBucket(3));
+        assertEquals(3, CohortAnalyticsService.streakBucket(4));
+        assertEquals(6, CohortAnalyticsService.streakBucket(365));
+    }
+}
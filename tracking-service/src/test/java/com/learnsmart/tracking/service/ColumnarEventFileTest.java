@@ -0,0 +1,173 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarEventFileTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private LearningEvent event(UUID userId, OffsetDateTime occurredAt, String eventType) {
+        return new LearningEvent(UUID.randomUUID(), userId, eventType, null, null, occurredAt, null, null,
+                occurredAt.plusSeconds(2), null);
+    }
+
+    private Path write(List<LearningEvent> events) throws IOException {
+        Path file = directory.resolve("events.lsea");
+        try (ColumnarEventFile.Writer writer = new ColumnarEventFile.Writer(file)) {
+            for (LearningEvent event : events) {
+                writer.add(event);
+            }
+            writer.finish();
+        }
+        return file;
+    }
+
+    private static List<LearningEvent> sorted(List<LearningEvent> events) {
+        List<LearningEvent> copy = new ArrayList<>(events);
+        copy.sort((a, b) -> {
+            int cmp = ColumnarEventFile.compare(a.getUserId(), b.getUserId());
+            if (cmp == 0) {
+                cmp = a.getOccurredAt().compareTo(b.getOccurredAt());
+            }
+            return cmp != 0 ? cmp : ColumnarEventFile.compare(a.getId(), b.getId());
+        });
+        return copy;
+    }
+
+    @Test
+    void testRoundTripKeepsEveryColumn() throws IOException {
+        UUID userId = UUID.randomUUID();
+        UUID entityId = UUID.randomUUID();
+        LearningEvent full = new LearningEvent(UUID.randomUUID(), userId, "content_view", "lesson", entityId,
+                START.plusNanos(123_456_000), "client-1", "{\"durationSeconds\":30}",
+                START.plusSeconds(5), null);
+        full.setTimeZone("Pacific/Honolulu");
+        full.setLocalDay(LocalDate.of(2025, 2, 28));
+        LearningEvent sparse = event(userId, START.plusHours(1), "PAGE_VIEW");
+        sparse.setCreatedAt(null);
+
+        try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(write(List.of(full, sparse)))) {
+            List<LearningEvent> read = reader.read(userId, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertEquals(2, read.size());
+            assertEquals(full, read.get(0));
+            LearningEvent second = read.get(1);
+            assertEquals(sparse.getId(), second.getId());
+            assertNull(second.getEntityType());
+            assertNull(second.getEntityId());
+            assertNull(second.getClientEventId());
+            assertNull(second.getPayload());
+            assertNull(second.getTimeZone());
+            assertNull(second.getLocalDay());
+            // Missing createdAt is restored as occurredAt
+            assertEquals(second.getOccurredAt(), second.getCreatedAt());
+        }
+    }
+
+    @Test
+    void testReadsOnlyTheUserAndTimeRange() throws IOException {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        List<LearningEvent> events = new ArrayList<>();
+        for (int day = 0; day < 10; day++) {
+            events.add(event(alice, START.plusDays(day), "A"));
+            events.add(event(bob, START.plusDays(day), "B"));
+        }
+
+        try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(write(sorted(events)))) {
+            List<LearningEvent> read = reader.read(alice,
+                    ColumnarEventFile.toMicros(START.plusDays(2)), ColumnarEventFile.toMicros(START.plusDays(5)));
+
+            assertEquals(List.of(START.plusDays(2), START.plusDays(3), START.plusDays(4)),
+                    read.stream().map(LearningEvent::getOccurredAt).toList());
+            assertTrue(read.stream().allMatch(e -> e.getUserId().equals(alice) && "A".equals(e.getEventType())));
+            assertTrue(reader.read(UUID.randomUUID(), Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    void testUserSpanningRowGroups() throws IOException {
+        UUID heavy = UUID.randomUUID();
+        List<LearningEvent> events = new ArrayList<>();
+        for (int i = 0; i < ColumnarEventFile.ROW_GROUP_SIZE + 100; i++) {
+            events.add(event(heavy, START.plusSeconds(i), "PAGE_VIEW"));
+        }
+        for (int i = 0; i < 50; i++) {
+            events.add(event(UUID.randomUUID(), START, "PAGE_VIEW"));
+        }
+
+        try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(write(sorted(events)))) {
+            assertEquals(events.size(), reader.rowCount());
+            List<LearningEvent> read = reader.read(heavy, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(ColumnarEventFile.ROW_GROUP_SIZE + 100, read.size());
+            for (int i = 1; i < read.size(); i++) {
+                assertTrue(read.get(i - 1).getOccurredAt().isBefore(read.get(i).getOccurredAt()));
+            }
+
+            Set<UUID> userIds = new HashSet<>();
+            reader.forEachUserId(userIds::add);
+            assertEquals(51, userIds.size());
+        }
+    }
+
+    @Test
+    void testIsSmallerThanRowStorage() throws IOException {
+        List<LearningEvent> events = new ArrayList<>();
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 1_000; i++) {
+            LearningEvent event = event(userId, START.plusMinutes(i), i % 2 == 0 ? "content_view" : "PAGE_VIEW");
+            event.setEntityType("lesson");
+            event.setEntityId(UUID.randomUUID());
+            events.add(event);
+        }
+
+        Path file = write(events);
+
+        // As rows the three UUIDs alone take 48 bytes, before timestamps and type names
+        assertTrue(Files.size(file) < 1_000 * 48, "archive is " + Files.size(file) + " bytes");
+    }
+
+    @Test
+    void testRejectsUnsortedInput() throws IOException {
+        UUID userId = UUID.randomUUID();
+        try (ColumnarEventFile.Writer writer = new ColumnarEventFile.Writer(directory.resolve("events.lsea"))) {
+            writer.add(event(userId, START.plusHours(1), "A"));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(event(userId, START, "A")));
+        }
+    }
+
+    @Test
+    void testDetectsCorruptRowGroup() throws IOException {
+        UUID userId = UUID.randomUUID();
+        Path file = write(List.of(event(userId, START, "A")));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), Files.size(file) - 1);
+        }
+
+        try (ColumnarEventFile.Reader reader = new ColumnarEventFile.Reader(file)) {
+            assertThrows(IllegalStateException.class, () -> reader.read(userId, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+}
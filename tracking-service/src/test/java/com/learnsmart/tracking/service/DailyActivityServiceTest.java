@@ -0,0 +1,162 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.dto.ActivityConsistencyReport;
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyActivity;
+import com.learnsmart.tracking.repository.UserDailyActivityRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DailyActivityServiceTest {
+
+    @Mock
+    private UserDailyActivityRepository activityRepository;
+
+    @Mock
+    private EventHistory eventHistory;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private DailyActivityService dailyActivityService;
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 10);
+
+    private LearningEvent event(UUID userId, LocalDate day, int hour, String payload) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType("content_view");
+        event.setOccurredAt(day.atTime(hour, 0).atOffset(ZoneOffset.UTC));
+        event.setPayload(payload);
+        return event;
+    }
+
+    @Test
+    void testApply_OneUpsertPerUserDay() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+
+        dailyActivityService.apply(List.of(
+                event(user1, DAY, 9, "{\"durationSeconds\": 600}"),
+                event(user1, DAY, 18, "{\"durationSeconds\": 300}"),
+                event(user1, DAY.plusDays(1), 9, null),
+                event(user2, DAY, 10, "{\"durationSeconds\": 60}")));
+
+        verify(activityRepository).increment(user1, DAY, 2, 900.0);
+        verify(activityRepository).increment(user1, DAY.plusDays(1), 1, 0.0);
+        verify(activityRepository).increment(user2, DAY, 1, 60.0);
+        verifyNoMoreInteractions(activityRepository);
+    }
+
+    @Test
+    void testBackfill_ReplacesUserRows() {
+        UUID userId = UUID.randomUUID();
+        when(eventHistory.streamByUser(userId)).thenReturn(Stream.of(
+                event(userId, DAY, 9, "{\"durationSeconds\": 120}"),
+                event(userId, DAY, 10, "{\"durationSeconds\": 120}"),
+                event(userId, DAY.plusDays(3), 9, null)));
+
+        assertEquals(2, dailyActivityService.backfill(userId));
+
+        var inOrder = inOrder(activityRepository);
+        inOrder.verify(activityRepository).deleteByUser(userId);
+        inOrder.verify(activityRepository).increment(userId, DAY, 2, 240.0);
+        inOrder.verify(activityRepository).increment(userId, DAY.plusDays(3), 1, 0.0);
+        verify(entityManager, times(3)).detach(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBackfillAll_OneTransactionPerUser() {
+        when(eventHistory.findDistinctUserIds()).thenReturn(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        when(eventHistory.streamByUser(any())).thenAnswer(invocation -> Stream.empty());
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        assertEquals(2, dailyActivityService.backfillAll());
+
+        verify(activityRepository, times(2)).deleteByUser(any());
+    }
+
+    @Test
+    void testCheckConsistency_ReportsDifferingDays() {
+        UUID userId = UUID.randomUUID();
+        when(eventHistory.streamByUserBetween(eq(userId), any(), any())).thenReturn(Stream.of(
+                event(userId, DAY, 9, "{\"durationSeconds\": 60}"),
+                event(userId, DAY.plusDays(1), 9, null),
+                event(userId, DAY.plusDays(1), 10, null)));
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, DAY, DAY.plusDays(6)))
+                .thenReturn(List.of(
+                        new UserDailyActivity(userId, DAY, 1, 60),
+                        new UserDailyActivity(userId, DAY.plusDays(1), 1, 0),
+                        new UserDailyActivity(userId, DAY.plusDays(2), 4, 0)));
+
+        ActivityConsistencyReport report = dailyActivityService.checkConsistency(userId, DAY, DAY.plusDays(6));
+
+        assertFalse(report.consistent());
+        assertEquals(3, report.daysChecked());
+        assertEquals(2, report.mismatches().size());
+        assertEquals(new ActivityConsistencyReport.Mismatch(DAY.plusDays(1), 2, 1, 0.0, 0.0),
+                report.mismatches().get(0));
+        assertEquals(new ActivityConsistencyReport.Mismatch(DAY.plusDays(2), 0, 4, 0.0, 0.0),
+                report.mismatches().get(1));
+    }
+
+    @Test
+    void testCheckConsistency_Consistent() {
+        UUID userId = UUID.randomUUID();
+        when(eventHistory.streamByUserBetween(eq(userId), any(), any())).thenReturn(Stream.of(
+                event(userId, DAY, 9, "{\"durationSeconds\": 60}")));
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, DAY, DAY))
+                .thenReturn(List.of(new UserDailyActivity(userId, DAY, 1, 60)));
+
+        assertTrue(dailyActivityService.checkConsistency(userId, DAY, DAY).consistent());
+    }
+
+    @Test
+    void testCheckConsistency_CountsEventsByLocalDay() {
+        UUID userId = UUID.randomUUID();
+        // Tokyo is UTC+9: the first event is on DAY there, the second on the day after
+        LearningEvent previousUtcDay = event(userId, DAY.minusDays(1), 20, "{\"durationSeconds\": 60}");
+        previousUtcDay.setTimeZone("Asia/Tokyo");
+        previousUtcDay.setLocalDay(DAY);
+        LearningEvent nextLocalDay = event(userId, DAY, 20, null);
+        nextLocalDay.setTimeZone("Asia/Tokyo");
+        nextLocalDay.setLocalDay(DAY.plusDays(1));
+        when(eventHistory.streamByUserBetween(userId,
+                OffsetDateTime.parse("2024-03-10T00:00:00+18:00"), OffsetDateTime.parse("2024-03-11T00:00:00-18:00")))
+                .thenReturn(Stream.of(previousUtcDay, nextLocalDay));
+        when(activityRepository.findByUserIdAndDayBetweenOrderByDayAsc(userId, DAY, DAY))
+                .thenReturn(List.of(new UserDailyActivity(userId, DAY, 1, 60)));
+
+        ActivityConsistencyReport report = dailyActivityService.checkConsistency(userId, DAY, DAY);
+
+        assertTrue(report.consistent(), () -> report.mismatches().toString());
+        assertEquals(1, report.daysChecked());
+    }
+}
@@ -0,0 +1,173 @@
+package com.learnsmart.tracking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EventArchiveIntegrationTests {
+
+    private static final YearMonth MONTH = YearMonth.of(2019, 1);
+
+    @TempDir
+    static Path archiveDir;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("tracking.archive.dir", archiveDir::toString);
+    }
+
+    @Autowired
+    private EventArchiveService archiveService;
+
+    @Autowired
+    private EventArchive archive;
+
+    @Autowired
+    private EventHistory eventHistory;
+
+    @Autowired
+    private LearningEventRepository repository;
+
+    @Autowired
+    private EventExportService exportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void advisoryLocks() {
+        jdbcTemplate.execute(H2AdvisoryLocks.CREATE_ALIAS);
+        H2AdvisoryLocks.available = true;
+    }
+
+    private LearningEvent event(UUID userId, OffsetDateTime occurredAt, String eventType) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType(eventType);
+        event.setEntityType("lesson");
+        event.setEntityId(UUID.randomUUID());
+        event.setOccurredAt(occurredAt);
+        event.setPayload("{\"durationSeconds\":60}");
+        return event;
+    }
+
+    @Test
+    @Transactional
+    void testArchivedMonthIsDeletedAndStillReadable() {
+        UUID userId = UUID.randomUUID();
+        UUID archivedOnly = UUID.randomUUID();
+        OffsetDateTime january = MONTH.atDay(10).atStartOfDay().atOffset(ZoneOffset.UTC);
+        LearningEvent deleted = event(userId, january.plusHours(3), "content_view");
+        deleted.setDeletedAt(january.plusDays(1));
+        repository.saveAllAndFlush(List.of(
+                event(userId, january, "content_view"),
+                event(userId, january.plusHours(1), "PAGE_VIEW"),
+                event(archivedOnly, january.plusHours(2), "content_view"),
+                deleted,
+                event(userId, january.plusMonths(1), "content_view")));
+
+        assertEquals(3, archiveService.archive(MONTH));
+
+        assertTrue(archive.isArchived(MONTH));
+        try (Stream<LearningEvent> stored = repository.streamByUser(userId)) {
+            assertEquals(1, stored.count());
+        }
+        try (Stream<LearningEvent> history = eventHistory.streamByUser(userId)) {
+            List<LearningEvent> events = history.toList();
+            assertEquals(List.of(january, january.plusHours(1), january.plusMonths(1)),
+                    events.stream().map(e -> e.getOccurredAt().withOffsetSameInstant(ZoneOffset.UTC)).toList());
+            assertEquals(List.of("content_view", "PAGE_VIEW", "content_view"),
+                    events.stream().map(LearningEvent::getEventType).toList());
+            assertEquals("{\"durationSeconds\":60}", events.get(0).getPayload());
+        }
+        try (Stream<LearningEvent> range = eventHistory.streamByUserBetween(userId, january.plusMinutes(30),
+                january.plusMonths(2))) {
+            assertEquals(2, range.count());
+        }
+        assertTrue(eventHistory.findDistinctUserIds().containsAll(List.of(userId, archivedOnly)));
+        assertThrows(IllegalStateException.class, () -> archiveService.archive(MONTH));
+    }
+
+    @Test
+    void testExportOfOneUserIncludesArchivedMonth() throws IOException {
+        YearMonth month = YearMonth.of(2017, 5);
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime may = month.atDay(20).atStartOfDay().atOffset(ZoneOffset.UTC);
+        repository.saveAllAndFlush(List.of(
+                event(userId, may, "content_view"),
+                event(userId, may.plusHours(1), "PAGE_VIEW"),
+                event(userId, may.plusMonths(1), "content_view")));
+        assertEquals(2, archiveService.archive(month));
+
+        assertEquals(List.of("content_view", "PAGE_VIEW", "content_view"),
+                exportedTypes(userId, null, null, null));
+        assertEquals(List.of("content_view", "content_view"), exportedTypes(userId, "content_view", null, null));
+        // Both bounds are inclusive, as for the table
+        assertEquals(List.of("content_view", "PAGE_VIEW"),
+                exportedTypes(userId, null, may, may.plusHours(1)));
+        assertTrue(archive.horizonBefore(may).isPresent());
+        assertTrue(archive.horizonBefore(OffsetDateTime.now()).isEmpty());
+    }
+
+    private List<String> exportedTypes(UUID userId, String eventType, OffsetDateTime from, OffsetDateTime to)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(userId, eventType, null, null, from, to, out);
+        List<String> types = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            types.add(objectMapper.readValue(line, LearningEvent.class).getEventType());
+        }
+        return types;
+    }
+
+    @Test
+    void testMonthLockedByAnotherInstanceIsSkipped() {
+        YearMonth month = YearMonth.of(2018, 3);
+        repository.saveAndFlush(event(UUID.randomUUID(), month.atDay(5).atStartOfDay().atOffset(ZoneOffset.UTC),
+                "content_view"));
+        H2AdvisoryLocks.available = false;
+
+        assertEquals(0, archiveService.archive(month));
+        assertFalse(archive.isArchived(month));
+
+        H2AdvisoryLocks.available = true;
+        assertEquals(1, archiveService.archive(month));
+        assertTrue(archive.isArchived(month));
+    }
+
+    @Test
+    void testEmptyMonthIsNotArchived() {
+        YearMonth empty = YearMonth.of(2018, 6);
+
+        assertEquals(0, archiveService.archive(empty));
+        assertFalse(archive.isArchived(empty));
+    }
+}
@@ -0,0 +1,189 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventDeduplicatorTest {
+
+    private static final UUID USER = UUID.randomUUID();
+
+    @Mock
+    private LearningEventRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private EventDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2024-05-01T00:00:00Z"));
+        deduplicator = new EventDeduplicator(repository, jdbcTemplate, meterRegistry, clock, true, 10_000, 0.001,
+                Duration.ofHours(1));
+    }
+
+    @Test
+    void testNewKeysSkipTheDatabase() {
+        LearningEvent first = event("a");
+        LearningEvent second = event("b");
+        LearningEvent anonymous = event(null);
+
+        EventDeduplicator.Result result = deduplicator.deduplicate(List.of(first, second, anonymous));
+
+        assertEquals(List.of(first, second, anonymous), result.fresh());
+        verifyNoInteractions(repository);
+        assertEquals(2.0, counter("tracking.ingest.dedupe.checked"));
+        assertEquals(0.0, counter("tracking.ingest.dedupe.filter.hits"));
+    }
+
+    @Test
+    void testRetryOfStoredEventIsDropped() {
+        deduplicator.deduplicate(List.of(event("a")));
+        UUID storedId = UUID.randomUUID();
+        when(repository.findIdsByClientEventId(USER, "a", Limit.of(1))).thenReturn(List.of(storedId));
+
+        LearningEvent retry = event("a");
+        EventDeduplicator.Result result = deduplicator.deduplicate(List.of(retry));
+
+        assertTrue(result.fresh().isEmpty());
+        assertTrue(result.isDuplicate(retry));
+        assertEquals(storedId, retry.getId());
+        assertEquals(1.0, counter("tracking.ingest.dedupe.filter.hits"));
+        assertEquals(1.0, counter("tracking.ingest.dedupe.duplicates"));
+    }
+
+    @Test
+    void testPossibleHitNotInDatabaseIsStored() {
+        deduplicator.deduplicate(List.of(event("a")));
+        when(repository.findIdsByClientEventId(USER, "a", Limit.of(1))).thenReturn(List.of());
+
+        LearningEvent retry = event("a");
+        EventDeduplicator.Result result = deduplicator.deduplicate(List.of(retry));
+
+        assertEquals(List.of(retry), result.fresh());
+        assertEquals(0.0, counter("tracking.ingest.dedupe.duplicates"));
+    }
+
+    @Test
+    void testDuplicateWithinBatchGetsOriginalId() {
+        LearningEvent first = event("a");
+        LearningEvent again = event("a");
+
+        EventDeduplicator.Result result = deduplicator.deduplicate(List.of(first, again));
+        first.setId(UUID.randomUUID());
+        result.assignOriginalIds();
+
+        assertEquals(List.of(first), result.fresh());
+        assertTrue(result.isDuplicate(again));
+        assertEquals(first.getId(), again.getId());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testSameKeyForAnotherUserIsNotADuplicate() {
+        deduplicator.deduplicate(List.of(event("a")));
+        LearningEvent other = event("a");
+        other.setUserId(UUID.randomUUID());
+
+        EventDeduplicator.Result result = deduplicator.deduplicate(List.of(other));
+
+        assertEquals(List.of(other), result.fresh());
+    }
+
+    @Test
+    void testKeysAreRememberedForOneToTwoWindows() {
+        deduplicator.deduplicate(List.of(event("a")));
+        when(repository.findIdsByClientEventId(USER, "a", Limit.of(1))).thenReturn(List.of(UUID.randomUUID()));
+
+        // Next window: the key is still in the previous generation
+        clock.advance(Duration.ofMinutes(61));
+        assertTrue(deduplicator.deduplicate(List.of(event("a"))).fresh().isEmpty());
+
+        // One more window: the generation holding the key has been discarded
+        clock.advance(Duration.ofMinutes(61));
+        assertEquals(1, deduplicator.deduplicate(List.of(event("a"))).fresh().size());
+        assertEquals(1.0, counter("tracking.ingest.dedupe.filter.hits"));
+    }
+
+    @Test
+    void testLongIdleGapForgetsBothGenerations() {
+        deduplicator.deduplicate(List.of(event("a")));
+
+        clock.advance(Duration.ofMinutes(130));
+        assertEquals(1, deduplicator.deduplicate(List.of(event("a"))).fresh().size());
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testDisabledPassesEverythingThrough() {
+        EventDeduplicator disabled = new EventDeduplicator(repository, jdbcTemplate, meterRegistry, clock, false,
+                10_000, 0.001, Duration.ofHours(1));
+        LearningEvent first = event("a");
+        LearningEvent again = event("a");
+
+        assertEquals(List.of(first, again), disabled.deduplicate(List.of(first, again)).fresh());
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static LearningEvent event(String clientEventId) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(USER);
+        event.setEventType("content_view");
+        event.setClientEventId(clientEventId);
+        return event;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.learnsmart.tracking.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDurationExtractorTest {
+
+    @Test
+    void testDurationSeconds() {
+        assertEquals(120.0, EventDurationExtractor.extractSeconds("content_view", "{\"durationSeconds\": 120}"));
+    }
+
+    @Test
+    void testFractionalDurationIsNotMisparsed() {
+        // The old split/replaceAll extraction read 12.5 as 125
+        assertEquals(12.5, EventDurationExtractor.extractSeconds("content_view", "{\"durationSeconds\": 12.5}"));
+    }
+
+    @Test
+    void testLaterNumericFieldIsIgnored() {
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view",
+                "{\"durationSeconds\": null, \"score\": 10}"));
+    }
+
+    @Test
+    void testTimeSpentMsConvertedToSeconds() {
+        assertEquals(95.0, EventDurationExtractor.extractSeconds("ACTIVITY_COMPLETED",
+                "{\"activityId\":\"0d3c6a1e-55b7-4e7a-bb2b-7f3a9a8c1e42\",\"timeSpentMs\":95000}"));
+    }
+
+    @Test
+    void testPreferredFieldDependsOnEventType() {
+        String payload = "{\"durationSeconds\": 60, \"timeSpentMs\": 30000}";
+
+        assertEquals(30.0, EventDurationExtractor.extractSeconds("CONTENT_COMPLETE", payload));
+        assertEquals(60.0, EventDurationExtractor.extractSeconds("content_view", payload));
+    }
+
+    @Test
+    void testNumericString() {
+        assertEquals(300.0, EventDurationExtractor.extractSeconds("content_view", "{\"durationSeconds\": \"300\"}"));
+    }
+
+    @Test
+    void testNestedFieldsAreSkipped() {
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view",
+                "{\"meta\": {\"durationSeconds\": 99}, \"page\": \"/x\"}"));
+        assertEquals(45.0, EventDurationExtractor.extractSeconds("content_view",
+                "{\"meta\": {\"durationSeconds\": 99}, \"durationSeconds\": 45}"));
+    }
+
+    @Test
+    void testInvalidValuesYieldZero() {
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view", "{\"durationSeconds\": -10}"));
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view", "{\"durationSeconds\": \"abc\"}"));
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view", "not-json durationSeconds 5"));
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view", "[1, 2]"));
+        assertEquals(0.0, EventDurationExtractor.extractSeconds("content_view", null));
+        assertEquals(0.0, EventDurationExtractor.extractSeconds(null, "{\"page\": \"/x\"}"));
+    }
+}
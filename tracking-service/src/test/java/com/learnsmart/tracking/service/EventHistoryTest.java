@@ -0,0 +1,87 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventHistoryTest {
+
+    private static final UUID USER = UUID.randomUUID();
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private LearningEventRepository repository;
+
+    @Mock
+    private EventArchive archive;
+
+    @InjectMocks
+    private EventHistory eventHistory;
+
+    private LearningEvent event(UUID id, OffsetDateTime occurredAt) {
+        return new LearningEvent(id, USER, "PAGE_VIEW", null, null, occurredAt, null, null, occurredAt, null);
+    }
+
+    @Test
+    void testMergesArchiveAndTableInTimeOrder() {
+        LearningEvent a1 = event(UUID.randomUUID(), T0);
+        LearningEvent a2 = event(UUID.randomUUID(), T0.plusHours(2));
+        LearningEvent s1 = event(UUID.randomUUID(), T0.plusHours(1));
+        LearningEvent s2 = event(UUID.randomUUID(), T0.plusDays(40));
+        AtomicBoolean closed = new AtomicBoolean();
+        when(archive.streamByUser(USER, null, null)).thenReturn(Stream.of(a1, a2));
+        when(repository.streamByUser(USER)).thenReturn(Stream.of(s1, s2).onClose(() -> closed.set(true)));
+
+        try (Stream<LearningEvent> history = eventHistory.streamByUser(USER)) {
+            assertEquals(List.of(a1, s1, a2, s2), history.toList());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void testEventInBothPlacesIsReturnedOnce() {
+        UUID id = UUID.randomUUID();
+        LearningEvent other = event(UUID.randomUUID(), T0);
+        when(archive.streamByUser(USER, T0, T0.plusDays(1))).thenReturn(Stream.of(event(id, T0)));
+        when(repository.streamByUserBetween(USER, T0, T0.plusDays(1)))
+                .thenReturn(Stream.of(other, event(id, T0)));
+
+        try (Stream<LearningEvent> history = eventHistory.streamByUserBetween(USER, T0, T0.plusDays(1))) {
+            assertEquals(List.of(id, other.getId()), history.map(LearningEvent::getId).toList());
+        }
+    }
+
+    @Test
+    void testWithoutArchiveReturnsTableStream() {
+        Stream<LearningEvent> stored = Stream.of(event(UUID.randomUUID(), T0));
+        when(archive.streamByUser(USER, null, null)).thenReturn(Stream.of());
+        when(repository.streamByUser(USER)).thenReturn(stored);
+
+        assertSame(stored, eventHistory.streamByUser(USER));
+    }
+
+    @Test
+    void testDistinctUsersIncludeArchivedOnes() {
+        UUID archivedOnly = UUID.randomUUID();
+        when(repository.findDistinctUserIds()).thenReturn(List.of(USER));
+        when(archive.userIds()).thenReturn(Set.of(USER, archivedOnly));
+
+        assertEquals(List.of(USER, archivedOnly), eventHistory.findDistinctUserIds());
+    }
+}
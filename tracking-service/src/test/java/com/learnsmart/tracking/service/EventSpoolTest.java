@@ -0,0 +1,220 @@
+package com.learnsmart.tracking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSpoolTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T10:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    private EventSpool open(DataSize segmentSize, Instant now) {
+        meterRegistry = new SimpleMeterRegistry();
+        EventSpool spool = new EventSpool(objectMapper, meterRegistry, Clock.fixed(now, ZoneOffset.UTC), true,
+                directory, segmentSize, false);
+        spool.open();
+        return spool;
+    }
+
+    private EventSpool open() {
+        return open(DataSize.ofMegabytes(1), NOW);
+    }
+
+    private LearningEvent event(String eventType) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(UUID.randomUUID());
+        event.setEventType(eventType);
+        event.setPayload("{\"page\":\"/home\"}");
+        return event;
+    }
+
+    private List<String> types(EventSpool.Batch batch) {
+        return batch.events().stream().map(LearningEvent::getEventType).toList();
+    }
+
+    @Test
+    void testAppendedEventsAreReadBackInOrder() {
+        EventSpool spool = open();
+        LearningEvent first = event("A");
+        spool.append(first);
+        spool.append(event("B"));
+
+        EventSpool.Batch batch = spool.readBatch(10);
+
+        assertEquals(List.of("A", "B"), types(batch));
+        LearningEvent read = batch.events().get(0);
+        assertEquals(first.getUserId(), read.getUserId());
+        assertEquals("{\"page\":\"/home\"}", read.getPayload());
+        assertTrue(read.getClientEventId().startsWith(EventSpool.CLIENT_EVENT_ID_PREFIX));
+        assertEquals(first.getClientEventId(), read.getClientEventId());
+        assertTrue(read.getOccurredAt().isEqual(NOW.atOffset(ZoneOffset.UTC)));
+        assertEquals(2, spool.pendingEvents());
+        assertEquals(2.0, meterRegistry.get("tracking.spool.appended").counter().count());
+    }
+
+    @Test
+    void testReadingDoesNotConsumeUntilCommit() {
+        EventSpool spool = open();
+        spool.append(event("A"));
+        spool.append(event("B"));
+        spool.append(event("C"));
+
+        EventSpool.Batch first = spool.readBatch(2);
+        assertEquals(types(first), types(spool.readBatch(2)));
+
+        spool.commit(first);
+
+        assertEquals(List.of("C"), types(spool.readBatch(2)));
+        assertEquals(1, spool.pendingEvents());
+        assertThrows(IllegalStateException.class, () -> spool.commit(first));
+    }
+
+    @Test
+    void testKeepsClientEventId() {
+        EventSpool spool = open();
+        LearningEvent event = event("A");
+        event.setClientEventId("k1");
+        spool.append(event);
+
+        assertEquals("k1", spool.readBatch(1).events().get(0).getClientEventId());
+    }
+
+    @Test
+    void testRotatesSegmentsAndDeletesReplayedOnes() throws IOException {
+        EventSpool spool = open(DataSize.ofBytes(512), NOW);
+        for (int i = 0; i < 7; i++) {
+            spool.append(event("E" + i));
+        }
+        assertTrue(segmentCount() > 2);
+
+        EventSpool.Batch batch = spool.readBatch(100);
+        assertEquals(List.of("E0", "E1", "E2", "E3", "E4", "E5", "E6"), types(batch));
+        spool.commit(batch);
+
+        assertEquals(1, segmentCount());
+        assertEquals(0, spool.pendingEvents());
+        assertEquals(0, spool.pendingBytes());
+        assertTrue(spool.readBatch(100).isEmpty());
+    }
+
+    @Test
+    void testRejectsEventLargerThanSegment() {
+        EventSpool spool = open(DataSize.ofBytes(512), NOW);
+        LearningEvent event = event("A");
+        event.setPayload("\"" + "x".repeat(1000) + "\"");
+
+        assertThrows(IllegalArgumentException.class, () -> spool.append(event));
+    }
+
+    @Test
+    void testReopenResumesFromCheckpoint() {
+        EventSpool spool = open(DataSize.ofBytes(512), NOW);
+        for (int i = 0; i < 5; i++) {
+            spool.append(event("E" + i));
+        }
+        spool.commit(spool.readBatch(3));
+
+        EventSpool reopened = open(DataSize.ofBytes(512), NOW.plusSeconds(90));
+
+        assertEquals(2, reopened.pendingEvents());
+        assertEquals(90.0, meterRegistry.get("tracking.spool.replay.lag").gauge().value());
+        reopened.append(event("E5"));
+        assertEquals(List.of("E3", "E4", "E5"), types(reopened.readBatch(10)));
+    }
+
+    @Test
+    void testTornRecordIsTruncatedOnReopen() throws IOException {
+        EventSpool spool = open();
+        spool.append(event("A"));
+        spool.append(event("B"));
+        long end = spool.pendingBytes();
+
+        // A crash after the length was written but before the rest made it to disk
+        try (FileChannel channel = FileChannel.open(directory.resolve("00000000000000000001.seg"),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(EventSpool.HEADER_BYTES + 4).putInt(40).putInt(12345).flip(), end);
+        }
+
+        EventSpool reopened = open();
+
+        assertEquals(2, reopened.pendingEvents());
+        assertEquals(1.0, meterRegistry.get("tracking.spool.corrupt").counter().count());
+        reopened.append(event("C"));
+        assertEquals(List.of("A", "B", "C"), types(reopened.readBatch(10)));
+    }
+
+    @Test
+    void testDisabledSpoolCreatesNothing() {
+        EventSpool spool = new EventSpool(objectMapper, meterRegistry, Clock.systemUTC(), false,
+                directory.resolve("spool"), DataSize.ofMegabytes(1), false);
+        spool.open();
+
+        assertFalse(spool.isEnabled());
+        assertFalse(Files.exists(directory.resolve("spool")));
+        assertThrows(IllegalStateException.class, () -> spool.append(event("A")));
+    }
+
+    @Test
+    void testDatabaseDownFlag() {
+        EventSpool spool = open();
+        assertFalse(spool.isDatabaseDown());
+
+        spool.markDatabaseDown();
+        assertTrue(spool.isDatabaseDown());
+
+        spool.markDatabaseUp();
+        assertFalse(spool.isDatabaseDown());
+    }
+
+    @Test
+    void testConnectivityFailures() {
+        assertTrue(EventSpool.isConnectivityFailure(new CannotCreateTransactionException("down")));
+        assertTrue(EventSpool.isConnectivityFailure(new DataAccessResourceFailureException("down")));
+        assertTrue(EventSpool.isConnectivityFailure(
+                new RuntimeException(new SQLTransientConnectionException("pool exhausted"))));
+        assertFalse(EventSpool.isConnectivityFailure(new DataIntegrityViolationException("constraint")));
+        assertFalse(EventSpool.isConnectivityFailure(new IllegalArgumentException("bad event")));
+        assertTrue(EventSpool.isConnectivityFailure(
+                new RuntimeException(new SQLException("connection lost", "08006"))));
+        assertFalse(EventSpool.isConnectivityFailure(new DeadlockLoserDataAccessException("deadlock", null)));
+        assertFalse(EventSpool.isConnectivityFailure(new QueryTimeoutException("statement timeout")));
+        assertFalse(EventSpool.isConnectivityFailure(
+                new RuntimeException(new SQLException("deadlock detected", "40P01"))));
+    }
+
+    private long segmentCount() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
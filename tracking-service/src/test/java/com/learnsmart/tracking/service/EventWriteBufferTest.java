@@ -0,0 +1,179 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventWriteBufferTest {
+
+    @Mock
+    private LearningEventWriter eventWriter;
+
+    @Mock
+    private EventSpool spool;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private EventWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    private LearningEvent event() {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(UUID.randomUUID());
+        event.setEventType("PAGE_VIEW");
+        return event;
+    }
+
+    @Test
+    void testGroupCommitWhenBatchIsFull() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 3, 60_000);
+        buffer.start();
+
+        LearningEvent e1 = event();
+        LearningEvent e2 = event();
+        LearningEvent e3 = event();
+        buffer.enqueue(e1);
+        buffer.enqueue(e2);
+        buffer.enqueue(e3);
+
+        // Flush interval is a minute, so only the batch size can trigger this commit
+        verify(eventWriter, timeout(2000)).writeAll(List.of(e1, e2, e3));
+    }
+
+    @Test
+    void testGroupCommitAfterFlushInterval() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 500, 20);
+        buffer.start();
+
+        LearningEvent e1 = event();
+        buffer.enqueue(e1);
+
+        verify(eventWriter, timeout(2000)).writeAll(List.of(e1));
+        buffer.stop();
+        assertEquals(1, meterRegistry.get("tracking.ingest.buffer.commit").timer().count());
+    }
+
+    @Test
+    void testFullBufferRejects() {
+        // Not started: nothing drains the queue
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 2, 500, 20);
+
+        buffer.enqueue(event());
+        buffer.enqueue(event());
+
+        assertThrows(IngestBufferFullException.class, () -> buffer.enqueue(event()));
+        assertEquals(2.0, meterRegistry.get("tracking.ingest.buffer.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("tracking.ingest.buffer.rejected").counter().count());
+    }
+
+    @Test
+    void testStopFlushesPendingEvents() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 500, 60_000);
+        buffer.start();
+
+        LearningEvent e1 = event();
+        LearningEvent e2 = event();
+        buffer.enqueue(e1);
+        buffer.enqueue(e2);
+        buffer.stop();
+
+        verify(eventWriter).writeAll(List.of(e1, e2));
+        assertEquals(0, buffer.depth());
+        assertFalse(buffer.isRunning());
+    }
+
+    @Test
+    void testFailedCommitIsCountedAndDrainContinues() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 1, 20);
+        when(eventWriter.writeAll(anyList()))
+                .thenThrow(new RuntimeException("value too long"))
+                .thenThrow(new RuntimeException("value too long"))
+                .thenReturn(List.of());
+        buffer.start();
+
+        buffer.enqueue(event());
+        buffer.enqueue(event());
+
+        // Batch, retry of its only event, then the next batch
+        verify(eventWriter, timeout(2000).times(3)).writeAll(anyList());
+        buffer.stop();
+        assertEquals(1.0, meterRegistry.get("tracking.ingest.buffer.failed").counter().count());
+    }
+
+    @Test
+    void testRejectedBatchIsRetriedEventByEvent() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 3, 60_000);
+        LearningEvent good1 = event();
+        LearningEvent bad = event();
+        LearningEvent good2 = event();
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            List<LearningEvent> events = invocation.getArgument(0);
+            if (events.contains(bad)) {
+                throw new RuntimeException("value too long");
+            }
+            return events;
+        });
+        buffer.start();
+
+        buffer.enqueue(good1);
+        buffer.enqueue(bad);
+        buffer.enqueue(good2);
+
+        verify(eventWriter, timeout(2000)).writeAll(List.of(good2));
+        verify(eventWriter).writeAll(List.of(good1));
+        buffer.stop();
+        assertEquals(1.0, meterRegistry.get("tracking.ingest.buffer.failed").counter().count());
+        verify(spool, never()).append(any());
+    }
+
+    @Test
+    void testBatchIsSpooledWhenDatabaseIsUnreachable() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, true, 100, 2, 20);
+        when(spool.isEnabled()).thenReturn(true);
+        when(eventWriter.writeAll(anyList()))
+                .thenThrow(new CannotCreateTransactionException("connection refused"));
+        buffer.start();
+
+        LearningEvent e1 = event();
+        LearningEvent e2 = event();
+        e1.setId(UUID.randomUUID());
+        buffer.enqueue(e1);
+        buffer.enqueue(e2);
+
+        verify(spool, timeout(2000).atLeastOnce()).markDatabaseDown();
+        buffer.stop();
+        verify(spool).append(e1);
+        verify(spool).append(e2);
+        assertNull(e1.getId());
+        assertEquals(0.0, meterRegistry.get("tracking.ingest.buffer.failed").counter().count());
+    }
+
+    @Test
+    void testDisabledBufferDoesNotStart() {
+        buffer = new EventWriteBuffer(eventWriter, spool, meterRegistry, false, 100, 500, 20);
+        buffer.start();
+
+        assertFalse(buffer.isEnabled());
+        assertFalse(buffer.isRunning());
+    }
+}
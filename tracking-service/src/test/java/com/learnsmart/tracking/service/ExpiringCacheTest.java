@@ -0,0 +1,116 @@
+package com.learnsmart.tracking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+
+    private static final Instant START = Instant.parse("2024-03-10T12:00:00Z");
+
+    @Test
+    void testReturnsCachedValueUntilExpiry() {
+        MutableClock clock = new MutableClock(START);
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(Duration.ofMinutes(5), 10, clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.get("a", loads::incrementAndGet));
+        clock.advance(Duration.ofMinutes(4));
+        assertEquals(1, cache.get("a", loads::incrementAndGet));
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(2, cache.get("a", loads::incrementAndGet), "Entry expires after the TTL");
+    }
+
+    @Test
+    void testEvictsOldestBeyondMaxEntries() {
+        MutableClock clock = new MutableClock(START);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(5), 2, clock);
+
+        cache.get("a", () -> "a1");
+        clock.advance(Duration.ofSeconds(1));
+        cache.get("b", () -> "b1");
+        clock.advance(Duration.ofSeconds(1));
+        cache.get("c", () -> "c1");
+
+        assertEquals(2, cache.size());
+        assertEquals("a2", cache.get("a", () -> "a2"), "Oldest entry was evicted");
+        assertEquals("c1", cache.get("c", () -> "c2"));
+    }
+
+    @Test
+    void testReloadedEntryIsEvictedLast() {
+        MutableClock clock = new MutableClock(START);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(5), 2, clock);
+
+        cache.put("a", "a1");
+        clock.advance(Duration.ofSeconds(1));
+        cache.put("b", "b1");
+        clock.advance(Duration.ofSeconds(1));
+        cache.put("a", "a2");
+        cache.put("c", "c1");
+
+        assertNull(cache.getIfPresent("b"), "b is now the oldest entry");
+        assertEquals("a2", cache.getIfPresent("a"));
+        assertEquals("c1", cache.getIfPresent("c"));
+    }
+
+    @Test
+    void testDropsExpiredEntriesOnPut() {
+        MutableClock clock = new MutableClock(START);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMinutes(5), 10, clock);
+
+        cache.put("a", "a1");
+        cache.put("b", "b1");
+        clock.advance(Duration.ofMinutes(5));
+        cache.put("c", "c1");
+
+        assertEquals(1, cache.size());
+        assertEquals("c1", cache.getIfPresent("c"));
+    }
+
+    @Test
+    void testZeroTtlDisablesCaching() {
+        ExpiringCache<String, Integer> cache = new ExpiringCache<>(Duration.ZERO, 10, new MutableClock(START));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", loads::incrementAndGet);
+        cache.get("a", loads::incrementAndGet);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
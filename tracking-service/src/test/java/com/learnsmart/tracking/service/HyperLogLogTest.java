@@ -0,0 +1,122 @@
+package com.learnsmart.tracking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static List<UUID> ids(int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+
+    @Test
+    void testExactWhileSmall() {
+        HyperLogLog sketch = new HyperLogLog();
+        List<UUID> ids = ids(HyperLogLog.EXACT_LIMIT);
+        ids.forEach(sketch::add);
+        ids.forEach(sketch::add);
+
+        assertTrue(sketch.isExact());
+        assertEquals(HyperLogLog.EXACT_LIMIT, sketch.estimate());
+        assertEquals(6 + HyperLogLog.EXACT_LIMIT * Long.BYTES, sketch.toBytes().length);
+    }
+
+    @Test
+    void testPromotesPastExactLimit() {
+        HyperLogLog sketch = new HyperLogLog();
+        ids(HyperLogLog.EXACT_LIMIT + 1).forEach(sketch::add);
+
+        assertFalse(sketch.isExact());
+        assertEquals(2 + HyperLogLog.REGISTERS, sketch.toBytes().length);
+        assertEquals(HyperLogLog.EXACT_LIMIT + 1, sketch.estimate(), 10);
+    }
+
+    @Test
+    void testEstimateWithinErrorBound() {
+        for (int count : new int[]{1_000, 10_000, 200_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            ids(count).forEach(sketch::add);
+            // Standard error is ~1.6%; allow four of them to keep the test stable
+            assertEquals(count, sketch.estimate(), count * 0.065, "count " + count);
+        }
+    }
+
+    @Test
+    void testMergeMatchesSingleSketch() {
+        List<UUID> shared = ids(2_000);
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        shared.forEach(id -> {
+            left.add(id);
+            right.add(id);
+            all.add(id);
+        });
+        ids(100).forEach(id -> {
+            right.add(id);
+            all.add(id);
+        });
+        HyperLogLog small = new HyperLogLog();
+        ids(10).forEach(id -> {
+            small.add(id);
+            all.add(id);
+        });
+
+        left.merge(right);
+        left.merge(small);
+
+        assertArrayEquals(all.toBytes(), left.toBytes());
+    }
+
+    @Test
+    void testMergeOfExactSketchesIsExactUnion() {
+        List<UUID> ids = ids(30);
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        ids.subList(0, 20).forEach(left::add);
+        ids.subList(10, 30).forEach(right::add);
+
+        left.merge(right);
+
+        assertTrue(left.isExact());
+        assertEquals(30, left.estimate());
+    }
+
+    @Test
+    void testSerializationRoundTrip() {
+        HyperLogLog exact = new HyperLogLog();
+        ids(50).forEach(exact::add);
+        HyperLogLog dense = new HyperLogLog();
+        ids(5_000).forEach(dense::add);
+
+        for (HyperLogLog sketch : List.of(exact, dense)) {
+            HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+            assertEquals(sketch.isExact(), copy.isExact());
+            assertEquals(sketch.estimate(), copy.estimate());
+            assertArrayEquals(sketch.toBytes(), copy.toBytes());
+        }
+        assertEquals(0, HyperLogLog.fromBytes(null).estimate());
+        assertEquals(0, HyperLogLog.fromBytes(new byte[0]).estimate());
+    }
+
+    @Test
+    void testRejectsCorruptBytes() {
+        byte[] valid = new HyperLogLog().toBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{9, 12}));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{1, 14, 0, 0, 0, 0}));
+        byte[] truncated = Arrays.copyOf(valid, valid.length);
+        truncated[5] = 1;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(truncated));
+    }
+}
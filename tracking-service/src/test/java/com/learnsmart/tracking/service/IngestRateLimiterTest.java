@@ -0,0 +1,167 @@
+package com.learnsmart.tracking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestRateLimiterTest {
+
+    private static final UUID USER = UUID.randomUUID();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-03-01T10:00:00Z"));
+
+    private IngestRateLimiter limiter(Map<String, IngestRateLimiter.Limit> eventTypeLimits) {
+        return new IngestRateLimiter(meterRegistry, clock, true, new IngestRateLimiter.Limit(2, 3),
+                new IngestRateLimiter.Limit(100, 5), eventTypeLimits);
+    }
+
+    private double throttled(String scope, String eventType) {
+        return meterRegistry.get("tracking.ingest.throttled").tag("scope", scope).tag("eventType", eventType)
+                .counter().count();
+    }
+
+    @Test
+    void testBurstThenRefill() {
+        IngestRateLimiter limiter = limiter(Map.of());
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(USER, null, "PAGE_VIEW");
+        }
+
+        IngestRateLimitedException e = assertThrows(IngestRateLimitedException.class,
+                () -> limiter.acquire(USER, null, "PAGE_VIEW"));
+        assertEquals(Duration.ofMillis(500), e.getRetryAfter());
+        assertEquals(1, throttled("user", IngestRateLimiter.DEFAULT_TYPE));
+
+        clock.advance(Duration.ofMillis(500));
+        limiter.acquire(USER, null, "PAGE_VIEW");
+        assertThrows(IngestRateLimitedException.class, () -> limiter.acquire(USER, null, "PAGE_VIEW"));
+
+        // Other users have their own bucket
+        limiter.acquire(UUID.randomUUID(), null, "PAGE_VIEW");
+    }
+
+    @Test
+    void testEventTypeLimitUsesSeparateBucket() {
+        IngestRateLimiter limiter = limiter(Map.of("heartbeat", new IngestRateLimiter.Limit(1, 1)));
+
+        limiter.acquire(USER, null, "heartbeat");
+        assertThrows(IngestRateLimitedException.class, () -> limiter.acquire(USER, null, "heartbeat"));
+        assertEquals(1, throttled("user", "heartbeat"));
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(USER, null, "PAGE_VIEW");
+        }
+    }
+
+    @Test
+    void testClientLimitSpansUsers() {
+        IngestRateLimiter limiter = limiter(Map.of());
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(UUID.randomUUID(), "lms-importer", "PAGE_VIEW");
+        }
+
+        assertThrows(IngestRateLimitedException.class,
+                () -> limiter.acquire(UUID.randomUUID(), "lms-importer", "PAGE_VIEW"));
+        assertEquals(1, throttled("client", IngestRateLimiter.DEFAULT_TYPE));
+        limiter.acquire(UUID.randomUUID(), "web", "PAGE_VIEW");
+    }
+
+    @Test
+    void testEvictsOnlyRefilledBuckets() {
+        IngestRateLimiter limiter = limiter(Map.of());
+        UUID idle = UUID.randomUUID();
+        limiter.acquire(idle, "web", "PAGE_VIEW");
+        clock.advance(Duration.ofSeconds(1));
+        limiter.acquire(USER, null, "PAGE_VIEW");
+
+        limiter.evictIdle();
+
+        assertEquals(1, limiter.bucketCount(), "Only the recently used user bucket is kept");
+        assertEquals(1, meterRegistry.get("tracking.ingest.rate-limit.buckets").gauge().value());
+    }
+
+    @Test
+    void testConcurrentAcquiresNeverExceedBurst() throws Exception {
+        IngestRateLimiter limiter = new IngestRateLimiter(meterRegistry, clock, true,
+                new IngestRateLimiter.Limit(1, 1_000), new IngestRateLimiter.Limit(1, 100_000), Map.of());
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        try {
+                            limiter.acquire(USER, null, "PAGE_VIEW");
+                            accepted.incrementAndGet();
+                        } catch (IngestRateLimitedException e) {
+                            // expected once the bucket is empty
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1_000, accepted.get());
+    }
+
+    @Test
+    void testParsesEventTypeLimits() {
+        Map<String, IngestRateLimiter.Limit> limits =
+                IngestRateLimiter.parseEventTypeLimits(" heartbeat=1/5, content_view=0.5/20 ");
+
+        assertEquals(new IngestRateLimiter.Limit(1, 5), limits.get("heartbeat"));
+        assertEquals(new IngestRateLimiter.Limit(0.5, 20), limits.get("content_view"));
+        assertTrue(IngestRateLimiter.parseEventTypeLimits("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> IngestRateLimiter.parseEventTypeLimits("heartbeat=5"));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
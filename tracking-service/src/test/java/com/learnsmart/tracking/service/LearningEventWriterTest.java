@@ -0,0 +1,192 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.repository.LearningEventRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LearningEventWriterTest {
+
+    @Mock
+    private LearningEventRepository repository;
+
+    @Mock
+    private UserStatsRollupService rollupService;
+
+    @Mock
+    private DailyActivityService dailyActivityService;
+
+    @Mock
+    private EventDeduplicator deduplicator;
+
+    @Mock
+    private LiveEventHub liveEventHub;
+
+    @Mock
+    private UserAnalyticsCache analyticsCache;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private LearningEventWriter writer;
+
+    @Test
+    void testWriteAll_SavesThenUpdatesAggregates() {
+        LearningEvent event = new LearningEvent();
+        List<LearningEvent> saved = List.of(event);
+        when(deduplicator.deduplicate(List.of(event))).thenReturn(resultOf(List.of(event)));
+        when(repository.saveAll(List.of(event))).thenReturn(saved);
+
+        assertSame(saved, writer.writeAll(List.of(event)));
+
+        InOrder inOrder = inOrder(repository, rollupService, dailyActivityService);
+        inOrder.verify(repository).saveAll(List.of(event));
+        inOrder.verify(rollupService).apply(saved);
+        inOrder.verify(dailyActivityService).apply(saved);
+    }
+
+    @Test
+    void testWriteAll_EmptyBatchIsNoOp() {
+        assertTrue(writer.writeAll(List.of()).isEmpty());
+
+        verify(repository, never()).saveAll(any());
+        verifyNoInteractions(rollupService, dailyActivityService);
+    }
+
+    @Test
+    void testWriteAll_SkipsDuplicates() {
+        LearningEvent fresh = new LearningEvent();
+        LearningEvent duplicate = new LearningEvent();
+        when(deduplicator.deduplicate(List.of(fresh, duplicate))).thenReturn(resultOf(List.of(fresh)));
+        when(repository.saveAll(List.of(fresh))).thenReturn(List.of(fresh));
+
+        assertEquals(List.of(fresh), writer.writeAll(List.of(fresh, duplicate)));
+
+        verify(rollupService).apply(List.of(fresh));
+        verify(dailyActivityService).apply(List.of(fresh));
+    }
+
+    @Test
+    void testWriteAll_AllDuplicatesWritesNothing() {
+        LearningEvent duplicate = new LearningEvent();
+        when(deduplicator.deduplicate(List.of(duplicate))).thenReturn(resultOf(List.of()));
+
+        assertTrue(writer.writeAll(List.of(duplicate)).isEmpty());
+
+        verify(repository, never()).saveAll(any());
+        verifyNoInteractions(rollupService, dailyActivityService);
+    }
+
+    @Test
+    void testWriteAll_PublishesToLiveSubscribersAfterCommit() {
+        LearningEvent event = new LearningEvent();
+        when(deduplicator.deduplicate(List.of(event))).thenReturn(resultOf(List.of(event)));
+        when(repository.saveAll(List.of(event))).thenReturn(List.of(event));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.writeAll(List.of(event));
+            verifyNoInteractions(liveEventHub);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(liveEventHub).publish(List.of(event));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testWriteAll_InvalidatesCachedAnalyticsAfterCommit() {
+        UUID userId = UUID.randomUUID();
+        LearningEvent first = new LearningEvent();
+        first.setUserId(userId);
+        LearningEvent second = new LearningEvent();
+        second.setUserId(userId);
+        when(deduplicator.deduplicate(List.of(first, second))).thenReturn(resultOf(List.of(first, second)));
+        when(repository.saveAll(List.of(first, second))).thenReturn(List.of(first, second));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.writeAll(List.of(first, second));
+            verifyNoInteractions(analyticsCache);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(analyticsCache).invalidate(Set.of(userId));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testWriteAll_DuplicatesAreNotPublished() {
+        LearningEvent duplicate = new LearningEvent();
+        when(deduplicator.deduplicate(List.of(duplicate))).thenReturn(resultOf(List.of()));
+
+        writer.writeAll(List.of(duplicate));
+
+        verifyNoInteractions(liveEventHub, analyticsCache);
+    }
+
+    @Test
+    void testWriteAll_ConcurrentlyStoredClientEventIdIsRechecked() {
+        LearningEvent fresh = new LearningEvent();
+        LearningEvent retried = new LearningEvent();
+        List<LearningEvent> events = List.of(fresh, retried);
+        when(deduplicator.deduplicate(events)).thenReturn(resultOf(events), resultOf(List.of(fresh)));
+        when(repository.saveAll(events)).thenAnswer(invocation -> {
+            fresh.setId(UUID.randomUUID());
+            throw uniqueViolation();
+        });
+        when(repository.saveAll(List.of(fresh))).thenReturn(List.of(fresh));
+
+        assertEquals(List.of(fresh), writer.writeAll(events));
+
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(rollupService).apply(List.of(fresh));
+    }
+
+    @Test
+    void testWriteAll_OtherIntegrityViolationsPropagate() {
+        LearningEvent event = new LearningEvent();
+        when(deduplicator.deduplicate(List.of(event))).thenReturn(resultOf(List.of(event)));
+        when(repository.saveAll(List.of(event)))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> writer.writeAll(List.of(event)));
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    private static DataIntegrityViolationException uniqueViolation() {
+        SQLException sqlException = new SQLException("duplicate key value", "23505");
+        return new DataIntegrityViolationException("duplicate key value",
+                new ConstraintViolationException("duplicate key value", sqlException, "learning_events_v2_user_id_idx"));
+    }
+
+    private static EventDeduplicator.Result resultOf(List<LearningEvent> fresh) {
+        EventDeduplicator.Result result = new EventDeduplicator.Result(fresh.size());
+        result.fresh().addAll(fresh);
+        return result;
+    }
+}
@@ -0,0 +1,141 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LiveEventHubTest {
+
+    private final List<Runnable> pendingSends = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private LiveEventHub hub;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Sender tasks only run when the test says so, which lets a subscriber fall behind
+        hub = new LiveEventHub(meterRegistry, pendingSends::add, 2, 3, Duration.ofMinutes(1));
+    }
+
+    private void runSends() {
+        while (!pendingSends.isEmpty()) {
+            pendingSends.remove(0).run();
+        }
+    }
+
+    private static LearningEvent event(UUID userId) {
+        LearningEvent event = new LearningEvent();
+        event.setId(UUID.randomUUID());
+        event.setUserId(userId);
+        event.setEventType("content_view");
+        return event;
+    }
+
+    @Test
+    void testDeliversOnlyTheSubscribedUsersEvents() throws IOException {
+        UUID userId = UUID.randomUUID();
+        SseEmitter emitter = mock(SseEmitter.class);
+        hub.register(userId, emitter);
+
+        hub.publish(List.of(event(userId), event(UUID.randomUUID())));
+        runSends();
+
+        verify(emitter, times(1)).send(any(SseEmitter.SseEventBuilder.class));
+        assertEquals(1, meterRegistry.counter("tracking.stream.delivered").count());
+    }
+
+    @Test
+    void testFansOutToEverySubscriberOfTheUser() throws IOException {
+        UUID userId = UUID.randomUUID();
+        SseEmitter first = mock(SseEmitter.class);
+        SseEmitter second = mock(SseEmitter.class);
+        hub.register(userId, first);
+        hub.register(userId, second);
+
+        hub.publish(List.of(event(userId)));
+        runSends();
+
+        verify(first).send(any(SseEmitter.SseEventBuilder.class));
+        verify(second).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void testEvictsSlowSubscriber() throws IOException {
+        UUID userId = UUID.randomUUID();
+        SseEmitter slow = mock(SseEmitter.class);
+        LiveEventHub.Subscription subscription = hub.register(userId, slow);
+
+        // Buffer holds two events; the sender never ran, so the third overflows it
+        hub.publish(List.of(event(userId), event(userId), event(userId)));
+
+        assertTrue(subscription.isClosed());
+        verify(slow).complete();
+        assertEquals(0, hub.subscriberCount());
+        assertEquals(1, meterRegistry.counter("tracking.stream.evicted").count());
+
+        runSends();
+        verify(slow, never()).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void testRemovesSubscriberWhenSendFails() throws IOException {
+        UUID userId = UUID.randomUUID();
+        SseEmitter gone = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(gone).send(any(SseEmitter.SseEventBuilder.class));
+        LiveEventHub.Subscription subscription = hub.register(userId, gone);
+
+        hub.publish(List.of(event(userId)));
+        runSends();
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    @Test
+    void testHeartbeatReachesIdleSubscribers() throws IOException {
+        SseEmitter emitter = mock(SseEmitter.class);
+        hub.register(UUID.randomUUID(), emitter);
+
+        hub.heartbeat();
+        runSends();
+
+        verify(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        assertEquals(0, meterRegistry.counter("tracking.stream.delivered").count());
+    }
+
+    @Test
+    void testRejectsSubscribersBeyondLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(hub.subscribe(UUID.randomUUID()).isPresent());
+        }
+
+        assertTrue(hub.subscribe(UUID.randomUUID()).isEmpty());
+        assertEquals(3, hub.subscriberCount());
+    }
+
+    @Test
+    void testCompletionReleasesSlot() {
+        SseEmitter emitter = mock(SseEmitter.class);
+        LiveEventHub.Subscription subscription = hub.register(UUID.randomUUID(), emitter);
+        ArgumentCaptor<Runnable> onCompletion = ArgumentCaptor.forClass(Runnable.class);
+        verify(emitter).onCompletion(onCompletion.capture());
+
+        onCompletion.getValue().run();
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, hub.subscriberCount());
+    }
+}
@@ -0,0 +1,71 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.benchmark.SyntheticEvents;
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserStatsRollup;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user analytics over histories of 1k to 100k events: folding the
+ * events into a streak (what a rollup rebuild does per event), reading the
+ * streak from a maintained rollup (what the stats endpoint does), and
+ * grouping events into daily activity (what a backfill does). Lives in the
+ * service package because the day and duration helpers are package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class StreakAndActivityBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int eventCount;
+
+    private List<LearningEvent> events;
+    private UserStatsRollup rollup;
+    private Instant now;
+
+    @Setup
+    public void generate() {
+        UUID userId = new UUID(1, 1);
+        events = SyntheticEvents.history(userId, eventCount, 42);
+        rollup = new UserStatsRollup(userId);
+        for (LearningEvent event : events) {
+            rollup.record(AnalyticsService.activityDay(event), AnalyticsService.extractDurationSeconds(event));
+        }
+        now = events.get(events.size() - 1).getOccurredAt().toInstant().plusSeconds(3600);
+    }
+
+    @Benchmark
+    public int streakFromEvents() {
+        UserStatsRollup fresh = new UserStatsRollup(rollup.getUserId());
+        for (LearningEvent event : events) {
+            fresh.record(AnalyticsService.activityDay(event), AnalyticsService.extractDurationSeconds(event));
+        }
+        return fresh.streakAt(now);
+    }
+
+    @Benchmark
+    public int streakFromRollup() {
+        return rollup.streakAt(now);
+    }
+
+    @Benchmark
+    public SortedMap<LocalDate, DailyActivityService.DayTotals> activityByDay() {
+        SortedMap<LocalDate, DailyActivityService.DayTotals> days = new TreeMap<>();
+        for (LearningEvent event : events) {
+            DailyActivityService.add(days, event);
+        }
+        return days;
+    }
+}
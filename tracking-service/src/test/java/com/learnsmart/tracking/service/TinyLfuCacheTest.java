@@ -0,0 +1,129 @@
+package com.learnsmart.tracking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TinyLfuCacheTest {
+
+    private static final Instant START = Instant.parse("2024-03-10T12:00:00Z");
+
+    @Test
+    void testReturnsCachedValueUntilExpiry() {
+        MutableClock clock = new MutableClock(START);
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(10, Duration.ofMinutes(1), clock);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.get("a", loads::incrementAndGet));
+        clock.advance(Duration.ofSeconds(59));
+        assertEquals(1, cache.get("a", loads::incrementAndGet));
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(2, cache.get("a", loads::incrementAndGet), "Entry expires after the TTL");
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void testStaysWithinMaximumSize() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1), new MutableClock(START));
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(i, () -> 0);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictionCount());
+    }
+
+    @Test
+    void testScanDoesNotFlushFrequentlyReadEntries() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1), new MutableClock(START));
+        AtomicInteger loads = new AtomicInteger();
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.get(hot, () -> loads.incrementAndGet());
+            }
+        }
+
+        // One-off reads of many other keys, e.g. a report over every user
+        for (int cold = 1_000; cold < 1_500; cold++) {
+            cache.get(cold, () -> 0);
+        }
+        loads.set(0);
+        for (int hot = 0; hot < 50; hot++) {
+            cache.get(hot, () -> loads.incrementAndGet());
+        }
+
+        assertEquals(0, loads.get(), "Hot entries survived the scan");
+    }
+
+    @Test
+    void testInvalidateDropsEntry() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(10, Duration.ofMinutes(1), new MutableClock(START));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", loads::incrementAndGet);
+        cache.invalidate("a");
+
+        assertEquals(2, cache.get("a", loads::incrementAndGet));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testLoadOverlappingInvalidateIsNotCached() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(10, Duration.ofMinutes(1), new MutableClock(START));
+
+        // The loaded value predates whatever caused the invalidation
+        assertEquals(1, cache.get("a", () -> {
+            cache.invalidate("a");
+            return 1;
+        }));
+
+        assertEquals(2, cache.get("a", () -> 2));
+        assertEquals(2, cache.get("a", () -> 3));
+    }
+
+    @Test
+    void testNullIsNotCached() {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(10, Duration.ofMinutes(1), new MutableClock(START));
+
+        assertNull(cache.get("a", () -> null));
+        assertEquals(1, cache.get("a", () -> 1));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
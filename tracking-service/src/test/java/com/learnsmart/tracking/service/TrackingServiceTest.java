@@ -1,20 +1,33 @@
 package com.learnsmart.tracking.service;
 
+import com.learnsmart.tracking.dto.BatchItemResult;
+import com.learnsmart.tracking.dto.CursorPage;
+import com.learnsmart.tracking.dto.EventCursor;
 import com.learnsmart.tracking.model.LearningEvent;
 import com.learnsmart.tracking.repository.LearningEventRepository;
 import com.learnsmart.tracking.validator.EventPayloadValidator;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.CannotCreateTransactionException;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,21 +44,43 @@ class TrackingServiceTest {
     @Mock
     private EventPayloadValidator payloadValidator;
 
+    @Mock
+    private EventWriteBuffer writeBuffer;
+
+    @Mock
+    private LearningEventWriter eventWriter;
+
+    @Mock
+    private EventSpool spool;
+
+    @Mock
+    private UserTimezoneResolver timezoneResolver;
+
+    @Mock
+    private IngestRateLimiter rateLimiter;
+
     @InjectMocks
     private TrackingService trackingService;
 
+    @BeforeEach
+    void defaultTimezone() {
+        lenient().when(timezoneResolver.resolve(any())).thenReturn(ZoneOffset.UTC);
+    }
+
     @Test
     void testCreateEvent_Success() {
         LearningEvent event = new LearningEvent();
         event.setEventType("content_view");
+        event.setUserId(UUID.randomUUID());
         event.setPayload("{\"test\":\"data\"}");
 
         doNothing().when(payloadValidator).validate(anyString(), anyString());
+        when(eventWriter.writeAll(List.of(event))).thenReturn(List.of(event));
 
-        trackingService.createEvent(event);
+        trackingService.createEvent(event, null);
 
         verify(payloadValidator).validate("content_view", "{\"test\":\"data\"}");
-        verify(repository).save(event);
+        verify(eventWriter).writeAll(List.of(event));
     }
 
     @Test
@@ -53,14 +88,103 @@ class TrackingServiceTest {
         // Payload validator must fail-fast: invalid events must NOT be persisted.
         LearningEvent event = new LearningEvent();
         event.setEventType("CONTENT_START");
+        event.setUserId(UUID.randomUUID());
         event.setPayload("{}"); // Missing required fields
 
         doThrow(new IllegalArgumentException("Missing required field 'startTime'"))
                 .when(payloadValidator).validate(anyString(), anyString());
 
-        assertThrows(IllegalArgumentException.class, () -> trackingService.createEvent(event),
+        assertThrows(IllegalArgumentException.class, () -> trackingService.createEvent(event, null),
                 "Validation errors must propagate and prevent event from being saved");
-        verify(repository, never()).save(any());
+        verify(eventWriter, never()).writeAll(any());
+    }
+
+    @Test
+    void testCreateEvent_AsyncModeEnqueuesInsteadOfSaving() {
+        LearningEvent event = new LearningEvent();
+        event.setEventType("PAGE_VIEW");
+        event.setUserId(UUID.randomUUID());
+        event.setPayload("{\"page\":\"/home\"}");
+
+        when(writeBuffer.isEnabled()).thenReturn(true);
+
+        trackingService.createEvent(event, null);
+
+        verify(payloadValidator).validate("PAGE_VIEW", "{\"page\":\"/home\"}");
+        verify(writeBuffer).enqueue(event);
+        verify(eventWriter, never()).writeAll(any());
+    }
+
+    @Test
+    void testCreateEvent_MissingUserIdIsRejectedBeforeBuffering() {
+        LearningEvent event = new LearningEvent();
+        event.setEventType("PAGE_VIEW");
+
+        assertThrows(IllegalArgumentException.class, () -> trackingService.createEvent(event, null));
+        verify(writeBuffer, never()).enqueue(any());
+        verify(spool, never()).append(any());
+    }
+
+    @Test
+    void testCreateEvent_SpoolsWhenDatabaseUnreachable() {
+        LearningEvent event = new LearningEvent();
+        event.setEventType("PAGE_VIEW");
+        event.setUserId(UUID.randomUUID());
+        when(spool.isEnabled()).thenReturn(true);
+        when(eventWriter.writeAll(List.of(event)))
+                .thenThrow(new CannotCreateTransactionException("connection refused"));
+
+        assertSame(event, trackingService.createEvent(event, null));
+
+        verify(spool).markDatabaseDown();
+        verify(spool).append(event);
+    }
+
+    @Test
+    void testCreateEvent_SkipsDatabaseWhileMarkedDown() {
+        LearningEvent event = new LearningEvent();
+        event.setEventType("PAGE_VIEW");
+        event.setUserId(UUID.randomUUID());
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isDatabaseDown()).thenReturn(true);
+
+        trackingService.createEvent(event, null);
+
+        verify(spool).append(event);
+        verify(eventWriter, never()).writeAll(any());
+    }
+
+    @Test
+    void testCreateEvent_OtherFailuresAreNotSpooled() {
+        LearningEvent event = new LearningEvent();
+        event.setEventType("PAGE_VIEW");
+        event.setUserId(UUID.randomUUID());
+        when(spool.isEnabled()).thenReturn(true);
+        when(eventWriter.writeAll(List.of(event)))
+                .thenThrow(new DataIntegrityViolationException("payload too large"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> trackingService.createEvent(event, null));
+        verify(spool, never()).append(any());
+    }
+
+    @Test
+    void testCreateEvent_RateLimitedEventIsNotStored() {
+        UUID userId = UUID.randomUUID();
+        LearningEvent event = eventOf(userId, OffsetDateTime.parse("2024-03-01T20:00:00Z"));
+        doThrow(new IngestRateLimitedException("Too many events for user " + userId, Duration.ofSeconds(1)))
+                .when(rateLimiter).acquire(userId, "mobile-app", "PAGE_VIEW");
+
+        assertThrows(IngestRateLimitedException.class, () -> trackingService.createEvent(event, "mobile-app"));
+        verify(writeBuffer, never()).enqueue(any());
+        verify(eventWriter, never()).writeAll(any());
+    }
+
+    @Test
+    void testCreateEvent_InvalidEventTakesNoToken() {
+        LearningEvent event = eventOf(null, OffsetDateTime.parse("2024-03-01T20:00:00Z"));
+
+        assertThrows(IllegalArgumentException.class, () -> trackingService.createEvent(event, "mobile-app"));
+        verify(rateLimiter, never()).acquire(any(), any(), any());
     }
 
     @Test
@@ -72,14 +196,13 @@ class TrackingServiceTest {
         Pageable pageable = PageRequest.of(0, 20);
 
         Page<LearningEvent> page = new PageImpl<>(Collections.emptyList());
-        when(repository.findEvents(userId, "content_view", "content", entityId, from, to, pageable))
-                .thenReturn(page);
+        when(repository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
 
         Page<LearningEvent> result = trackingService.listEvents(
                 userId, "content_view", "content", entityId, from, to, pageable);
 
         assertTrue(result.isEmpty());
-        verify(repository).findEvents(userId, "content_view", "content", entityId, from, to, pageable);
+        verify(repository).findAll(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -88,13 +211,276 @@ class TrackingServiceTest {
         Pageable pageable = PageRequest.of(0, 20);
 
         Page<LearningEvent> page = new PageImpl<>(Collections.emptyList());
-        when(repository.findEvents(userId, null, null, null, null, null, pageable))
-                .thenReturn(page);
+        when(repository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
 
         Page<LearningEvent> result = trackingService.listEvents(
                 userId, null, null, null, null, null, pageable);
 
         assertTrue(result.isEmpty());
-        verify(repository).findEvents(userId, null, null, null, null, null, pageable);
+        verify(repository).findAll(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    void testCreateEvents_PartialRejection() {
+        UUID userId = UUID.randomUUID();
+
+        LearningEvent valid = new LearningEvent();
+        valid.setUserId(userId);
+        valid.setEventType("PAGE_VIEW");
+        valid.setPayload("{\"page\":\"/dashboard\"}");
+
+        LearningEvent invalidPayload = new LearningEvent();
+        invalidPayload.setUserId(userId);
+        invalidPayload.setEventType("CONTENT_START");
+        invalidPayload.setPayload("{}");
+
+        LearningEvent missingUser = new LearningEvent();
+        missingUser.setEventType("PAGE_VIEW");
+
+        doThrow(new IllegalArgumentException("Missing required field 'startTime'"))
+                .when(payloadValidator).validate(eq("CONTENT_START"), anyString());
+        doNothing().when(payloadValidator).validate(eq("PAGE_VIEW"), anyString());
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            List<LearningEvent> events = invocation.getArgument(0);
+            events.forEach(e -> e.setId(UUID.randomUUID()));
+            return events;
+        });
+
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(valid, invalidPayload, missingUser), null);
+
+        assertEquals(3, results.size());
+        assertEquals(BatchItemResult.ACCEPTED, results.get(0).status());
+        assertNotNull(results.get(0).id());
+        assertEquals(BatchItemResult.REJECTED, results.get(1).status());
+        assertTrue(results.get(1).error().contains("startTime"));
+        assertEquals(BatchItemResult.REJECTED, results.get(2).status());
+        assertEquals("userId is required", results.get(2).error());
+        verify(eventWriter).writeAll(List.of(valid));
+    }
+
+    @Test
+    void testCreateEvents_IgnoresClientSuppliedId() {
+        LearningEvent event = new LearningEvent();
+        event.setId(UUID.randomUUID());
+        event.setUserId(UUID.randomUUID());
+        event.setEventType("PAGE_VIEW");
+
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        trackingService.createEvents(List.of(event), null);
+
+        assertNull(event.getId(), "Batch inserts must not merge into existing rows");
+    }
+
+    @Test
+    void testCreateEvent_AssignsLocalDayInUserZone() {
+        UUID userId = UUID.randomUUID();
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType("PAGE_VIEW");
+        // Still the previous day in New York
+        event.setOccurredAt(OffsetDateTime.parse("2024-03-02T03:00:00Z"));
+        when(timezoneResolver.resolve(userId)).thenReturn(ZoneId.of("America/New_York"));
+        when(writeBuffer.isEnabled()).thenReturn(true);
+
+        trackingService.createEvent(event, null);
+
+        assertEquals("America/New_York", event.getTimeZone());
+        assertEquals(LocalDate.of(2024, 3, 1), event.getLocalDay());
+        verify(writeBuffer).enqueue(event);
+    }
+
+    @Test
+    void testCreateEvents_ResolvesZonesOnceForTheBatch() {
+        UUID tokyo = UUID.randomUUID();
+        UUID lima = UUID.randomUUID();
+        OffsetDateTime occurredAt = OffsetDateTime.parse("2024-03-01T20:00:00Z");
+        List<LearningEvent> events = List.of(eventOf(tokyo, occurredAt), eventOf(lima, occurredAt),
+                eventOf(tokyo, occurredAt));
+        when(timezoneResolver.resolveAll(List.of(tokyo, lima, tokyo)))
+                .thenReturn(Map.of(tokyo, ZoneId.of("Asia/Tokyo"), lima, ZoneId.of("America/Lima")));
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        trackingService.createEvents(events, null);
+
+        assertEquals(LocalDate.of(2024, 3, 2), events.get(0).getLocalDay());
+        assertEquals("America/Lima", events.get(1).getTimeZone());
+        assertEquals(LocalDate.of(2024, 3, 1), events.get(1).getLocalDay());
+        verify(timezoneResolver, never()).resolve(any());
+    }
+
+    @Test
+    void testCreateEvents_RateLimitsEachValidItem() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime occurredAt = OffsetDateTime.parse("2024-03-01T20:00:00Z");
+        LearningEvent first = eventOf(userId, occurredAt);
+        LearningEvent invalid = eventOf(null, occurredAt);
+        LearningEvent throttled = eventOf(userId, occurredAt);
+        doNothing().doThrow(new IngestRateLimitedException("Too many events for user " + userId, Duration.ofSeconds(1)))
+                .when(rateLimiter).acquire(userId, "mobile-app", "PAGE_VIEW");
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(first, invalid, throttled), "mobile-app");
+
+        assertEquals(BatchItemResult.ACCEPTED, results.get(0).status());
+        assertEquals(BatchItemResult.REJECTED, results.get(1).status());
+        assertEquals(BatchItemResult.REJECTED, results.get(2).status());
+        assertEquals("Rate limit exceeded: Too many events for user " + userId, results.get(2).error());
+        // The invalid item takes no token
+        verify(rateLimiter, times(2)).acquire(any(), any(), any());
+        verify(eventWriter).writeAll(List.of(first));
+    }
+
+    @Test
+    void testCreateEvents_SpoolsAcceptedItemsWhenDatabaseUnreachable() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime occurredAt = OffsetDateTime.parse("2024-03-01T20:00:00Z");
+        LearningEvent first = eventOf(userId, occurredAt);
+        LearningEvent invalid = eventOf(null, occurredAt);
+        LearningEvent second = eventOf(userId, occurredAt.plusMinutes(1));
+        when(spool.isEnabled()).thenReturn(true);
+        when(eventWriter.writeAll(List.of(first, second)))
+                .thenThrow(new CannotCreateTransactionException("connection refused"));
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(first, invalid, second), null);
+
+        assertEquals(BatchItemResult.accepted(0, null), results.get(0));
+        assertEquals(BatchItemResult.REJECTED, results.get(1).status());
+        assertEquals(BatchItemResult.accepted(2, null), results.get(2));
+        verify(spool).markDatabaseDown();
+        verify(spool).append(first);
+        verify(spool).append(second);
+        verify(spool, never()).append(invalid);
+    }
+
+    @Test
+    void testCreateEvents_SkipsDatabaseWhileMarkedDown() {
+        LearningEvent event = eventOf(UUID.randomUUID(), OffsetDateTime.parse("2024-03-01T20:00:00Z"));
+        when(spool.isEnabled()).thenReturn(true);
+        when(spool.isDatabaseDown()).thenReturn(true);
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(event), null);
+
+        assertEquals(List.of(BatchItemResult.accepted(0, null)), results);
+        verify(spool).append(event);
+        verify(eventWriter, never()).writeAll(any());
+    }
+
+    @Test
+    void testCreateEvents_OtherFailuresAreNotSpooled() {
+        LearningEvent event = eventOf(UUID.randomUUID(), OffsetDateTime.parse("2024-03-01T20:00:00Z"));
+        when(spool.isEnabled()).thenReturn(true);
+        when(eventWriter.writeAll(List.of(event)))
+                .thenThrow(new DataIntegrityViolationException("payload too large"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> trackingService.createEvents(List.of(event), null));
+        verify(spool, never()).append(any());
+    }
+
+    private static LearningEvent eventOf(UUID userId, OffsetDateTime occurredAt) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType("PAGE_VIEW");
+        event.setOccurredAt(occurredAt);
+        return event;
+    }
+
+    @Test
+    void testListEventsAfter_FirstPageReturnsNextCursor() {
+        UUID userId = UUID.randomUUID();
+        OffsetDateTime now = OffsetDateTime.parse("2024-03-01T10:00:00Z");
+        List<LearningEvent> rows = List.of(
+                eventAt(now), eventAt(now.minusMinutes(1)), eventAt(now.minusMinutes(2)));
+        when(repository.findNewestFirst(any(), eq(3))).thenReturn(rows);
+
+        CursorPage<LearningEvent> page = trackingService.listEventsAfter(
+                userId, null, null, null, null, null, null, 2);
+
+        assertEquals(2, page.items().size());
+        EventCursor next = EventCursor.decode(page.nextCursor());
+        assertEquals(rows.get(1).getOccurredAt(), next.occurredAt());
+        assertEquals(rows.get(1).getId(), next.id());
+    }
+
+    @Test
+    void testListEventsAfter_LastPageHasNoCursor() {
+        LearningEvent last = eventAt(OffsetDateTime.parse("2024-03-01T10:00:00Z"));
+        EventCursor cursor = new EventCursor(last.getOccurredAt().plusMinutes(1), UUID.randomUUID());
+        when(repository.findNewestFirst(any(), eq(11))).thenReturn(List.of(last));
+
+        CursorPage<LearningEvent> page = trackingService.listEventsAfter(
+                null, null, null, null, null, null, cursor.encode(), 10);
+
+        assertEquals(List.of(last), page.items());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void testListEventsAfter_MalformedCursorRejected() {
+        assertThrows(IllegalArgumentException.class, () -> trackingService.listEventsAfter(
+                null, null, null, null, null, null, "not-a-cursor", 10));
+        verifyNoInteractions(repository);
+    }
+
+    private static LearningEvent eventAt(OffsetDateTime occurredAt) {
+        LearningEvent event = new LearningEvent();
+        event.setId(UUID.randomUUID());
+        event.setUserId(UUID.randomUUID());
+        event.setEventType("content_view");
+        event.setOccurredAt(occurredAt);
+        return event;
+    }
+
+    @Test
+    void testCreateEvents_ReportsDuplicates() {
+        UUID userId = UUID.randomUUID();
+        UUID storedId = UUID.randomUUID();
+        LearningEvent fresh = new LearningEvent();
+        fresh.setUserId(userId);
+        fresh.setEventType("PAGE_VIEW");
+        fresh.setClientEventId("k1");
+        LearningEvent retry = new LearningEvent();
+        retry.setUserId(userId);
+        retry.setEventType("PAGE_VIEW");
+        retry.setClientEventId("k0");
+
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            fresh.setId(UUID.randomUUID());
+            retry.setId(storedId);
+            return List.of(fresh);
+        });
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(fresh, retry), null);
+
+        assertEquals(BatchItemResult.ACCEPTED, results.get(0).status());
+        assertEquals(fresh.getId(), results.get(0).id());
+        assertEquals(BatchItemResult.DUPLICATE, results.get(1).status());
+        assertEquals(storedId, results.get(1).id());
+    }
+
+    @Test
+    void testCreateEvent_DuplicateReturnsOriginal() {
+        LearningEvent retry = new LearningEvent();
+        retry.setEventType("PAGE_VIEW");
+        retry.setUserId(UUID.randomUUID());
+        retry.setClientEventId("k0");
+        when(writeBuffer.isEnabled()).thenReturn(false);
+        when(eventWriter.writeAll(List.of(retry))).thenReturn(List.of());
+
+        assertSame(retry, trackingService.createEvent(retry, null));
+    }
+
+    @Test
+    void testCreateEvents_RejectsOversizedClientEventId() {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(UUID.randomUUID());
+        event.setEventType("PAGE_VIEW");
+        event.setClientEventId("x".repeat(101));
+        when(eventWriter.writeAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchItemResult> results = trackingService.createEvents(List.of(event), null);
+
+        assertEquals(BatchItemResult.REJECTED, results.get(0).status());
     }
 }
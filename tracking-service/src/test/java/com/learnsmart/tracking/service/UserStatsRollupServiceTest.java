@@ -0,0 +1,237 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.model.LearningEvent;
+import com.learnsmart.tracking.model.UserDailyItemSketch;
+import com.learnsmart.tracking.model.UserStatsRollup;
+import com.learnsmart.tracking.repository.UserDailyItemSketchRepository;
+import com.learnsmart.tracking.repository.UserStatsRollupRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserStatsRollupServiceTest {
+
+    @Mock
+    private UserStatsRollupRepository rollupRepository;
+
+    @Mock
+    private UserDailyItemSketchRepository sketchRepository;
+
+    @Mock
+    private EventHistory eventHistory;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private UserStatsRollupService rollupService;
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    private LearningEvent event(UUID userId, String type, UUID entityId, LocalDate day, String payload) {
+        LearningEvent event = new LearningEvent();
+        event.setUserId(userId);
+        event.setEventType(type);
+        event.setEntityId(entityId);
+        event.setOccurredAt(day.atTime(12, 0).atOffset(ZoneOffset.UTC));
+        event.setPayload(payload);
+        return event;
+    }
+
+    @Test
+    void testApply_UpdatesTotalsStreakAndDistinctItems() {
+        UUID userId = UUID.randomUUID();
+        UUID lesson = UUID.randomUUID();
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        when(rollupRepository.findForUpdate(userId)).thenReturn(Optional.of(rollup));
+
+        // Out of order within the batch: apply sorts by occurredAt
+        List<LearningEvent> events = new ArrayList<>(List.of(
+                event(userId, "content_view", lesson, TODAY, "{\"durationSeconds\": 3600}"),
+                event(userId, "content_view", lesson, TODAY.minusDays(2), "{\"durationSeconds\": 1800}"),
+                event(userId, "page_view", null, TODAY.minusDays(1), null)));
+
+        rollupService.apply(events);
+
+        verify(rollupRepository).insertIfAbsent(userId);
+        verify(rollupRepository).save(rollup);
+        assertEquals(3, rollup.getTotalEvents());
+        assertEquals(5400, rollup.getTotalSeconds(), 0.001);
+        assertEquals(TODAY, rollup.getLastActiveDay());
+        assertEquals(3, rollup.getCurrentStreak());
+        assertEquals(1, rollup.getLessonsCompleted(), "Same lesson seen twice counts once");
+        assertEquals(0, rollup.getAssessmentsTaken());
+
+        ArgumentCaptor<UserDailyItemSketch> daily = ArgumentCaptor.forClass(UserDailyItemSketch.class);
+        verify(sketchRepository, times(2)).save(daily.capture());
+        assertEquals(List.of(TODAY.minusDays(2), TODAY),
+                daily.getAllValues().stream().map(UserDailyItemSketch::getDay).toList());
+        assertEquals(1, HyperLogLog.fromBytes(daily.getAllValues().get(1).getSketch()).estimate());
+    }
+
+    @Test
+    void testApply_UsesLocalDaysAndKeepsUserZone() {
+        UUID userId = UUID.randomUUID();
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        when(rollupRepository.findForUpdate(userId)).thenReturn(Optional.of(rollup));
+        // 23:30 in Tokyo on consecutive local days, same UTC day for the second pair
+        LearningEvent first = event(userId, "page_view", null, TODAY.minusDays(1), null);
+        first.setOccurredAt(TODAY.minusDays(1).atTime(14, 30).atOffset(ZoneOffset.UTC));
+        first.setTimeZone("Asia/Tokyo");
+        first.setLocalDay(TODAY.minusDays(1));
+        LearningEvent second = event(userId, "page_view", null, TODAY, null);
+        second.setOccurredAt(TODAY.minusDays(1).atTime(15, 30).atOffset(ZoneOffset.UTC));
+        second.setTimeZone("Asia/Tokyo");
+        second.setLocalDay(TODAY);
+
+        rollupService.apply(new ArrayList<>(List.of(first, second)));
+
+        assertEquals(TODAY, rollup.getLastActiveDay());
+        assertEquals(2, rollup.getCurrentStreak());
+        assertEquals("Asia/Tokyo", rollup.getTimeZone());
+        // Already the day after TODAY in Tokyo, still TODAY in UTC
+        Instant lateEvening = TODAY.atTime(20, 0).toInstant(ZoneOffset.UTC);
+        assertEquals(2, rollup.streakAt(lateEvening));
+        assertEquals(0, rollup.streakAt(TODAY.plusDays(1).atTime(16, 0).toInstant(ZoneOffset.UTC)));
+    }
+
+    @Test
+    void testApply_MergesIntoStoredSketches() {
+        UUID userId = UUID.randomUUID();
+        UUID seen = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+        HyperLogLog stored = new HyperLogLog();
+        stored.add(seen);
+
+        UserStatsRollup rollup = new UserStatsRollup(userId);
+        rollup.setLessonsSketch(stored.toBytes());
+        rollup.setLessonsCompleted(1);
+        when(rollupRepository.findForUpdate(userId)).thenReturn(Optional.of(rollup));
+        UserDailyItemSketch.Key key = new UserDailyItemSketch.Key(userId, TODAY, UserStatsRollupService.ITEM_LESSON);
+        UserDailyItemSketch storedDay = new UserDailyItemSketch(userId, TODAY, UserStatsRollupService.ITEM_LESSON,
+                stored.toBytes());
+        when(sketchRepository.findById(key)).thenReturn(Optional.of(storedDay));
+
+        rollupService.apply(new ArrayList<>(List.of(
+                event(userId, "content_view", seen, TODAY, null),
+                event(userId, "content_view", fresh, TODAY, null))));
+
+        assertEquals(2, rollup.getLessonsCompleted());
+        assertEquals(2, HyperLogLog.fromBytes(rollup.getLessonsSketch()).estimate());
+        verify(sketchRepository).save(storedDay);
+        assertEquals(2, HyperLogLog.fromBytes(storedDay.getSketch()).estimate());
+    }
+
+    @Test
+    void testApply_GroupsByUser() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        UserStatsRollup rollup1 = new UserStatsRollup(user1);
+        UserStatsRollup rollup2 = new UserStatsRollup(user2);
+        when(rollupRepository.findForUpdate(user1)).thenReturn(Optional.of(rollup1));
+        when(rollupRepository.findForUpdate(user2)).thenReturn(Optional.of(rollup2));
+
+        rollupService.apply(List.of(
+                event(user1, "page_view", null, TODAY, null),
+                event(user2, "assessment_completed", UUID.randomUUID(), TODAY, null),
+                event(user1, "page_view", null, TODAY, null)));
+
+        assertEquals(2, rollup1.getTotalEvents());
+        assertEquals(1, rollup1.getCurrentStreak());
+        assertEquals(1, rollup2.getTotalEvents());
+        assertEquals(1, rollup2.getAssessmentsTaken());
+    }
+
+    @Test
+    void testRebuild_RecomputesFromRawEvents() {
+        UUID userId = UUID.randomUUID();
+        UUID lesson1 = UUID.randomUUID();
+        UUID lesson2 = UUID.randomUUID();
+        UUID assessment = UUID.randomUUID();
+        when(eventHistory.streamByUser(userId)).thenReturn(Stream.of(
+                event(userId, "content_view", lesson1, TODAY.minusDays(5), "{\"durationSeconds\": 60}"),
+                event(userId, "content_view", lesson2, TODAY.minusDays(1), "{\"durationSeconds\": 60}"),
+                event(userId, "content_view", lesson1, TODAY, "{\"durationSeconds\": 60}"),
+                event(userId, "assessment_started", assessment, TODAY, null),
+                event(userId, "assessment_completed", assessment, TODAY, null)));
+        when(rollupRepository.save(any(UserStatsRollup.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserStatsRollup rollup = rollupService.rebuild(userId);
+
+        verify(sketchRepository).deleteByUser(userId);
+        // One lesson sketch on each of three active days plus today's assessment sketch
+        verify(sketchRepository, times(4)).save(any(UserDailyItemSketch.class));
+        verify(entityManager, times(5)).detach(any());
+        assertEquals(5, rollup.getTotalEvents());
+        assertEquals(180, rollup.getTotalSeconds(), 0.001);
+        assertEquals(2, rollup.getCurrentStreak(), "Gap of four days resets the streak");
+        assertEquals(2, rollup.getLessonsCompleted());
+        assertEquals(1, rollup.getAssessmentsTaken());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuildAll_OneTransactionPerUser() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        when(eventHistory.findDistinctUserIds()).thenReturn(List.of(user1, user2));
+        when(eventHistory.streamByUser(any())).thenAnswer(invocation -> Stream.empty());
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        assertEquals(2, rollupService.rebuildAll());
+
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        ArgumentCaptor<UserStatsRollup> saved = ArgumentCaptor.forClass(UserStatsRollup.class);
+        verify(rollupRepository, times(2)).save(saved.capture());
+        assertEquals(List.of(user1, user2), saved.getAllValues().stream().map(UserStatsRollup::getUserId).toList());
+    }
+
+    @Test
+    void testRecord_StreakTransitions() {
+        UserStatsRollup rollup = new UserStatsRollup(UUID.randomUUID());
+
+        rollup.record(TODAY.minusDays(3), 0);
+        assertEquals(1, rollup.getCurrentStreak());
+
+        rollup.record(TODAY.minusDays(3), 0);
+        assertEquals(1, rollup.getCurrentStreak(), "Same day does not extend the streak");
+
+        rollup.record(TODAY.minusDays(2), 0);
+        assertEquals(2, rollup.getCurrentStreak());
+
+        rollup.record(TODAY.minusDays(4), 0);
+        assertEquals(3, rollup.getCurrentStreak(), "Late event just before the streak extends it");
+
+        rollup.record(TODAY, 0);
+        assertEquals(1, rollup.getCurrentStreak(), "A missed day resets the streak");
+
+        assertEquals(1, rollup.streakAsOf(TODAY.plusDays(1)));
+        assertEquals(0, rollup.streakAsOf(TODAY.plusDays(2)));
+    }
+}
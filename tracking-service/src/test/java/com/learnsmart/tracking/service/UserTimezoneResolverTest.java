@@ -0,0 +1,155 @@
+package com.learnsmart.tracking.service;
+
+import com.learnsmart.tracking.client.ProfileClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserTimezoneResolverTest {
+
+    private static final UUID USER = UUID.randomUUID();
+
+    @Mock
+    private ProfileClient profileClient;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-03-01T10:00:00Z"));
+
+    private UserTimezoneResolver resolver() {
+        return new UserTimezoneResolver(profileClient, clock, Duration.ofHours(1), 100, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void testCachesProfileZone() {
+        when(profileClient.getTimezone(USER)).thenReturn(Optional.of("Europe/Madrid"));
+        UserTimezoneResolver resolver = resolver();
+
+        assertEquals(ZoneId.of("Europe/Madrid"), resolver.resolve(USER));
+        assertEquals(ZoneId.of("Europe/Madrid"), resolver.resolve(USER));
+        verify(profileClient, times(1)).getTimezone(USER);
+
+        clock.advance(Duration.ofHours(1));
+        resolver.resolve(USER);
+        verify(profileClient, times(2)).getTimezone(USER);
+    }
+
+    @Test
+    void testMissingOrInvalidZoneIsUtc() {
+        UUID invalid = UUID.randomUUID();
+        when(profileClient.getTimezone(USER)).thenReturn(Optional.empty());
+        when(profileClient.getTimezone(invalid)).thenReturn(Optional.of("Mars/Olympus_Mons"));
+        UserTimezoneResolver resolver = resolver();
+
+        assertEquals(ZoneOffset.UTC, resolver.resolve(USER));
+        assertEquals(ZoneOffset.UTC, resolver.resolve(invalid));
+    }
+
+    @Test
+    void testFailureIsNotCachedAndPausesLookups() {
+        UUID other = UUID.randomUUID();
+        when(profileClient.getTimezone(USER))
+                .thenThrow(new ResourceAccessException("connect timed out"))
+                .thenReturn(Optional.of("Asia/Tokyo"));
+        UserTimezoneResolver resolver = resolver();
+
+        assertEquals(ZoneOffset.UTC, resolver.resolve(USER));
+        assertEquals(ZoneOffset.UTC, resolver.resolve(other), "No lookups while paused");
+        verify(profileClient, never()).getTimezone(other);
+
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(ZoneId.of("Asia/Tokyo"), resolver.resolve(USER));
+    }
+
+    @Test
+    void testRejectedTokenIsNotCachedAndDoesNotPauseLookups() {
+        UUID other = UUID.randomUUID();
+        when(profileClient.getTimezone(USER))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", null, null, null))
+                .thenReturn(Optional.of("Asia/Tokyo"));
+        when(profileClient.getTimezone(other)).thenReturn(Optional.of("Europe/Paris"));
+        UserTimezoneResolver resolver = resolver();
+
+        assertEquals(ZoneOffset.UTC, resolver.resolve(USER));
+        assertEquals(ZoneId.of("Europe/Paris"), resolver.resolve(other));
+        assertEquals(ZoneId.of("Asia/Tokyo"), resolver.resolve(USER));
+    }
+
+    @Test
+    void testResolveAllLooksUpUncachedUsersInOneCall() {
+        UUID other = UUID.randomUUID();
+        UUID noZone = UUID.randomUUID();
+        when(profileClient.getTimezone(USER)).thenReturn(Optional.of("Europe/Madrid"));
+        when(profileClient.getTimezones(List.of(other, noZone))).thenReturn(Map.of(other, "Asia/Tokyo"));
+        UserTimezoneResolver resolver = resolver();
+        resolver.resolve(USER);
+
+        Map<UUID, ZoneId> zones = resolver.resolveAll(List.of(USER, other, noZone, other));
+
+        assertEquals(Map.of(USER, ZoneId.of("Europe/Madrid"), other, ZoneId.of("Asia/Tokyo"),
+                noZone, ZoneOffset.UTC), zones);
+        // Cached now, including the user without a zone
+        assertEquals(zones, resolver.resolveAll(List.of(USER, other, noZone)));
+        verify(profileClient, times(1)).getTimezones(any());
+    }
+
+    @Test
+    void testResolveAllFailureIsNotCachedAndPausesLookups() {
+        when(profileClient.getTimezones(List.of(USER)))
+                .thenThrow(new ResourceAccessException("connect timed out"))
+                .thenReturn(Map.of(USER, "Asia/Tokyo"));
+        UserTimezoneResolver resolver = resolver();
+
+        assertEquals(Map.of(USER, ZoneOffset.UTC), resolver.resolveAll(List.of(USER)));
+        assertEquals(Map.of(USER, ZoneOffset.UTC), resolver.resolveAll(List.of(USER)), "No lookups while paused");
+        verify(profileClient, times(1)).getTimezones(any());
+
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(Map.of(USER, ZoneId.of("Asia/Tokyo")), resolver.resolveAll(List.of(USER)));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
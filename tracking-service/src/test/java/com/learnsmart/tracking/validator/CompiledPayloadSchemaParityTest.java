@@ -0,0 +1,174 @@
+package com.learnsmart.tracking.validator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the compiled streaming validation accepts exactly the payloads
+ * the Map-based reference implementation accepts, for every registered event
+ * type and a range of valid, invalid and malformed inputs.
+ */
+class CompiledPayloadSchemaParityTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final String UUID = "\"123e4567-e89b-12d3-a456-426614174000\"";
+    private static final String TIMESTAMP = "\"2024-01-01T10:00:00Z\"";
+
+    /** Candidate values covering every JSON type and the edge cases of each format. */
+    private static final List<String> VALUES = List.of(
+            UUID,
+            "\"123E4567-E89B-12D3-A456-426614174000\"",
+            "\"123e4567-e89b-12d3-a456-42661417400\"",
+            "\"123e4567e89b-12d3-a456-4266141740000\"",
+            "\"123e4567-e89b-12d3-a456-42661417400g\"",
+            "\"１２３e4567-e89b-12d3-a456-426614174000\"",
+            "\"123e4567-e89b-12d3-a456-426614174000\\n\"",
+            TIMESTAMP,
+            "\"2024-01-01T10:00:00.123456Z\"",
+            "\"2024-01-01T10:00:00+02:00\"",
+            "\"2024-01-01\"",
+            "\"not a date\"",
+            "\"\"",
+            "0", "1", "12000", "-1", "-500",
+            "2147483648", "9223372036854775807", "9223372036854775808", "18446744073709551615",
+            "-9223372036854775809",
+            "0.0", "0.5", "1.0", "1.5", "-0.5", "-1.5", "1e400", "-1e-400", "1E2",
+            "true", "false", "null",
+            "{}", "{\"nested\":" + UUID + "}", "[]", "[1,2]", "[" + UUID + "]");
+
+    static Stream<String> registeredEventTypes() {
+        return EventPayloadValidator.registeredEventTypes().stream().sorted();
+    }
+
+    @ParameterizedTest
+    @MethodSource("registeredEventTypes")
+    void compiledMatchesMapValidation(String eventType) {
+        for (String payload : payloadsFor(eventType)) {
+            assertParity(eventType, payload);
+        }
+    }
+
+    @Test
+    void unknownEventTypesOnlyRequireAJsonObject() {
+        for (String payload : structuralPayloads()) {
+            assertParity("SOMETHING_NEW", payload);
+        }
+        assertParity("SOMETHING_NEW", "{\"any\":" + UUID + ",\"deep\":{\"a\":[1,{\"b\":null}]}}");
+    }
+
+    private static void assertParity(String eventType, String payload) {
+        EventPayloadValidator validator = new EventPayloadValidator();
+        boolean expected;
+        try {
+            validator.validateWithMap(eventType, payload);
+            expected = true;
+        } catch (IllegalArgumentException e) {
+            expected = false;
+        }
+        boolean actual = EventPayloadValidator.compiledSchema(eventType).accepts(FACTORY, payload);
+        assertEquals(expected, actual, () -> eventType + " " + payload);
+
+        if (expected) {
+            assertDoesNotThrow(() -> validator.validate(eventType, payload));
+        } else {
+            assertThrows(IllegalArgumentException.class, () -> validator.validate(eventType, payload));
+        }
+    }
+
+    /**
+     * Builds payloads from a valid base: the base itself, every candidate value
+     * in every known field, every field removed, duplicated keys, unknown
+     * fields and structurally broken documents.
+     */
+    private static List<String> payloadsFor(String eventType) {
+        Map<String, String> base = validBase(eventType);
+        List<String> payloads = new ArrayList<>();
+        payloads.add(toJson(base));
+        payloads.add(toJson(base) + " ");
+
+        for (String field : base.keySet()) {
+            for (String value : VALUES) {
+                Map<String, String> variant = new LinkedHashMap<>(base);
+                variant.put(field, value);
+                payloads.add(toJson(variant));
+            }
+            Map<String, String> missing = new LinkedHashMap<>(base);
+            missing.remove(field);
+            payloads.add(toJson(missing));
+
+            // Duplicate keys: the last occurrence decides, as with a Map
+            String valid = toJson(base);
+            payloads.add(valid.substring(0, valid.length() - 1) + ",\"" + field + "\":{\"x\":1}}");
+            payloads.add("{\"" + field + "\":[1]," + valid.substring(1));
+        }
+
+        Map<String, String> withExtras = new LinkedHashMap<>(base);
+        withExtras.put("extra", "{\"deep\":[1,2,{\"contentItemId\":\"nope\"}]}");
+        withExtras.put("tags", "[\"a\",\"b\"]");
+        payloads.add(toJson(withExtras));
+
+        payloads.addAll(structuralPayloads());
+        return payloads;
+    }
+
+    private static List<String> structuralPayloads() {
+        return List.of("{}", "null", "[]", "[{}]", "\"text\"", "42", "true",
+                "{", "{\"a\":}", "{\"a\":1,}", "{\"a\" 1}", "{a:1}", "{\"a\":[1,2}", "{\"a\":{\"b\":1}",
+                "{\"a\":1}}", "{\"a\":1} trailing", "{'a':1}", "{\"a\":01}", "{\"a\":NaN}");
+    }
+
+    private static Map<String, String> validBase(String eventType) {
+        Map<String, String> base = new LinkedHashMap<>();
+        for (String field : List.of("contentItemId", "sessionId", "skillId", "planId", "userId", "activityId",
+                "moduleId")) {
+            base.put(field, UUID);
+        }
+        for (String field : List.of("startTime", "completionTime", "completedAt")) {
+            base.put(field, TIMESTAMP);
+        }
+        base.put("timeSpentMs", "12000");
+        base.put("finalScore", "0.85");
+        base.put("score", "0.9");
+        base.put("itemsAnswered", "10");
+        base.put("page", "\"/dashboard\"");
+
+        // Keep only fields the reference implementation accepts for this type
+        Map<String, String> accepted = new LinkedHashMap<>();
+        EventPayloadValidator validator = new EventPayloadValidator();
+        for (Map.Entry<String, String> entry : base.entrySet()) {
+            accepted.put(entry.getKey(), entry.getValue());
+            try {
+                validator.validateWithMap(eventType, toJson(accepted));
+            } catch (IllegalArgumentException e) {
+                if (e.getMessage().startsWith("Invalid value")) {
+                    accepted.remove(entry.getKey());
+                }
+            }
+        }
+        assertDoesNotThrow(() -> validator.validateWithMap(eventType, toJson(accepted)),
+                "no valid base payload for " + eventType);
+        return accepted;
+    }
+
+    private static String toJson(Map<String, String> fields) {
+        StringBuilder json = new StringBuilder("{");
+        fields.forEach((name, value) -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(name).append("\":").append(value);
+        });
+        return json.append('}').toString();
+    }
+}
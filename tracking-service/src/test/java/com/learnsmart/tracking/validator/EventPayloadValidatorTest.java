@@ -176,4 +176,15 @@ class EventPayloadValidatorTest {
                                 () -> validator.validate("CONTENT_START", toJson(payload)));
                 assertTrue(ex.getMessage().contains("Invalid value for field 'contentItemId'"));
         }
+
+        @Test
+        void testNullLiteralPayloadTreatedAsEmptyObject() {
+                assertDoesNotThrow(() -> validator.validate("PAGE_VIEW", "null"));
+                assertDoesNotThrow(() -> validator.validate("SOMETHING_NEW", "null"));
+
+                IllegalArgumentException ex = assertThrows(
+                                IllegalArgumentException.class,
+                                () -> validator.validate("CONTENT_START", "null"));
+                assertTrue(ex.getMessage().contains("Missing required field"));
+        }
 }
@@ -0,0 +1,56 @@
+package com.learnsmart.tracking.validator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled streaming validation with the Map-based reference
+ * path over valid payloads of several registered event types. Lives next to
+ * the validator because the reference path is package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class PayloadValidationBenchmark {
+
+    private static final String[][] EVENTS = {
+            { "CONTENT_START", "{\"contentItemId\":\"5f0c2b4e-8a3d-4a8e-9d55-2f1e6b7c9a01\","
+                    + "\"startTime\":\"2024-03-10T10:00:00Z\"}" },
+            { "CONTENT_COMPLETE", "{\"contentItemId\":\"5f0c2b4e-8a3d-4a8e-9d55-2f1e6b7c9a01\","
+                    + "\"completionTime\":\"2024-03-10T10:15:30Z\",\"timeSpentMs\":734000}" },
+            { "ACTIVITY_COMPLETED", "{\"activityId\":\"0d3c6a1e-55b7-4e7a-bb2b-7f3a9a8c1e42\","
+                    + "\"planId\":\"9a1b2c3d-4e5f-6a7b-8c9d-0e1f2a3b4c5d\",\"completedAt\":\"2024-03-10T10:15:30Z\","
+                    + "\"timeSpentMs\":95000,\"score\":0.8,\"moduleId\":\"1b2c3d4e-5f6a-4b7c-8d9e-0f1a2b3c4d5e\"}" },
+            { "EVALUATION_END", "{\"sessionId\":\"3e2d1c0b-a9f8-4e7d-b6c5-a4b3c2d1e0f9\",\"finalScore\":0.85,"
+                    + "\"itemsAnswered\":10,\"correctCount\":8}" },
+            { "ASSESSMENT_STARTED", "{\"sessionId\":\"3e2d1c0b-a9f8-4e7d-b6c5-a4b3c2d1e0f9\","
+                    + "\"skillId\":\"7c6b5a49-3827-4165-a4b3-c2d1e0f9a8b7\",\"assessmentType\":\"diagnostic\","
+                    + "\"startTime\":\"2024-03-10T09:00:00Z\"}" },
+            { "PAGE_VIEW", "{\"page\":\"/dashboard\",\"referrer\":\"/home\",\"device\":{\"os\":\"ios\"}}" },
+    };
+
+    private final EventPayloadValidator validator = new EventPayloadValidator();
+    private int cursor;
+
+    private String[] next() {
+        String[] event = EVENTS[cursor];
+        cursor = (cursor + 1) % EVENTS.length;
+        return event;
+    }
+
+    @Benchmark
+    public void compiled() {
+        String[] event = next();
+        validator.validate(event[0], event[1]);
+    }
+
+    @Benchmark
+    public void mapBased() {
+        String[] event = next();
+        validator.validateWithMap(event[0], event[1]);
+    }
+}